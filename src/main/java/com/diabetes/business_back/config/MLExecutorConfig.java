@@ -0,0 +1,32 @@
+package com.diabetes.business_back.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Pool exclusivo para las llamadas al modelo ML. Al estar acotado en hilos y en cola, un backend ML lento
+ * solo agota este pool y no los hilos de Tomcat que atienden el resto de la API.
+ */
+@Configuration
+public class MLExecutorConfig {
+
+    @Bean(name = "mlExecutor")
+    public ThreadPoolTaskExecutor mlExecutor(@Value("${ml.executor.hilos:16}") int hilos,
+                                             @Value("${ml.executor.cola:100}") int capacidadCola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(capacidadCola);
+        executor.setThreadNamePrefix("ml-");
+        // Con la cola llena se rechaza de inmediato en lugar de ejecutar en el hilo de Tomcat
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,83 @@
+package com.diabetes.business_back.config;
+
+import com.diabetes.business_back.entities.RangoClinico;
+import com.diabetes.business_back.repositories.RangoClinicoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class RangosClinicosDataInitializer {
+    @Bean
+    public CommandLineRunner initRangosClinicos(RangoClinicoRepository rangoClinicoRepository) {
+        return args -> {
+            if (rangoClinicoRepository.count() == 0) {
+                log.info("📝 Insertando rangos clínicos iniciales...");
+
+                List<RangoClinico> rangos = Arrays.asList(
+                        // Glucosa (mg/dL)
+                        crearRango("glucosa", "niveles_glucosa", null, 100.0, false, "Normal", 10, RangoClinico.SECCION_CLINICA,
+                                "**Glucosa normal**: Mantener hábitos saludables y control anual."),
+                        crearRango("glucosa", "niveles_glucosa", 100.0, 125.0, true, "Prediabetes", 11, RangoClinico.SECCION_CLINICA,
+                                "**Estado prediabético**: Implementar cambios en estilo de vida, realizar ejercicio regular (30 min/día) y dieta baja en carbohidratos refinados."),
+                        crearRango("glucosa", "niveles_glucosa", 125.0, null, false, "Diabetes", 12, RangoClinico.SECCION_CLINICA,
+                                "**Niveles de glucosa elevados**: Se recomienda consulta inmediata con endocrinólogo, monitoreo diario de glucosa y ajuste dietético."),
+
+                        // Insulina (μU/mL)
+                        crearRango("insulina", "niveles_insulina", null, 25.0, true, "Normal", 20, RangoClinico.SECCION_CLINICA, null),
+                        crearRango("insulina", "niveles_insulina", 25.0, 40.0, true, "Prediabetes", 21, RangoClinico.SECCION_CLINICA,
+                                "**Insulina elevada**: Aumentar consumo de fibra, realizar ejercicio de resistencia y control de peso."),
+                        crearRango("insulina", "niveles_insulina", 40.0, null, false, "Diabetes", 22, RangoClinico.SECCION_CLINICA,
+                                "**Resistencia a la insulina**: Reducir consumo de azúcares simples, aumentar actividad física y considerar evaluación de síndrome metabólico."),
+
+                        // Presión arterial sistólica (mmHg)
+                        crearRango("presion", "presion_arterial", null, 90.0, false, "Baja", 30, RangoClinico.SECCION_CLINICA,
+                                "**Presión arterial baja**: Aumentar hidratación, consumir pequeñas porciones frecuentes y evitar cambios bruscos de posición."),
+                        crearRango("presion", "presion_arterial", 90.0, 130.0, true, "Normal", 31, RangoClinico.SECCION_CLINICA, null),
+                        crearRango("presion", "presion_arterial", 130.0, null, false, "Alta", 32, RangoClinico.SECCION_CLINICA,
+                                "**Presión arterial elevada**: Reducir consumo de sal, monitoreo periódico de presión y consulta con cardiólogo."),
+
+                        // Colesterol total (mg/dL)
+                        crearRango("colesterol", "niveles_colesterol", null, 200.0, false, "Normal", 40, RangoClinico.SECCION_CLINICA, null),
+                        crearRango("colesterol", "niveles_colesterol", 200.0, 239.0, true, "Alto", 41, RangoClinico.SECCION_CLINICA,
+                                "**Colesterol elevado**: Reducir grasas saturadas, aumentar consumo de ácidos grasos omega-3 y ejercicio aeróbico regular."),
+                        crearRango("colesterol", "niveles_colesterol", 239.0, null, false, "Anormal", 42, RangoClinico.SECCION_CLINICA,
+                                "**Colesterol elevado**: Reducir grasas saturadas, aumentar consumo de ácidos grasos omega-3 y ejercicio aeróbico regular."),
+
+                        // Grupo etario (años)
+                        crearRango("edad", "edad", null, 12.0, true, "Infante", 50, RangoClinico.SECCION_ETARIA,
+                                "**Niños**: Monitoreo estrecho por pediatra endocrinólogo, atención especial a crecimiento y desarrollo."),
+                        crearRango("edad", "edad", 12.0, 25.0, true, "Adolescente", 51, RangoClinico.SECCION_ETARIA,
+                                "**Adolescentes**: Educación sobre autocuidado, apoyo psicológico y adaptación escolar."),
+                        crearRango("edad", "edad", 25.0, 60.0, true, "Adulto", 52, RangoClinico.SECCION_ETARIA, null),
+                        crearRango("edad", "edad", 60.0, null, false, "Adulto Mayor", 53, RangoClinico.SECCION_ETARIA,
+                                "**Adulto mayor**: Evaluación de medicamentos concurrentes, prevención de complicaciones y soporte familiar.")
+                );
+
+                rangoClinicoRepository.saveAll(rangos);
+                log.info("✅ {} rangos clínicos insertados", rangos.size());
+            }
+        };
+    }
+
+    private RangoClinico crearRango(String variable, String nombreCampo, Double minimo, Double maximo,
+                                    boolean maximoInclusivo, String etiqueta, int orden, String seccion,
+                                    String recomendacion) {
+        RangoClinico rango = new RangoClinico();
+        rango.setVariable(variable);
+        rango.setNombreCampo(nombreCampo);
+        rango.setMinimo(minimo);
+        rango.setMaximo(maximo);
+        rango.setMaximoInclusivo(maximoInclusivo);
+        rango.setEtiqueta(etiqueta);
+        rango.setOrden(orden);
+        rango.setSeccion(seccion);
+        rango.setRecomendacion(recomendacion);
+        return rango;
+    }
+}
@@ -1,20 +1,131 @@
 package com.diabetes.business_back.config;
 
+import com.diabetes.business_back.services.MedidorTiemposHttp;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * RestTemplate sobre un pool de conexiones persistentes de Apache HttpClient 5, para que las llamadas a la
+ * API ML reutilicen conexiones keep-alive en lugar de abrir (y dejar en TIME_WAIT) una por solicitud.
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${ml.http.max-conexiones:50}")
+    private int maxConexiones;
+
+    @Value("${ml.http.max-por-ruta:20}")
+    private int maxPorRuta;
+
+    @Value("${ml.http.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${ml.python.api.timeout:30000}")
+    private long readTimeoutMs;
+
+    @Value("${ml.http.espera-pool-ms:2000}")
+    private long esperaPoolMs;
+
+    @Value("${ml.http.inactividad-ms:30000}")
+    private long inactividadMs;
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public PoolingHttpClientConnectionManager connectionManager(MedidorTiemposHttp medidor) {
+        PoolingHttpClientConnectionManager manager = new ConnectionManagerMedido(medidor);
+        manager.setMaxTotal(maxConexiones);
+        manager.setDefaultMaxPerRoute(maxPorRuta);
+        manager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                // Una conexión que estuvo inactiva se valida antes de reutilizarla
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+        return manager;
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(esperaPoolMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(inactividadMs))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient httpClient,
+                                     MedidorTiemposHttp medidor) {
         return builder
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(30))
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalInterceptors(medidor)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Pool que informa al medidor cuánto se esperó por una conexión y cuánto tardó en abrirse una nueva
+     */
+    static final class ConnectionManagerMedido extends PoolingHttpClientConnectionManager {
+        private final MedidorTiemposHttp medidor;
+
+        ConnectionManagerMedido(MedidorTiemposHttp medidor) {
+            this.medidor = medidor;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest lease = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException {
+                    long inicio = System.nanoTime();
+                    try {
+                        return lease.get(timeout);
+                    } finally {
+                        medidor.registrarEspera(System.nanoTime() - inicio);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return lease.cancel();
+                }
+            };
+        }
+
+        @Override
+        public void connect(ConnectionEndpoint endpoint, TimeValue timeout, HttpContext context) throws IOException {
+            long inicio = System.nanoTime();
+            try {
+                super.connect(endpoint, timeout, context);
+            } finally {
+                medidor.registrarConexion(System.nanoTime() - inicio);
+            }
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.diabetes.business_back.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.concurrent.Callable;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+    /**
+     * Atributo de request con el que un controlador puede fijar el tiempo máximo (ms) de su respuesta asíncrona,
+     * p. ej. una descarga con StreamingResponseBody que no debe cortarse a los spring.mvc.async.request-timeout
+     */
+    public static final String ATRIBUTO_TIMEOUT_ASINCRONO = WebConfig.class.getName() + ".timeoutAsincrono";
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -20,4 +32,18 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true)
                 .maxAge(3600);
     }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // Se ejecuta antes de iniciar el modo asíncrono, cuando el timeout todavía se puede cambiar
+                Object timeout = request.getAttribute(ATRIBUTO_TIMEOUT_ASINCRONO, RequestAttributes.SCOPE_REQUEST);
+                if (timeout instanceof Long milisegundos && request instanceof AsyncWebRequest asincrona) {
+                    asincrona.setTimeout(milisegundos);
+                }
+            }
+        });
+    }
 }
\ No newline at end of file
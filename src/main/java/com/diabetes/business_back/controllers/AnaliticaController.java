@@ -0,0 +1,37 @@
+package com.diabetes.business_back.controllers;
+
+import com.diabetes.business_back.services.AnaliticaBiomarcadores;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@CrossOrigin(origins = "http://localhost:4200",
+        allowCredentials = "true",
+        exposedHeaders = "Authorization")
+@RequestMapping("/api/analitica")
+public class AnaliticaController {
+
+    @Autowired
+    private AnaliticaBiomarcadores analiticaBiomarcadores;
+
+    @GetMapping("/biomarcadores")
+    public ResponseEntity<Map<String, Object>> obtenerDistribuciones(@RequestParam(required = false) String tipo) {
+        return ResponseEntity.ok(analiticaBiomarcadores.obtenerDistribuciones(tipo));
+    }
+
+    @GetMapping("/biomarcadores/estado")
+    public ResponseEntity<Map<String, Object>> obtenerEstado() {
+        return ResponseEntity.ok(analiticaBiomarcadores.obtenerEstadisticas());
+    }
+
+    @PostMapping("/biomarcadores/reconstruir")
+    public ResponseEntity<Map<String, Object>> reconstruir() {
+        analiticaBiomarcadores.reconstruir();
+        return ResponseEntity.ok(analiticaBiomarcadores.obtenerEstadisticas());
+    }
+}
@@ -1,16 +1,40 @@
 package com.diabetes.business_back.controllers;
 
+import com.diabetes.business_back.config.WebConfig;
 import com.diabetes.business_back.dtos.EvaluacionDiabetesDto;
 import com.diabetes.business_back.dtos.EvaluacionRequestDto;
+import com.diabetes.business_back.dtos.EvaluacionResumenDto;
+import com.diabetes.business_back.dtos.PaginaCursorDto;
+import com.diabetes.business_back.dtos.PrediccionLoteResponseDto;
 import com.diabetes.business_back.dtos.PrediccionResponseDto;
 import com.diabetes.business_back.interfaces.IEvaluacionDiabetesService;
+import com.diabetes.business_back.services.AlmacenTextosGenerados;
+import com.diabetes.business_back.services.EscrituraDiferidaEvaluaciones;
+import com.diabetes.business_back.services.EstadisticasEvaluaciones;
+import com.diabetes.business_back.services.ExportacionEvaluacionesService;
+import com.diabetes.business_back.services.ImportacionEvaluacionesService;
+import com.diabetes.business_back.services.MigracionDetalleEvaluaciones;
+import com.diabetes.business_back.services.ParticionadoEvaluaciones;
+import com.diabetes.business_back.services.RenderizadorTextosEvaluacion;
+import com.diabetes.business_back.services.TendenciasEvaluaciones;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -22,6 +46,39 @@ public class EvaluacionDiabetesController {
     @Autowired
     private IEvaluacionDiabetesService evaluacionservice;
 
+    @Autowired
+    private EscrituraDiferidaEvaluaciones escrituraDiferida;
+
+    @Autowired
+    private RenderizadorTextosEvaluacion renderizadorTextos;
+
+    @Autowired
+    private ImportacionEvaluacionesService importacionService;
+
+    @Autowired
+    private EstadisticasEvaluaciones estadisticasEvaluaciones;
+
+    @Autowired
+    private TendenciasEvaluaciones tendencias;
+
+    @Autowired
+    private ExportacionEvaluacionesService exportacionService;
+
+    @Autowired
+    private MigracionDetalleEvaluaciones migracionDetalle;
+
+    @Autowired
+    private AlmacenTextosGenerados almacenTextos;
+
+    @Autowired
+    private ParticionadoEvaluaciones particionado;
+
+    @Value("${ml.importacion.timeout-ms:1800000}")
+    private long timeoutImportacionMs;
+
+    @Value("${exportacion.timeout-ms:3600000}")
+    private long timeoutExportacionMs;
+
     @PostMapping("/registrar")
     public ResponseEntity<EvaluacionDiabetesDto> evaluacion(@RequestBody EvaluacionDiabetesDto evaluaciondto) {
         return ResponseEntity.ok(evaluacionservice.grabarEvaluacion(evaluaciondto));
@@ -32,6 +89,12 @@ public class EvaluacionDiabetesController {
         return ResponseEntity.ok(evaluacionservice.getEvaluaciones());
     }
 
+    @GetMapping("/pagina")
+    public ResponseEntity<PaginaCursorDto<EvaluacionResumenDto>> listarPagina(@RequestParam(required = false) String cursor,
+                                                                             @RequestParam(required = false) Integer tamano) {
+        return ResponseEntity.ok(evaluacionservice.listarPagina(cursor, tamano));
+    }
+
     @DeleteMapping("/eliminar/{id}")
     public ResponseEntity<String> eliminar(@PathVariable("id") Long id) {
         evaluacionservice.eliminar(id);
@@ -59,9 +122,77 @@ public class EvaluacionDiabetesController {
         return ResponseEntity.ok(evaluacionservice.obtenerEvaluacionesPorTipo(tipo));
     }
 
+    @GetMapping("/tipo/{tipo}/pagina")
+    public ResponseEntity<PaginaCursorDto<EvaluacionResumenDto>> listarPaginaPorTipo(@PathVariable("tipo") String tipo,
+                                                                                    @RequestParam(required = false) String cursor,
+                                                                                    @RequestParam(required = false) Integer tamano) {
+        return ResponseEntity.ok(evaluacionservice.listarPaginaPorTipo(tipo, cursor, tamano));
+    }
+
     @PostMapping("/predecir")
-    public ResponseEntity<PrediccionResponseDto> predecir(@RequestBody EvaluacionRequestDto request) {
-        return ResponseEntity.ok(evaluacionservice.realizarPrediccion(request));
+    public CompletableFuture<ResponseEntity<PrediccionResponseDto>> predecir(@RequestBody EvaluacionRequestDto request) {
+        // Se resuelve en el pool ML; el tiempo máximo lo fija spring.mvc.async.request-timeout
+        return evaluacionservice.realizarPrediccionAsync(request).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/predecir-lote")
+    public CompletableFuture<ResponseEntity<PrediccionLoteResponseDto>> predecirLote(@RequestBody List<EvaluacionRequestDto> requests) {
+        return evaluacionservice.realizarPrediccionLoteAsync(requests).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Importa un archivo CSV o NDJSON enviado como cuerpo de la solicitud y devuelve un resultado NDJSON
+     * por fila a medida que se procesa. El formato se toma de ?formato= o del Content-Type.
+     */
+    @PostMapping(value = "/importar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter importar(HttpServletRequest request,
+                                        @RequestParam(value = "formato", required = false) String formato) throws IOException {
+        String tipo = formato != null ? formato : request.getContentType();
+        String formatoArchivo = tipo != null && tipo.toLowerCase().contains("json")
+                ? ImportacionEvaluacionesService.FORMATO_NDJSON : ImportacionEvaluacionesService.FORMATO_CSV;
+
+        // El timeout general de spring.mvc.async es corto para un archivo grande: se usa uno propio
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutImportacionMs);
+        importacionService.importarAsync(request.getInputStream(), formatoArchivo,
+                        linea -> emitter.send(linea + "\n", MediaType.APPLICATION_NDJSON))
+                .whenComplete((resumen, error) -> {
+                    if (error != null) {
+                        log.error("❌ Error en importación: {}", error.getMessage());
+                        emitter.completeWithError(error);
+                    } else {
+                        emitter.complete();
+                    }
+                });
+        return emitter;
+    }
+
+    /**
+     * Descarga las evaluaciones en CSV o NDJSON, opcionalmente filtradas por rango de fechas y tipo.
+     * Con gzip=true el archivo se entrega comprimido (.gz).
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportar(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = ExportacionEvaluacionesService.FORMATO_CSV) String formato,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportacionEvaluacionesService.validarFormato(formato);
+        request.setAttribute(WebConfig.ATRIBUTO_TIMEOUT_ASINCRONO, timeoutExportacionMs);
+
+        ExportacionEvaluacionesService.Filtro filtro = new ExportacionEvaluacionesService.Filtro(desde, hasta, tipo);
+        StreamingResponseBody cuerpo = salida -> exportacionService.exportar(salida, formato, filtro, gzip);
+
+        String archivo = "evaluaciones-" + LocalDate.now() + "." + formato + (gzip ? ".gz" : "");
+        MediaType tipoContenido = gzip ? MediaType.parseMediaType("application/gzip")
+                : ExportacionEvaluacionesService.FORMATO_CSV.equals(formato) ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.APPLICATION_NDJSON;
+
+        return ResponseEntity.ok()
+                .contentType(tipoContenido)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo + "\"")
+                .body(cuerpo);
     }
 
     @GetMapping("/estadisticas")
@@ -73,4 +204,65 @@ public class EvaluacionDiabetesController {
     public ResponseEntity<Map<String, Object>> obtenerEstadisticasCompletas() {
         return ResponseEntity.ok(evaluacionservice.obtenerEstadisticasCompletas());
     }
-}
\ No newline at end of file
+
+    @GetMapping("/estadisticas/estado")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoEstadisticas() {
+        return ResponseEntity.ok(estadisticasEvaluaciones.obtenerEstadisticas());
+    }
+
+    @PostMapping("/estadisticas/reconciliar")
+    public ResponseEntity<Map<String, Object>> reconciliarEstadisticas() {
+        estadisticasEvaluaciones.reconciliar();
+        return ResponseEntity.ok(estadisticasEvaluaciones.obtenerEstadisticas());
+    }
+
+    @GetMapping("/tendencias")
+    public ResponseEntity<Map<String, Object>> obtenerTendencias(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(defaultValue = TendenciasEvaluaciones.DIA) String granularidad,
+            @RequestParam(required = false) String tipo) {
+        return ResponseEntity.ok(tendencias.obtenerTendencias(desde, hasta, granularidad, tipo));
+    }
+
+    @GetMapping("/tendencias/estado")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoTendencias() {
+        return ResponseEntity.ok(tendencias.obtenerEstadisticas());
+    }
+
+    @PostMapping("/tendencias/compactar")
+    public ResponseEntity<Map<String, Object>> compactarTendencias() {
+        tendencias.compactarDiasCerrados();
+        return ResponseEntity.ok(tendencias.obtenerEstadisticas());
+    }
+
+    @GetMapping("/escritura-diferida")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoEscrituraDiferida() {
+        return ResponseEntity.ok(escrituraDiferida.obtenerEstadisticas());
+    }
+
+    @GetMapping("/detalle/migracion")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoMigracionDetalle() {
+        return ResponseEntity.ok(migracionDetalle.obtenerEstadisticas());
+    }
+
+    @PostMapping("/detalle/migracion/eliminar-columnas")
+    public ResponseEntity<Map<String, Object>> eliminarColumnasAntiguas() {
+        return ResponseEntity.ok(migracionDetalle.eliminarColumnasAntiguas());
+    }
+
+    @GetMapping("/textos-cache")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasTextos() {
+        return ResponseEntity.ok(renderizadorTextos.obtenerEstadisticas());
+    }
+
+    @GetMapping("/particiones")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoParticiones() {
+        return ResponseEntity.ok(particionado.obtenerEstadisticas());
+    }
+
+    @GetMapping("/textos-almacen")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasAlmacenTextos() {
+        return ResponseEntity.ok(almacenTextos.obtenerEstadisticas());
+    }
+}
@@ -1,9 +1,18 @@
 package com.diabetes.business_back.controllers;
 
 import com.diabetes.business_back.entities.TipoDiabetesInfo;
-import com.diabetes.business_back.repositories.TipoDiabetesInfoRepository;
+import com.diabetes.business_back.services.AgrupadorPrediccionesML;
+import com.diabetes.business_back.services.BalanceadorReplicasML;
+import com.diabetes.business_back.services.CachePrediccionesML;
+import com.diabetes.business_back.services.CircuitBreakerML;
+import com.diabetes.business_back.services.DatosReferenciaCache;
+import com.diabetes.business_back.services.EjecutorPredicciones;
+import com.diabetes.business_back.services.MedidorTiemposHttp;
 import com.diabetes.business_back.services.ModeloMLService;
+import com.diabetes.business_back.services.MotorInferenciaLocal;
 import com.diabetes.business_back.services.PythonMLClient;
+import com.diabetes.business_back.services.SondaSaludML;
+import com.diabetes.business_back.services.VerificadorParidadML;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -19,8 +28,24 @@ import java.util.stream.Collectors;
         exposedHeaders = "Authorization")
 @RequestMapping("/api/ml-integration")
 public class MLIntegrationController {
+    // Tipos que tu modelo DEBE poder predecir
+    private static final List<String> TIPOS_ESPERADOS = List.of(
+            "Steroid-Induced Diabetes",
+            "Prediabetic",
+            "Type 1 Diabetes",
+            "Wolfram Syndrome",
+            "LADA",
+            "Type 2 Diabetes",
+            "Wolcott-Rallison Syndrome",
+            "Secondary Diabetes",
+            "Type 3c Diabetes (Pancreatogenic Diabetes)",
+            "Gestational Diabetes",
+            "Cystic Fibrosis-Related Diabetes (CFRD)",
+            "MODY"
+    );
+
     @Autowired
-    private TipoDiabetesInfoRepository tipoDiabetesInfoRepository;
+    private DatosReferenciaCache datosReferencia;
 
     @Autowired
     private ModeloMLService modeloMLService;
@@ -28,6 +53,33 @@ public class MLIntegrationController {
     @Autowired
     private PythonMLClient pythonMLClient;
 
+    @Autowired
+    private CachePrediccionesML cachePredicciones;
+
+    @Autowired
+    private MotorInferenciaLocal motorLocal;
+
+    @Autowired
+    private VerificadorParidadML verificadorParidad;
+
+    @Autowired
+    private EjecutorPredicciones ejecutorPredicciones;
+
+    @Autowired
+    private MedidorTiemposHttp medidorTiempos;
+
+    @Autowired
+    private CircuitBreakerML circuito;
+
+    @Autowired
+    private SondaSaludML sondaSalud;
+
+    @Autowired
+    private BalanceadorReplicasML balanceador;
+
+    @Autowired
+    private AgrupadorPrediccionesML agrupador;
+
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getStatus() {
         Map<String, Object> response = new HashMap<>();
@@ -127,40 +179,27 @@ public class MLIntegrationController {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            // Tipos que tu modelo DEBE poder predecir
-            List<String> tiposEsperados = Arrays.asList(
-                    "Steroid-Induced Diabetes",
-                    "Prediabetic",
-                    "Type 1 Diabetes",
-                    "Wolfram Syndrome",
-                    "LADA",
-                    "Type 2 Diabetes",
-                    "Wolcott-Rallison Syndrome",
-                    "Secondary Diabetes",
-                    "Type 3c Diabetes (Pancreatogenic Diabetes)",
-                    "Gestational Diabetes",
-                    "Cystic Fibrosis-Related Diabetes (CFRD)",
-                    "MODY"
-            );
-
-            // Obtener tipos de la base de datos
-            List<TipoDiabetesInfo> tiposBD = tipoDiabetesInfoRepository.findAll();
-            List<String> tiposEnBD = tiposBD.stream()
+            List<String> tiposEsperados = TIPOS_ESPERADOS;
+
+            // Obtener tipos de los datos de referencia en memoria
+            List<String> tiposEnBD = datosReferencia.getTipos().stream()
                     .map(TipoDiabetesInfo::getNombreEn)
                     .collect(Collectors.toList());
+            Set<String> nombresEnBD = datosReferencia.nombresEnTipos();
+            Set<String> nombresEsperados = new HashSet<>(tiposEsperados);
 
             // Verificar coincidencias
             List<String> tiposFaltantes = new ArrayList<>();
             List<String> tiposExtra = new ArrayList<>();
 
             for (String esperado : tiposEsperados) {
-                if (!tiposEnBD.contains(esperado)) {
+                if (!nombresEnBD.contains(esperado)) {
                     tiposFaltantes.add(esperado);
                 }
             }
 
             for (String enBD : tiposEnBD) {
-                if (!tiposEsperados.contains(enBD)) {
+                if (!nombresEsperados.contains(enBD)) {
                     tiposExtra.add(enBD);
                 }
             }
@@ -194,4 +233,67 @@ public class MLIntegrationController {
             return ResponseEntity.status(500).body(response);
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getEstadisticasCache() {
+        return ResponseEntity.ok(cachePredicciones.obtenerEstadisticas());
+    }
+
+    @DeleteMapping("/cache")
+    public ResponseEntity<String> invalidarCache() {
+        cachePredicciones.invalidar();
+        log.info("🧹 Caché de predicciones invalidada manualmente");
+        return ResponseEntity.ok("Caché de predicciones invalidada correctamente");
+    }
+
+    @GetMapping("/executor")
+    public ResponseEntity<Map<String, Object>> getExecutor() {
+        return ResponseEntity.ok(ejecutorPredicciones.obtenerEstadisticas());
+    }
+
+    @GetMapping("/circuito")
+    public ResponseEntity<Map<String, Object>> getCircuito() {
+        Map<String, Object> response = circuito.obtenerEstadisticas();
+        response.put("salud", sondaSalud.obtenerEstadisticas());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/replicas")
+    public ResponseEntity<Map<String, Object>> getReplicas() {
+        return ResponseEntity.ok(balanceador.obtenerEstadisticas());
+    }
+
+    @GetMapping("/agrupador")
+    public ResponseEntity<Map<String, Object>> getAgrupador() {
+        return ResponseEntity.ok(agrupador.obtenerEstadisticas());
+    }
+
+    @GetMapping("/transporte")
+    public ResponseEntity<Map<String, Object>> getTransporte() {
+        return ResponseEntity.ok(medidorTiempos.obtenerEstadisticas());
+    }
+
+    @DeleteMapping("/transporte")
+    public ResponseEntity<String> reiniciarTransporte() {
+        medidorTiempos.reiniciar();
+        return ResponseEntity.ok("Tiempos de transporte reiniciados correctamente");
+    }
+
+    @GetMapping("/paridad")
+    public ResponseEntity<Map<String, Object>> getParidad() {
+        return ResponseEntity.ok(verificadorParidad.obtenerEstadisticas());
+    }
+
+    @GetMapping("/modelo-local")
+    public ResponseEntity<Map<String, Object>> getModeloLocal() {
+        return ResponseEntity.ok(motorLocal.obtenerInfo());
+    }
+
+    @PostMapping("/modelo-local/recargar")
+    public ResponseEntity<Map<String, Object>> recargarModeloLocal() {
+        boolean recargado = motorLocal.recargar();
+        Map<String, Object> response = motorLocal.obtenerInfo();
+        response.put("recargado", recargado);
+        return recargado ? ResponseEntity.ok(response) : ResponseEntity.status(500).body(response);
+    }
+}
@@ -73,9 +73,11 @@ public class MainController {
                 "pacientes", "GET/POST /api/pacientes/**",
                 "evaluaciones", "GET/POST /api/evaluaciones/**",
                 "predicciones", "POST /api/evaluaciones/predecir",
+                "predicciones-lote", "POST /api/evaluaciones/predecir-lote",
                 "ml-integration", "GET /api/ml-integration/**",
                 "guias-campos", "GET /api/guias-campos/**",
-                "tipos-diabetes", "GET /api/tipos-diabetes/**"
+                "tipos-diabetes", "GET /api/tipos-diabetes/**",
+                "rangos-clinicos", "GET/POST/PUT /api/rangos-clinicos/**"
         ));
 
         return ResponseEntity.ok(response);
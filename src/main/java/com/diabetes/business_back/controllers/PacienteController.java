@@ -1,13 +1,17 @@
 package com.diabetes.business_back.controllers;
 
 import com.diabetes.business_back.dtos.PacienteDto;
+import com.diabetes.business_back.dtos.PacienteResumenDto;
+import com.diabetes.business_back.dtos.PaginaCursorDto;
 import com.diabetes.business_back.interfaces.IPacienteService;
+import com.diabetes.business_back.services.VerificacionUnicidadPacientes;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -19,6 +23,9 @@ public class PacienteController {
     @Autowired
     private IPacienteService pacienteservice;
 
+    @Autowired
+    private VerificacionUnicidadPacientes verificacionUnicidad;
+
     @PostMapping("/registrar")
     public ResponseEntity<PacienteDto> paciente(@RequestBody PacienteDto pacientedto) {
         return ResponseEntity.ok(pacienteservice.grabarPaciente(pacientedto));
@@ -29,6 +36,12 @@ public class PacienteController {
         return ResponseEntity.ok(pacienteservice.getPacientes());
     }
 
+    @GetMapping("/pagina")
+    public ResponseEntity<PaginaCursorDto<PacienteResumenDto>> listarPagina(@RequestParam(required = false) String cursor,
+                                                                           @RequestParam(required = false) Integer tamano) {
+        return ResponseEntity.ok(pacienteservice.listarPagina(cursor, tamano));
+    }
+
     @DeleteMapping("/eliminar/{id}")
     public ResponseEntity<String> eliminar(@PathVariable("id") Long id) {
         pacienteservice.eliminar(id);
@@ -55,4 +68,15 @@ public class PacienteController {
     public ResponseEntity<PacienteDto> obtenerPorEmail(@PathVariable("email") String email) {
         return ResponseEntity.ok(pacienteservice.obtenerPorEmail(email));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/unicidad")
+    public ResponseEntity<Map<String, Object>> obtenerUnicidad() {
+        return ResponseEntity.ok(verificacionUnicidad.obtenerEstado());
+    }
+
+    @PostMapping("/unicidad/verificar")
+    public ResponseEntity<Map<String, Object>> verificarUnicidad() {
+        verificacionUnicidad.verificar();
+        return ResponseEntity.ok(verificacionUnicidad.obtenerEstado());
+    }
+}
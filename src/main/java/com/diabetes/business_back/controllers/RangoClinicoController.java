@@ -0,0 +1,70 @@
+package com.diabetes.business_back.controllers;
+
+import com.diabetes.business_back.dtos.RangoClinicoDto;
+import com.diabetes.business_back.interfaces.IRangoClinicoService;
+import com.diabetes.business_back.services.MotorReglasClinicas;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@CrossOrigin(origins = "http://localhost:4200",
+        allowCredentials = "true",
+        exposedHeaders = "Authorization")
+@RequestMapping("/api/rangos-clinicos")
+public class RangoClinicoController {
+
+    @Autowired
+    private IRangoClinicoService rangoclinicoservice;
+
+    @Autowired
+    private MotorReglasClinicas motorReglas;
+
+    @PostMapping("/registrar")
+    public ResponseEntity<RangoClinicoDto> rangoClinico(@RequestBody RangoClinicoDto rangodto) {
+        return ResponseEntity.ok(rangoclinicoservice.grabarRango(rangodto));
+    }
+
+    @GetMapping("/listar")
+    public ResponseEntity<List<RangoClinicoDto>> getRangos() {
+        return ResponseEntity.ok(rangoclinicoservice.getRangos());
+    }
+
+    @DeleteMapping("/eliminar/{id}")
+    public ResponseEntity<String> eliminar(@PathVariable("id") Long id) {
+        rangoclinicoservice.eliminar(id);
+        return ResponseEntity.ok("Rango clínico eliminado correctamente");
+    }
+
+    @PutMapping("/actualizar")
+    public ResponseEntity<RangoClinicoDto> actualizar(@RequestBody RangoClinicoDto rangodto) {
+        RangoClinicoDto actualizado = rangoclinicoservice.actualizar(rangodto);
+        return ResponseEntity.ok(actualizado);
+    }
+
+    @GetMapping("/listarid/{id}")
+    public ResponseEntity<RangoClinicoDto> obtenerPorId(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(rangoclinicoservice.obtenerPorId(id));
+    }
+
+    @GetMapping("/variable/{variable}")
+    public ResponseEntity<List<RangoClinicoDto>> obtenerPorVariable(@PathVariable("variable") String variable) {
+        return ResponseEntity.ok(rangoclinicoservice.obtenerPorVariable(variable));
+    }
+
+    @GetMapping("/compiladas")
+    public ResponseEntity<Map<String, Object>> getReglasCompiladas() {
+        return ResponseEntity.ok(motorReglas.obtenerResumen());
+    }
+
+    @PostMapping("/recompilar")
+    public ResponseEntity<Map<String, Object>> recompilar() {
+        motorReglas.recompilar();
+        return ResponseEntity.ok(motorReglas.obtenerResumen());
+    }
+}
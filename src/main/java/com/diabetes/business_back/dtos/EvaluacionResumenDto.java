@@ -0,0 +1,29 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Fila de listado de evaluaciones: solo las columnas que muestran las vistas de lista.
+ * Se construye directamente en la consulta JPQL (SELECT new ...), sin cargar la entidad ni los textos largos.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EvaluacionResumenDto implements Serializable {
+    private Long idEvaluacion;
+    private LocalDateTime fechaEvaluacion;
+    private String tipoDiabetesPredicho;
+    private Double probabilidad;
+    private Long idPaciente;
+    private String codigoPaciente;
+    private String nombrePaciente;
+    private Double nivelesGlucosa;
+    private String clasificacionGlucosa;
+}
@@ -0,0 +1,25 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Fila de listado de pacientes, construida en la consulta JPQL sin cargar la entidad ni sus evaluaciones
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PacienteResumenDto implements Serializable {
+    private Long idPaciente;
+    private String codigoPaciente;
+    private String nombre;
+    private LocalDate fechaNacimiento;
+    private String genero;
+    private String email;
+}
@@ -0,0 +1,23 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Página de un listado por cursor. siguienteCursor es null en la última página;
+ * para pedir la siguiente se envía tal cual en el parámetro cursor.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDto<T> implements Serializable {
+    private List<T> elementos;
+    private Integer tamano;
+    private String siguienteCursor;
+}
@@ -0,0 +1,19 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrediccionLoteItemDto implements Serializable {
+    private Integer indice;
+    private Boolean exito;
+    private PrediccionResponseDto prediccion;
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrediccionLoteResponseDto implements Serializable {
+    private Integer total;
+    private Integer exitosos;
+    private Integer fallidos;
+    private List<PrediccionLoteItemDto> resultados;
+    private LocalDateTime fechaProceso;
+}
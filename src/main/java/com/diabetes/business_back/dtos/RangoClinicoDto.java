@@ -0,0 +1,25 @@
+package com.diabetes.business_back.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RangoClinicoDto implements Serializable {
+    private Long idRango;
+    private String variable;
+    private String nombreCampo;
+    private Double minimo;
+    private Double maximo;
+    private Boolean maximoInclusivo;
+    private String etiqueta;
+    private Integer orden;
+    private String seccion;
+    private String recomendacion;
+}
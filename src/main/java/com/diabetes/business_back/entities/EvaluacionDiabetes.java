@@ -8,47 +8,37 @@ import lombok.Setter;
 
 import java.time.LocalDateTime;
 
+/**
+ * Fila "caliente" de una evaluación: identificadores, fecha, predicción, biomarcadores numéricos y
+ * clasificaciones, que es lo que leen los listados, las estadísticas y la analítica. Los textos generados
+ * y las respuestas categóricas del formulario viven en {@link EvaluacionDiabetesDetalle}.
+ */
 @Setter
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "evaluaciones_diabetes")
+@Table(name = "evaluaciones_diabetes", indexes = {
+        // findByPacienteIdPaciente
+        @Index(name = "idx_evaluaciones_paciente_fecha", columnList = "id_paciente, fecha_evaluacion"),
+        // findByTipoDiabetes (ordenado por fecha), countByTipoDiabetes y listados por cursor por tipo
+        @Index(name = "idx_evaluaciones_tipo_fecha", columnList = "tipo_diabetes_predicho, fecha_evaluacion DESC, id_evaluacion DESC"),
+        // Listados por cursor, tendencias y exportación por rango de fechas
+        @Index(name = "idx_evaluaciones_fecha_id", columnList = "fecha_evaluacion DESC, id_evaluacion DESC")
+})
 public class EvaluacionDiabetes {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id_evaluacion")
     private Long idEvaluacion;
-    @ManyToOne
+    // Perezoso: las consultas que necesitan el paciente lo traen con @EntityGraph en el repositorio
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_paciente")
     private Paciente paciente;
 
     private LocalDateTime fechaEvaluacion;
     private String tipoDiabetesPredicho;
     private Double probabilidad;
-    private String explicacion;
-    private String recomendaciones;
-
-    private String marcadoresGeneticos;
-    private String autoanticuerpos;
-    private String antecedentesFamiliares;
-    private String factoresAmbientales;
-    private String etnicidad;
-    private String habitosAlimenticios;
-    private String pruebaToleranciaGlucosa;
-    private String pruebasFuncionHepatica;
-    private String diagnosticoFibrosisQuistica;
-    private String usoEsteroides;
-    private String pruebasGeneticas;
-    private String historialEmbarazos;
-    private String diabetesGestacionalPrevia;
-    private String historialPcos;
-    private String estadoTabaquismo;
-    private String sintomasInicioTemprano;
-    private String factoresSocioeconomicos;
-    private String consumoAlcohol;
-    private String actividadFisica;
-    private String pruebaOrina;
 
     private Double nivelesInsulina;
     private Integer edad;
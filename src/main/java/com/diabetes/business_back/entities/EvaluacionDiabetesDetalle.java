@@ -0,0 +1,65 @@
+package com.diabetes.business_back.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Columnas "frías" de una evaluación: explicación, recomendaciones y respuestas categóricas del formulario.
+ * Comparte la clave primaria con evaluaciones_diabetes y solo se lee al abrir, actualizar o exportar una
+ * evaluación. La relación solo se navega desde aquí: así ninguna consulta sobre EvaluacionDiabetes la trae.
+ * Los dos textos generados se guardan deduplicados en textos_generados y aquí solo queda su clave.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "evaluaciones_diabetes_detalle")
+public class EvaluacionDiabetesDetalle {
+    @Id
+    @Column(name = "id_evaluacion")
+    private Long idEvaluacion;
+
+    // Al borrar la evaluación la base de datos borra el detalle (también en borrados por lote o por retención)
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id_evaluacion")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private EvaluacionDiabetes evaluacion;
+
+    // Claves en textos_generados; los textos se resuelven con AlmacenTextosGenerados
+    @Column(name = "explicacion_hash", length = 64)
+    private String hashExplicacion;
+    @Column(name = "recomendaciones_hash", length = 64)
+    private String hashRecomendaciones;
+    @Transient
+    private String explicacion;
+    @Transient
+    private String recomendaciones;
+
+    private String marcadoresGeneticos;
+    private String autoanticuerpos;
+    private String antecedentesFamiliares;
+    private String factoresAmbientales;
+    private String etnicidad;
+    private String habitosAlimenticios;
+    private String pruebaToleranciaGlucosa;
+    private String pruebasFuncionHepatica;
+    private String diagnosticoFibrosisQuistica;
+    private String usoEsteroides;
+    private String pruebasGeneticas;
+    private String historialEmbarazos;
+    private String diabetesGestacionalPrevia;
+    private String historialPcos;
+    private String estadoTabaquismo;
+    private String sintomasInicioTemprano;
+    private String factoresSocioeconomicos;
+    private String consumoAlcohol;
+    private String actividadFisica;
+    private String pruebaOrina;
+}
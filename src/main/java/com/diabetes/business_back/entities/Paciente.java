@@ -9,12 +9,19 @@ import lombok.Setter;
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * Código y email son únicos. En una base con repetidos ddl-auto no puede crear las restricciones;
+ * VerificacionUnicidadPacientes lo informa al arrancar y las crea una vez corregidos los repetidos.
+ */
 @Setter
 @Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "pacientes")
+@Table(name = "pacientes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pacientes_codigo", columnNames = "codigo_paciente"),
+        @UniqueConstraint(name = "uk_pacientes_email", columnNames = "email")
+})
 public class Paciente {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
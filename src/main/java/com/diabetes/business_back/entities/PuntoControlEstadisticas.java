@@ -0,0 +1,31 @@
+package com.diabetes.business_back.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado serializado de un motor de estadísticas incrementales y la marca de agua (último idEvaluacion
+ * procesado) desde la que debe continuar al reiniciar.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "puntos_control_estadisticas")
+public class PuntoControlEstadisticas {
+    @Id
+    private String nombre;
+
+    @Column(columnDefinition = "TEXT")
+    private String estado;
+
+    private Long marcaAgua;
+
+    private LocalDateTime actualizadoEn;
+}
@@ -0,0 +1,43 @@
+package com.diabetes.business_back.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Banda de clasificación de una variable clínica (versión estructurada de GuiaCampo.rangoRecomendado).
+ * Las bandas de una misma variable son contiguas: cada una llega hasta su máximo, la última queda abierta.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "rangos_clinicos")
+public class RangoClinico {
+    public static final String SECCION_CLINICA = "CLINICA";
+    public static final String SECCION_ETARIA = "ETARIA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_rango")
+    private Long idRango;
+
+    // Clave de la clasificación (presion, glucosa, edad...)
+    private String variable;
+
+    // Campo del formulario del que se toma el valor; coincide con GuiaCampo.nombreCampo
+    private String nombreCampo;
+
+    private Double minimo;
+    private Double maximo;
+    private Boolean maximoInclusivo;
+    private String etiqueta;
+    private Integer orden;
+    private String seccion;
+
+    @Column(columnDefinition = "TEXT")
+    private String recomendacion;
+}
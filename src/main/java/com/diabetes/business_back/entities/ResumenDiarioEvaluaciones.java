@@ -0,0 +1,36 @@
+package com.diabetes.business_back.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Cantidad de evaluaciones de un tipo de diabetes en un día (según fechaEvaluacion).
+ * La escribe la compactación diaria de TendenciasEvaluaciones; las tendencias se sirven desde aquí.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "resumen_diario_evaluaciones",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "tipo_diabetes_predicho"}))
+public class ResumenDiarioEvaluaciones {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_resumen")
+    private Long idResumen;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    // Vacío para las evaluaciones sin tipo predicho
+    @Column(name = "tipo_diabetes_predicho", nullable = false)
+    private String tipoDiabetesPredicho;
+
+    private Long cantidad;
+}
@@ -0,0 +1,33 @@
+package com.diabetes.business_back.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Explicación o recomendaciones generadas, guardadas una sola vez comprimidas con GZIP y direccionadas por el
+ * SHA-256 de su contenido. Las filas son inmutables: el mismo texto siempre produce la misma clave.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "textos_generados")
+public class TextoGenerado {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(columnDefinition = "BYTEA", nullable = false)
+    private byte[] contenido;
+
+    // Caracteres del texto sin comprimir
+    private Integer longitud;
+
+    private LocalDateTime creadoEn;
+}
@@ -0,0 +1,121 @@
+package com.diabetes.business_back.estadistica;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Boceto de cuantiles con error relativo acotado (estilo DDSketch): cada valor positivo cae en la cubeta
+ * ceil(log_gamma(x)), con gamma = (1 + precision) / (1 - precision), así que cualquier cuantil se estima
+ * con error relativo menor a la precisión. Dos bocetos con la misma precisión se combinan sumando cubetas.
+ * Si se supera el máximo de cubetas se juntan las más bajas, que son las que menos interesan aquí (p50-p99).
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public final class BocetoCuantiles {
+    private static final double MINIMO_POSITIVO = 1e-9;
+
+    private double precision;
+    private int maxCubetas;
+    private TreeMap<Integer, Long> cubetas = new TreeMap<>();
+    private long ceros;
+    private long total;
+
+    private transient double logGamma;
+
+    private BocetoCuantiles() {
+    }
+
+    public BocetoCuantiles(double precision, int maxCubetas) {
+        this.precision = precision;
+        this.maxCubetas = maxCubetas;
+    }
+
+    private double logGamma() {
+        if (logGamma == 0) {
+            logGamma = Math.log((1 + precision) / (1 - precision));
+        }
+        return logGamma;
+    }
+
+    public void agregar(double x) {
+        total++;
+        if (x < MINIMO_POSITIVO) {
+            ceros++;
+            return;
+        }
+        cubetas.merge((int) Math.ceil(Math.log(x) / logGamma()), 1L, Long::sum);
+        colapsar();
+    }
+
+    public void combinar(BocetoCuantiles otro) {
+        if (otro.precision != precision) {
+            throw new IllegalArgumentException("No se pueden combinar bocetos de distinta precisión");
+        }
+        otro.cubetas.forEach((indice, cantidad) -> cubetas.merge(indice, cantidad, Long::sum));
+        ceros += otro.ceros;
+        total += otro.total;
+        colapsar();
+    }
+
+    private void colapsar() {
+        while (cubetas.size() > maxCubetas) {
+            Map.Entry<Integer, Long> menor = cubetas.pollFirstEntry();
+            cubetas.merge(cubetas.firstKey(), menor.getValue(), Long::sum);
+        }
+    }
+
+    private double valor(int indice) {
+        return 2 * Math.exp(indice * logGamma()) / (Math.exp(logGamma()) + 1);
+    }
+
+    /**
+     * Estimación del cuantil q (0..1); null si el boceto está vacío
+     */
+    public Double cuantil(double q) {
+        if (total == 0) {
+            return null;
+        }
+        long rango = (long) Math.floor(q * (total - 1));
+        if (rango < ceros) {
+            return 0.0;
+        }
+        long acumulado = ceros;
+        for (Map.Entry<Integer, Long> cubeta : cubetas.entrySet()) {
+            acumulado += cubeta.getValue();
+            if (acumulado > rango) {
+                return valor(cubeta.getKey());
+            }
+        }
+        return valor(cubetas.lastKey());
+    }
+
+    /**
+     * Histograma de ancho fijo entre minimo y maximo, repartiendo cada cubeta según su valor representativo
+     */
+    public long[] histograma(int intervalos, double minimo, double maximo) {
+        long[] conteos = new long[intervalos];
+        double ancho = (maximo - minimo) / intervalos;
+        if (total == 0 || ancho <= 0) {
+            if (total > 0) {
+                conteos[0] = total;
+            }
+            return conteos;
+        }
+
+        conteos[posicion(0.0, minimo, ancho, intervalos)] += ceros;
+        cubetas.forEach((indice, cantidad) ->
+                conteos[posicion(valor(indice), minimo, ancho, intervalos)] += cantidad);
+        return conteos;
+    }
+
+    private static int posicion(double valor, double minimo, double ancho, int intervalos) {
+        int posicion = (int) ((valor - minimo) / ancho);
+        return Math.max(0, Math.min(intervalos - 1, posicion));
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
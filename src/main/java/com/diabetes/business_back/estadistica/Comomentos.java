@@ -0,0 +1,75 @@
+package com.diabetes.business_back.estadistica;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+/**
+ * Medias y matriz de co-momentos de k variables, actualizada en línea (extensión de Welford a covarianzas)
+ * y combinable. Solo recibe filas con todas las variables presentes.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public final class Comomentos {
+    private long n;
+    private double[] medias;
+    private double[][] c;
+
+    private Comomentos() {
+    }
+
+    public Comomentos(int dimension) {
+        this.medias = new double[dimension];
+        this.c = new double[dimension][dimension];
+    }
+
+    public void agregar(double[] x) {
+        n++;
+        int k = medias.length;
+        double[] delta = new double[k];
+        for (int i = 0; i < k; i++) {
+            delta[i] = x[i] - medias[i];
+            medias[i] += delta[i] / n;
+        }
+        // C_ij += (x_i - media_i anterior) * (x_j - media_j nueva)
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                c[i][j] += delta[i] * (x[j] - medias[j]);
+            }
+        }
+    }
+
+    public void combinar(Comomentos otro) {
+        if (otro.n == 0) {
+            return;
+        }
+        int k = medias.length;
+        long total = n + otro.n;
+        double factor = (double) n * otro.n / total;
+        double[] delta = new double[k];
+        for (int i = 0; i < k; i++) {
+            delta[i] = otro.medias[i] - medias[i];
+        }
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                c[i][j] += otro.c[i][j] + delta[i] * delta[j] * factor;
+            }
+        }
+        for (int i = 0; i < k; i++) {
+            medias[i] += delta[i] * otro.n / total;
+        }
+        n = total;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    // Covarianza muestral
+    public double getCovarianza(int i, int j) {
+        return n > 1 ? c[i][j] / (n - 1) : 0.0;
+    }
+
+    public Double getCorrelacion(int i, int j) {
+        double denominador = Math.sqrt(c[i][i] * c[j][j]);
+        return denominador > 0 ? c[i][j] / denominador : null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.diabetes.business_back.estadistica;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+/**
+ * Media y varianza de una variable por el método de Welford: una pasada, estable numéricamente y combinable
+ * (fórmula de Chan) para juntar resúmenes calculados por separado.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public final class Momentos {
+    private long n;
+    private double media;
+    private double m2;
+    private double minimo;
+    private double maximo;
+
+    public void agregar(double x) {
+        if (n == 0 || x < minimo) {
+            minimo = x;
+        }
+        if (n == 0 || x > maximo) {
+            maximo = x;
+        }
+        n++;
+        double delta = x - media;
+        media += delta / n;
+        m2 += delta * (x - media);
+    }
+
+    public void combinar(Momentos otro) {
+        if (otro.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = otro.n;
+            media = otro.media;
+            m2 = otro.m2;
+            minimo = otro.minimo;
+            maximo = otro.maximo;
+            return;
+        }
+
+        long total = n + otro.n;
+        double delta = otro.media - media;
+        media += delta * otro.n / total;
+        m2 += otro.m2 + delta * delta * ((double) n * otro.n / total);
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+        n = total;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    public double getMedia() {
+        return media;
+    }
+
+    // Varianza muestral
+    public double getVarianza() {
+        return n > 1 ? m2 / (n - 1) : 0.0;
+    }
+
+    public double getMinimo() {
+        return minimo;
+    }
+
+    public double getMaximo() {
+        return maximo;
+    }
+}
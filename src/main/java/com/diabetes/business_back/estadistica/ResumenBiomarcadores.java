@@ -0,0 +1,131 @@
+package com.diabetes.business_back.estadistica;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen incremental de los biomarcadores numéricos de un grupo de evaluaciones: momentos y boceto de
+ * cuantiles por biomarcador, y co-momentos entre todos ellos sobre las filas completas.
+ * Serializable con Jackson para los puntos de control.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public final class ResumenBiomarcadores {
+    public static final List<String> BIOMARCADORES = List.of("glucosa", "insulina", "imc", "presion", "colesterol");
+
+    private static final double PRECISION_BOCETO = 0.01;
+    private static final int MAX_CUBETAS = 1024;
+
+    private long evaluaciones;
+    private Momentos[] momentos;
+    private BocetoCuantiles[] bocetos;
+    private Comomentos conjunto;
+
+    public ResumenBiomarcadores() {
+        int k = BIOMARCADORES.size();
+        momentos = new Momentos[k];
+        bocetos = new BocetoCuantiles[k];
+        for (int i = 0; i < k; i++) {
+            momentos[i] = new Momentos();
+            bocetos[i] = new BocetoCuantiles(PRECISION_BOCETO, MAX_CUBETAS);
+        }
+        conjunto = new Comomentos(k);
+    }
+
+    /**
+     * Valores en el orden de BIOMARCADORES; los nulos se omiten de su variable y de la covarianza
+     */
+    public void agregar(Double[] valores) {
+        evaluaciones++;
+        boolean completa = true;
+        for (int i = 0; i < valores.length; i++) {
+            Double valor = valores[i];
+            if (valor == null || valor.isNaN() || valor.isInfinite()) {
+                completa = false;
+                continue;
+            }
+            momentos[i].agregar(valor);
+            bocetos[i].agregar(valor);
+        }
+
+        if (completa) {
+            double[] fila = new double[valores.length];
+            for (int i = 0; i < valores.length; i++) {
+                fila[i] = valores[i];
+            }
+            conjunto.agregar(fila);
+        }
+    }
+
+    public void combinar(ResumenBiomarcadores otro) {
+        evaluaciones += otro.evaluaciones;
+        for (int i = 0; i < momentos.length; i++) {
+            momentos[i].combinar(otro.momentos[i]);
+            bocetos[i].combinar(otro.bocetos[i]);
+        }
+        conjunto.combinar(otro.conjunto);
+    }
+
+    public Map<String, Object> aMapa(int intervalosHistograma) {
+        Map<String, Object> biomarcadores = new LinkedHashMap<>();
+        for (int i = 0; i < BIOMARCADORES.size(); i++) {
+            Momentos m = momentos[i];
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("n", m.getN());
+            if (m.getN() > 0) {
+                datos.put("media", m.getMedia());
+                datos.put("varianza", m.getVarianza());
+                datos.put("desviacion", Math.sqrt(m.getVarianza()));
+                datos.put("minimo", m.getMinimo());
+                datos.put("maximo", m.getMaximo());
+                datos.put("p50", bocetos[i].cuantil(0.50));
+                datos.put("p90", bocetos[i].cuantil(0.90));
+                datos.put("p99", bocetos[i].cuantil(0.99));
+                datos.put("histograma", histograma(i, intervalosHistograma));
+            }
+            biomarcadores.put(BIOMARCADORES.get(i), datos);
+        }
+
+        Map<String, Object> covarianza = new LinkedHashMap<>();
+        Map<String, Object> correlacion = new LinkedHashMap<>();
+        for (int i = 0; i < BIOMARCADORES.size(); i++) {
+            Map<String, Double> filaCov = new LinkedHashMap<>();
+            Map<String, Double> filaCorr = new LinkedHashMap<>();
+            for (int j = 0; j < BIOMARCADORES.size(); j++) {
+                filaCov.put(BIOMARCADORES.get(j), conjunto.getCovarianza(i, j));
+                filaCorr.put(BIOMARCADORES.get(j), conjunto.getCorrelacion(i, j));
+            }
+            covarianza.put(BIOMARCADORES.get(i), filaCov);
+            correlacion.put(BIOMARCADORES.get(i), filaCorr);
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("evaluaciones", evaluaciones);
+        resultado.put("filasCompletas", conjunto.getN());
+        resultado.put("biomarcadores", biomarcadores);
+        resultado.put("covarianza", covarianza);
+        resultado.put("correlacion", correlacion);
+        return resultado;
+    }
+
+    private List<Map<String, Object>> histograma(int i, int intervalos) {
+        double minimo = momentos[i].getMinimo();
+        double maximo = momentos[i].getMaximo();
+        long[] conteos = bocetos[i].histograma(intervalos, minimo, maximo);
+        double ancho = (maximo - minimo) / intervalos;
+
+        List<Map<String, Object>> resultado = new ArrayList<>();
+        for (int b = 0; b < conteos.length; b++) {
+            Map<String, Object> intervalo = new LinkedHashMap<>();
+            intervalo.put("desde", minimo + b * ancho);
+            intervalo.put("hasta", b == conteos.length - 1 ? maximo : minimo + (b + 1) * ancho);
+            intervalo.put("cantidad", conteos[b]);
+            resultado.add(intervalo);
+        }
+        return resultado;
+    }
+}
@@ -2,10 +2,14 @@ package com.diabetes.business_back.interfaces;
 
 import com.diabetes.business_back.dtos.EvaluacionDiabetesDto;
 import com.diabetes.business_back.dtos.EvaluacionRequestDto;
+import com.diabetes.business_back.dtos.EvaluacionResumenDto;
+import com.diabetes.business_back.dtos.PaginaCursorDto;
+import com.diabetes.business_back.dtos.PrediccionLoteResponseDto;
 import com.diabetes.business_back.dtos.PrediccionResponseDto;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface IEvaluacionDiabetesService {
     public EvaluacionDiabetesDto grabarEvaluacion(EvaluacionDiabetesDto evaluaciondto);
@@ -15,7 +19,12 @@ public interface IEvaluacionDiabetesService {
     public EvaluacionDiabetesDto obtenerPorId(Long id);
     List<EvaluacionDiabetesDto> obtenerEvaluacionesPorPaciente(Long idPaciente);
     List<EvaluacionDiabetesDto> obtenerEvaluacionesPorTipo(String tipo);
+    PaginaCursorDto<EvaluacionResumenDto> listarPagina(String cursor, Integer tamano);
+    PaginaCursorDto<EvaluacionResumenDto> listarPaginaPorTipo(String tipo, String cursor, Integer tamano);
     PrediccionResponseDto realizarPrediccion(EvaluacionRequestDto request);
+    PrediccionLoteResponseDto realizarPrediccionLote(List<EvaluacionRequestDto> requests);
+    CompletableFuture<PrediccionResponseDto> realizarPrediccionAsync(EvaluacionRequestDto request);
+    CompletableFuture<PrediccionLoteResponseDto> realizarPrediccionLoteAsync(List<EvaluacionRequestDto> requests);
     Map<String, Long> obtenerEstadisticas();
     Map<String, Object> obtenerEstadisticasCompletas();
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
 package com.diabetes.business_back.interfaces;
 
 import com.diabetes.business_back.dtos.PacienteDto;
+import com.diabetes.business_back.dtos.PacienteResumenDto;
+import com.diabetes.business_back.dtos.PaginaCursorDto;
 
 import java.util.List;
 
 public interface IPacienteService {
     public PacienteDto grabarPaciente(PacienteDto pacientedto);
     public List<PacienteDto> getPacientes();
+    PaginaCursorDto<PacienteResumenDto> listarPagina(String cursor, Integer tamano);
     void eliminar(Long id);
     PacienteDto actualizar(PacienteDto pacientedto);
     public PacienteDto obtenerPorId(Long id);
@@ -0,0 +1,14 @@
+package com.diabetes.business_back.interfaces;
+
+import com.diabetes.business_back.dtos.RangoClinicoDto;
+
+import java.util.List;
+
+public interface IRangoClinicoService {
+    public RangoClinicoDto grabarRango(RangoClinicoDto rangodto);
+    public List<RangoClinicoDto> getRangos();
+    void eliminar(Long id);
+    RangoClinicoDto actualizar(RangoClinicoDto rangodto);
+    public RangoClinicoDto obtenerPorId(Long id);
+    List<RangoClinicoDto> obtenerPorVariable(String variable);
+}
@@ -0,0 +1,152 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.EvaluacionDiabetesDto;
+import com.diabetes.business_back.entities.EvaluacionDiabetes;
+import com.diabetes.business_back.entities.EvaluacionDiabetesDetalle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversión EvaluacionDiabetes + EvaluacionDiabetesDetalle ↔ EvaluacionDiabetesDto con asignaciones directas
+ * en lugar de reflexión. Reproduce lo que hacía ModelMapper: se copian todos los campos, nulos incluidos, y la
+ * relación paciente/pacientedto no se mapea (sus nombres no coinciden). El paciente lo asigna el servicio
+ * a partir del ID del DTO.
+ */
+@Component
+public class EvaluacionDiabetesMapper {
+
+    /**
+     * El detalle puede ser null (evaluación aún sin migrar); en ese caso los campos fríos quedan vacíos
+     */
+    public EvaluacionDiabetesDto aDto(EvaluacionDiabetes evaluacion, EvaluacionDiabetesDetalle detalle) {
+        if (evaluacion == null) {
+            return null;
+        }
+        EvaluacionDiabetesDto dto = new EvaluacionDiabetesDto();
+        dto.setIdEvaluacion(evaluacion.getIdEvaluacion());
+        dto.setFechaEvaluacion(evaluacion.getFechaEvaluacion());
+        dto.setTipoDiabetesPredicho(evaluacion.getTipoDiabetesPredicho());
+        dto.setProbabilidad(evaluacion.getProbabilidad());
+        dto.setNivelesInsulina(evaluacion.getNivelesInsulina());
+        dto.setEdad(evaluacion.getEdad());
+        dto.setIndiceMasaCorporal(evaluacion.getIndiceMasaCorporal());
+        dto.setPresionArterial(evaluacion.getPresionArterial());
+        dto.setNivelesColesterol(evaluacion.getNivelesColesterol());
+        dto.setCircunferenciaCintura(evaluacion.getCircunferenciaCintura());
+        dto.setNivelesGlucosa(evaluacion.getNivelesGlucosa());
+        dto.setAumentoPesoEmbarazo(evaluacion.getAumentoPesoEmbarazo());
+        dto.setSaludPancreatica(evaluacion.getSaludPancreatica());
+        dto.setFuncionPulmonar(evaluacion.getFuncionPulmonar());
+        dto.setEvaluacionesNeurologicas(evaluacion.getEvaluacionesNeurologicas());
+        dto.setNivelesEnzimasDigestivas(evaluacion.getNivelesEnzimasDigestivas());
+        dto.setPesoNacimiento(evaluacion.getPesoNacimiento());
+        dto.setClasificacionPresion(evaluacion.getClasificacionPresion());
+        dto.setClasificacionColesterol(evaluacion.getClasificacionColesterol());
+        dto.setClasificacionInsulina(evaluacion.getClasificacionInsulina());
+        dto.setClasificacionGlucosa(evaluacion.getClasificacionGlucosa());
+        dto.setClasificacionEnzimas(evaluacion.getClasificacionEnzimas());
+        dto.setClasificacionEdad(evaluacion.getClasificacionEdad());
+        if (detalle != null) {
+            dto.setExplicacion(detalle.getExplicacion());
+            dto.setRecomendaciones(detalle.getRecomendaciones());
+            dto.setMarcadoresGeneticos(detalle.getMarcadoresGeneticos());
+            dto.setAutoanticuerpos(detalle.getAutoanticuerpos());
+            dto.setAntecedentesFamiliares(detalle.getAntecedentesFamiliares());
+            dto.setFactoresAmbientales(detalle.getFactoresAmbientales());
+            dto.setEtnicidad(detalle.getEtnicidad());
+            dto.setHabitosAlimenticios(detalle.getHabitosAlimenticios());
+            dto.setPruebaToleranciaGlucosa(detalle.getPruebaToleranciaGlucosa());
+            dto.setPruebasFuncionHepatica(detalle.getPruebasFuncionHepatica());
+            dto.setDiagnosticoFibrosisQuistica(detalle.getDiagnosticoFibrosisQuistica());
+            dto.setUsoEsteroides(detalle.getUsoEsteroides());
+            dto.setPruebasGeneticas(detalle.getPruebasGeneticas());
+            dto.setHistorialEmbarazos(detalle.getHistorialEmbarazos());
+            dto.setDiabetesGestacionalPrevia(detalle.getDiabetesGestacionalPrevia());
+            dto.setHistorialPcos(detalle.getHistorialPcos());
+            dto.setEstadoTabaquismo(detalle.getEstadoTabaquismo());
+            dto.setSintomasInicioTemprano(detalle.getSintomasInicioTemprano());
+            dto.setFactoresSocioeconomicos(detalle.getFactoresSocioeconomicos());
+            dto.setConsumoAlcohol(detalle.getConsumoAlcohol());
+            dto.setActividadFisica(detalle.getActividadFisica());
+            dto.setPruebaOrina(detalle.getPruebaOrina());
+        }
+        return dto;
+    }
+
+    public EvaluacionDiabetes aEntidad(EvaluacionDiabetesDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        EvaluacionDiabetes evaluacion = new EvaluacionDiabetes();
+        copiar(dto, evaluacion);
+        return evaluacion;
+    }
+
+    /**
+     * Detalle nuevo sin ID: la clave la toma de la evaluación a la que se asocie (@MapsId)
+     */
+    public EvaluacionDiabetesDetalle aDetalle(EvaluacionDiabetesDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        EvaluacionDiabetesDetalle detalle = new EvaluacionDiabetesDetalle();
+        copiar(dto, detalle);
+        return detalle;
+    }
+
+    /**
+     * Sobrescribe la entidad con los valores del DTO (incluido el ID), como modelMapper.map(dto, entidad)
+     */
+    public void copiar(EvaluacionDiabetesDto dto, EvaluacionDiabetes evaluacion) {
+        evaluacion.setIdEvaluacion(dto.getIdEvaluacion());
+        evaluacion.setFechaEvaluacion(dto.getFechaEvaluacion());
+        evaluacion.setTipoDiabetesPredicho(dto.getTipoDiabetesPredicho());
+        evaluacion.setProbabilidad(dto.getProbabilidad());
+        evaluacion.setNivelesInsulina(dto.getNivelesInsulina());
+        evaluacion.setEdad(dto.getEdad());
+        evaluacion.setIndiceMasaCorporal(dto.getIndiceMasaCorporal());
+        evaluacion.setPresionArterial(dto.getPresionArterial());
+        evaluacion.setNivelesColesterol(dto.getNivelesColesterol());
+        evaluacion.setCircunferenciaCintura(dto.getCircunferenciaCintura());
+        evaluacion.setNivelesGlucosa(dto.getNivelesGlucosa());
+        evaluacion.setAumentoPesoEmbarazo(dto.getAumentoPesoEmbarazo());
+        evaluacion.setSaludPancreatica(dto.getSaludPancreatica());
+        evaluacion.setFuncionPulmonar(dto.getFuncionPulmonar());
+        evaluacion.setEvaluacionesNeurologicas(dto.getEvaluacionesNeurologicas());
+        evaluacion.setNivelesEnzimasDigestivas(dto.getNivelesEnzimasDigestivas());
+        evaluacion.setPesoNacimiento(dto.getPesoNacimiento());
+        evaluacion.setClasificacionPresion(dto.getClasificacionPresion());
+        evaluacion.setClasificacionColesterol(dto.getClasificacionColesterol());
+        evaluacion.setClasificacionInsulina(dto.getClasificacionInsulina());
+        evaluacion.setClasificacionGlucosa(dto.getClasificacionGlucosa());
+        evaluacion.setClasificacionEnzimas(dto.getClasificacionEnzimas());
+        evaluacion.setClasificacionEdad(dto.getClasificacionEdad());
+    }
+
+    /**
+     * Sobrescribe los campos fríos del detalle; la clave y la relación con la evaluación no se tocan
+     */
+    public void copiar(EvaluacionDiabetesDto dto, EvaluacionDiabetesDetalle detalle) {
+        detalle.setExplicacion(dto.getExplicacion());
+        detalle.setRecomendaciones(dto.getRecomendaciones());
+        detalle.setMarcadoresGeneticos(dto.getMarcadoresGeneticos());
+        detalle.setAutoanticuerpos(dto.getAutoanticuerpos());
+        detalle.setAntecedentesFamiliares(dto.getAntecedentesFamiliares());
+        detalle.setFactoresAmbientales(dto.getFactoresAmbientales());
+        detalle.setEtnicidad(dto.getEtnicidad());
+        detalle.setHabitosAlimenticios(dto.getHabitosAlimenticios());
+        detalle.setPruebaToleranciaGlucosa(dto.getPruebaToleranciaGlucosa());
+        detalle.setPruebasFuncionHepatica(dto.getPruebasFuncionHepatica());
+        detalle.setDiagnosticoFibrosisQuistica(dto.getDiagnosticoFibrosisQuistica());
+        detalle.setUsoEsteroides(dto.getUsoEsteroides());
+        detalle.setPruebasGeneticas(dto.getPruebasGeneticas());
+        detalle.setHistorialEmbarazos(dto.getHistorialEmbarazos());
+        detalle.setDiabetesGestacionalPrevia(dto.getDiabetesGestacionalPrevia());
+        detalle.setHistorialPcos(dto.getHistorialPcos());
+        detalle.setEstadoTabaquismo(dto.getEstadoTabaquismo());
+        detalle.setSintomasInicioTemprano(dto.getSintomasInicioTemprano());
+        detalle.setFactoresSocioeconomicos(dto.getFactoresSocioeconomicos());
+        detalle.setConsumoAlcohol(dto.getConsumoAlcohol());
+        detalle.setActividadFisica(dto.getActividadFisica());
+        detalle.setPruebaOrina(dto.getPruebaOrina());
+    }
+}
@@ -0,0 +1,42 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.GuiaCampoDto;
+import com.diabetes.business_back.entities.GuiaCampo;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversión GuiaCampo ↔ GuiaCampoDto, campo por campo.
+ */
+@Component
+public class GuiaCampoMapper {
+
+    public GuiaCampoDto aDto(GuiaCampo guia) {
+        if (guia == null) {
+            return null;
+        }
+        GuiaCampoDto dto = new GuiaCampoDto();
+        dto.setIdGuia(guia.getIdGuia());
+        dto.setNombreCampo(guia.getNombreCampo());
+        dto.setTituloEs(guia.getTituloEs());
+        dto.setDescripcionEs(guia.getDescripcionEs());
+        dto.setEjemplos(guia.getEjemplos());
+        dto.setRangoRecomendado(guia.getRangoRecomendado());
+        dto.setUnidadMedida(guia.getUnidadMedida());
+        return dto;
+    }
+
+    public GuiaCampo aEntidad(GuiaCampoDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        GuiaCampo guia = new GuiaCampo();
+        guia.setIdGuia(dto.getIdGuia());
+        guia.setNombreCampo(dto.getNombreCampo());
+        guia.setTituloEs(dto.getTituloEs());
+        guia.setDescripcionEs(dto.getDescripcionEs());
+        guia.setEjemplos(dto.getEjemplos());
+        guia.setRangoRecomendado(dto.getRangoRecomendado());
+        guia.setUnidadMedida(dto.getUnidadMedida());
+        return guia;
+    }
+}
@@ -0,0 +1,44 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.PacienteDto;
+import com.diabetes.business_back.entities.Paciente;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversión Paciente ↔ PacienteDto. La lista de evaluaciones del paciente no forma parte del DTO y no se toca.
+ */
+@Component
+public class PacienteMapper {
+
+    public PacienteDto aDto(Paciente paciente) {
+        if (paciente == null) {
+            return null;
+        }
+        PacienteDto dto = new PacienteDto();
+        dto.setIdPaciente(paciente.getIdPaciente());
+        dto.setCodigoPaciente(paciente.getCodigoPaciente());
+        dto.setNombre(paciente.getNombre());
+        dto.setFechaNacimiento(paciente.getFechaNacimiento());
+        dto.setGenero(paciente.getGenero());
+        dto.setTelefono(paciente.getTelefono());
+        dto.setEmail(paciente.getEmail());
+        dto.setDireccion(paciente.getDireccion());
+        return dto;
+    }
+
+    public Paciente aEntidad(PacienteDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        Paciente paciente = new Paciente();
+        paciente.setIdPaciente(dto.getIdPaciente());
+        paciente.setCodigoPaciente(dto.getCodigoPaciente());
+        paciente.setNombre(dto.getNombre());
+        paciente.setFechaNacimiento(dto.getFechaNacimiento());
+        paciente.setGenero(dto.getGenero());
+        paciente.setTelefono(dto.getTelefono());
+        paciente.setEmail(dto.getEmail());
+        paciente.setDireccion(dto.getDireccion());
+        return paciente;
+    }
+}
@@ -0,0 +1,48 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.RangoClinicoDto;
+import com.diabetes.business_back.entities.RangoClinico;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversión RangoClinico ↔ RangoClinicoDto, campo por campo.
+ */
+@Component
+public class RangoClinicoMapper {
+
+    public RangoClinicoDto aDto(RangoClinico rango) {
+        if (rango == null) {
+            return null;
+        }
+        RangoClinicoDto dto = new RangoClinicoDto();
+        dto.setIdRango(rango.getIdRango());
+        dto.setVariable(rango.getVariable());
+        dto.setNombreCampo(rango.getNombreCampo());
+        dto.setMinimo(rango.getMinimo());
+        dto.setMaximo(rango.getMaximo());
+        dto.setMaximoInclusivo(rango.getMaximoInclusivo());
+        dto.setEtiqueta(rango.getEtiqueta());
+        dto.setOrden(rango.getOrden());
+        dto.setSeccion(rango.getSeccion());
+        dto.setRecomendacion(rango.getRecomendacion());
+        return dto;
+    }
+
+    public RangoClinico aEntidad(RangoClinicoDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        RangoClinico rango = new RangoClinico();
+        rango.setIdRango(dto.getIdRango());
+        rango.setVariable(dto.getVariable());
+        rango.setNombreCampo(dto.getNombreCampo());
+        rango.setMinimo(dto.getMinimo());
+        rango.setMaximo(dto.getMaximo());
+        rango.setMaximoInclusivo(dto.getMaximoInclusivo());
+        rango.setEtiqueta(dto.getEtiqueta());
+        rango.setOrden(dto.getOrden());
+        rango.setSeccion(dto.getSeccion());
+        rango.setRecomendacion(dto.getRecomendacion());
+        return rango;
+    }
+}
@@ -0,0 +1,46 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.TipoDiabetesInfoDto;
+import com.diabetes.business_back.entities.TipoDiabetesInfo;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conversión TipoDiabetesInfo ↔ TipoDiabetesInfoDto, campo por campo.
+ */
+@Component
+public class TipoDiabetesInfoMapper {
+
+    public TipoDiabetesInfoDto aDto(TipoDiabetesInfo tipo) {
+        if (tipo == null) {
+            return null;
+        }
+        TipoDiabetesInfoDto dto = new TipoDiabetesInfoDto();
+        dto.setIdTipoDiabetes(tipo.getIdTipoDiabetes());
+        dto.setNombreEn(tipo.getNombreEn());
+        dto.setNombreEs(tipo.getNombreEs());
+        dto.setDescripcion(tipo.getDescripcion());
+        dto.setCausas(tipo.getCausas());
+        dto.setSintomas(tipo.getSintomas());
+        dto.setTratamiento(tipo.getTratamiento());
+        dto.setRecomendaciones(tipo.getRecomendaciones());
+        dto.setEsComun(tipo.getEsComun());
+        return dto;
+    }
+
+    public TipoDiabetesInfo aEntidad(TipoDiabetesInfoDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        TipoDiabetesInfo tipo = new TipoDiabetesInfo();
+        tipo.setIdTipoDiabetes(dto.getIdTipoDiabetes());
+        tipo.setNombreEn(dto.getNombreEn());
+        tipo.setNombreEs(dto.getNombreEs());
+        tipo.setDescripcion(dto.getDescripcion());
+        tipo.setCausas(dto.getCausas());
+        tipo.setSintomas(dto.getSintomas());
+        tipo.setTratamiento(dto.getTratamiento());
+        tipo.setRecomendaciones(dto.getRecomendaciones());
+        tipo.setEsComun(dto.getEsComun());
+        return tipo;
+    }
+}
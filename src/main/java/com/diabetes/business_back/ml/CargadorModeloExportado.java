@@ -0,0 +1,267 @@
+package com.diabetes.business_back.ml;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Lee modelos exportados en formato JSON. Estructura esperada:
+ * <pre>
+ * {
+ *   "tipo": "arboles" | "lineal",
+ *   "version": "2024-06-01",
+ *   "clases": ["Type 1 Diabetes", "Type 2 Diabetes", ...],
+ *   "columnas": [ {"caracteristica": "edad"},
+ *                 {"caracteristica": "autoanticuerpos", "valor": "Positive"} ],
+ *   "importancias": {"niveles_glucosa": 0.31, ...},                 (opcional)
+ *
+ *   // tipo "arboles"
+ *   "agregacion": "promedio" | "softmax",
+ *   "base": [0.0, ...],                                              (opcional, una por clase)
+ *   "arboles": [ {"columna":   [3, 0, -1, ...],                      (-1 = hoja)
+ *                 "umbral":    [126.5, 40.0, 0.0, ...],
+ *                 "izquierdo": [1, 2, -1, ...],
+ *                 "derecho":   [4, 3, -1, ...],
+ *                 "valores":   [null, null, [0.1, 0.9, ...], ...] } ],  (por clase, solo en hojas)
+ *
+ *   // tipo "lineal"
+ *   "enlace": "softmax" | "sigmoide",
+ *   "coeficientes": [[...una fila por clase, una columna por columna...]],
+ *   "intercepto": [...],
+ *   "media": [...], "escala": [...]                                  (opcionales)
+ * }
+ * </pre>
+ * Las columnas con "valor" son indicadores one-hot; el resto son numéricas.
+ * Los hijos de cada nodo deben tener un índice mayor que el nodo (orden de scikit-learn).
+ */
+public final class CargadorModeloExportado {
+
+    private CargadorModeloExportado() {
+    }
+
+    public static ModeloExportado leer(JsonNode raiz) {
+        if (raiz == null || !raiz.isObject()) {
+            throw new IllegalArgumentException("El archivo del modelo no contiene un objeto JSON");
+        }
+
+        String tipo = raiz.path("tipo").asText("");
+        String version = raiz.path("version").asText("sin-version");
+        String[] clases = leerTextos(raiz.path("clases"), "clases");
+
+        JsonNode columnasNode = raiz.path("columnas");
+        if (!columnasNode.isArray() || columnasNode.isEmpty()) {
+            throw new IllegalArgumentException("El modelo no define columnas");
+        }
+        String[] caracteristicas = new String[columnasNode.size()];
+        String[] valores = new String[columnasNode.size()];
+        for (int i = 0; i < caracteristicas.length; i++) {
+            JsonNode columna = columnasNode.get(i);
+            caracteristicas[i] = columna.path("caracteristica").asText(null);
+            if (caracteristicas[i] == null) {
+                throw new IllegalArgumentException("La columna " + i + " no indica su característica");
+            }
+            valores[i] = columna.hasNonNull("valor") ? columna.get("valor").asText() : null;
+        }
+
+        return switch (tipo) {
+            case "arboles" -> leerArboles(raiz, version, clases, caracteristicas, valores);
+            case "lineal" -> leerLineal(raiz, version, clases, caracteristicas, valores);
+            default -> throw new IllegalArgumentException("Tipo de modelo no soportado: " + tipo);
+        };
+    }
+
+    private static EnsambleArboles leerArboles(JsonNode raiz, String version, String[] clases,
+                                               String[] caracteristicas, String[] valores) {
+        int k = clases.length;
+        JsonNode arboles = raiz.path("arboles");
+        if (!arboles.isArray() || arboles.isEmpty()) {
+            throw new IllegalArgumentException("El modelo de árboles no contiene árboles");
+        }
+
+        EnsambleArboles.Agregacion agregacion = "softmax".equalsIgnoreCase(raiz.path("agregacion").asText("promedio"))
+                ? EnsambleArboles.Agregacion.SOFTMAX : EnsambleArboles.Agregacion.PROMEDIO;
+        double[] base = raiz.has("base") ? leerNumeros(raiz.get("base"), "base") : new double[k];
+        if (base.length != k) {
+            throw new IllegalArgumentException("La base debe tener un valor por clase");
+        }
+
+        int totalNodos = 0;
+        for (JsonNode arbol : arboles) {
+            totalNodos += arbol.path("columna").size();
+        }
+
+        int[] raices = new int[arboles.size()];
+        int[] columna = new int[totalNodos];
+        double[] umbral = new double[totalNodos];
+        int[] izquierdo = new int[totalNodos];
+        int[] derecho = new int[totalNodos];
+        int[] hoja = new int[totalNodos];
+        List<double[]> hojas = new ArrayList<>();
+        int[] divisionesPorColumna = new int[caracteristicas.length];
+
+        int desplazamiento = 0;
+        int desplazamientoHoja = 0;
+        for (int a = 0; a < arboles.size(); a++) {
+            JsonNode arbol = arboles.get(a);
+            int[] col = leerEnteros(arbol.path("columna"), "columna");
+            double[] umb = leerNumeros(arbol.path("umbral"), "umbral");
+            int[] izq = leerEnteros(arbol.path("izquierdo"), "izquierdo");
+            int[] der = leerEnteros(arbol.path("derecho"), "derecho");
+            JsonNode vals = arbol.path("valores");
+            int n = col.length;
+            if (n == 0 || umb.length != n || izq.length != n || der.length != n || vals.size() != n) {
+                throw new IllegalArgumentException("Árbol " + a + ": los arreglos de nodos no tienen el mismo tamaño");
+            }
+
+            raices[a] = desplazamiento;
+            for (int i = 0; i < n; i++) {
+                int nodo = desplazamiento + i;
+                if (col[i] < 0) {
+                    double[] valoresHoja = leerNumeros(vals.get(i), "valores");
+                    if (valoresHoja.length != k) {
+                        throw new IllegalArgumentException("Árbol " + a + ", nodo " + i + ": la hoja debe tener un valor por clase");
+                    }
+                    hojas.add(valoresHoja);
+                    hoja[nodo] = desplazamientoHoja;
+                    desplazamientoHoja += k;
+                } else {
+                    if (col[i] >= caracteristicas.length || izq[i] <= i || der[i] <= i || izq[i] >= n || der[i] >= n) {
+                        throw new IllegalArgumentException("Árbol " + a + ", nodo " + i + ": referencia de columna o hijo inválida");
+                    }
+                    hoja[nodo] = -1;
+                    columna[nodo] = col[i];
+                    umbral[nodo] = umb[i];
+                    izquierdo[nodo] = desplazamiento + izq[i];
+                    derecho[nodo] = desplazamiento + der[i];
+                    divisionesPorColumna[col[i]]++;
+                }
+            }
+            desplazamiento += n;
+        }
+
+        double[] valoresHoja = new double[desplazamientoHoja];
+        for (int i = 0; i < hojas.size(); i++) {
+            System.arraycopy(hojas.get(i), 0, valoresHoja, i * k, k);
+        }
+
+        double[] pesos = new double[caracteristicas.length];
+        for (int j = 0; j < pesos.length; j++) {
+            pesos[j] = divisionesPorColumna[j];
+        }
+        Map<String, Double> importancias = leerImportancias(raiz, caracteristicas, pesos);
+
+        return new EnsambleArboles(version, clases, caracteristicas, valores, importancias, agregacion, base,
+                raices, columna, umbral, izquierdo, derecho, hoja, valoresHoja);
+    }
+
+    private static ModeloLineal leerLineal(JsonNode raiz, String version, String[] clases,
+                                           String[] caracteristicas, String[] valores) {
+        int k = clases.length;
+        int n = caracteristicas.length;
+
+        JsonNode filas = raiz.path("coeficientes");
+        if (!filas.isArray() || filas.size() != k) {
+            throw new IllegalArgumentException("El modelo lineal debe tener una fila de coeficientes por clase");
+        }
+        double[] coeficientes = new double[k * n];
+        for (int c = 0; c < k; c++) {
+            double[] fila = leerNumeros(filas.get(c), "coeficientes");
+            if (fila.length != n) {
+                throw new IllegalArgumentException("La fila de coeficientes " + c + " no coincide con las columnas");
+            }
+            System.arraycopy(fila, 0, coeficientes, c * n, n);
+        }
+
+        double[] intercepto = raiz.has("intercepto") ? leerNumeros(raiz.get("intercepto"), "intercepto") : new double[k];
+        if (intercepto.length != k) {
+            throw new IllegalArgumentException("El intercepto debe tener un valor por clase");
+        }
+
+        double[] media = null;
+        double[] escala = null;
+        if (raiz.has("media") || raiz.has("escala")) {
+            media = leerNumeros(raiz.path("media"), "media");
+            escala = leerNumeros(raiz.path("escala"), "escala");
+            if (media.length != n || escala.length != n) {
+                throw new IllegalArgumentException("Media y escala deben tener un valor por columna");
+            }
+            for (int j = 0; j < n; j++) {
+                if (escala[j] == 0.0) {
+                    escala[j] = 1.0;
+                }
+            }
+        }
+
+        // Importancia por defecto: magnitud media del coeficiente de cada columna
+        double[] pesos = new double[n];
+        for (int c = 0; c < k; c++) {
+            for (int j = 0; j < n; j++) {
+                pesos[j] += Math.abs(coeficientes[c * n + j]) / k;
+            }
+        }
+        Map<String, Double> importancias = leerImportancias(raiz, caracteristicas, pesos);
+
+        ModeloLineal.Enlace enlace = "sigmoide".equalsIgnoreCase(raiz.path("enlace").asText("softmax"))
+                ? ModeloLineal.Enlace.SIGMOIDE : ModeloLineal.Enlace.SOFTMAX;
+
+        return new ModeloLineal(version, clases, caracteristicas, valores, importancias, enlace,
+                coeficientes, intercepto, media, escala);
+    }
+
+    /**
+     * Usa las importancias declaradas en el archivo o, si no vienen, agrega los pesos por característica
+     * (sumando las columnas one-hot de una misma variable) y normaliza a 1.
+     */
+    private static Map<String, Double> leerImportancias(JsonNode raiz, String[] caracteristicas, double[] pesos) {
+        Map<String, Double> importancias = new LinkedHashMap<>();
+        JsonNode declaradas = raiz.path("importancias");
+        if (declaradas.isObject() && !declaradas.isEmpty()) {
+            declaradas.fields().forEachRemaining(e -> importancias.put(e.getKey(), e.getValue().asDouble()));
+            return importancias;
+        }
+
+        double total = 0.0;
+        for (int j = 0; j < caracteristicas.length; j++) {
+            importancias.merge(caracteristicas[j], pesos[j], Double::sum);
+            total += pesos[j];
+        }
+        if (total > 0) {
+            double divisor = total;
+            importancias.replaceAll((k, v) -> v / divisor);
+        }
+        return importancias;
+    }
+
+    private static String[] leerTextos(JsonNode nodo, String campo) {
+        if (!nodo.isArray() || nodo.isEmpty()) {
+            throw new IllegalArgumentException("El modelo no define '" + campo + "'");
+        }
+        String[] textos = new String[nodo.size()];
+        for (int i = 0; i < textos.length; i++) {
+            textos[i] = nodo.get(i).asText();
+        }
+        return textos;
+    }
+
+    private static double[] leerNumeros(JsonNode nodo, String campo) {
+        if (nodo == null || !nodo.isArray()) {
+            throw new IllegalArgumentException("El campo '" + campo + "' debe ser un arreglo numérico");
+        }
+        double[] numeros = new double[nodo.size()];
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = nodo.get(i).asDouble();
+        }
+        return numeros;
+    }
+
+    private static int[] leerEnteros(JsonNode nodo, String campo) {
+        if (nodo == null || !nodo.isArray()) {
+            throw new IllegalArgumentException("El campo '" + campo + "' debe ser un arreglo de enteros");
+        }
+        int[] enteros = new int[nodo.size()];
+        for (int i = 0; i < enteros.length; i++) {
+            enteros[i] = nodo.get(i).asInt();
+        }
+        return enteros;
+    }
+}
@@ -0,0 +1,121 @@
+package com.diabetes.business_back.ml;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee las respuestas de la API ML token por token directamente en {@link MLPredictionResponseDto}, sin pasar
+ * por un Map intermedio. Funciona con cualquier JsonParser de Jackson, así que sirve igual para JSON y CBOR.
+ * Los campos desconocidos se saltan.
+ */
+public final class DecodificadorRespuestaML {
+
+    private DecodificadorRespuestaML() {
+    }
+
+    /**
+     * Respuesta de /predict: un objeto con predictedClass, probability, probabilities, featureImportance, success y message
+     */
+    public static MLPredictionResponseDto leer(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Se esperaba un objeto en la respuesta de la API ML y llegó " + token);
+        }
+        return leerObjeto(parser);
+    }
+
+    /**
+     * Respuesta de /predict/batch: {"predictions": [ ... ]}. Un elemento que no es objeto se devuelve como null.
+     */
+    public static List<MLPredictionResponseDto> leerLote(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Se esperaba un objeto en la respuesta batch de la API ML y llegó " + token);
+        }
+
+        List<MLPredictionResponseDto> resultados = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            if ("predictions".equals(campo) && valor == JsonToken.START_ARRAY) {
+                resultados = new ArrayList<>();
+                while ((valor = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (valor == JsonToken.START_OBJECT) {
+                        resultados.add(leerObjeto(parser));
+                    } else {
+                        parser.skipChildren();
+                        resultados.add(null);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return resultados;
+    }
+
+    // El parser está en START_OBJECT; al volver queda en el END_OBJECT correspondiente
+    private static MLPredictionResponseDto leerObjeto(JsonParser parser) throws IOException {
+        MLPredictionResponseDto dto = new MLPredictionResponseDto();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            if (valor == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            switch (campo) {
+                case "predictedClass" -> dto.setPredictedClass(parser.getValueAsString());
+                case "predictedClassEs" -> dto.setPredictedClassEs(parser.getValueAsString());
+                case "probability" -> dto.setProbability(leerNumero(parser, valor));
+                case "success" -> dto.setSuccess(parser.getValueAsBoolean());
+                case "message" -> dto.setMessage(parser.getValueAsString());
+                case "probabilities" -> dto.setProbabilities(leerMapaNumerico(parser, valor));
+                case "featureImportance" -> dto.setFeatureImportance(leerMapaNumerico(parser, valor));
+                default -> parser.skipChildren();
+            }
+        }
+        return dto;
+    }
+
+    private static Double leerNumero(JsonParser parser, JsonToken valor) throws IOException {
+        if (valor.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        if (valor == JsonToken.VALUE_STRING) {
+            try {
+                return Double.parseDouble(parser.getText());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static Map<String, Double> leerMapaNumerico(JsonParser parser, JsonToken valor) throws IOException {
+        if (valor != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, Double> mapa = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String clave = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token.isNumeric()) {
+                mapa.put(clave, parser.getDoubleValue());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return mapa;
+    }
+}
@@ -0,0 +1,87 @@
+package com.diabetes.business_back.ml;
+
+import java.util.Map;
+
+/**
+ * Ensamble de árboles de decisión (random forest o gradient boosting) almacenado como arreglos planos de nodos.
+ * En cada nodo interno se va a la izquierda si {@code columna <= umbral}, como en scikit-learn.
+ */
+public final class EnsambleArboles extends ModeloExportado {
+
+    public enum Agregacion {
+        /** Las hojas contienen probabilidades por clase y se promedian (random forest) */
+        PROMEDIO,
+        /** Las hojas contienen puntajes por clase que se suman a la base y pasan por softmax (boosting) */
+        SOFTMAX
+    }
+
+    private final Agregacion agregacion;
+    private final double[] base;
+    private final int[] raices;
+    private final int[] columna;
+    private final double[] umbral;
+    private final int[] izquierdo;
+    private final int[] derecho;
+    // Desplazamiento en valoresHoja de los valores por clase de cada hoja; -1 en nodos internos
+    private final int[] hoja;
+    private final double[] valoresHoja;
+
+    EnsambleArboles(String version, String[] clases, String[] caracteristicaColumna, String[] valorColumna,
+                    Map<String, Double> importancias, Agregacion agregacion, double[] base, int[] raices,
+                    int[] columna, double[] umbral, int[] izquierdo, int[] derecho, int[] hoja, double[] valoresHoja) {
+        super(version, clases, caracteristicaColumna, valorColumna, importancias);
+        this.agregacion = agregacion;
+        this.base = base;
+        this.raices = raices;
+        this.columna = columna;
+        this.umbral = umbral;
+        this.izquierdo = izquierdo;
+        this.derecho = derecho;
+        this.hoja = hoja;
+        this.valoresHoja = valoresHoja;
+    }
+
+    @Override
+    protected void calcular(double[] columnas, double[] salida) {
+        int k = salida.length;
+        System.arraycopy(base, 0, salida, 0, k);
+
+        for (int raiz : raices) {
+            int nodo = raiz;
+            while (hoja[nodo] < 0) {
+                nodo = columnas[columna[nodo]] <= umbral[nodo] ? izquierdo[nodo] : derecho[nodo];
+            }
+            int desplazamiento = hoja[nodo];
+            for (int c = 0; c < k; c++) {
+                salida[c] += valoresHoja[desplazamiento + c];
+            }
+        }
+
+        if (agregacion == Agregacion.PROMEDIO) {
+            double total = 0.0;
+            for (int c = 0; c < k; c++) {
+                total += salida[c];
+            }
+            if (total > 0) {
+                for (int c = 0; c < k; c++) {
+                    salida[c] /= total;
+                }
+            }
+        } else {
+            FuncionesActivacion.softmax(salida);
+        }
+    }
+
+    @Override
+    public String getTipo() {
+        return "arboles";
+    }
+
+    public int getCantidadArboles() {
+        return raices.length;
+    }
+
+    public int getCantidadNodos() {
+        return columna.length;
+    }
+}
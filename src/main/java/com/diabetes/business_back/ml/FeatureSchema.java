@@ -0,0 +1,177 @@
+package com.diabetes.business_back.ml;
+
+import java.util.*;
+
+/**
+ * Disposición compilada de las características que espera el modelo: posiciones fijas para las
+ * variables numéricas y diccionarios (valor -> código entero) para las categóricas.
+ * Es inmutable; se compila una sola vez y se comparte entre todas las predicciones.
+ */
+public final class FeatureSchema {
+
+    public static final String[] NUMERICAS_POR_DEFECTO = {
+            "niveles_insulina", "edad", "indice_masa_corporal", "presion_arterial", "niveles_colesterol",
+            "circunferencia_cintura", "niveles_glucosa", "aumento_peso_embarazo", "salud_pancreatica",
+            "funcion_pulmonar", "evaluaciones_neurologicas", "niveles_enzimas_digestivas", "peso_nacimiento"
+    };
+
+    public static final String[] CATEGORICAS_POR_DEFECTO = {
+            "marcadores_geneticos", "autoanticuerpos", "antecedentes_familiares", "factores_ambientales",
+            "etnicidad", "habitos_alimenticios", "prueba_tolerancia_glucosa", "pruebas_funcion_hepatica",
+            "diagnostico_fibrosis_quistica", "uso_esteroides", "pruebas_geneticas", "historial_embarazos",
+            "diabetes_gestacional_previa", "historial_pcos", "estado_tabaquismo", "sintomas_inicio_temprano",
+            "factores_socioeconomicos", "consumo_alcohol", "actividad_fisica", "prueba_orina"
+    };
+
+    // Valores en español aceptados en el formulario y su equivalente en inglés que espera el modelo
+    private static final String[][] TRADUCCIONES = {
+            {"Sí", "Yes"}, {"No", "No"}, {"Positivo", "Positive"}, {"Negativo", "Negative"},
+            {"Presente", "Present"}, {"Ausente", "Absent"}, {"Alto", "High"}, {"Bajo", "Low"},
+            {"Moderado", "Moderate"}, {"Saludable", "Healthy"}, {"No saludable", "Unhealthy"},
+            {"Normal", "Normal"}, {"Anormal", "Abnormal"}, {"Fumador", "Smoker"},
+            {"No fumador", "Non-Smoker"}, {"Complicaciones", "Complications"}
+    };
+
+    public static final int CODIGO_VACIO = -1;
+    public static final int CODIGO_LIBRE = -2;
+
+    private final String version;
+    private final String[] numericas;
+    private final String[] categoricas;
+    private final Map<String, Integer> indiceNumerico;
+    private final Map<String, Integer> indiceCategorico;
+    private final String[][] diccionarios;
+    private final List<Map<String, Integer>> codigos;
+
+    private FeatureSchema(String version, String[] numericas, String[] categoricas,
+                          Map<String, ? extends Collection<String>> valoresPorCategoria) {
+        this.version = version;
+        this.numericas = numericas;
+        this.categoricas = categoricas;
+        this.indiceNumerico = indexar(numericas);
+        this.indiceCategorico = indexar(categoricas);
+        this.diccionarios = new String[categoricas.length][];
+        List<Map<String, Integer>> codigosPorCategoria = new ArrayList<>(categoricas.length);
+
+        for (int i = 0; i < categoricas.length; i++) {
+            LinkedHashSet<String> valores = new LinkedHashSet<>();
+            for (String[] traduccion : TRADUCCIONES) {
+                valores.add(traduccion[1]);
+            }
+            Collection<String> especificos = valoresPorCategoria.get(categoricas[i]);
+            if (especificos != null) {
+                especificos.stream().map(String::trim).filter(v -> !v.isEmpty()).forEach(valores::add);
+            }
+
+            String[] diccionario = valores.toArray(new String[0]);
+            Map<String, Integer> codigosCategoria = new HashMap<>();
+            for (int codigo = 0; codigo < diccionario.length; codigo++) {
+                codigosCategoria.put(diccionario[codigo], codigo);
+            }
+            for (String[] traduccion : TRADUCCIONES) {
+                codigosCategoria.putIfAbsent(traduccion[0], codigosCategoria.get(traduccion[1]));
+            }
+
+            diccionarios[i] = diccionario;
+            codigosPorCategoria.add(Collections.unmodifiableMap(codigosCategoria));
+        }
+        this.codigos = Collections.unmodifiableList(codigosPorCategoria);
+    }
+
+    public static FeatureSchema porDefecto() {
+        return new FeatureSchema("default", NUMERICAS_POR_DEFECTO.clone(), CATEGORICAS_POR_DEFECTO.clone(), Map.of());
+    }
+
+    public static FeatureSchema compilar(String version,
+                                         List<String> numericas,
+                                         List<String> categoricas,
+                                         Map<String, ? extends Collection<String>> valoresPorCategoria) {
+        return new FeatureSchema(
+                version,
+                numericas.toArray(new String[0]),
+                categoricas.toArray(new String[0]),
+                valoresPorCategoria != null ? valoresPorCategoria : Map.of()
+        );
+    }
+
+    private static Map<String, Integer> indexar(String[] nombres) {
+        Map<String, Integer> indice = new HashMap<>();
+        for (int i = 0; i < nombres.length; i++) {
+            indice.put(nombres[i], i);
+        }
+        return Collections.unmodifiableMap(indice);
+    }
+
+    public FeatureVector nuevoVector() {
+        return new FeatureVector(this);
+    }
+
+    /**
+     * Convierte un mapa de características (formato original de la API) al vector tipado
+     */
+    public FeatureVector desdeMapa(Map<String, Object> features) {
+        FeatureVector vector = nuevoVector();
+        features.forEach((nombre, valor) -> {
+            if (indiceNumerico.containsKey(nombre)) {
+                vector.setNumerico(nombre, valor);
+            } else if (indiceCategorico.containsKey(nombre)) {
+                vector.setCategorico(nombre, valor != null ? valor.toString() : null);
+            }
+        });
+        return vector;
+    }
+
+    int codificar(int categoria, String valor) {
+        if (valor == null) {
+            return CODIGO_VACIO;
+        }
+        String limpio = valor.trim();
+        if (limpio.isEmpty()) {
+            return CODIGO_VACIO;
+        }
+        Integer codigo = codigos.get(categoria).get(limpio);
+        return codigo != null ? codigo : CODIGO_LIBRE;
+    }
+
+    public String decodificar(int categoria, int codigo) {
+        return codigo >= 0 ? diccionarios[categoria][codigo] : "";
+    }
+
+    public int indiceNumerico(String nombre) {
+        Integer indice = indiceNumerico.get(nombre);
+        return indice != null ? indice : -1;
+    }
+
+    public int indiceCategorico(String nombre) {
+        Integer indice = indiceCategorico.get(nombre);
+        return indice != null ? indice : -1;
+    }
+
+    public boolean contiene(String nombre) {
+        return indiceNumerico.containsKey(nombre) || indiceCategorico.containsKey(nombre);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getCantidadNumericas() {
+        return numericas.length;
+    }
+
+    public int getCantidadCategoricas() {
+        return categoricas.length;
+    }
+
+    public String nombreNumerica(int indice) {
+        return numericas[indice];
+    }
+
+    public String nombreCategorica(int indice) {
+        return categoricas[indice];
+    }
+
+    public List<String> valoresCategoria(int indice) {
+        return List.of(diccionarios[indice]);
+    }
+}
@@ -0,0 +1,192 @@
+package com.diabetes.business_back.ml;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Vector de características tipado: las variables numéricas se guardan en un double[] y las categóricas
+ * como códigos de diccionario en un int[], según la disposición de un {@link FeatureSchema}.
+ * Se serializa directamente al formato JSON de la API Python sin construir mapas intermedios.
+ * Una vez enviado al modelo no debe modificarse (se usa como clave de caché).
+ */
+public final class FeatureVector implements JsonSerializable {
+
+    private final FeatureSchema esquema;
+    private final double[] numericos;
+    private final int[] categoricos;
+    // Valores categóricos fuera del diccionario; se crea solo si aparece alguno
+    private String[] libres;
+
+    FeatureVector(FeatureSchema esquema) {
+        this.esquema = esquema;
+        this.numericos = new double[esquema.getCantidadNumericas()];
+        this.categoricos = new int[esquema.getCantidadCategoricas()];
+        Arrays.fill(this.categoricos, FeatureSchema.CODIGO_VACIO);
+    }
+
+    /**
+     * Asigna una variable numérica. Un nombre que el esquema no tiene es un error de programación
+     * (el esquema se valida al compilarse), así que se rechaza en lugar de descartar el valor.
+     */
+    public FeatureVector setNumerico(String nombre, Object valor) {
+        int indice = esquema.indiceNumerico(nombre);
+        if (indice < 0) {
+            throw new IllegalStateException("El esquema " + esquema.getVersion() + " no tiene la característica numérica " + nombre);
+        }
+        numericos[indice] = aDouble(valor);
+        return this;
+    }
+
+    public FeatureVector setCategorico(String nombre, String valor) {
+        int indice = esquema.indiceCategorico(nombre);
+        if (indice < 0) {
+            throw new IllegalStateException("El esquema " + esquema.getVersion() + " no tiene la característica categórica " + nombre);
+        }
+
+        int codigo = esquema.codificar(indice, valor);
+        categoricos[indice] = codigo;
+        if (codigo == FeatureSchema.CODIGO_LIBRE) {
+            if (libres == null) {
+                libres = new String[categoricos.length];
+            }
+            libres[indice] = valor.trim();
+        }
+        return this;
+    }
+
+    public double getNumerico(int indice) {
+        return numericos[indice];
+    }
+
+    public double getNumerico(String nombre) {
+        int indice = esquema.indiceNumerico(nombre);
+        return indice >= 0 ? numericos[indice] : 0.0;
+    }
+
+    public int getCodigo(int indice) {
+        return categoricos[indice];
+    }
+
+    public String getCategorico(int indice) {
+        int codigo = categoricos[indice];
+        if (codigo == FeatureSchema.CODIGO_LIBRE) {
+            return libres[indice];
+        }
+        return esquema.decodificar(indice, codigo);
+    }
+
+    public String getCategorico(String nombre) {
+        int indice = esquema.indiceCategorico(nombre);
+        return indice >= 0 ? getCategorico(indice) : "";
+    }
+
+    public boolean contiene(String nombre) {
+        return esquema.contiene(nombre);
+    }
+
+    public int tamano() {
+        return numericos.length + categoricos.length;
+    }
+
+    public FeatureSchema getEsquema() {
+        return esquema;
+    }
+
+    /**
+     * Representación como mapa, solo para depuración o integraciones que aún esperan el formato anterior
+     */
+    public Map<String, Object> aMapa() {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        for (int i = 0; i < categoricos.length; i++) {
+            mapa.put(esquema.nombreCategorica(i), getCategorico(i));
+        }
+        for (int i = 0; i < numericos.length; i++) {
+            mapa.put(esquema.nombreNumerica(i), numericos[i]);
+        }
+        return mapa;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartObject();
+        escribirCampos(gen);
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(this, JsonToken.START_OBJECT));
+        escribirCampos(gen);
+        typeSer.writeTypeSuffix(gen, typeId);
+    }
+
+    private void escribirCampos(JsonGenerator gen) throws IOException {
+        for (int i = 0; i < categoricos.length; i++) {
+            gen.writeStringField(esquema.nombreCategorica(i), getCategorico(i));
+        }
+        for (int i = 0; i < numericos.length; i++) {
+            gen.writeNumberField(esquema.nombreNumerica(i), numericos[i]);
+        }
+    }
+
+    private static double aDouble(Object valor) {
+        if (valor instanceof Number numero) {
+            return numero.doubleValue();
+        }
+        if (valor instanceof String texto && !texto.trim().isEmpty()) {
+            try {
+                return Double.parseDouble(texto.trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+        return 0.0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FeatureVector otro)) return false;
+        if (esquema != otro.esquema
+                || !Arrays.equals(numericos, otro.numericos)
+                || !Arrays.equals(categoricos, otro.categoricos)) {
+            return false;
+        }
+        for (int i = 0; i < categoricos.length; i++) {
+            if (categoricos[i] == FeatureSchema.CODIGO_LIBRE && !libres[i].equals(otro.libres[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash canónico del vector normalizado (números y códigos de diccionario, no el texto original)
+     */
+    @Override
+    public int hashCode() {
+        int hash = System.identityHashCode(esquema);
+        hash = 31 * hash + Arrays.hashCode(numericos);
+        hash = 31 * hash + Arrays.hashCode(categoricos);
+        for (int i = 0; i < categoricos.length; i++) {
+            if (categoricos[i] == FeatureSchema.CODIGO_LIBRE) {
+                hash = 31 * hash + libres[i].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return aMapa().toString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.diabetes.business_back.ml;
+
+final class FuncionesActivacion {
+
+    private FuncionesActivacion() {
+    }
+
+    /**
+     * Softmax numéricamente estable, en el mismo arreglo
+     */
+    static void softmax(double[] valores) {
+        double maximo = Double.NEGATIVE_INFINITY;
+        for (double valor : valores) {
+            maximo = Math.max(maximo, valor);
+        }
+
+        double total = 0.0;
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = Math.exp(valores[i] - maximo);
+            total += valores[i];
+        }
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] /= total;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.diabetes.business_back.ml;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Modelo exportado desde Python y evaluado dentro de la JVM. Trabaja sobre una matriz densa de columnas:
+ * cada columna es una característica numérica o un indicador one-hot (característica = valor).
+ * La evaluación usa arreglos primitivos reutilizados por hilo, sin asignaciones por solicitud.
+ */
+public abstract class ModeloExportado {
+
+    protected final String version;
+    protected final String[] clases;
+    private final String[] caracteristicaColumna;
+    // null para columnas numéricas; el valor categórico para columnas indicadoras
+    private final String[] valorColumna;
+    private final Map<String, Double> importancias;
+
+    private volatile Vinculacion vinculacion;
+    private final ThreadLocal<double[][]> memoria;
+
+    protected ModeloExportado(String version, String[] clases, String[] caracteristicaColumna,
+                              String[] valorColumna, Map<String, Double> importancias) {
+        this.version = version;
+        this.clases = clases;
+        this.caracteristicaColumna = caracteristicaColumna;
+        this.valorColumna = valorColumna;
+        this.importancias = Collections.unmodifiableMap(importancias);
+        this.memoria = ThreadLocal.withInitial(() -> new double[][]{
+                new double[caracteristicaColumna.length], new double[clases.length]});
+    }
+
+    /**
+     * Devuelve las probabilidades por clase (mismo orden que {@link #getClases()}).
+     * El arreglo es memoria del hilo actual: debe leerse antes de volver a puntuar en el mismo hilo.
+     */
+    public final double[] puntuar(FeatureVector vector) {
+        double[][] buffers = memoria.get();
+        double[] columnas = buffers[0];
+        double[] salida = buffers[1];
+
+        vincular(vector.getEsquema()).llenar(vector, columnas);
+        calcular(columnas, salida);
+        return salida;
+    }
+
+    /**
+     * Calcula las probabilidades por clase en {@code salida} a partir de las columnas ya llenadas.
+     */
+    protected abstract void calcular(double[] columnas, double[] salida);
+
+    public abstract String getTipo();
+
+    /**
+     * Columnas del modelo que el esquema actual no puede alimentar (quedan en cero)
+     */
+    public int columnasSinVincular(FeatureSchema esquema) {
+        return vincular(esquema).sinVincular;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String[] getClases() {
+        return clases.clone();
+    }
+
+    public int getCantidadClases() {
+        return clases.length;
+    }
+
+    public String getClase(int indice) {
+        return clases[indice];
+    }
+
+    public int getCantidadColumnas() {
+        return caracteristicaColumna.length;
+    }
+
+    public Map<String, Double> getImportancias() {
+        return importancias;
+    }
+
+    private Vinculacion vincular(FeatureSchema esquema) {
+        Vinculacion actual = vinculacion;
+        if (actual == null || actual.esquema != esquema) {
+            actual = new Vinculacion(esquema, caracteristicaColumna, valorColumna);
+            vinculacion = actual;
+        }
+        return actual;
+    }
+
+    /**
+     * Traducción precalculada de las columnas del modelo a posiciones y códigos del esquema compilado
+     */
+    private static final class Vinculacion {
+        private final FeatureSchema esquema;
+        // Índice en el arreglo numérico o categórico del vector; -1 si el esquema no tiene la característica
+        private final int[] origen;
+        private final boolean[] indicador;
+        private final int[] codigo;
+        private final String[] literal;
+        private final int sinVincular;
+
+        private Vinculacion(FeatureSchema esquema, String[] caracteristicas, String[] valores) {
+            this.esquema = esquema;
+            int n = caracteristicas.length;
+            this.origen = new int[n];
+            this.indicador = new boolean[n];
+            this.codigo = new int[n];
+            this.literal = new String[n];
+            int faltantes = 0;
+
+            for (int i = 0; i < n; i++) {
+                indicador[i] = valores[i] != null;
+                if (indicador[i]) {
+                    origen[i] = esquema.indiceCategorico(caracteristicas[i]);
+                    if (origen[i] >= 0) {
+                        codigo[i] = esquema.codificar(origen[i], valores[i]);
+                        literal[i] = valores[i].trim();
+                    }
+                } else {
+                    origen[i] = esquema.indiceNumerico(caracteristicas[i]);
+                }
+                if (origen[i] < 0) {
+                    faltantes++;
+                }
+            }
+            this.sinVincular = faltantes;
+        }
+
+        private void llenar(FeatureVector vector, double[] columnas) {
+            Arrays.fill(columnas, 0.0);
+            for (int i = 0; i < columnas.length; i++) {
+                int posicion = origen[i];
+                if (posicion < 0) {
+                    continue;
+                }
+                if (!indicador[i]) {
+                    columnas[i] = vector.getNumerico(posicion);
+                } else {
+                    int codigoVector = vector.getCodigo(posicion);
+                    boolean coincide = codigo[i] == FeatureSchema.CODIGO_LIBRE
+                            ? codigoVector == FeatureSchema.CODIGO_LIBRE && literal[i].equals(vector.getCategorico(posicion))
+                            : codigoVector == codigo[i];
+                    columnas[i] = coincide ? 1.0 : 0.0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.diabetes.business_back.ml;
+
+import java.util.Map;
+
+/**
+ * Modelo lineal multiclase (regresión logística) con estandarización opcional de las columnas.
+ * Los coeficientes se guardan en un único arreglo en orden clase-mayor.
+ */
+public final class ModeloLineal extends ModeloExportado {
+
+    public enum Enlace {
+        /** Regresión logística multinomial */
+        SOFTMAX,
+        /** Uno contra el resto: sigmoide por clase y normalización */
+        SIGMOIDE
+    }
+
+    private final Enlace enlace;
+    private final double[] coeficientes;
+    private final double[] intercepto;
+    private final double[] media;
+    private final double[] escala;
+
+    ModeloLineal(String version, String[] clases, String[] caracteristicaColumna, String[] valorColumna,
+                 Map<String, Double> importancias, Enlace enlace, double[] coeficientes, double[] intercepto,
+                 double[] media, double[] escala) {
+        super(version, clases, caracteristicaColumna, valorColumna, importancias);
+        this.enlace = enlace;
+        this.coeficientes = coeficientes;
+        this.intercepto = intercepto;
+        this.media = media;
+        this.escala = escala;
+    }
+
+    @Override
+    protected void calcular(double[] columnas, double[] salida) {
+        int n = columnas.length;
+
+        if (media != null) {
+            for (int j = 0; j < n; j++) {
+                columnas[j] = (columnas[j] - media[j]) / escala[j];
+            }
+        }
+
+        for (int c = 0; c < salida.length; c++) {
+            double z = intercepto[c];
+            int fila = c * n;
+            for (int j = 0; j < n; j++) {
+                z += coeficientes[fila + j] * columnas[j];
+            }
+            salida[c] = z;
+        }
+
+        if (enlace == Enlace.SOFTMAX) {
+            FuncionesActivacion.softmax(salida);
+        } else {
+            double total = 0.0;
+            for (int c = 0; c < salida.length; c++) {
+                salida[c] = 1.0 / (1.0 + Math.exp(-salida[c]));
+                total += salida[c];
+            }
+            for (int c = 0; c < salida.length; c++) {
+                salida[c] /= total;
+            }
+        }
+    }
+
+    @Override
+    public String getTipo() {
+        return "lineal";
+    }
+}
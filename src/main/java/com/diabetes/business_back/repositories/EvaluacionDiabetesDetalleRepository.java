@@ -0,0 +1,19 @@
+package com.diabetes.business_back.repositories;
+
+import com.diabetes.business_back.entities.EvaluacionDiabetesDetalle;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EvaluacionDiabetesDetalleRepository extends JpaRepository<EvaluacionDiabetesDetalle, Long> {
+    // Mismos filtros que los listados completos de EvaluacionDiabetesRepository, sin cargar la evaluación
+    @Query("SELECT d FROM com.diabetes.business_back.entities.EvaluacionDiabetesDetalle d WHERE d.evaluacion.paciente.idPaciente = :idPaciente")
+    List<EvaluacionDiabetesDetalle> findByPaciente(@Param("idPaciente") Long idPaciente);
+
+    @Query("SELECT d FROM com.diabetes.business_back.entities.EvaluacionDiabetesDetalle d WHERE d.evaluacion.tipoDiabetesPredicho = :tipo")
+    List<EvaluacionDiabetesDetalle> findByTipoDiabetes(@Param("tipo") String tipo);
+}
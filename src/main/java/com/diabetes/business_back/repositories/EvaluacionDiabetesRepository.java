@@ -1,20 +1,87 @@
 package com.diabetes.business_back.repositories;
 
+import com.diabetes.business_back.dtos.EvaluacionResumenDto;
 import com.diabetes.business_back.entities.EvaluacionDiabetes;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface EvaluacionDiabetesRepository extends JpaRepository<EvaluacionDiabetes, Long> {
+    // El paciente es LAZY; las lecturas que se mapean a EvaluacionDiabetesDto lo traen en la misma consulta
+    @Override
+    @EntityGraph(attributePaths = "paciente")
+    List<EvaluacionDiabetes> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "paciente")
+    Optional<EvaluacionDiabetes> findById(Long id);
+
+    @EntityGraph(attributePaths = "paciente")
     List<EvaluacionDiabetes> findByPacienteIdPaciente(Long idPaciente);
 
+    @EntityGraph(attributePaths = "paciente")
     @Query("SELECT e FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.tipoDiabetesPredicho = :tipo ORDER BY e.fechaEvaluacion DESC")
     List<EvaluacionDiabetes> findByTipoDiabetes(@Param("tipo") String tipo);
 
     @Query("SELECT COUNT(e) FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.tipoDiabetesPredicho = :tipo")
     Long countByTipoDiabetes(@Param("tipo") String tipo);
+
+    @Query("SELECT e.tipoDiabetesPredicho, COUNT(e) FROM com.diabetes.business_back.entities.EvaluacionDiabetes e GROUP BY e.tipoDiabetesPredicho")
+    List<Object[]> contarPorTipo();
+
+    @Query("SELECT e.tipoDiabetesPredicho, COUNT(e) FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.fechaEvaluacion >= :desde AND e.fechaEvaluacion < :hasta GROUP BY e.tipoDiabetesPredicho")
+    List<Object[]> contarPorTipoEntre(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    @Query("SELECT e.fechaEvaluacion, e.tipoDiabetesPredicho FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.fechaEvaluacion >= :desde")
+    List<Object[]> listarFechaYTipoDesde(@Param("desde") LocalDateTime desde);
+
+    @Query("SELECT e.idEvaluacion, e.fechaEvaluacion, e.tipoDiabetesPredicho FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.paciente.idPaciente = :idPaciente")
+    List<Object[]> listarFechaYTipoPorPaciente(@Param("idPaciente") Long idPaciente);
+
+    @Query("SELECT MIN(e.fechaEvaluacion) FROM com.diabetes.business_back.entities.EvaluacionDiabetes e")
+    LocalDateTime obtenerPrimeraFechaEvaluacion();
+
+    @Query("SELECT e.idEvaluacion, e.tipoDiabetesPredicho, e.nivelesGlucosa, e.nivelesInsulina, e.indiceMasaCorporal, e.presionArterial, e.nivelesColesterol FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.idEvaluacion > :marca ORDER BY e.idEvaluacion")
+    List<Object[]> listarBiomarcadoresDesde(@Param("marca") Long marca, Pageable pagina);
+
+    @Query("SELECT e.idEvaluacion, e.tipoDiabetesPredicho, e.nivelesGlucosa, e.nivelesInsulina, e.indiceMasaCorporal, e.presionArterial, e.nivelesColesterol FROM com.diabetes.business_back.entities.EvaluacionDiabetes e WHERE e.idEvaluacion IN :ids")
+    List<Object[]> listarBiomarcadoresPorIds(@Param("ids") Collection<Long> ids);
+
+    // Listados por cursor sobre (fechaEvaluacion, idEvaluacion), de la más reciente a la más antigua. La cota
+    // fechaEvaluacion <= :fecha es redundante, pero con la tabla particionada descarta los meses posteriores al cursor.
+    @Query("SELECT new com.diabetes.business_back.dtos.EvaluacionResumenDto(e.idEvaluacion, e.fechaEvaluacion, e.tipoDiabetesPredicho, e.probabilidad, p.idPaciente, p.codigoPaciente, p.nombre, e.nivelesGlucosa, e.clasificacionGlucosa) " +
+            "FROM com.diabetes.business_back.entities.EvaluacionDiabetes e LEFT JOIN e.paciente p " +
+            "WHERE e.fechaEvaluacion IS NOT NULL " +
+            "ORDER BY e.fechaEvaluacion DESC, e.idEvaluacion DESC")
+    List<EvaluacionResumenDto> listarResumenes(Pageable limite);
+
+    @Query("SELECT new com.diabetes.business_back.dtos.EvaluacionResumenDto(e.idEvaluacion, e.fechaEvaluacion, e.tipoDiabetesPredicho, e.probabilidad, p.idPaciente, p.codigoPaciente, p.nombre, e.nivelesGlucosa, e.clasificacionGlucosa) " +
+            "FROM com.diabetes.business_back.entities.EvaluacionDiabetes e LEFT JOIN e.paciente p " +
+            "WHERE e.fechaEvaluacion IS NOT NULL " +
+            "AND e.fechaEvaluacion <= :fecha AND (e.fechaEvaluacion < :fecha OR (e.fechaEvaluacion = :fecha AND e.idEvaluacion < :id)) " +
+            "ORDER BY e.fechaEvaluacion DESC, e.idEvaluacion DESC")
+    List<EvaluacionResumenDto> listarResumenesDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable limite);
+
+    @Query("SELECT new com.diabetes.business_back.dtos.EvaluacionResumenDto(e.idEvaluacion, e.fechaEvaluacion, e.tipoDiabetesPredicho, e.probabilidad, p.idPaciente, p.codigoPaciente, p.nombre, e.nivelesGlucosa, e.clasificacionGlucosa) " +
+            "FROM com.diabetes.business_back.entities.EvaluacionDiabetes e LEFT JOIN e.paciente p " +
+            "WHERE e.fechaEvaluacion IS NOT NULL AND e.tipoDiabetesPredicho = :tipo " +
+            "ORDER BY e.fechaEvaluacion DESC, e.idEvaluacion DESC")
+    List<EvaluacionResumenDto> listarResumenesPorTipo(@Param("tipo") String tipo, Pageable limite);
+
+    @Query("SELECT new com.diabetes.business_back.dtos.EvaluacionResumenDto(e.idEvaluacion, e.fechaEvaluacion, e.tipoDiabetesPredicho, e.probabilidad, p.idPaciente, p.codigoPaciente, p.nombre, e.nivelesGlucosa, e.clasificacionGlucosa) " +
+            "FROM com.diabetes.business_back.entities.EvaluacionDiabetes e LEFT JOIN e.paciente p " +
+            "WHERE e.fechaEvaluacion IS NOT NULL AND e.tipoDiabetesPredicho = :tipo " +
+            "AND e.fechaEvaluacion <= :fecha AND (e.fechaEvaluacion < :fecha OR (e.fechaEvaluacion = :fecha AND e.idEvaluacion < :id)) " +
+            "ORDER BY e.fechaEvaluacion DESC, e.idEvaluacion DESC")
+    List<EvaluacionResumenDto> listarResumenesPorTipoDespuesDe(@Param("tipo") String tipo, @Param("fecha") LocalDateTime fecha,
+                                                               @Param("id") Long id, Pageable limite);
 }
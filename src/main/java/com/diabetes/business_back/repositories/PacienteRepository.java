@@ -1,11 +1,21 @@
 package com.diabetes.business_back.repositories;
 
+import com.diabetes.business_back.dtos.PacienteResumenDto;
 import com.diabetes.business_back.entities.Paciente;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface PacienteRepository extends JpaRepository<Paciente, Long> {
     Paciente findByCodigoPaciente(String codigoPaciente);
     Paciente findByEmail(String email);
+
+    @Query("SELECT new com.diabetes.business_back.dtos.PacienteResumenDto(p.idPaciente, p.codigoPaciente, p.nombre, p.fechaNacimiento, p.genero, p.email) " +
+            "FROM com.diabetes.business_back.entities.Paciente p WHERE p.idPaciente > :id ORDER BY p.idPaciente")
+    List<PacienteResumenDto> listarResumenesDespuesDe(@Param("id") Long id, Pageable limite);
 }
@@ -0,0 +1,13 @@
+package com.diabetes.business_back.repositories;
+
+import com.diabetes.business_back.entities.RangoClinico;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RangoClinicoRepository extends JpaRepository<RangoClinico, Long> {
+    List<RangoClinico> findAllByOrderByOrdenAsc();
+    List<RangoClinico> findByVariableOrderByOrdenAsc(String variable);
+}
@@ -0,0 +1,23 @@
+package com.diabetes.business_back.repositories;
+
+import com.diabetes.business_back.entities.ResumenDiarioEvaluaciones;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ResumenDiarioEvaluacionesRepository extends JpaRepository<ResumenDiarioEvaluaciones, Long> {
+    List<ResumenDiarioEvaluaciones> findByFechaBetweenOrderByFechaAsc(LocalDate desde, LocalDate hasta);
+
+    @Query("SELECT MAX(r.fecha) FROM ResumenDiarioEvaluaciones r")
+    LocalDate obtenerUltimaFechaCompactada();
+
+    @Modifying
+    @Query("DELETE FROM ResumenDiarioEvaluaciones r WHERE r.fecha = :fecha")
+    int eliminarPorFecha(@Param("fecha") LocalDate fecha);
+}
@@ -0,0 +1,9 @@
+package com.diabetes.business_back.repositories;
+
+import com.diabetes.business_back.entities.TextoGenerado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TextoGeneradoRepository extends JpaRepository<TextoGenerado, String> {
+}
@@ -0,0 +1,313 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.FeatureVector;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Agrupa predicciones individuales concurrentes en un solo POST a /predict/batch para que la API Python
+ * pueda vectorizar la inferencia. Un hilo despachador toma la primera solicitud en cola y espera unos
+ * milisegundos (o hasta completar el lote) por más; cada solicitante recibe su resultado por su propia futura.
+ * Cada envío a la API pasa una sola vez por el {@link CircuitBreakerML}, sea de un elemento o de un lote completo.
+ * Si el lote falla por algo que no es de conexión, cada elemento se resuelve por separado y solo falla el que
+ * la API rechace. La cobertura entre réplicas (ml.replicas.cobertura) solo alcanza a los envíos de un elemento;
+ * los lotes van a una sola réplica. El tamaño máximo del lote y la espera se ajustan según la latencia observada de los lotes.
+ */
+@Slf4j
+@Component
+public class AgrupadorPrediccionesML {
+    private static final int[] LIMITES_TAMANO = {1, 2, 4, 8, 16, 32, 64, 128};
+    private static final double[] LIMITES_ESPERA_MS = {0.5, 1, 2, 5, 10, 20, 50};
+
+    @Autowired
+    private PythonMLClient pythonMLClient;
+
+    @Autowired
+    private CircuitBreakerML circuito;
+
+    @Value("${ml.agrupador.enabled:true}")
+    private boolean habilitado;
+
+    @Value("${ml.agrupador.max-lote:64}")
+    private int maxLote;
+
+    @Value("${ml.agrupador.espera-max-ms:5}")
+    private double esperaMaximaMs;
+
+    @Value("${ml.agrupador.latencia-objetivo-ms:100}")
+    private double latenciaObjetivoMs;
+
+    @Value("${ml.agrupador.envios-concurrentes:4}")
+    private int enviosConcurrentes;
+
+    @Value("${ml.python.api.timeout:30000}")
+    private long timeoutMs;
+
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>(10_000);
+    private ThreadPoolExecutor envios;
+    private Thread despachador;
+
+    // Parámetros adaptativos: solo los escribe el hilo que completa un lote, bajo el monitor
+    private volatile int loteActual = 8;
+    private volatile long esperaActualNanos;
+    private double latenciaPromedioMs;
+    private double tamanoPromedio = 1.0;
+
+    private final AtomicLongArray histogramaTamano = new AtomicLongArray(LIMITES_TAMANO.length + 1);
+    private final AtomicLongArray histogramaEspera = new AtomicLongArray(LIMITES_ESPERA_MS.length + 1);
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong solicitudes = new AtomicLong();
+    private final AtomicLong directas = new AtomicLong();
+    private final AtomicLong individualesTrasFallo = new AtomicLong();
+
+    private record Pendiente(FeatureVector features, CompletableFuture<MLPredictionResponseDto> resultado, long encoladoEn) {
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        loteActual = Math.min(loteActual, maxLote);
+        envios = new ThreadPoolExecutor(enviosConcurrentes, enviosConcurrentes, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(enviosConcurrentes), r -> {
+                    Thread hilo = new Thread(r, "ml-agrupador-envio");
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        despachador = new Thread(this::despachar, "ml-agrupador");
+        despachador.setDaemon(true);
+        despachador.start();
+    }
+
+    /**
+     * Predicción individual; si el agrupador está deshabilitado o la cola está llena se llama directo a la API
+     */
+    public MLPredictionResponseDto predecir(FeatureVector features) {
+        if (!habilitado) {
+            return circuito.ejecutar(() -> pythonMLClient.predecirConPython(features));
+        }
+
+        Pendiente pendiente = new Pendiente(features, new CompletableFuture<>(), System.nanoTime());
+        if (!cola.offer(pendiente)) {
+            directas.incrementAndGet();
+            return circuito.ejecutar(() -> pythonMLClient.predecirConPython(features));
+        }
+        solicitudes.incrementAndGet();
+
+        try {
+            return pendiente.resultado().get(timeoutMs * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Predicción interrumpida");
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Tiempo de espera agotado en el lote de predicciones");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        }
+    }
+
+    private void despachar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Pendiente primera = cola.take();
+                List<Pendiente> lote = new ArrayList<>(loteActual);
+                lote.add(primera);
+
+                int limite = loteActual;
+                long fin = System.nanoTime() + esperaActualNanos;
+                while (lote.size() < limite) {
+                    // Primero lo que ya está en cola; luego se espera solo lo que resta de la ventana
+                    Pendiente siguiente = cola.poll();
+                    if (siguiente == null) {
+                        long restante = fin - System.nanoTime();
+                        if (restante <= 0 || (siguiente = cola.poll(restante, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    lote.add(siguiente);
+                }
+
+                long ahora = System.nanoTime();
+                for (Pendiente pendiente : lote) {
+                    registrar(histogramaEspera, LIMITES_ESPERA_MS, (ahora - pendiente.encoladoEn()) / 1_000_000.0);
+                }
+                registrar(histogramaTamano, LIMITES_TAMANO, lote.size());
+                lotes.incrementAndGet();
+
+                envios.execute(() -> enviar(lote));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("❌ Error en el despachador de predicciones agrupadas: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        long inicio = System.nanoTime();
+        try {
+            if (lote.size() == 1) {
+                Pendiente unica = lote.get(0);
+                unica.resultado().complete(circuito.ejecutar(() -> pythonMLClient.predecirConPython(unica.features())));
+                return;
+            }
+
+            List<MLPredictionResponseDto> respuestas;
+            try {
+                respuestas = circuito.ejecutar(() -> pythonMLClient.predecirLoteConPython(
+                        lote.stream().map(Pendiente::features).toList()));
+            } catch (CircuitBreakerML.CircuitoAbiertoException e) {
+                fallarTodas(lote, e);
+                return;
+            } catch (RuntimeException e) {
+                if (esFalloDeConexion(e)) {
+                    // Sin conexión fallarían todas igual; reintentar de a una solo multiplicaría la espera
+                    fallarTodas(lote, e);
+                    return;
+                }
+                // Un elemento inválido puede hacer fallar el lote entero: cada uno se resuelve por separado.
+                // El fallo del lote ya quedó registrado una vez en el circuito.
+                log.warn("⚠️ Falló el lote de {} predicciones, se resolverán de a una: {}", lote.size(), e.getMessage());
+                individualesTrasFallo.addAndGet(lote.size());
+                for (Pendiente pendiente : lote) {
+                    completarIndividual(pendiente, false);
+                }
+                return;
+            }
+
+            for (int i = 0; i < lote.size(); i++) {
+                Pendiente pendiente = lote.get(i);
+                MLPredictionResponseDto respuesta = respuestas != null ? respuestas.get(i) : null;
+                if (respuesta != null && Boolean.TRUE.equals(respuesta.getSuccess()) && respuesta.getPredictedClass() != null) {
+                    pendiente.resultado().complete(respuesta);
+                } else {
+                    // Sin endpoint batch cada elemento es una llamada propia y cuenta en el circuito;
+                    // si el elemento falló dentro de un lote que sí respondió, el lote ya se registró
+                    completarIndividual(pendiente, respuestas == null);
+                }
+            }
+        } catch (Exception e) {
+            fallarTodas(lote, e);
+        } finally {
+            ajustar(lote.size(), (System.nanoTime() - inicio) / 1_000_000.0);
+        }
+    }
+
+    private void completarIndividual(Pendiente pendiente, boolean registrarEnCircuito) {
+        try {
+            pendiente.resultado().complete(registrarEnCircuito
+                    ? circuito.ejecutar(() -> pythonMLClient.predecirConPython(pendiente.features()))
+                    : pythonMLClient.predecirConPython(pendiente.features()));
+        } catch (Exception e) {
+            pendiente.resultado().completeExceptionally(e);
+        }
+    }
+
+    // Solo completa las que siguen pendientes: las ya resueltas conservan su resultado
+    private static void fallarTodas(List<Pendiente> lote, Exception e) {
+        for (Pendiente pendiente : lote) {
+            pendiente.resultado().completeExceptionally(e);
+        }
+    }
+
+    private static boolean esFalloDeConexion(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ResourceAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lote rápido y lleno: se agranda. Lote por encima de la latencia objetivo: se reduce a la mitad.
+     * La espera es una fracción de la latencia promedio, y cero cuando casi no hay concurrencia.
+     */
+    private synchronized void ajustar(int tamano, double latenciaMs) {
+        latenciaPromedioMs = latenciaPromedioMs == 0 ? latenciaMs : 0.8 * latenciaPromedioMs + 0.2 * latenciaMs;
+        tamanoPromedio = 0.9 * tamanoPromedio + 0.1 * tamano;
+
+        if (latenciaMs > latenciaObjetivoMs) {
+            loteActual = Math.max(1, loteActual / 2);
+        } else if (tamano >= loteActual) {
+            loteActual = Math.min(maxLote, loteActual + Math.max(1, loteActual / 4));
+        }
+
+        double esperaMs = tamanoPromedio < 1.2 ? 0 : Math.min(esperaMaximaMs, latenciaPromedioMs * 0.1);
+        esperaActualNanos = (long) (esperaMs * 1_000_000);
+    }
+
+    private static void registrar(AtomicLongArray histograma, double[] limites, double valor) {
+        int i = 0;
+        while (i < limites.length && valor > limites[i]) {
+            i++;
+        }
+        histograma.incrementAndGet(i);
+    }
+
+    private static void registrar(AtomicLongArray histograma, int[] limites, int valor) {
+        int i = 0;
+        while (i < limites.length && valor > limites[i]) {
+            i++;
+        }
+        histograma.incrementAndGet(i);
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("solicitudes", solicitudes.get());
+        estadisticas.put("lotes", lotes.get());
+        estadisticas.put("directas", directas.get());
+        estadisticas.put("individualesTrasFallo", individualesTrasFallo.get());
+        estadisticas.put("enCola", cola.size());
+        estadisticas.put("loteMaximoActual", loteActual);
+        estadisticas.put("esperaActualMs", esperaActualNanos / 1_000_000.0);
+        estadisticas.put("latenciaPromedioLoteMs", latenciaPromedioMs);
+        estadisticas.put("tamanoPromedioLote", tamanoPromedio);
+
+        Map<String, Long> tamanos = new LinkedHashMap<>();
+        for (int i = 0; i < LIMITES_TAMANO.length; i++) {
+            tamanos.put("<=" + LIMITES_TAMANO[i], histogramaTamano.get(i));
+        }
+        tamanos.put(">" + LIMITES_TAMANO[LIMITES_TAMANO.length - 1], histogramaTamano.get(LIMITES_TAMANO.length));
+        estadisticas.put("histogramaTamanoLote", tamanos);
+
+        Map<String, Long> esperas = new LinkedHashMap<>();
+        for (int i = 0; i < LIMITES_ESPERA_MS.length; i++) {
+            esperas.put("<=" + LIMITES_ESPERA_MS[i] + "ms", histogramaEspera.get(i));
+        }
+        esperas.put(">" + LIMITES_ESPERA_MS[LIMITES_ESPERA_MS.length - 1] + "ms", histogramaEspera.get(LIMITES_ESPERA_MS.length));
+        estadisticas.put("histogramaEspera", esperas);
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (despachador != null) {
+            despachador.interrupt();
+        }
+        if (envios != null) {
+            envios.shutdown();
+        }
+        // Las solicitudes que quedaron en cola no deben esperar hasta el timeout
+        Pendiente pendiente;
+        while ((pendiente = cola.poll()) != null) {
+            pendiente.resultado().completeExceptionally(new RuntimeException("El servicio de predicción se está deteniendo"));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.EvaluacionDiabetesDetalle;
+import com.diabetes.business_back.entities.TextoGenerado;
+import com.diabetes.business_back.repositories.TextoGeneradoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Almacén direccionado por contenido de los textos generados (explicación y recomendaciones). Cada texto
+ * distinto se guarda una vez, comprimido, con su SHA-256 como clave; los detalles de evaluación solo guardan
+ * la clave. Los textos más usados quedan en una LRU acotada, así que guardar un texto ya conocido no toca la
+ * base de datos y leerlo tampoco.
+ */
+@Slf4j
+@Component
+public class AlmacenTextosGenerados {
+    private static final String SQL_INSERTAR =
+            "INSERT INTO textos_generados (hash, contenido, longitud, creado_en) VALUES (?, ?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    private static final int TRAMO_CONSULTA = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TextoGeneradoRepository textoRepository;
+
+    @Value("${textos.almacen.cache.max-entradas:2000}")
+    private int maxEntradas;
+
+    // Solo contiene textos que ya están confirmados en la base de datos
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+    private final AtomicLong insertados = new AtomicLong();
+    private final AtomicLong bytesOriginales = new AtomicLong();
+    private final AtomicLong bytesComprimidos = new AtomicLong();
+
+    /**
+     * Guarda los textos que aún no estén en el almacén y devuelve sus claves en el mismo orden (null para null).
+     * Dentro de una transacción los textos nuevos entran a la caché recién al confirmarse.
+     */
+    public List<String> guardar(List<String> textos) {
+        List<String> claves = new ArrayList<>(textos.size());
+        // Ordenados por clave: dos lotes concurrentes con textos en común no se bloquean en orden cruzado
+        SortedMap<String, String> nuevos = new TreeMap<>();
+        for (String texto : textos) {
+            if (texto == null) {
+                claves.add(null);
+                continue;
+            }
+            String clave = calcularHash(texto);
+            claves.add(clave);
+            if (!enCache(clave)) {
+                nuevos.putIfAbsent(clave, texto);
+            }
+        }
+        if (!nuevos.isEmpty()) {
+            insertar(nuevos);
+        }
+        return claves;
+    }
+
+    /**
+     * Guarda explicación y recomendaciones de cada detalle y les asigna sus claves
+     */
+    public void guardarTextos(List<EvaluacionDiabetesDetalle> detalles) {
+        List<String> textos = new ArrayList<>(detalles.size() * 2);
+        for (EvaluacionDiabetesDetalle detalle : detalles) {
+            textos.add(detalle.getExplicacion());
+            textos.add(detalle.getRecomendaciones());
+        }
+        List<String> claves = guardar(textos);
+        for (int i = 0; i < detalles.size(); i++) {
+            detalles.get(i).setHashExplicacion(claves.get(2 * i));
+            detalles.get(i).setHashRecomendaciones(claves.get(2 * i + 1));
+        }
+    }
+
+    public String obtener(String clave) {
+        if (clave == null) {
+            return null;
+        }
+        String texto = buscarEnCache(clave);
+        if (texto != null) {
+            aciertos.incrementAndGet();
+            return texto;
+        }
+        fallos.incrementAndGet();
+        texto = textoRepository.findById(clave).map(t -> descomprimir(t.getContenido())).orElse(null);
+        if (texto == null) {
+            log.warn("⚠️ Texto generado {} no encontrado en el almacén", clave);
+            return null;
+        }
+        guardarEnCache(clave, texto);
+        return texto;
+    }
+
+    /**
+     * Completa explicación y recomendaciones de los detalles; lo que no está en caché se trae en una sola consulta
+     */
+    public void resolverTextos(Collection<EvaluacionDiabetesDetalle> detalles) {
+        Map<String, String> encontrados = new HashMap<>();
+        Set<String> faltantes = new HashSet<>();
+        for (EvaluacionDiabetesDetalle detalle : detalles) {
+            for (String clave : new String[]{detalle.getHashExplicacion(), detalle.getHashRecomendaciones()}) {
+                if (clave == null || encontrados.containsKey(clave) || faltantes.contains(clave)) {
+                    continue;
+                }
+                String texto = buscarEnCache(clave);
+                if (texto != null) {
+                    aciertos.incrementAndGet();
+                    encontrados.put(clave, texto);
+                } else {
+                    fallos.incrementAndGet();
+                    faltantes.add(clave);
+                }
+            }
+        }
+
+        // Por tramos para no exceder el límite de parámetros de la consulta IN en listados grandes
+        List<String> pendientes = new ArrayList<>(faltantes);
+        for (int inicio = 0; inicio < pendientes.size(); inicio += TRAMO_CONSULTA) {
+            List<String> tramo = pendientes.subList(inicio, Math.min(inicio + TRAMO_CONSULTA, pendientes.size()));
+            for (TextoGenerado texto : textoRepository.findAllById(tramo)) {
+                String contenido = descomprimir(texto.getContenido());
+                encontrados.put(texto.getHash(), contenido);
+                guardarEnCache(texto.getHash(), contenido);
+            }
+        }
+
+        for (EvaluacionDiabetesDetalle detalle : detalles) {
+            detalle.setExplicacion(detalle.getHashExplicacion() != null ? encontrados.get(detalle.getHashExplicacion()) : null);
+            detalle.setRecomendaciones(detalle.getHashRecomendaciones() != null ? encontrados.get(detalle.getHashRecomendaciones()) : null);
+        }
+    }
+
+    /**
+     * Lee y descomprime los textos directamente de la base, sin consultar ni llenar la caché. Sirve para
+     * verificar lo que quedó guardado antes de eliminar los originales.
+     */
+    public Map<String, String> leerSinCache(Collection<String> claves) {
+        Map<String, String> textos = new HashMap<>();
+        List<String> pendientes = new ArrayList<>(claves);
+        for (int inicio = 0; inicio < pendientes.size(); inicio += TRAMO_CONSULTA) {
+            List<String> tramo = pendientes.subList(inicio, Math.min(inicio + TRAMO_CONSULTA, pendientes.size()));
+            for (TextoGenerado texto : textoRepository.findAllById(tramo)) {
+                textos.put(texto.getHash(), descomprimir(texto.getContenido()));
+            }
+        }
+        return textos;
+    }
+
+    public static String calcularHash(String texto) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private void insertar(SortedMap<String, String> nuevos) {
+        List<Comprimido> filas = new ArrayList<>(nuevos.size());
+        long originales = 0;
+        long enBytes = 0;
+        for (Map.Entry<String, String> nuevo : nuevos.entrySet()) {
+            Comprimido fila = new Comprimido(nuevo.getKey(), comprimir(nuevo.getValue()), nuevo.getValue().length());
+            filas.add(fila);
+            originales += nuevo.getValue().getBytes(StandardCharsets.UTF_8).length;
+            enBytes += fila.contenido().length;
+        }
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        int[][] resultados = jdbcTemplate.batchUpdate(SQL_INSERTAR, filas, filas.size(), (ps, fila) -> {
+            ps.setString(1, fila.clave());
+            ps.setBytes(2, fila.contenido());
+            ps.setInt(3, fila.longitud());
+            ps.setTimestamp(4, ahora);
+        });
+        insertados.addAndGet(Arrays.stream(resultados).flatMapToInt(Arrays::stream).filter(n -> n > 0).count());
+        bytesOriginales.addAndGet(originales);
+        bytesComprimidos.addAndGet(enBytes);
+
+        // Si la transacción se revierte los textos no existen: no deben quedar en caché
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    nuevos.forEach(AlmacenTextosGenerados.this::guardarEnCache);
+                }
+            });
+        } else {
+            nuevos.forEach(this::guardarEnCache);
+        }
+    }
+
+    private static byte[] comprimir(String texto) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(texto.length() / 3 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(texto.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private static String descomprimir(byte[] contenido) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(contenido))) {
+            return new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean enCache(String clave) {
+        synchronized (cache) {
+            return cache.containsKey(clave);
+        }
+    }
+
+    private String buscarEnCache(String clave) {
+        synchronized (cache) {
+            return cache.get(clave);
+        }
+    }
+
+    private void guardarEnCache(String clave, String texto) {
+        synchronized (cache) {
+            cache.put(clave, texto);
+            Iterator<String> it = cache.values().iterator();
+            while (cache.size() > maxEntradas && it.hasNext()) {
+                it.next();
+                it.remove();
+                expulsiones.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+        long originales = bytesOriginales.get();
+
+        synchronized (cache) {
+            estadisticas.put("entradasCache", cache.size());
+        }
+        estadisticas.put("maxEntradas", maxEntradas);
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("expulsiones", expulsiones.get());
+        estadisticas.put("tasaAciertos", totalAciertos + totalFallos > 0
+                ? (double) totalAciertos / (totalAciertos + totalFallos) : 0.0);
+        estadisticas.put("textosInsertados", insertados.get());
+        estadisticas.put("bytesOriginales", originales);
+        estadisticas.put("bytesComprimidos", bytesComprimidos.get());
+        estadisticas.put("razonCompresion", originales > 0 ? (double) bytesComprimidos.get() / originales : 0.0);
+        return estadisticas;
+    }
+
+    private record Comprimido(String clave, byte[] contenido, int longitud) {
+    }
+}
@@ -0,0 +1,330 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.PuntoControlEstadisticas;
+import com.diabetes.business_back.estadistica.ResumenBiomarcadores;
+import com.diabetes.business_back.repositories.EvaluacionDiabetesRepository;
+import com.diabetes.business_back.repositories.PuntoControlEstadisticasRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distribuciones de biomarcadores por tipo de diabetes calculadas de forma incremental.
+ * Sigue la tabla de evaluaciones por clave primaria (marca de agua) en lugar de engancharse a cada guardado,
+ * porque la escritura diferida inserta por JDBC sin conocer los IDs generados; así cada evaluación se cuenta
+ * exactamente una vez venga por donde venga. Los IDs saltados se vigilan un tiempo por si pertenecían a
+ * transacciones que confirmaron tarde. El estado se guarda en un punto de control periódico.
+ * <p>
+ * Limitación: solo suma. Una evaluación modificada o borrada después de procesarse sigue contada con sus valores
+ * originales. Las modificaciones y bajas hechas por el servicio de evaluaciones se cuentan en
+ * {@code modificadasSinReflejar} (también las de los pacientes eliminados y las de las particiones vencidas)
+ * para saber cuándo conviene reconstruir; /api/analitica/biomarcadores/reconstruir recalcula desde cero.
+ */
+@Slf4j
+@Component
+public class AnaliticaBiomarcadores {
+    private static final String PUNTO_CONTROL = "biomarcadores";
+    private static final String SIN_TIPO = "Sin tipo";
+    private static final String TODOS = "todos";
+    private static final String LIMITACION = "Las distribuciones solo suman evaluaciones nuevas: las modificaciones y " +
+            "bajas posteriores no se reflejan hasta reconstruir (POST /api/analitica/biomarcadores/reconstruir)";
+
+    // Un salto mayor no se vigila: suele ser un bloque de IDs descartado por la secuencia
+    private static final int MAX_HUECO_VIGILADO = 1000;
+
+    @Autowired
+    private EvaluacionDiabetesRepository evaluacionrepository;
+
+    @Autowired
+    private PuntoControlEstadisticasRepository puntoControlRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${analitica.biomarcadores.enabled:true}")
+    private boolean habilitada;
+
+    @Value("${analitica.biomarcadores.tamano-pagina:5000}")
+    private int tamanoPagina;
+
+    @Value("${analitica.biomarcadores.max-paginas-por-ciclo:20}")
+    private int maxPaginasPorCiclo;
+
+    @Value("${analitica.biomarcadores.huecos-expiracion-ms:300000}")
+    private long expiracionHuecosMs;
+
+    @Value("${analitica.biomarcadores.intervalos-histograma:20}")
+    private int intervalosHistograma;
+
+    // Protegido por el monitor de this
+    private Map<String, ResumenBiomarcadores> porTipo = new HashMap<>();
+    private long marcaAgua;
+    private Map<Long, Long> huecos = new HashMap<>();
+    private boolean cambiosSinGuardar;
+    private long modificadasSinReflejar;
+    // Cambia con cada reconstrucción: una página o búsqueda de huecos leída antes se descarta
+    private long generacion;
+
+    private final AtomicLong procesadas = new AtomicLong();
+    private final AtomicLong recuperadasDeHuecos = new AtomicLong();
+    private volatile LocalDateTime ultimoPuntoControl;
+
+    public record EstadoPersistido(Map<String, ResumenBiomarcadores> porTipo, long marcaAgua, Map<Long, Long> huecos,
+                                   long modificadasSinReflejar) {
+    }
+
+    @PostConstruct
+    public void cargarPuntoControl() {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            Optional<PuntoControlEstadisticas> punto = puntoControlRepository.findById(PUNTO_CONTROL);
+            if (punto.isPresent()) {
+                EstadoPersistido estado = objectMapper.readValue(punto.get().getEstado(), EstadoPersistido.class);
+                synchronized (this) {
+                    porTipo = new HashMap<>(estado.porTipo());
+                    marcaAgua = estado.marcaAgua();
+                    huecos = new HashMap<>(estado.huecos());
+                    modificadasSinReflejar = estado.modificadasSinReflejar();
+                }
+                ultimoPuntoControl = punto.get().getActualizadoEn();
+                log.info("📊 Analítica de biomarcadores restaurada hasta la evaluación {}", marcaAgua);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Punto de control de biomarcadores ilegible, se recalculará desde cero: {}", e.getMessage());
+            synchronized (this) {
+                porTipo = new HashMap<>();
+                marcaAgua = 0;
+                huecos = new HashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Procesa las evaluaciones nuevas desde la marca de agua. Acota las páginas por ciclo para no acaparar
+     * el hilo de tareas programadas durante la carga inicial de una tabla grande.
+     */
+    @Scheduled(fixedDelayString = "${analitica.biomarcadores.intervalo-ms:5000}")
+    public void procesarNuevas() {
+        if (!habilitada) {
+            return;
+        }
+        try {
+            revisarHuecos();
+            for (int pagina = 0; pagina < maxPaginasPorCiclo; pagina++) {
+                long desde;
+                long generacionLeida;
+                synchronized (this) {
+                    desde = marcaAgua;
+                    generacionLeida = generacion;
+                }
+                List<Object[]> filas = evaluacionrepository.listarBiomarcadoresDesde(desde, PageRequest.of(0, tamanoPagina));
+                if (filas.isEmpty() || !aplicarPagina(filas, generacionLeida)) {
+                    break;
+                }
+                if (filas.size() < tamanoPagina) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Error al actualizar la analítica de biomarcadores: {}", e.getMessage());
+        }
+    }
+
+    private synchronized boolean aplicarPagina(List<Object[]> filas, long generacionLeida) {
+        if (generacionLeida != generacion) {
+            // Se reconstruyó durante la consulta: la página sigue a la marca de agua anterior
+            return false;
+        }
+        long ahora = System.currentTimeMillis();
+        for (Object[] fila : filas) {
+            long id = ((Number) fila[0]).longValue();
+            if (id <= marcaAgua) {
+                continue;
+            }
+            long salto = id - marcaAgua - 1;
+            if (marcaAgua > 0 && salto > 0 && salto <= MAX_HUECO_VIGILADO) {
+                for (long faltante = marcaAgua + 1; faltante < id; faltante++) {
+                    huecos.put(faltante, ahora);
+                }
+            }
+            aplicar(fila);
+            marcaAgua = id;
+        }
+        cambiosSinGuardar = true;
+        return true;
+    }
+
+    private void revisarHuecos() {
+        Set<Long> pendientes;
+        long generacionLeida;
+        synchronized (this) {
+            generacionLeida = generacion;
+            long limite = System.currentTimeMillis() - expiracionHuecosMs;
+            huecos.values().removeIf(detectado -> detectado < limite);
+            if (huecos.isEmpty()) {
+                return;
+            }
+            pendientes = new HashSet<>(huecos.keySet());
+        }
+
+        List<Object[]> encontradas = evaluacionrepository.listarBiomarcadoresPorIds(pendientes);
+        if (encontradas.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (generacionLeida != generacion) {
+                return;
+            }
+            for (Object[] fila : encontradas) {
+                // Si no sigue en huecos es que ya se procesó o expiró mientras corría la consulta
+                if (huecos.remove(((Number) fila[0]).longValue()) != null) {
+                    aplicar(fila);
+                    recuperadasDeHuecos.incrementAndGet();
+                }
+            }
+            cambiosSinGuardar = true;
+        }
+    }
+
+    // fila: id, tipo, glucosa, insulina, imc, presion, colesterol
+    private void aplicar(Object[] fila) {
+        String tipo = fila[1] != null ? (String) fila[1] : SIN_TIPO;
+        Double[] valores = new Double[ResumenBiomarcadores.BIOMARCADORES.size()];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = fila[i + 2] != null ? ((Number) fila[i + 2]).doubleValue() : null;
+        }
+        porTipo.computeIfAbsent(tipo, t -> new ResumenBiomarcadores()).agregar(valores);
+        procesadas.incrementAndGet();
+    }
+
+    /**
+     * Avisa que la evaluación se modificó o se borró. Si ya estaba procesada sus valores originales quedan en las
+     * distribuciones y se cuenta como pendiente de reflejar; si aún no, el próximo ciclo lee los valores vigentes.
+     */
+    public void registrarModificacion(Long id) {
+        TrasConfirmacion.ejecutar(() -> aplicarModificacion(id));
+    }
+
+    private synchronized void aplicarModificacion(Long id) {
+        if (habilitada && id != null && id <= marcaAgua && !huecos.containsKey(id)) {
+            modificadasSinReflejar++;
+            cambiosSinGuardar = true;
+        }
+    }
+
+    /**
+     * Avisa que se quitaron evaluaciones en bloque (retención de particiones). Son meses ya procesados, así que
+     * todas se cuentan como pendientes de reflejar.
+     */
+    public void registrarBajas(long cantidad) {
+        if (cantidad > 0) {
+            TrasConfirmacion.ejecutar(() -> aplicarBajas(cantidad));
+        }
+    }
+
+    private synchronized void aplicarBajas(long cantidad) {
+        if (habilitada) {
+            modificadasSinReflejar += cantidad;
+            cambiosSinGuardar = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analitica.biomarcadores.punto-control-ms:60000}")
+    public void guardarPuntoControlPeriodico() {
+        if (habilitada) {
+            guardarPuntoControl();
+        }
+    }
+
+    @PreDestroy
+    public void guardarPuntoControl() {
+        String estado;
+        long marca;
+        synchronized (this) {
+            if (!cambiosSinGuardar) {
+                return;
+            }
+            try {
+                estado = objectMapper.writeValueAsString(new EstadoPersistido(porTipo, marcaAgua, huecos, modificadasSinReflejar));
+            } catch (Exception e) {
+                log.error("❌ No se pudo serializar la analítica de biomarcadores: {}", e.getMessage());
+                return;
+            }
+            marca = marcaAgua;
+            cambiosSinGuardar = false;
+        }
+
+        try {
+            LocalDateTime ahora = LocalDateTime.now();
+            puntoControlRepository.save(new PuntoControlEstadisticas(PUNTO_CONTROL, estado, marca, ahora));
+            ultimoPuntoControl = ahora;
+            log.debug("💾 Punto de control de biomarcadores guardado hasta la evaluación {}", marca);
+        } catch (Exception e) {
+            synchronized (this) {
+                cambiosSinGuardar = true;
+            }
+            log.warn("⚠️ No se pudo guardar el punto de control de biomarcadores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Descarta el estado acumulado; el próximo ciclo vuelve a recorrer la tabla desde el principio
+     */
+    public synchronized void reconstruir() {
+        porTipo = new HashMap<>();
+        marcaAgua = 0;
+        huecos = new HashMap<>();
+        modificadasSinReflejar = 0;
+        generacion++;
+        cambiosSinGuardar = true;
+        log.info("🔄 Analítica de biomarcadores reiniciada, se recalculará desde la primera evaluación");
+    }
+
+    /**
+     * Resultados por tipo predicho (o solo del tipo indicado) y el agregado de todos los tipos
+     */
+    public synchronized Map<String, Object> obtenerDistribuciones(String tipo) {
+        Map<String, Object> tipos = new TreeMap<>();
+        ResumenBiomarcadores todos = new ResumenBiomarcadores();
+        porTipo.forEach((nombre, resumen) -> {
+            if (tipo == null || tipo.equals(nombre)) {
+                tipos.put(nombre, resumen.aMapa(intervalosHistograma));
+            }
+            todos.combinar(resumen);
+        });
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("tipos", tipos);
+        if (tipo == null) {
+            resultado.put(TODOS, todos.aMapa(intervalosHistograma));
+        }
+        resultado.put("estado", obtenerEstadisticas());
+        resultado.put("limitacion", LIMITACION);
+        return resultado;
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("habilitada", habilitada);
+        estadisticas.put("marcaAgua", marcaAgua);
+        estadisticas.put("huecosVigilados", huecos.size());
+        estadisticas.put("procesadas", procesadas.get());
+        estadisticas.put("recuperadasDeHuecos", recuperadasDeHuecos.get());
+        estadisticas.put("modificadasSinReflejar", modificadasSinReflejar);
+        estadisticas.put("cambiosSinGuardar", cambiosSinGuardar);
+        estadisticas.put("ultimoPuntoControl", ultimoPuntoControl);
+        return estadisticas;
+    }
+}
@@ -0,0 +1,362 @@
+package com.diabetes.business_back.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Réplicas de la API Python configuradas en ml.python.api.url (separadas por coma).
+ * Cada llamada va a la réplica sana con menos solicitudes en curso. Una réplica se expulsa tras varios
+ * fallos seguidos o cuando la sonda de salud no la ve; vuelve cuando la sonda la ve de nuevo o vence la expulsión.
+ * Opcionalmente las predicciones individuales se cubren: si la primera réplica no respondió dentro del
+ * percentil configurado de latencia, se envía una copia a otra réplica y se usa la primera respuesta.
+ * Los lotes no se cubren: su latencia crece con el tamaño y el percentil de las individuales no les sirve de umbral.
+ */
+@Slf4j
+@Component
+public class BalanceadorReplicasML {
+    private static final int MUESTRAS_LATENCIA = 512;
+    private static final int RECALCULO_PERCENTIL = 64;
+
+    @Value("${ml.python.api.url:http://localhost:5000}")
+    private String urlsConfiguradas;
+
+    @Value("${ml.replicas.fallos-expulsion:3}")
+    private int fallosParaExpulsar;
+
+    @Value("${ml.replicas.expulsion-ms:30000}")
+    private long expulsionMs;
+
+    @Value("${ml.replicas.cobertura.enabled:false}")
+    private boolean coberturaHabilitada;
+
+    @Value("${ml.replicas.cobertura.percentil:0.95}")
+    private double percentilCobertura;
+
+    @Value("${ml.replicas.cobertura.min-ms:20}")
+    private long minimoCoberturaMs;
+
+    @Value("${ml.replicas.cobertura.hilos:32}")
+    private int hilosCobertura;
+
+    private List<Replica> replicas = List.of();
+    private ThreadPoolExecutor executorCobertura;
+
+    // Latencias recientes de predicciones exitosas (ms), para el percentil de cobertura
+    private final long[] latencias = new long[MUESTRAS_LATENCIA];
+    private int posicionLatencia;
+    private int muestrasLatencia;
+    private volatile long umbralCoberturaMs = Long.MAX_VALUE;
+
+    private final AtomicLong coberturasEnviadas = new AtomicLong();
+    private final AtomicLong coberturasGanadoras = new AtomicLong();
+
+    @PostConstruct
+    public void inicializar() {
+        List<Replica> configuradas = new ArrayList<>();
+        for (String url : urlsConfiguradas.split(",")) {
+            String limpia = url.trim();
+            if (limpia.endsWith("/")) {
+                limpia = limpia.substring(0, limpia.length() - 1);
+            }
+            if (!limpia.isEmpty()) {
+                configuradas.add(new Replica(limpia));
+            }
+        }
+        if (configuradas.isEmpty()) {
+            throw new IllegalStateException("ml.python.api.url no contiene ninguna URL");
+        }
+        replicas = List.copyOf(configuradas);
+
+        executorCobertura = new ThreadPoolExecutor(hilosCobertura, hilosCobertura, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread hilo = new Thread(r, "ml-cobertura");
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        executorCobertura.allowCoreThreadTimeOut(true);
+
+        log.info("🔀 API Python con {} réplica(s): {}", replicas.size(),
+                replicas.stream().map(Replica::getUrl).toList());
+    }
+
+    public List<String> getUrls() {
+        return replicas.stream().map(Replica::getUrl).toList();
+    }
+
+    /**
+     * Ejecuta la llamada contra la réplica elegida. {@code llamada} recibe la URL base de la réplica.
+     */
+    public <T> T ejecutar(Function<String, T> llamada) {
+        return ejecutarEn(seleccionar(null), llamada, false);
+    }
+
+    /**
+     * Como {@link #ejecutar}, pero con solicitud de cobertura si está habilitada y hay otra réplica sana.
+     * Solo debe usarse con llamadas idempotentes.
+     */
+    public <T> T ejecutarConCobertura(Function<String, T> llamada) {
+        long umbral = umbralCoberturaMs;
+        if (!coberturaHabilitada || umbral == Long.MAX_VALUE || replicasSanas() < 2) {
+            return ejecutarEn(seleccionar(null), llamada, true);
+        }
+
+        Replica primaria = seleccionar(null);
+        CompletableFuture<T> primera;
+        try {
+            primera = CompletableFuture.supplyAsync(() -> ejecutarEn(primaria, llamada, true), executorCobertura);
+        } catch (RejectedExecutionException e) {
+            return ejecutarEn(primaria, llamada, true);
+        }
+
+        try {
+            return primera.get(Math.max(umbral, minimoCoberturaMs), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // La primaria está en la cola de latencia: se envía una copia y gana la primera respuesta exitosa
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Predicción interrumpida");
+        } catch (ExecutionException e) {
+            throw desenvolver(e);
+        }
+
+        Replica secundaria = seleccionar(primaria);
+        if (secundaria == primaria) {
+            return esperar(primera);
+        }
+
+        CompletableFuture<T> segunda;
+        try {
+            segunda = CompletableFuture.supplyAsync(() -> ejecutarEn(secundaria, llamada, true), executorCobertura);
+        } catch (RejectedExecutionException e) {
+            return esperar(primera);
+        }
+        coberturasEnviadas.incrementAndGet();
+
+        CompletableFuture<T> ganadora = new CompletableFuture<>();
+        AtomicInteger fallidas = new AtomicInteger();
+        primera.whenComplete((resultado, error) -> completar(ganadora, resultado, error, fallidas, false));
+        segunda.whenComplete((resultado, error) -> completar(ganadora, resultado, error, fallidas, true));
+        return esperar(ganadora);
+    }
+
+    private <T> void completar(CompletableFuture<T> ganadora, T resultado, Throwable error,
+                               AtomicInteger fallidas, boolean esCobertura) {
+        if (error == null) {
+            if (ganadora.complete(resultado) && esCobertura) {
+                coberturasGanadoras.incrementAndGet();
+            }
+        } else if (fallidas.incrementAndGet() == 2) {
+            ganadora.completeExceptionally(error);
+        }
+    }
+
+    private <T> T esperar(CompletableFuture<T> futura) {
+        try {
+            return futura.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Predicción interrumpida");
+        } catch (ExecutionException e) {
+            throw desenvolver(e);
+        }
+    }
+
+    private RuntimeException desenvolver(ExecutionException e) {
+        Throwable causa = e.getCause();
+        while (causa instanceof CompletionException && causa.getCause() != null) {
+            causa = causa.getCause();
+        }
+        return causa instanceof RuntimeException runtime ? runtime : new RuntimeException(causa);
+    }
+
+    private <T> T ejecutarEn(Replica replica, Function<String, T> llamada, boolean medirLatencia) {
+        replica.enCurso.incrementAndGet();
+        long inicio = System.nanoTime();
+        try {
+            T resultado = llamada.apply(replica.url);
+            replica.registrarExito();
+            if (medirLatencia) {
+                registrarLatencia((System.nanoTime() - inicio) / 1_000_000);
+            }
+            return resultado;
+        } catch (HttpClientErrorException e) {
+            // Un 4xx es un error de la solicitud, no de la réplica
+            replica.registrarExito();
+            throw e;
+        } catch (RuntimeException e) {
+            replica.registrarFallo();
+            throw e;
+        } finally {
+            replica.enCurso.decrementAndGet();
+        }
+    }
+
+    /**
+     * Réplica sana con menos solicitudes en curso, distinta de {@code excluir} si es posible.
+     * Los empates se rompen desde una posición aleatoria para no cargar siempre la primera.
+     */
+    private Replica seleccionar(Replica excluir) {
+        int n = replicas.size();
+        int desde = n > 1 ? ThreadLocalRandom.current().nextInt(n) : 0;
+        long ahora = System.currentTimeMillis();
+        Replica mejor = null;
+        Replica mejorExpulsada = null;
+
+        for (int i = 0; i < n; i++) {
+            Replica candidata = replicas.get((desde + i) % n);
+            if (candidata == excluir) {
+                continue;
+            }
+            if (candidata.estaDisponible(ahora)) {
+                if (mejor == null || candidata.enCurso.get() < mejor.enCurso.get()) {
+                    mejor = candidata;
+                }
+            } else if (mejorExpulsada == null || candidata.enCurso.get() < mejorExpulsada.enCurso.get()) {
+                mejorExpulsada = candidata;
+            }
+        }
+
+        if (mejor != null) {
+            return mejor;
+        }
+        // Sin réplicas sanas se intenta igual (el circuit breaker decide si cortar el tráfico)
+        if (excluir != null) {
+            return excluir;
+        }
+        return mejorExpulsada;
+    }
+
+    private int replicasSanas() {
+        long ahora = System.currentTimeMillis();
+        int sanas = 0;
+        for (Replica replica : replicas) {
+            if (replica.estaDisponible(ahora)) {
+                sanas++;
+            }
+        }
+        return sanas;
+    }
+
+    private synchronized void registrarLatencia(long ms) {
+        latencias[posicionLatencia] = ms;
+        posicionLatencia = (posicionLatencia + 1) % latencias.length;
+        if (muestrasLatencia < latencias.length) {
+            muestrasLatencia++;
+        }
+        if (muestrasLatencia >= RECALCULO_PERCENTIL && posicionLatencia % RECALCULO_PERCENTIL == 0) {
+            long[] ordenadas = Arrays.copyOf(latencias, muestrasLatencia);
+            Arrays.sort(ordenadas);
+            umbralCoberturaMs = ordenadas[(int) Math.min(ordenadas.length - 1, Math.floor(percentilCobertura * ordenadas.length))];
+        }
+    }
+
+    /**
+     * Resultado de la sonda de salud para una réplica: la readmite o la expulsa hasta la próxima sonda exitosa
+     */
+    public void registrarSalud(String url, boolean sana) {
+        for (Replica replica : replicas) {
+            if (replica.url.equals(url)) {
+                replica.registrarSalud(sana);
+            }
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        long ahora = System.currentTimeMillis();
+
+        List<Map<String, Object>> detalle = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("url", replica.url);
+            datos.put("disponible", replica.estaDisponible(ahora));
+            datos.put("enCurso", replica.enCurso.get());
+            datos.put("llamadas", replica.llamadas.get());
+            datos.put("fallos", replica.fallos.get());
+            datos.put("fallosConsecutivos", replica.fallosConsecutivos.get());
+            datos.put("expulsadaDesde", replica.expulsadaDesde);
+            detalle.add(datos);
+        }
+
+        estadisticas.put("replicas", detalle);
+        estadisticas.put("replicasSanas", replicasSanas());
+        estadisticas.put("coberturaHabilitada", coberturaHabilitada);
+        estadisticas.put("percentilCobertura", percentilCobertura);
+        estadisticas.put("umbralCoberturaMs", umbralCoberturaMs == Long.MAX_VALUE ? null : umbralCoberturaMs);
+        estadisticas.put("coberturasEnviadas", coberturasEnviadas.get());
+        estadisticas.put("coberturasGanadoras", coberturasGanadoras.get());
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (executorCobertura != null) {
+            executorCobertura.shutdownNow();
+        }
+    }
+
+    private final class Replica {
+        private final String url;
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private final AtomicLong llamadas = new AtomicLong();
+        private final AtomicLong fallos = new AtomicLong();
+        private final AtomicInteger fallosConsecutivos = new AtomicInteger();
+        private volatile long expulsadaHasta;
+        private volatile LocalDateTime expulsadaDesde;
+
+        Replica(String url) {
+            this.url = url;
+        }
+
+        String getUrl() {
+            return url;
+        }
+
+        boolean estaDisponible(long ahora) {
+            return ahora >= expulsadaHasta;
+        }
+
+        void registrarExito() {
+            llamadas.incrementAndGet();
+            fallosConsecutivos.set(0);
+        }
+
+        void registrarFallo() {
+            llamadas.incrementAndGet();
+            fallos.incrementAndGet();
+            if (fallosConsecutivos.incrementAndGet() >= fallosParaExpulsar && estaDisponible(System.currentTimeMillis())) {
+                expulsar(System.currentTimeMillis() + expulsionMs, fallosConsecutivos.get() + " fallos seguidos");
+            }
+        }
+
+        void registrarSalud(boolean sana) {
+            if (sana) {
+                if (expulsadaHasta != 0) {
+                    log.info("✅ Réplica ML {} readmitida", url);
+                }
+                expulsadaHasta = 0;
+                expulsadaDesde = null;
+                fallosConsecutivos.set(0);
+            } else if (expulsadaHasta != Long.MAX_VALUE) {
+                expulsar(Long.MAX_VALUE, "no responde a la sonda de salud");
+            }
+        }
+
+        private void expulsar(long hasta, String motivo) {
+            expulsadaHasta = hasta;
+            expulsadaDesde = LocalDateTime.now();
+            log.warn("🚫 Réplica ML {} expulsada: {}", url, motivo);
+        }
+    }
+}
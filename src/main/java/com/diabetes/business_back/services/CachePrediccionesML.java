@@ -0,0 +1,236 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.FeatureVector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché acotada (LRU + TTL) de predicciones del modelo, indexada por el vector de características normalizado
+ * (su equals/hashCode compara los valores primitivos y códigos de diccionario, sin serializar).
+ * Las solicitudes concurrentes con las mismas características se agrupan en una única llamada en curso.
+ * El DTO de respuesta es mutable: la caché guarda su propia copia y entrega una copia nueva en cada acierto,
+ * así un llamador que modifique su respuesta no altera la de los demás.
+ */
+@Slf4j
+@Component
+public class CachePrediccionesML {
+
+    @Value("${ml.cache.enabled:true}")
+    private boolean habilitada;
+
+    @Value("${ml.cache.max-entradas:10000}")
+    private int maxEntradas;
+
+    @Value("${ml.cache.ttl-segundos:600}")
+    private long ttlSegundos;
+
+    // LinkedHashMap en orden de acceso: el primer elemento es el menos usado recientemente
+    private final LinkedHashMap<FeatureVector, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private final ConcurrentHashMap<FeatureVector, CompletableFuture<MLPredictionResponseDto>> enCurso = new ConcurrentHashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+    private final AtomicLong agrupadas = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong descartadasPorInvalidacion = new AtomicLong();
+
+    // Cambia con cada invalidación; solo se modifica dentro del monitor de entradas
+    private long generacion;
+
+    private volatile String versionModelo;
+
+    /**
+     * Devuelve la predicción en caché para las características o ejecuta el cálculo una sola vez,
+     * aunque lleguen varias solicitudes idénticas al mismo tiempo. Solo se guardan respuestas exitosas.
+     */
+    public MLPredictionResponseDto obtenerOCalcular(FeatureVector clave, Supplier<MLPredictionResponseDto> calculo) {
+        if (!habilitada) {
+            return calculo.get();
+        }
+
+        MLPredictionResponseDto enCache = buscar(clave);
+        if (enCache != null) {
+            aciertos.incrementAndGet();
+            return copiar(enCache);
+        }
+        fallos.incrementAndGet();
+
+        CompletableFuture<MLPredictionResponseDto> nueva = new CompletableFuture<>();
+        CompletableFuture<MLPredictionResponseDto> existente = enCurso.putIfAbsent(clave, nueva);
+        if (existente != null) {
+            agrupadas.incrementAndGet();
+            return copiar(esperar(existente));
+        }
+
+        long generacionInicial;
+        synchronized (entradas) {
+            generacionInicial = generacion;
+        }
+        try {
+            MLPredictionResponseDto resultado = calculo.get();
+            // La copia compartida (caché y solicitudes agrupadas) nunca se entrega tal cual
+            MLPredictionResponseDto compartida = copiar(resultado);
+            if (resultado != null && Boolean.TRUE.equals(resultado.getSuccess()) && resultado.getPredictedClass() != null) {
+                guardar(clave, compartida, generacionInicial);
+            }
+            nueva.complete(compartida);
+            return resultado;
+        } catch (RuntimeException e) {
+            nueva.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, nueva);
+        }
+    }
+
+    /**
+     * Compara la versión del modelo reportada por la API y vacía la caché si cambió.
+     */
+    public void actualizarVersionModelo(Map<String, Object> infoModelo) {
+        if (infoModelo == null) {
+            return;
+        }
+
+        Object version = infoModelo.get("model_version");
+        if (version == null) version = infoModelo.get("version");
+        if (version == null) version = infoModelo.get("modelVersion");
+        if (version == null) {
+            return;
+        }
+
+        String nuevaVersion = version.toString();
+        String anterior = versionModelo;
+        versionModelo = nuevaVersion;
+
+        if (anterior != null && !anterior.equals(nuevaVersion)) {
+            log.info("🔄 Versión del modelo cambió ({} -> {}). Invalidando caché de predicciones", anterior, nuevaVersion);
+            invalidar();
+        }
+    }
+
+    public void invalidar() {
+        synchronized (entradas) {
+            entradas.clear();
+            generacion++;
+        }
+        invalidaciones.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${ml.cache.purga-ms:60000}")
+    public void purgarExpiradas() {
+        long ahora = System.currentTimeMillis();
+        int purgadas = 0;
+
+        synchronized (entradas) {
+            Iterator<Entrada> it = entradas.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expiraEn <= ahora) {
+                    it.remove();
+                    purgadas++;
+                }
+            }
+        }
+
+        if (purgadas > 0) {
+            expulsiones.addAndGet(purgadas);
+            log.debug("🧹 {} predicciones expiradas eliminadas de la caché", purgadas);
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+
+        synchronized (entradas) {
+            estadisticas.put("entradas", entradas.size());
+        }
+        estadisticas.put("habilitada", habilitada);
+        estadisticas.put("maxEntradas", maxEntradas);
+        estadisticas.put("ttlSegundos", ttlSegundos);
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("expulsiones", expulsiones.get());
+        estadisticas.put("agrupadas", agrupadas.get());
+        estadisticas.put("invalidaciones", invalidaciones.get());
+        estadisticas.put("descartadasPorInvalidacion", descartadasPorInvalidacion.get());
+        estadisticas.put("enCurso", enCurso.size());
+        estadisticas.put("versionModelo", versionModelo);
+        estadisticas.put("tasaAciertos", totalAciertos + totalFallos > 0
+                ? (double) totalAciertos / (totalAciertos + totalFallos) : 0.0);
+        return estadisticas;
+    }
+
+    private MLPredictionResponseDto buscar(FeatureVector clave) {
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada == null) {
+                return null;
+            }
+            if (entrada.expiraEn <= System.currentTimeMillis()) {
+                entradas.remove(clave);
+                expulsiones.incrementAndGet();
+                return null;
+            }
+            return entrada.respuesta;
+        }
+    }
+
+    private void guardar(FeatureVector clave, MLPredictionResponseDto respuesta, long generacionInicial) {
+        long expiraEn = System.currentTimeMillis() + ttlSegundos * 1000;
+
+        synchronized (entradas) {
+            if (generacion != generacionInicial) {
+                // La caché se invalidó mientras se calculaba: la respuesta puede ser del modelo anterior
+                descartadasPorInvalidacion.incrementAndGet();
+                return;
+            }
+            entradas.put(clave, new Entrada(respuesta, expiraEn));
+            Iterator<Entrada> it = entradas.values().iterator();
+            while (entradas.size() > maxEntradas && it.hasNext()) {
+                it.next();
+                it.remove();
+                expulsiones.incrementAndGet();
+            }
+        }
+    }
+
+    private MLPredictionResponseDto esperar(CompletableFuture<MLPredictionResponseDto> futura) {
+        try {
+            return futura.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private static MLPredictionResponseDto copiar(MLPredictionResponseDto original) {
+        if (original == null) {
+            return null;
+        }
+        return new MLPredictionResponseDto(
+                original.getPredictedClass(),
+                original.getPredictedClassEs(),
+                original.getProbability(),
+                original.getProbabilities() != null ? new HashMap<>(original.getProbabilities()) : null,
+                original.getFeatureImportance() != null ? new HashMap<>(original.getFeatureImportance()) : null,
+                original.getSuccess(),
+                original.getMessage());
+    }
+
+    private record Entrada(MLPredictionResponseDto respuesta, long expiraEn) {
+    }
+}
@@ -0,0 +1,250 @@
+package com.diabetes.business_back.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker para las llamadas a la API Python.
+ * CERRADO: las llamadas pasan y se registra su resultado en una ventana deslizante de las últimas N.
+ * ABIERTO: se rechazan de inmediato hasta que termina la espera (o la sonda de salud ve la API de nuevo).
+ * SEMIABIERTO: se dejan pasar unas pocas llamadas de prueba; si todas salen bien se cierra, si una falla se reabre.
+ * Solo cuentan como fallo los errores de disponibilidad (5xx, timeouts, E/S); un 4xx o un error de validación
+ * es un problema del pedido y se relanza sin registrarse.
+ */
+@Slf4j
+@Component
+public class CircuitBreakerML {
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private static final int RECHAZADA = 0;
+    private static final int NORMAL = 1;
+    private static final int PRUEBA = 2;
+
+    @Value("${ml.circuito.ventana:20}")
+    private int ventana;
+
+    @Value("${ml.circuito.minimo-llamadas:10}")
+    private int minimoLlamadas;
+
+    @Value("${ml.circuito.umbral-fallos:0.5}")
+    private double umbralFallos;
+
+    @Value("${ml.circuito.espera-ms:30000}")
+    private long esperaMs;
+
+    @Value("${ml.circuito.pruebas-semiabierto:3}")
+    private int pruebasSemiabierto;
+
+    private volatile Estado estado = Estado.CERRADO;
+    private volatile long abiertoHasta;
+
+    // Ventana circular de resultados (true = fallo); solo se toca dentro de bloques sincronizados
+    private boolean[] resultados;
+    private int posicion;
+    private int registrados;
+    private int fallosEnVentana;
+    private int pruebasEnCurso;
+    private int exitosPrueba;
+    private String motivoApertura;
+    private LocalDateTime ultimoCambio = LocalDateTime.now();
+
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong aperturas = new AtomicLong();
+    private final AtomicLong ignoradas = new AtomicLong();
+
+    @PostConstruct
+    public void inicializar() {
+        resultados = new boolean[Math.max(1, ventana)];
+    }
+
+    public static class CircuitoAbiertoException extends RuntimeException {
+        public CircuitoAbiertoException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Lectura sin bloqueo: false mientras el circuito está abierto y no terminó la espera
+     */
+    public boolean permiteTrafico() {
+        return estado != Estado.ABIERTO || System.currentTimeMillis() >= abiertoHasta;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Ejecuta la llamada si el circuito lo permite y registra su resultado.
+     * Si no lo permite lanza {@link CircuitoAbiertoException} sin tocar la red.
+     */
+    public <T> T ejecutar(Supplier<T> llamada) {
+        int permiso = adquirirPermiso();
+        if (permiso == RECHAZADA) {
+            rechazadas.incrementAndGet();
+            throw new CircuitoAbiertoException("Circuito abierto: la API Python se considera no disponible");
+        }
+
+        T resultado;
+        try {
+            resultado = llamada.get();
+        } catch (RuntimeException e) {
+            if (esFalloDeDisponibilidad(e)) {
+                registrar(false, permiso == PRUEBA);
+            } else {
+                liberarPrueba(permiso == PRUEBA);
+                ignoradas.incrementAndGet();
+            }
+            throw e;
+        }
+        registrar(true, permiso == PRUEBA);
+        return resultado;
+    }
+
+    /**
+     * Recorre la cadena de causas (el cliente envuelve los errores de RestTemplate): 5xx, timeouts y errores de
+     * E/S indican que la API no está sana; un 4xx u otra excepción es un problema del pedido.
+     */
+    static boolean esFalloDeDisponibilidad(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof HttpStatusCodeException http) {
+                return http.getStatusCode().is5xxServerError();
+            }
+            if (causa instanceof ResourceAccessException || causa instanceof IOException
+                    || causa instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abre el circuito sin esperar a que fallen solicitudes (la sonda detectó la API caída)
+     */
+    public synchronized void abrir(String motivo) {
+        if (estado != Estado.ABIERTO) {
+            transicion(Estado.ABIERTO, motivo);
+        }
+    }
+
+    /**
+     * Termina la espera del circuito abierto: la siguiente solicitud pasa como prueba
+     */
+    public synchronized void adelantarPrueba() {
+        if (estado == Estado.ABIERTO) {
+            abiertoHasta = 0;
+        }
+    }
+
+    private int adquirirPermiso() {
+        if (estado == Estado.CERRADO) {
+            return NORMAL;
+        }
+        synchronized (this) {
+            if (estado == Estado.ABIERTO) {
+                if (System.currentTimeMillis() < abiertoHasta) {
+                    return RECHAZADA;
+                }
+                transicion(Estado.SEMIABIERTO, null);
+            }
+            if (estado == Estado.SEMIABIERTO) {
+                if (pruebasEnCurso >= pruebasSemiabierto) {
+                    return RECHAZADA;
+                }
+                pruebasEnCurso++;
+                return PRUEBA;
+            }
+            return NORMAL;
+        }
+    }
+
+    // Una prueba que terminó con un error del pedido no decide nada: solo devuelve su lugar
+    private synchronized void liberarPrueba(boolean prueba) {
+        if (prueba && pruebasEnCurso > 0) {
+            pruebasEnCurso--;
+        }
+    }
+
+    private synchronized void registrar(boolean exito, boolean prueba) {
+        if (prueba && pruebasEnCurso > 0) {
+            pruebasEnCurso--;
+        }
+
+        switch (estado) {
+            case SEMIABIERTO -> {
+                if (!exito) {
+                    transicion(Estado.ABIERTO, "falló una llamada de prueba");
+                } else if (prueba && ++exitosPrueba >= pruebasSemiabierto) {
+                    transicion(Estado.CERRADO, null);
+                }
+            }
+            case CERRADO -> {
+                if (registrados == resultados.length) {
+                    fallosEnVentana -= resultados[posicion] ? 1 : 0;
+                } else {
+                    registrados++;
+                }
+                resultados[posicion] = !exito;
+                fallosEnVentana += exito ? 0 : 1;
+                posicion = (posicion + 1) % resultados.length;
+
+                if (registrados >= minimoLlamadas && (double) fallosEnVentana / registrados >= umbralFallos) {
+                    transicion(Estado.ABIERTO, String.format("%d de las últimas %d llamadas fallaron",
+                            fallosEnVentana, registrados));
+                }
+            }
+            case ABIERTO -> {
+                // Resultado de una llamada iniciada antes de abrir: no cambia nada
+            }
+        }
+    }
+
+    private void transicion(Estado nuevo, String motivo) {
+        Estado anterior = estado;
+        posicion = 0;
+        registrados = 0;
+        fallosEnVentana = 0;
+        pruebasEnCurso = 0;
+        exitosPrueba = 0;
+        ultimoCambio = LocalDateTime.now();
+
+        if (nuevo == Estado.ABIERTO) {
+            abiertoHasta = System.currentTimeMillis() + esperaMs;
+            motivoApertura = motivo;
+            aperturas.incrementAndGet();
+            log.warn("🔌 Circuito ML {} → ABIERTO ({}). Se reintentará en {} ms", anterior, motivo, esperaMs);
+        } else {
+            log.info("🔌 Circuito ML {} → {}", anterior, nuevo);
+        }
+        estado = nuevo;
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("estado", estado);
+        estadisticas.put("ultimoCambio", ultimoCambio);
+        estadisticas.put("motivoApertura", motivoApertura);
+        estadisticas.put("msParaPrueba", estado == Estado.ABIERTO
+                ? Math.max(0, abiertoHasta - System.currentTimeMillis()) : 0);
+        estadisticas.put("llamadasEnVentana", registrados);
+        estadisticas.put("fallosEnVentana", fallosEnVentana);
+        estadisticas.put("tasaFallos", registrados > 0 ? (double) fallosEnVentana / registrados : 0.0);
+        estadisticas.put("umbralFallos", umbralFallos);
+        estadisticas.put("aperturas", aperturas.get());
+        estadisticas.put("rechazadas", rechazadas.get());
+        estadisticas.put("erroresNoContados", ignoradas.get());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,65 @@
+package com.diabetes.business_back.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Codifica la posición de un listado por cursor (keyset) como texto opaco en base64 url-safe.
+ * El contenido es la clave de orden de la última fila entregada: "fecha|id" o solo "id".
+ */
+public final class CursorPaginacion {
+    private static final String SEPARADOR = "|";
+
+    private CursorPaginacion() {
+    }
+
+    public record PosicionFechaId(LocalDateTime fecha, long id) {
+    }
+
+    public static String codificar(LocalDateTime fecha, Long id) {
+        return aBase64(fecha + SEPARADOR + id);
+    }
+
+    public static String codificar(Long id) {
+        return aBase64(String.valueOf(id));
+    }
+
+    public static PosicionFechaId decodificarFechaId(String cursor) {
+        String texto = deBase64(cursor);
+        int separador = texto.lastIndexOf(SEPARADOR);
+        try {
+            return new PosicionFechaId(LocalDateTime.parse(texto.substring(0, separador)),
+                    Long.parseLong(texto.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw cursorInvalido();
+        }
+    }
+
+    public static long decodificarId(String cursor) {
+        try {
+            return Long.parseLong(deBase64(cursor));
+        } catch (NumberFormatException e) {
+            throw cursorInvalido();
+        }
+    }
+
+    private static String aBase64(String texto) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String deBase64(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw cursorInvalido();
+        }
+    }
+
+    private static ResponseStatusException cursorInvalido() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor de paginación inválido");
+    }
+}
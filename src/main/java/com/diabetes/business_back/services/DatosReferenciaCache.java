@@ -0,0 +1,146 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.GuiaCampo;
+import com.diabetes.business_back.entities.TipoDiabetesInfo;
+import com.diabetes.business_back.repositories.GuiaCampoRepository;
+import com.diabetes.business_back.repositories.TipoDiabetesInfoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Copias en memoria de los datos de referencia (tipos de diabetes y guías de campos), indexadas por
+ * id, nombreEn y nombreCampo. Cada instantánea es inmutable y se reemplaza completa cuando
+ * TipoDiabetesInfoService o GuiaCampoService escriben, así la ruta de predicción no consulta la BD.
+ * Las entidades guardadas son copias desacopladas de JPA y no deben modificarse.
+ */
+@Slf4j
+@Component
+public class DatosReferenciaCache {
+    @Autowired
+    private TipoDiabetesInfoRepository tipodiabetesrepository;
+
+    @Autowired
+    private GuiaCampoRepository guiacamporepository;
+
+    private volatile Instantanea<TipoDiabetesInfo> tipos;
+    private volatile Instantanea<GuiaCampo> guias;
+
+    // ===== Tipos de diabetes =====
+
+    public List<TipoDiabetesInfo> getTipos() {
+        return instantaneaTipos().todos();
+    }
+
+    public TipoDiabetesInfo tipoPorId(Long id) {
+        return instantaneaTipos().porId().get(id);
+    }
+
+    public TipoDiabetesInfo tipoPorNombreEn(String nombreEn) {
+        return nombreEn != null ? instantaneaTipos().porClave().get(nombreEn) : null;
+    }
+
+    public Set<String> nombresEnTipos() {
+        return instantaneaTipos().porClave().keySet();
+    }
+
+    public void recargarTipos() {
+        List<TipoDiabetesInfo> copias = tipodiabetesrepository.findAll().stream()
+                .map(DatosReferenciaCache::copiar)
+                .toList();
+        tipos = Instantanea.de(copias, TipoDiabetesInfo::getIdTipoDiabetes, TipoDiabetesInfo::getNombreEn);
+        log.info("📚 Datos de referencia: {} tipos de diabetes en memoria", copias.size());
+    }
+
+    // ===== Guías de campos =====
+
+    public List<GuiaCampo> getGuias() {
+        return instantaneaGuias().todos();
+    }
+
+    public GuiaCampo guiaPorId(Long id) {
+        return instantaneaGuias().porId().get(id);
+    }
+
+    public GuiaCampo guiaPorNombreCampo(String nombreCampo) {
+        return nombreCampo != null ? instantaneaGuias().porClave().get(nombreCampo) : null;
+    }
+
+    public void recargarGuias() {
+        List<GuiaCampo> copias = guiacamporepository.findAll().stream()
+                .map(DatosReferenciaCache::copiar)
+                .toList();
+        guias = Instantanea.de(copias, GuiaCampo::getIdGuia, GuiaCampo::getNombreCampo);
+        log.info("📚 Datos de referencia: {} guías de campos en memoria", copias.size());
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        Instantanea<TipoDiabetesInfo> tiposActuales = tipos;
+        Instantanea<GuiaCampo> guiasActuales = guias;
+
+        estadisticas.put("tipos", tiposActuales != null ? tiposActuales.todos().size() : null);
+        estadisticas.put("tiposCargadosEn", tiposActuales != null ? tiposActuales.cargadoEn() : null);
+        estadisticas.put("guias", guiasActuales != null ? guiasActuales.todos().size() : null);
+        estadisticas.put("guiasCargadasEn", guiasActuales != null ? guiasActuales.cargadoEn() : null);
+        return estadisticas;
+    }
+
+    // La primera lectura carga la instantánea; después solo se reemplaza desde los servicios de escritura
+    private Instantanea<TipoDiabetesInfo> instantaneaTipos() {
+        Instantanea<TipoDiabetesInfo> actual = tipos;
+        if (actual == null) {
+            synchronized (this) {
+                if (tipos == null) {
+                    recargarTipos();
+                }
+                actual = tipos;
+            }
+        }
+        return actual;
+    }
+
+    private Instantanea<GuiaCampo> instantaneaGuias() {
+        Instantanea<GuiaCampo> actual = guias;
+        if (actual == null) {
+            synchronized (this) {
+                if (guias == null) {
+                    recargarGuias();
+                }
+                actual = guias;
+            }
+        }
+        return actual;
+    }
+
+    private static TipoDiabetesInfo copiar(TipoDiabetesInfo tipo) {
+        return new TipoDiabetesInfo(tipo.getIdTipoDiabetes(), tipo.getNombreEn(), tipo.getNombreEs(),
+                tipo.getDescripcion(), tipo.getCausas(), tipo.getSintomas(), tipo.getTratamiento(),
+                tipo.getRecomendaciones(), tipo.getEsComun());
+    }
+
+    private static GuiaCampo copiar(GuiaCampo guia) {
+        return new GuiaCampo(guia.getIdGuia(), guia.getNombreCampo(), guia.getTituloEs(), guia.getDescripcionEs(),
+                guia.getEjemplos(), guia.getRangoRecomendado(), guia.getUnidadMedida());
+    }
+
+    private record Instantanea<T>(List<T> todos, Map<Long, T> porId, Map<String, T> porClave, LocalDateTime cargadoEn) {
+
+        static <T> Instantanea<T> de(List<T> elementos, Function<T, Long> id, Function<T, String> clave) {
+            Map<Long, T> porId = new HashMap<>();
+            Map<String, T> porClave = new HashMap<>();
+            for (T elemento : elementos) {
+                porId.put(id.apply(elemento), elemento);
+                if (clave.apply(elemento) != null) {
+                    porClave.put(clave.apply(elemento), elemento);
+                }
+            }
+            return new Instantanea<>(List.copyOf(elementos), Map.copyOf(porId),
+                    Map.copyOf(porClave), LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.diabetes.business_back.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta el trabajo de predicción en el pool "mlExecutor" y traduce la saturación del pool a un 503,
+ * de modo que el hilo HTTP queda libre mientras el modelo responde.
+ */
+@Slf4j
+@Component
+public class EjecutorPredicciones {
+    @Autowired
+    @Qualifier("mlExecutor")
+    private ThreadPoolTaskExecutor mlExecutor;
+
+    private final AtomicLong aceptadas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> tarea) {
+        try {
+            CompletableFuture<T> futura = CompletableFuture.supplyAsync(tarea, mlExecutor);
+            aceptadas.incrementAndGet();
+            return futura;
+        } catch (TaskRejectedException e) {
+            rechazadas.incrementAndGet();
+            log.warn("🚧 Pool de predicciones saturado ({} activas, {} en cola). Solicitud rechazada",
+                    mlExecutor.getActiveCount(), mlExecutor.getThreadPoolExecutor().getQueue().size());
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "El servicio de predicción está saturado. Intente nuevamente en unos segundos"));
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        ThreadPoolExecutor pool = mlExecutor.getThreadPoolExecutor();
+
+        estadisticas.put("hilosMaximos", pool.getMaximumPoolSize());
+        estadisticas.put("hilosActivos", pool.getActiveCount());
+        estadisticas.put("enCola", pool.getQueue().size());
+        estadisticas.put("capacidadRestanteCola", pool.getQueue().remainingCapacity());
+        estadisticas.put("completadas", pool.getCompletedTaskCount());
+        estadisticas.put("aceptadas", aceptadas.get());
+        estadisticas.put("rechazadas", rechazadas.get());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,378 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.EvaluacionDiabetes;
+import com.diabetes.business_back.entities.EvaluacionDiabetesDetalle;
+import com.diabetes.business_back.mappers.EvaluacionDiabetesMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistencia diferida (write-behind) de las evaluaciones generadas por /predecir.
+ * Las evaluaciones se encolan en memoria y un hilo en segundo plano las inserta en lotes JDBC,
+ * sacando la base de datos del camino crítico de la predicción. Opcional (evaluaciones.write-behind.enabled):
+ * la predicción se confirma antes de que la fila exista. Lo que la base rechaza aun fila por fila se archiva
+ * en un NDJSON de evaluaciones fallidas para reprocesarlo.
+ */
+@Slf4j
+@Component
+public class EscrituraDiferidaEvaluaciones {
+
+    // El paciente se resuelve dentro del INSERT: si no existe queda en NULL, igual que el guardado síncrono.
+    // La evaluación y su detalle se insertan en una sola sentencia (CTE con RETURNING), así el lote JDBC
+    // no necesita leer las claves generadas y nunca queda una evaluación sin detalle.
+    private static final String SQL_INSERTAR = """
+            WITH nueva AS (
+                INSERT INTO evaluaciones_diabetes (
+                    id_paciente, fecha_evaluacion, tipo_diabetes_predicho, probabilidad,
+                    niveles_insulina, edad, indice_masa_corporal, presion_arterial, niveles_colesterol,
+                    circunferencia_cintura, niveles_glucosa, aumento_peso_embarazo, salud_pancreatica, funcion_pulmonar,
+                    evaluaciones_neurologicas, niveles_enzimas_digestivas, peso_nacimiento, clasificacion_presion,
+                    clasificacion_colesterol, clasificacion_insulina, clasificacion_glucosa, clasificacion_enzimas,
+                    clasificacion_edad
+                ) VALUES (
+                    (SELECT p.id_paciente FROM pacientes p WHERE p.id_paciente = ?), ?, ?, ?,
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,
+                    ?, ?, ?, ?, ?, ?
+                )
+                RETURNING id_evaluacion
+            )
+            INSERT INTO evaluaciones_diabetes_detalle (
+                id_evaluacion, explicacion_hash, recomendaciones_hash,
+                marcadores_geneticos, autoanticuerpos, antecedentes_familiares, factores_ambientales, etnicidad,
+                habitos_alimenticios, prueba_tolerancia_glucosa, pruebas_funcion_hepatica, diagnostico_fibrosis_quistica,
+                uso_esteroides, pruebas_geneticas, historial_embarazos, diabetes_gestacional_previa, historial_pcos,
+                estado_tabaquismo, sintomas_inicio_temprano, factores_socioeconomicos, consumo_alcohol, actividad_fisica,
+                prueba_orina
+            )
+            SELECT nueva.id_evaluacion, ?, ?,
+                   ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
+            FROM nueva
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AlmacenTextosGenerados almacenTextos;
+
+    @Autowired
+    private EstadisticasEvaluaciones estadisticasEvaluaciones;
+
+    @Autowired
+    private TendenciasEvaluaciones tendencias;
+
+    @Autowired
+    private EvaluacionDiabetesMapper evaluacionMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${evaluaciones.write-behind.enabled:false}")
+    private boolean habilitada;
+
+    @Value("${evaluaciones.write-behind.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${evaluaciones.write-behind.tamano-lote:200}")
+    private int tamanoLote;
+
+    @Value("${evaluaciones.write-behind.intervalo-ms:200}")
+    private long intervaloMs;
+
+    @Value("${evaluaciones.write-behind.espera-encolado-ms:50}")
+    private long esperaEncoladoMs;
+
+    // Evaluaciones que no se pudieron insertar ni fila por fila, una por línea (NDJSON) para reprocesarlas
+    @Value("${evaluaciones.write-behind.archivo-fallidas:escritura-diferida-fallidas.ndjson}")
+    private String archivoFallidas;
+
+    private BlockingQueue<Pendiente> cola;
+    private Thread escritor;
+    private volatile boolean activo;
+    // encolar toma la lectura y detener la escritura: una vez cerrada la cola no entra nada que nadie vaya a vaciar
+    private final ReadWriteLock cierre = new ReentrantReadWriteLock();
+
+    private final AtomicLong encoladas = new AtomicLong();
+    private final AtomicLong escritas = new AtomicLong();
+    private final AtomicLong fallidas = new AtomicLong();
+    private final AtomicLong archivadas = new AtomicLong();
+    private final AtomicLong rechazadas = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong duracionTotalMs = new AtomicLong();
+    private volatile long ultimaDuracionMs;
+    private volatile long maxDuracionMs;
+
+    @PostConstruct
+    void iniciar() {
+        if (!habilitada) {
+            log.info("💾 Escritura diferida de evaluaciones deshabilitada");
+            return;
+        }
+
+        cola = new ArrayBlockingQueue<>(capacidad);
+        activo = true;
+        escritor = new Thread(this::procesarCola, "escritura-diferida-evaluaciones");
+        escritor.start();
+        log.info("💾 Escritura diferida de evaluaciones activa (capacidad {}, lotes de {})", capacidad, tamanoLote);
+    }
+
+    /**
+     * Encola la evaluación para guardarla en segundo plano.
+     * Si la cola está llena tras la espera configurada devuelve false y el llamador debe guardarla de forma síncrona.
+     */
+    public boolean encolar(EvaluacionDiabetes evaluacion, EvaluacionDiabetesDetalle detalle, Long idPaciente) {
+        if (!habilitada) {
+            return false;
+        }
+
+        cierre.readLock().lock();
+        try {
+            if (!activo) {
+                return false;
+            }
+            if (cola.offer(new Pendiente(evaluacion, detalle, idPaciente), esperaEncoladoMs, TimeUnit.MILLISECONDS)) {
+                encoladas.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cierre.readLock().unlock();
+        }
+
+        rechazadas.incrementAndGet();
+        log.warn("⚠️ Cola de escritura diferida llena ({}), guardando de forma síncrona", cola.size());
+        return false;
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    private void procesarCola() {
+        List<Pendiente> lote = new ArrayList<>(tamanoLote);
+
+        while (activo || !cola.isEmpty()) {
+            try {
+                Pendiente primera = cola.poll(intervaloMs, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                cola.drainTo(lote, tamanoLote - 1);
+                escribirLote(lote);
+            } catch (InterruptedException e) {
+                // Se revisa la condición del bucle: al apagar se vacía lo pendiente
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("❌ Error inesperado en escritura diferida: {}", e.getMessage(), e);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLote(List<Pendiente> lote) {
+        long inicio = System.currentTimeMillis();
+
+        try {
+            // Los textos van primero al almacén; el INSERT solo lleva sus claves
+            almacenTextos.guardarTextos(lote.stream().map(Pendiente::detalle).toList());
+            jdbcTemplate.batchUpdate(SQL_INSERTAR, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    asignarParametros(ps, lote.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return lote.size();
+                }
+            });
+            escritas.addAndGet(lote.size());
+            lote.forEach(this::registrarEscrita);
+
+        } catch (Exception e) {
+            log.warn("⚠️ Falló el lote de {} evaluaciones, reintentando una por una: {}", lote.size(), e.getMessage());
+            for (Pendiente pendiente : lote) {
+                try {
+                    almacenTextos.guardarTextos(List.of(pendiente.detalle()));
+                    jdbcTemplate.update(SQL_INSERTAR, ps -> asignarParametros(ps, pendiente));
+                    escritas.incrementAndGet();
+                    registrarEscrita(pendiente);
+                } catch (Exception ex) {
+                    fallidas.incrementAndGet();
+                    log.error("❌ Error al guardar evaluación diferida: {}", ex.getMessage());
+                    archivarFallida(pendiente, ex);
+                }
+            }
+        }
+
+        long duracion = System.currentTimeMillis() - inicio;
+        lotes.incrementAndGet();
+        duracionTotalMs.addAndGet(duracion);
+        ultimaDuracionMs = duracion;
+        if (duracion > maxDuracionMs) {
+            maxDuracionMs = duracion;
+        }
+        log.debug("💾 Lote de {} evaluaciones escrito en {} ms", lote.size(), duracion);
+    }
+
+    // Al cliente ya se le confirmó la evaluación: si la base la rechaza se guarda aparte en lugar de descartarla
+    private synchronized void archivarFallida(Pendiente pendiente, Exception error) {
+        Map<String, Object> registro = new LinkedHashMap<>();
+        registro.put("fecha", LocalDateTime.now());
+        registro.put("error", error.getMessage());
+        registro.put("idPaciente", pendiente.idPaciente());
+        registro.put("evaluacion", evaluacionMapper.aDto(pendiente.evaluacion(), pendiente.detalle()));
+        try {
+            Files.writeString(Path.of(archivoFallidas), objectMapper.writeValueAsString(registro) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            archivadas.incrementAndGet();
+        } catch (IOException e) {
+            // Último recurso: el contenido completo queda en el log
+            log.error("❌ No se pudo archivar la evaluación fallida en {}: {}", archivoFallidas, registro, e);
+        }
+    }
+
+    private void registrarEscrita(Pendiente pendiente) {
+        EvaluacionDiabetes e = pendiente.evaluacion();
+        estadisticasEvaluaciones.registrarAlta(e.getTipoDiabetesPredicho());
+        tendencias.registrar(e.getFechaEvaluacion(), e.getTipoDiabetesPredicho());
+    }
+
+    private void asignarParametros(PreparedStatement ps, Pendiente pendiente) throws SQLException {
+        EvaluacionDiabetes e = pendiente.evaluacion();
+        EvaluacionDiabetesDetalle d = pendiente.detalle();
+        int i = 1;
+
+        ps.setObject(i++, pendiente.idPaciente(), Types.BIGINT);
+        ps.setObject(i++, e.getFechaEvaluacion());
+        ps.setString(i++, e.getTipoDiabetesPredicho());
+        ps.setObject(i++, e.getProbabilidad(), Types.DOUBLE);
+
+        ps.setObject(i++, e.getNivelesInsulina(), Types.DOUBLE);
+        ps.setObject(i++, e.getEdad(), Types.INTEGER);
+        ps.setObject(i++, e.getIndiceMasaCorporal(), Types.DOUBLE);
+        ps.setObject(i++, e.getPresionArterial(), Types.DOUBLE);
+        ps.setObject(i++, e.getNivelesColesterol(), Types.DOUBLE);
+        ps.setObject(i++, e.getCircunferenciaCintura(), Types.DOUBLE);
+        ps.setObject(i++, e.getNivelesGlucosa(), Types.DOUBLE);
+        ps.setObject(i++, e.getAumentoPesoEmbarazo(), Types.DOUBLE);
+        ps.setObject(i++, e.getSaludPancreatica(), Types.DOUBLE);
+        ps.setObject(i++, e.getFuncionPulmonar(), Types.DOUBLE);
+        ps.setObject(i++, e.getEvaluacionesNeurologicas(), Types.DOUBLE);
+        ps.setObject(i++, e.getNivelesEnzimasDigestivas(), Types.DOUBLE);
+        ps.setObject(i++, e.getPesoNacimiento(), Types.DOUBLE);
+
+        ps.setString(i++, e.getClasificacionPresion());
+        ps.setString(i++, e.getClasificacionColesterol());
+        ps.setString(i++, e.getClasificacionInsulina());
+        ps.setString(i++, e.getClasificacionGlucosa());
+        ps.setString(i++, e.getClasificacionEnzimas());
+        ps.setString(i++, e.getClasificacionEdad());
+
+        ps.setString(i++, d.getHashExplicacion());
+        ps.setString(i++, d.getHashRecomendaciones());
+        ps.setString(i++, d.getMarcadoresGeneticos());
+        ps.setString(i++, d.getAutoanticuerpos());
+        ps.setString(i++, d.getAntecedentesFamiliares());
+        ps.setString(i++, d.getFactoresAmbientales());
+        ps.setString(i++, d.getEtnicidad());
+        ps.setString(i++, d.getHabitosAlimenticios());
+        ps.setString(i++, d.getPruebaToleranciaGlucosa());
+        ps.setString(i++, d.getPruebasFuncionHepatica());
+        ps.setString(i++, d.getDiagnosticoFibrosisQuistica());
+        ps.setString(i++, d.getUsoEsteroides());
+        ps.setString(i++, d.getPruebasGeneticas());
+        ps.setString(i++, d.getHistorialEmbarazos());
+        ps.setString(i++, d.getDiabetesGestacionalPrevia());
+        ps.setString(i++, d.getHistorialPcos());
+        ps.setString(i++, d.getEstadoTabaquismo());
+        ps.setString(i++, d.getSintomasInicioTemprano());
+        ps.setString(i++, d.getFactoresSocioeconomicos());
+        ps.setString(i++, d.getConsumoAlcohol());
+        ps.setString(i++, d.getActividadFisica());
+        ps.setString(i, d.getPruebaOrina());
+    }
+
+    @PreDestroy
+    void detener() {
+        if (!habilitada || escritor == null) {
+            return;
+        }
+
+        log.info("💾 Deteniendo escritura diferida, {} evaluaciones pendientes", cola.size());
+        cierre.writeLock().lock();
+        try {
+            activo = false;
+        } finally {
+            cierre.writeLock().unlock();
+        }
+        try {
+            escritor.join(30000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Si el hilo fue interrumpido o no terminó a tiempo, se vacía la cola en este hilo
+        List<Pendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        for (int inicio = 0; inicio < restantes.size(); inicio += tamanoLote) {
+            escribirLote(restantes.subList(inicio, Math.min(inicio + tamanoLote, restantes.size())));
+        }
+        log.info("✅ Escritura diferida detenida. Total escritas: {}", escritas.get());
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long totalLotes = lotes.get();
+
+        estadisticas.put("habilitada", habilitada);
+        estadisticas.put("profundidadCola", cola != null ? cola.size() : 0);
+        estadisticas.put("capacidad", capacidad);
+        estadisticas.put("encoladas", encoladas.get());
+        estadisticas.put("escritas", escritas.get());
+        estadisticas.put("fallidas", fallidas.get());
+        estadisticas.put("archivadas", archivadas.get());
+        estadisticas.put("archivoFallidas", archivoFallidas);
+        estadisticas.put("rechazadasPorCapacidad", rechazadas.get());
+        estadisticas.put("lotes", totalLotes);
+        estadisticas.put("ultimaDuracionLoteMs", ultimaDuracionMs);
+        estadisticas.put("maxDuracionLoteMs", maxDuracionMs);
+        estadisticas.put("promedioDuracionLoteMs", totalLotes > 0 ? (double) duracionTotalMs.get() / totalLotes : 0.0);
+        return estadisticas;
+    }
+
+    private record Pendiente(EvaluacionDiabetes evaluacion, EvaluacionDiabetesDetalle detalle, Long idPaciente) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.GuiaCampo;
+import com.diabetes.business_back.ml.FeatureSchema;
+import com.diabetes.business_back.ml.FeatureVector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Compila una sola vez el esquema de características del modelo a partir de la configuración
+ * de la API Python (/config) y de los ejemplos registrados en las guías de campos.
+ */
+@Slf4j
+@Service
+public class EsquemaCaracteristicasService {
+    @Autowired
+    private DatosReferenciaCache datosReferencia;
+
+    @Autowired
+    private PythonMLClient pythonMLClient;
+
+    @Value("${ml.python.enabled:true}")
+    private boolean mlPythonEnabled;
+
+    private volatile FeatureSchema esquema = FeatureSchema.porDefecto();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compilarAlIniciar() {
+        recompilar();
+    }
+
+    public void recompilar() {
+        try {
+            Map<String, Object> config = mlPythonEnabled ? pythonMLClient.obtenerConfiguracion() : null;
+            if (config == null) {
+                config = Map.of();
+            }
+
+            List<String> numericas = leerLista(config, "numeric_features");
+            List<String> categoricas = leerLista(config, "categorical_features");
+            if (numericas.isEmpty() || categoricas.isEmpty()) {
+                numericas = Arrays.asList(FeatureSchema.NUMERICAS_POR_DEFECTO);
+                categoricas = Arrays.asList(FeatureSchema.CATEGORICAS_POR_DEFECTO);
+            }
+
+            Map<String, Set<String>> valores = new HashMap<>();
+            agregarValoresDeConfiguracion(config, valores);
+            agregarValoresDeGuias(categoricas, valores);
+
+            Object version = config.getOrDefault("schema_version", config.getOrDefault("version", "default"));
+            if (!validarProductor(String.valueOf(version), numericas, categoricas)) {
+                return;
+            }
+            esquema = FeatureSchema.compilar(String.valueOf(version), numericas, categoricas, valores);
+
+            log.info("🧬 Esquema de características compilado (versión {}): {} numéricas, {} categóricas",
+                    esquema.getVersion(), esquema.getCantidadNumericas(), esquema.getCantidadCategoricas());
+
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo compilar el esquema de características, se mantiene el actual: {}", e.getMessage());
+        }
+    }
+
+    public FeatureSchema getEsquema() {
+        return esquema;
+    }
+
+    public FeatureVector nuevoVector() {
+        return esquema.nuevoVector();
+    }
+
+    /**
+     * El vector se arma con las características de {@link FeatureSchema#NUMERICAS_POR_DEFECTO} y
+     * {@link FeatureSchema#CATEGORICAS_POR_DEFECTO}; un esquema que no las incluya todas, con su tipo,
+     * dejaría fallar cada predicción, así que se rechaza y se mantiene el actual.
+     */
+    private boolean validarProductor(String version, List<String> numericas, List<String> categoricas) {
+        List<String> faltantes = new ArrayList<>();
+        for (String nombre : FeatureSchema.NUMERICAS_POR_DEFECTO) {
+            if (!numericas.contains(nombre)) {
+                faltantes.add(nombre);
+            }
+        }
+        for (String nombre : FeatureSchema.CATEGORICAS_POR_DEFECTO) {
+            if (!categoricas.contains(nombre)) {
+                faltantes.add(nombre);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            log.error("❌ El esquema {} no incluye características que envía el backend: {}. Se mantiene el esquema {}",
+                    version, faltantes, esquema.getVersion());
+            return false;
+        }
+
+        Set<String> producidas = new HashSet<>(Arrays.asList(FeatureSchema.NUMERICAS_POR_DEFECTO));
+        producidas.addAll(Arrays.asList(FeatureSchema.CATEGORICAS_POR_DEFECTO));
+        List<String> sinValor = new ArrayList<>();
+        numericas.stream().filter(n -> !producidas.contains(n)).forEach(sinValor::add);
+        categoricas.stream().filter(n -> !producidas.contains(n)).forEach(sinValor::add);
+        if (!sinValor.isEmpty()) {
+            log.warn("⚠️ El esquema {} declara características que el backend no envía y saldrán vacías: {}", version, sinValor);
+        }
+        return true;
+    }
+
+    private void agregarValoresDeConfiguracion(Map<String, Object> config, Map<String, Set<String>> valores) {
+        Object categorias = config.getOrDefault("categorical_values", config.get("categories"));
+        if (!(categorias instanceof Map<?, ?> mapa)) {
+            return;
+        }
+        mapa.forEach((feature, lista) -> {
+            if (lista instanceof Collection<?> coleccion) {
+                Set<String> destino = valores.computeIfAbsent(feature.toString(), k -> new LinkedHashSet<>());
+                coleccion.forEach(v -> destino.add(String.valueOf(v)));
+            }
+        });
+    }
+
+    private void agregarValoresDeGuias(List<String> categoricas, Map<String, Set<String>> valores) {
+        for (GuiaCampo guia : datosReferencia.getGuias()) {
+            if (guia.getEjemplos() == null || !categoricas.contains(guia.getNombreCampo())) {
+                continue;
+            }
+            Set<String> destino = valores.computeIfAbsent(guia.getNombreCampo(), k -> new LinkedHashSet<>());
+            for (String ejemplo : guia.getEjemplos().split(",")) {
+                destino.add(ejemplo.trim());
+            }
+        }
+    }
+
+    private List<String> leerLista(Map<String, Object> config, String clave) {
+        Object valor = config.get(clave);
+        if (valor instanceof Collection<?> coleccion) {
+            return coleccion.stream().map(String::valueOf).toList();
+        }
+        return List.of();
+    }
+}
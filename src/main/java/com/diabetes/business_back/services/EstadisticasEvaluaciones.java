@@ -0,0 +1,235 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.repositories.EvaluacionDiabetesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Conteo de evaluaciones por tipo de diabetes mantenido en memoria. Se reconstruye con un solo GROUP BY al
+ * arrancar, se actualiza en cada alta, cambio de tipo y eliminación, y se reconcilia periódicamente contra
+ * la base de datos por si algo la modificó por fuera de la aplicación. Dentro de una transacción los registros
+ * se aplican recién al confirmarse, así un rollback no deja los contadores movidos.
+ */
+@Slf4j
+@Component
+public class EstadisticasEvaluaciones {
+
+    // Los 12 tipos de diabetes que el modelo puede predecir
+    public static final List<String> TIPOS = List.of(
+            "Steroid-Induced Diabetes",
+            "Prediabetic",
+            "Type 1 Diabetes",
+            "Wolfram Syndrome",
+            "LADA",
+            "Type 2 Diabetes",
+            "Wolcott-Rallison Syndrome",
+            "Secondary Diabetes",
+            "Type 3c Diabetes (Pancreatogenic Diabetes)",
+            "Gestational Diabetes",
+            "Cystic Fibrosis-Related Diabetes (CFRD)",
+            "MODY"
+    );
+
+    // Las evaluaciones sin tipo cuentan en el total pero no tienen entrada propia
+    private static final String SIN_TIPO = "";
+
+    @Autowired
+    private EvaluacionDiabetesRepository evaluacionrepository;
+
+    private final Map<String, LongAdder> conteos = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+
+    // Se incrementa con cada cambio; si varía durante la reconciliación el resultado se descarta.
+    // Los registros comparten el bloqueo de lectura; solo la aplicación del GROUP BY toma el de escritura.
+    private final AtomicLong modificaciones = new AtomicLong();
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private volatile boolean inicializado;
+
+    private final AtomicLong reconciliaciones = new AtomicLong();
+    private final AtomicLong desviacionesCorregidas = new AtomicLong();
+    private volatile LocalDateTime ultimaReconciliacion;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (reconciliar()) {
+            log.info("📊 Estadísticas de evaluaciones cargadas: {} evaluaciones", total.sum());
+        }
+    }
+
+    public void registrarAlta(String tipo) {
+        TrasConfirmacion.ejecutar(() -> aplicarAlta(tipo));
+    }
+
+    public void registrarBaja(String tipo) {
+        TrasConfirmacion.ejecutar(() -> aplicarBaja(tipo));
+    }
+
+    public void registrarCambio(String tipoAnterior, String tipoNuevo) {
+        if (!Objects.equals(tipoAnterior, tipoNuevo)) {
+            TrasConfirmacion.ejecutar(() -> aplicarCambio(tipoAnterior, tipoNuevo));
+        }
+    }
+
+    /**
+     * Bajas en bloque, con la cantidad eliminada de cada tipo
+     */
+    public void registrarBajas(Map<String, Long> cantidadesPorTipo) {
+        if (!cantidadesPorTipo.isEmpty()) {
+            TrasConfirmacion.ejecutar(() -> aplicarBajas(cantidadesPorTipo));
+        }
+    }
+
+    private void aplicarAlta(String tipo) {
+        bloqueo.readLock().lock();
+        try {
+            contador(tipo).increment();
+            total.increment();
+            modificaciones.incrementAndGet();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void aplicarBaja(String tipo) {
+        bloqueo.readLock().lock();
+        try {
+            contador(tipo).decrement();
+            total.decrement();
+            modificaciones.incrementAndGet();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void aplicarBajas(Map<String, Long> cantidadesPorTipo) {
+        bloqueo.readLock().lock();
+        try {
+            cantidadesPorTipo.forEach((tipo, cantidad) -> {
+                contador(tipo).add(-cantidad);
+                total.add(-cantidad);
+            });
+            modificaciones.incrementAndGet();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void aplicarCambio(String tipoAnterior, String tipoNuevo) {
+        bloqueo.readLock().lock();
+        try {
+            contador(tipoAnterior).decrement();
+            contador(tipoNuevo).increment();
+            modificaciones.incrementAndGet();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private LongAdder contador(String tipo) {
+        return conteos.computeIfAbsent(tipo != null ? tipo : SIN_TIPO, t -> new LongAdder());
+    }
+
+    /**
+     * Conteo de cada uno de los 12 tipos más "total"
+     */
+    public Map<String, Long> obtenerConteos() {
+        if (!inicializado) {
+            reconciliar();
+        }
+
+        Map<String, Long> resultado = new HashMap<>();
+        for (String tipo : TIPOS) {
+            LongAdder contador = conteos.get(tipo);
+            resultado.put(tipo, contador != null ? contador.sum() : 0L);
+        }
+        resultado.put("total", total.sum());
+        return resultado;
+    }
+
+    @Scheduled(fixedDelayString = "${evaluaciones.estadisticas.reconciliacion-ms:300000}",
+            initialDelayString = "${evaluaciones.estadisticas.reconciliacion-ms:300000}")
+    public void reconciliarPeriodicamente() {
+        reconciliar();
+    }
+
+    /**
+     * Reemplaza los contadores por el GROUP BY actual. Si hubo escrituras mientras corría la consulta no se
+     * aplica (no se sabe si la consulta las vio) y se deja para la próxima vuelta.
+     */
+    public synchronized boolean reconciliar() {
+        long versionInicial = modificaciones.get();
+        Map<String, Long> enBase = new HashMap<>();
+        long totalEnBase = 0;
+
+        try {
+            for (Object[] fila : evaluacionrepository.contarPorTipo()) {
+                String tipo = fila[0] != null ? (String) fila[0] : SIN_TIPO;
+                long cantidad = ((Number) fila[1]).longValue();
+                enBase.merge(tipo, cantidad, Long::sum);
+                totalEnBase += cantidad;
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudieron contar las evaluaciones por tipo: {}", e.getMessage());
+            return false;
+        }
+
+        long desviacion = 0;
+        bloqueo.writeLock().lock();
+        try {
+            if (modificaciones.get() != versionInicial) {
+                log.debug("📊 Reconciliación pospuesta: hubo escrituras durante la consulta");
+                return false;
+            }
+
+            for (String tipo : new HashSet<>(conteos.keySet())) {
+                if (!enBase.containsKey(tipo)) {
+                    desviacion += Math.abs(ajustar(tipo, 0));
+                }
+            }
+            for (Map.Entry<String, Long> entrada : enBase.entrySet()) {
+                desviacion += Math.abs(ajustar(entrada.getKey(), entrada.getValue()));
+            }
+            total.add(totalEnBase - total.sum());
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+
+        if (inicializado && desviacion > 0) {
+            desviacionesCorregidas.addAndGet(desviacion);
+            log.warn("⚠️ Estadísticas de evaluaciones desviadas en {} respecto de la base de datos, corregidas", desviacion);
+        }
+        inicializado = true;
+        reconciliaciones.incrementAndGet();
+        ultimaReconciliacion = LocalDateTime.now();
+        return true;
+    }
+
+    // Devuelve cuánto hubo que mover el contador para llegar al valor de la base
+    private long ajustar(String tipo, long valor) {
+        LongAdder contador = contador(tipo);
+        long diferencia = valor - contador.sum();
+        contador.add(diferencia);
+        return diferencia;
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("inicializado", inicializado);
+        estadisticas.put("total", total.sum());
+        estadisticas.put("reconciliaciones", reconciliaciones.get());
+        estadisticas.put("desviacionesCorregidas", desviacionesCorregidas.get());
+        estadisticas.put("ultimaReconciliacion", ultimaReconciliacion);
+        return estadisticas;
+    }
+}
@@ -2,19 +2,28 @@ package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.*;
 import com.diabetes.business_back.entities.EvaluacionDiabetes;
+import com.diabetes.business_back.entities.EvaluacionDiabetesDetalle;
 import com.diabetes.business_back.entities.Paciente;
 import com.diabetes.business_back.entities.TipoDiabetesInfo;
+import com.diabetes.business_back.mappers.EvaluacionDiabetesMapper;
 import com.diabetes.business_back.interfaces.IEvaluacionDiabetesService;
+import com.diabetes.business_back.ml.FeatureVector;
+import com.diabetes.business_back.repositories.EvaluacionDiabetesDetalleRepository;
 import com.diabetes.business_back.repositories.EvaluacionDiabetesRepository;
 import com.diabetes.business_back.repositories.PacienteRepository;
-import com.diabetes.business_back.repositories.TipoDiabetesInfoRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
@@ -22,21 +31,64 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
     @Autowired
     private EvaluacionDiabetesRepository evaluacionrepository;
 
+    @Autowired
+    private EvaluacionDiabetesDetalleRepository detallerepository;
+
     @Autowired
     private PacienteRepository pacienterepository;
 
     @Autowired
-    private TipoDiabetesInfoRepository tipodiabetesrepository;
+    private TransactionTemplate transaccion;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private AlmacenTextosGenerados almacenTextos;
+
+    @Autowired
+    private DatosReferenciaCache datosReferencia;
+
+    @Autowired
+    private EvaluacionDiabetesMapper evaluacionMapper;
 
     @Autowired
     private ModeloMLService modeloMLService;
 
+    @Autowired
+    private EscrituraDiferidaEvaluaciones escrituraDiferida;
+
+    @Autowired
+    private EsquemaCaracteristicasService esquemaCaracteristicas;
+
+    @Autowired
+    private MotorReglasClinicas motorReglas;
+
+    @Autowired
+    private RenderizadorTextosEvaluacion renderizadorTextos;
+
+    @Autowired
+    private EjecutorPredicciones ejecutorPredicciones;
+
+    @Autowired
+    private EstadisticasEvaluaciones estadisticasEvaluaciones;
+
+    @Autowired
+    private TendenciasEvaluaciones tendencias;
+
+    @Autowired
+    private AnaliticaBiomarcadores analiticaBiomarcadores;
+
+    @Value("${ml.prediccion.lote.max-items:1000}")
+    private int maxItemsLote;
+
+    @Value("${paginacion.tamano-defecto:50}")
+    private int tamanoPaginaDefecto;
+
+    @Value("${paginacion.tamano-maximo:500}")
+    private int tamanoPaginaMaximo;
+
     @Override
+    @Transactional
     public EvaluacionDiabetesDto grabarEvaluacion(EvaluacionDiabetesDto evaluaciondto) {
-        EvaluacionDiabetes evaluacion = modelMapper.map(evaluaciondto, EvaluacionDiabetes.class);
+        EvaluacionDiabetes evaluacion = evaluacionMapper.aEntidad(evaluaciondto);
 
         if (evaluaciondto.getPacientedto() != null && evaluaciondto.getPacientedto().getIdPaciente() != null) {
             Paciente paciente = pacienterepository.findById(evaluaciondto.getPacientedto().getIdPaciente())
@@ -48,27 +100,63 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
             evaluacion.setFechaEvaluacion(LocalDateTime.now());
         }
 
+        boolean nueva = evaluacion.getIdEvaluacion() == null || !evaluacionrepository.existsById(evaluacion.getIdEvaluacion());
         EvaluacionDiabetes guardado = evaluacionrepository.save(evaluacion);
-        return modelMapper.map(guardado, EvaluacionDiabetesDto.class);
+        EvaluacionDiabetesDetalle detalle = guardarDetalle(guardado, evaluaciondto, nueva);
+        if (nueva) {
+            estadisticasEvaluaciones.registrarAlta(guardado.getTipoDiabetesPredicho());
+            tendencias.registrar(guardado.getFechaEvaluacion(), guardado.getTipoDiabetesPredicho());
+        }
+        return evaluacionMapper.aDto(guardado, detalle);
+    }
+
+    /**
+     * Crea o sobrescribe el detalle (columnas frías) de la evaluación con los valores del DTO
+     */
+    private EvaluacionDiabetesDetalle guardarDetalle(EvaluacionDiabetes evaluacion, EvaluacionDiabetesDto evaluaciondto, boolean nueva) {
+        EvaluacionDiabetesDetalle detalle = nueva ? null : detallerepository.findById(evaluacion.getIdEvaluacion()).orElse(null);
+        if (detalle == null) {
+            detalle = evaluacionMapper.aDetalle(evaluaciondto);
+            detalle.setEvaluacion(evaluacion);
+        } else {
+            evaluacionMapper.copiar(evaluaciondto, detalle);
+        }
+        almacenTextos.guardarTextos(List.of(detalle));
+        return detallerepository.save(detalle);
     }
 
     @Override
     public List<EvaluacionDiabetesDto> getEvaluaciones() {
-        return evaluacionrepository.findAll().stream()
-                .map(evaluacion -> modelMapper.map(evaluacion, EvaluacionDiabetesDto.class))
+        return aDtos(evaluacionrepository.findAll(), detallerepository.findAll());
+    }
+
+    /**
+     * Une cada evaluación con su detalle, cargado aparte en una sola consulta con el mismo filtro
+     */
+    private List<EvaluacionDiabetesDto> aDtos(List<EvaluacionDiabetes> evaluaciones, List<EvaluacionDiabetesDetalle> detalles) {
+        almacenTextos.resolverTextos(detalles);
+        Map<Long, EvaluacionDiabetesDetalle> porId = new HashMap<>(detalles.size() * 2);
+        for (EvaluacionDiabetesDetalle detalle : detalles) {
+            porId.put(detalle.getIdEvaluacion(), detalle);
+        }
+        return evaluaciones.stream()
+                .map(evaluacion -> evaluacionMapper.aDto(evaluacion, porId.get(evaluacion.getIdEvaluacion())))
                 .toList();
     }
 
     @Override
+    @Transactional
     public void eliminar(Long id) {
-        if (evaluacionrepository.existsById(id)) {
-            evaluacionrepository.deleteById(id);
-        } else {
-            throw new RuntimeException("No se encontró la evaluación con ID: " + id);
-        }
+        EvaluacionDiabetes evaluacion = evaluacionrepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("No se encontró la evaluación con ID: " + id));
+        evaluacionrepository.delete(evaluacion);
+        estadisticasEvaluaciones.registrarBaja(evaluacion.getTipoDiabetesPredicho());
+        tendencias.quitar(evaluacion.getFechaEvaluacion(), evaluacion.getTipoDiabetesPredicho());
+        analiticaBiomarcadores.registrarModificacion(id);
     }
 
     @Override
+    @Transactional
     public EvaluacionDiabetesDto actualizar(EvaluacionDiabetesDto evaluaciondto) {
         Long id = evaluaciondto.getIdEvaluacion();
         if (id == null) {
@@ -77,8 +165,10 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
 
         EvaluacionDiabetes evaluacionExistente = evaluacionrepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("No se encontró la evaluación con ID: " + id));
+        String tipoAnterior = evaluacionExistente.getTipoDiabetesPredicho();
+        LocalDateTime fechaAnterior = evaluacionExistente.getFechaEvaluacion();
 
-        modelMapper.map(evaluaciondto, evaluacionExistente);
+        evaluacionMapper.copiar(evaluaciondto, evaluacionExistente);
 
         if (evaluaciondto.getPacientedto() != null && evaluaciondto.getPacientedto().getIdPaciente() != null) {
             Paciente paciente = pacienterepository.findById(evaluaciondto.getPacientedto().getIdPaciente())
@@ -87,28 +177,82 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
         }
 
         EvaluacionDiabetes actualizado = evaluacionrepository.save(evaluacionExistente);
-        return modelMapper.map(actualizado, EvaluacionDiabetesDto.class);
+        EvaluacionDiabetesDetalle detalle = guardarDetalle(actualizado, evaluaciondto, false);
+        estadisticasEvaluaciones.registrarCambio(tipoAnterior, actualizado.getTipoDiabetesPredicho());
+        if (!Objects.equals(tipoAnterior, actualizado.getTipoDiabetesPredicho())
+                || !Objects.equals(fechaAnterior, actualizado.getFechaEvaluacion())) {
+            tendencias.quitar(fechaAnterior, tipoAnterior);
+            tendencias.registrar(actualizado.getFechaEvaluacion(), actualizado.getTipoDiabetesPredicho());
+        }
+        analiticaBiomarcadores.registrarModificacion(id);
+        return evaluacionMapper.aDto(actualizado, detalle);
     }
 
     @Override
     public EvaluacionDiabetesDto obtenerPorId(Long id) {
         EvaluacionDiabetes evaluacion = evaluacionrepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Evaluación no encontrada con ID: " + id));
-        return modelMapper.map(evaluacion, EvaluacionDiabetesDto.class);
+        EvaluacionDiabetesDetalle detalle = detallerepository.findById(id).orElse(null);
+        if (detalle != null) {
+            almacenTextos.resolverTextos(List.of(detalle));
+        }
+        return evaluacionMapper.aDto(evaluacion, detalle);
     }
 
     @Override
     public List<EvaluacionDiabetesDto> obtenerEvaluacionesPorPaciente(Long idPaciente) {
-        return evaluacionrepository.findByPacienteIdPaciente(idPaciente).stream()
-                .map(evaluacion -> modelMapper.map(evaluacion, EvaluacionDiabetesDto.class))
-                .toList();
+        return aDtos(evaluacionrepository.findByPacienteIdPaciente(idPaciente), detallerepository.findByPaciente(idPaciente));
     }
 
     @Override
     public List<EvaluacionDiabetesDto> obtenerEvaluacionesPorTipo(String tipo) {
-        return evaluacionrepository.findByTipoDiabetes(tipo).stream()
-                .map(evaluacion -> modelMapper.map(evaluacion, EvaluacionDiabetesDto.class))
-                .toList();
+        return aDtos(evaluacionrepository.findByTipoDiabetes(tipo), detallerepository.findByTipoDiabetes(tipo));
+    }
+
+    @Override
+    public PaginaCursorDto<EvaluacionResumenDto> listarPagina(String cursor, Integer tamano) {
+        int limite = limitarTamano(tamano);
+        // Se pide una fila de más para saber si hay página siguiente sin una consulta COUNT
+        Pageable consulta = PageRequest.of(0, limite + 1);
+        List<EvaluacionResumenDto> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = evaluacionrepository.listarResumenes(consulta);
+        } else {
+            CursorPaginacion.PosicionFechaId posicion = CursorPaginacion.decodificarFechaId(cursor);
+            filas = evaluacionrepository.listarResumenesDespuesDe(posicion.fecha(), posicion.id(), consulta);
+        }
+        return armarPagina(filas, limite);
+    }
+
+    @Override
+    public PaginaCursorDto<EvaluacionResumenDto> listarPaginaPorTipo(String tipo, String cursor, Integer tamano) {
+        int limite = limitarTamano(tamano);
+        Pageable consulta = PageRequest.of(0, limite + 1);
+        List<EvaluacionResumenDto> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = evaluacionrepository.listarResumenesPorTipo(tipo, consulta);
+        } else {
+            CursorPaginacion.PosicionFechaId posicion = CursorPaginacion.decodificarFechaId(cursor);
+            filas = evaluacionrepository.listarResumenesPorTipoDespuesDe(tipo, posicion.fecha(), posicion.id(), consulta);
+        }
+        return armarPagina(filas, limite);
+    }
+
+    private int limitarTamano(Integer tamano) {
+        if (tamano == null || tamano <= 0) {
+            return tamanoPaginaDefecto;
+        }
+        return Math.min(tamano, tamanoPaginaMaximo);
+    }
+
+    private PaginaCursorDto<EvaluacionResumenDto> armarPagina(List<EvaluacionResumenDto> filas, int limite) {
+        if (filas.size() <= limite) {
+            return new PaginaCursorDto<>(filas, filas.size(), null);
+        }
+        List<EvaluacionResumenDto> pagina = filas.subList(0, limite);
+        EvaluacionResumenDto ultima = pagina.get(limite - 1);
+        return new PaginaCursorDto<>(new ArrayList<>(pagina), limite,
+                CursorPaginacion.codificar(ultima.getFechaEvaluacion(), ultima.getIdEvaluacion()));
     }
 
     @Override
@@ -124,10 +268,10 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
             Map<String, String> clasificaciones = clasificarVariables(request);
 
             // 3. Preparar características para el modelo ML
-            Map<String, Object> features = prepararFeaturesParaML(request);
+            FeatureVector features = prepararFeaturesParaML(request);
 
             // 4. Llamar al servicio ML para obtener predicción
-            log.info("🤖 Consultando modelo ML con {} características", features.size());
+            log.info("🤖 Consultando modelo ML con {} características", features.tamano());
             MLPredictionResponseDto mlResponse = modeloMLService.predecir(features);
 
             // 5. Validar respuesta del modelo
@@ -135,18 +279,15 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
                 throw new RuntimeException("El modelo no pudo generar una predicción válida");
             }
 
-            // 6. Obtener información del tipo de diabetes desde BD
-            TipoDiabetesInfo info = tipodiabetesrepository.findByNombreEn(mlResponse.getPredictedClass());
-
-            // 7. Generar explicación detallada
-            String explicacion = generarExplicacionCompleta(mlResponse, clasificaciones, info);
+            // 6. Obtener información del tipo de diabetes (datos de referencia en memoria)
+            TipoDiabetesInfo info = datosReferencia.tipoPorNombreEn(mlResponse.getPredictedClass());
 
-            // 8. Generar recomendaciones personalizadas
-            String recomendaciones = generarRecomendacionesPersonalizadas(mlResponse, clasificaciones, info);
+            // 7-8. Generar explicación detallada y recomendaciones personalizadas (plantillas memorizadas)
+            RenderizadorTextosEvaluacion.Textos textos = renderizadorTextos.renderizar(mlResponse, clasificaciones, info);
 
             // 9. Construir respuesta final
             PrediccionResponseDto response = construirRespuestaPrediccion(
-                    mlResponse, clasificaciones, info, explicacion, recomendaciones
+                    mlResponse, clasificaciones, info, textos.explicacion(), textos.recomendaciones()
             );
 
             // 10. Guardar la evaluación en base de datos (opcional)
@@ -165,308 +306,224 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
         }
     }
 
-    private Map<String, Object> prepararFeaturesParaML(EvaluacionRequestDto request) {
-        Map<String, Object> features = new HashMap<>();
-
-        // Mapear todas las variables EXACTAMENTE como las espera tu API Python
-        // Variables categóricas
-        agregarCaracteristicaCategorica(features, "marcadores_geneticos", request.getMarcadoresGeneticos());
-        agregarCaracteristicaCategorica(features, "autoanticuerpos", request.getAutoanticuerpos());
-        agregarCaracteristicaCategorica(features, "antecedentes_familiares", request.getAntecedentesFamiliares());
-        agregarCaracteristicaCategorica(features, "factores_ambientales", request.getFactoresAmbientales());
-        agregarCaracteristicaCategorica(features, "etnicidad", request.getEtnicidad());
-        agregarCaracteristicaCategorica(features, "habitos_alimenticios", request.getHabitosAlimenticios());
-        agregarCaracteristicaCategorica(features, "prueba_tolerancia_glucosa", request.getPruebaToleranciaGlucosa());
-        agregarCaracteristicaCategorica(features, "pruebas_funcion_hepatica", request.getPruebasFuncionHepatica());
-        agregarCaracteristicaCategorica(features, "diagnostico_fibrosis_quistica", request.getDiagnosticoFibrosisQuistica());
-        agregarCaracteristicaCategorica(features, "uso_esteroides", request.getUsoEsteroides());
-        agregarCaracteristicaCategorica(features, "pruebas_geneticas", request.getPruebasGeneticas());
-        agregarCaracteristicaCategorica(features, "historial_embarazos", request.getHistorialEmbarazos());
-        agregarCaracteristicaCategorica(features, "diabetes_gestacional_previa", request.getDiabetesGestacionalPrevia());
-        agregarCaracteristicaCategorica(features, "historial_pcos", request.getHistorialPcos());
-        agregarCaracteristicaCategorica(features, "estado_tabaquismo", request.getEstadoTabaquismo());
-        agregarCaracteristicaCategorica(features, "sintomas_inicio_temprano", request.getSintomasInicioTemprano());
-        agregarCaracteristicaCategorica(features, "factores_socioeconomicos", request.getFactoresSocioeconomicos());
-        agregarCaracteristicaCategorica(features, "consumo_alcohol", request.getConsumoAlcohol());
-        agregarCaracteristicaCategorica(features, "actividad_fisica", request.getActividadFisica());
-        agregarCaracteristicaCategorica(features, "prueba_orina", request.getPruebaOrina());
-
-        // Variables numéricas
-        agregarCaracteristicaNumerica(features, "niveles_insulina", request.getNivelesInsulina());
-        agregarCaracteristicaNumerica(features, "edad", request.getEdad());
-        agregarCaracteristicaNumerica(features, "indice_masa_corporal", request.getIndiceMasaCorporal());
-        agregarCaracteristicaNumerica(features, "presion_arterial", request.getPresionArterial());
-        agregarCaracteristicaNumerica(features, "niveles_colesterol", request.getNivelesColesterol());
-        agregarCaracteristicaNumerica(features, "circunferencia_cintura", request.getCircunferenciaCintura());
-        agregarCaracteristicaNumerica(features, "niveles_glucosa", request.getNivelesGlucosa());
-        agregarCaracteristicaNumerica(features, "aumento_peso_embarazo", request.getAumentoPesoEmbarazo());
-        agregarCaracteristicaNumerica(features, "salud_pancreatica", request.getSaludPancreatica());
-        agregarCaracteristicaNumerica(features, "funcion_pulmonar", request.getFuncionPulmonar());
-        agregarCaracteristicaNumerica(features, "evaluaciones_neurologicas", request.getEvaluacionesNeurologicas());
-        agregarCaracteristicaNumerica(features, "niveles_enzimas_digestivas", request.getNivelesEnzimasDigestivas());
-        agregarCaracteristicaNumerica(features, "peso_nacimiento", request.getPesoNacimiento());
-
-        log.debug("📊 Características preparadas para ML: {}", features.size());
-        return features;
-    }
-
-    private void agregarCaracteristicaCategorica(Map<String, Object> features, String key, String value) {
-        if (value != null && !value.trim().isEmpty()) {
-            // Convertir a inglés si es necesario
-            String valorConvertido = convertirAInglesSiEsNecesario(value.trim());
-            features.put(key, valorConvertido);
-        } else {
-            features.put(key, ""); // Valor por defecto
+    @Override
+    public PrediccionLoteResponseDto realizarPrediccionLote(List<EvaluacionRequestDto> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("La lista de evaluaciones no puede estar vacía");
         }
-    }
-
-    private void agregarCaracteristicaNumerica(Map<String, Object> features, String key, Object value) {
-        if (value != null) {
-            try {
-                if (value instanceof Number) {
-                    features.put(key, ((Number) value).doubleValue());
-                } else if (value instanceof String) {
-                    String strValue = ((String) value).trim();
-                    if (!strValue.isEmpty()) {
-                        features.put(key, Double.parseDouble(strValue));
-                    } else {
-                        features.put(key, 0.0);
-                    }
-                }
-            } catch (NumberFormatException e) {
-                features.put(key, 0.0);
-            }
-        } else {
-            features.put(key, 0.0);
+        if (requests.size() > maxItemsLote) {
+            throw new RuntimeException("El lote excede el máximo permitido de " + maxItemsLote + " evaluaciones");
         }
-    }
 
-    private String convertirAInglesSiEsNecesario(String valor) {
-        if (valor == null || valor.isEmpty()) return "";
-
-        // Mapeo de español a inglés si es necesario
-        Map<String, String> traducciones = new HashMap<>();
-        traducciones.put("Sí", "Yes");
-        traducciones.put("No", "No");
-        traducciones.put("Positivo", "Positive");
-        traducciones.put("Negativo", "Negative");
-        traducciones.put("Presente", "Present");
-        traducciones.put("Ausente", "Absent");
-        traducciones.put("Alto", "High");
-        traducciones.put("Bajo", "Low");
-        traducciones.put("Moderado", "Moderate");
-        traducciones.put("Saludable", "Healthy");
-        traducciones.put("No saludable", "Unhealthy");
-        traducciones.put("Normal", "Normal");
-        traducciones.put("Anormal", "Abnormal");
-        traducciones.put("Fumador", "Smoker");
-        traducciones.put("No fumador", "Non-Smoker");
-        traducciones.put("Complicaciones", "Complications");
-
-        return traducciones.getOrDefault(valor, valor);
-    }
-
-    private String generarExplicacionCompleta(MLPredictionResponseDto mlResponse,
-                                              Map<String, String> clasificaciones,
-                                              TipoDiabetesInfo info) {
-        StringBuilder explicacion = new StringBuilder();
-
-        // 1. Resultado principal
-        explicacion.append("## 📊 Resultado de la Predicción\n\n");
-        explicacion.append("**Tipo de diabetes predicho:** ").append(mlResponse.getPredictedClassEs())
-                .append("\n");
-        explicacion.append("**Confianza del modelo:** ").append(String.format("%.1f", mlResponse.getProbability() * 100))
-                .append("%\n\n");
-
-        // 2. Factores clave que influyeron
-        explicacion.append("## 🔍 Factores Clave Identificados\n\n");
-
-        if (mlResponse.getFeatureImportance() != null && !mlResponse.getFeatureImportance().isEmpty()) {
-            mlResponse.getFeatureImportance().entrySet().stream()
-                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                    .limit(5)
-                    .forEach(entry -> {
-                        String featureName = traducirNombreFeature(entry.getKey());
-                        explicacion.append("• **").append(featureName).append("**: ")
-                                .append(String.format("%.0f", entry.getValue() * 100)).append("%\n");
-                    });
-        }
+        log.info("🎯 Iniciando predicción por lotes para {} pacientes", requests.size());
+        PrediccionLoteItemDto[] resultados = new PrediccionLoteItemDto[requests.size()];
 
-        // 3. Interpretación de valores clínicos
-        explicacion.append("\n## 🩺 Interpretación de Valores\n\n");
-        clasificaciones.forEach((key, value) -> {
-            String nombreTraducido = traducirNombreClasificacion(key);
-            explicacion.append("• **").append(nombreTraducido).append("**: ").append(value).append("\n");
-        });
+        // 1. Validar, clasificar y preparar características en paralelo
+        List<ItemLote> validos = IntStream.range(0, requests.size())
+                .parallel()
+                .mapToObj(i -> prepararItemLote(i, requests.get(i), resultados))
+                .filter(Objects::nonNull)
+                .toList();
 
-        // 4. Información adicional del tipo de diabetes
-        if (info != null) {
-            explicacion.append("\n## ℹ️ Acerca de ").append(info.getNombreEs()).append("\n\n");
-            if (info.getDescripcion() != null && info.getDescripcion().length() > 200) {
-                explicacion.append(info.getDescripcion().substring(0, 200)).append("...\n");
-            } else if (info.getDescripcion() != null) {
-                explicacion.append(info.getDescripcion()).append("\n");
+        if (!validos.isEmpty()) {
+            // 2. Enviar al modelo ML por chunks
+            List<MLPredictionResponseDto> mlResponses = modeloMLService.predecirLote(
+                    validos.stream().map(ItemLote::features).toList());
+
+            // 3. Construir respuestas y evaluaciones a persistir
+            List<EvaluacionRequestDto> requestsGuardados = new ArrayList<>();
+            List<EvaluacionDiabetes> evaluaciones = new ArrayList<>();
+            List<EvaluacionDiabetesDetalle> detalles = new ArrayList<>();
+            for (int i = 0; i < validos.size(); i++) {
+                ItemLote item = validos.get(i);
+                MLPredictionResponseDto mlResponse = mlResponses.get(i);
+
+                if (mlResponse == null || !Boolean.TRUE.equals(mlResponse.getSuccess()) || mlResponse.getPredictedClass() == null) {
+                    String mensaje = mlResponse != null && mlResponse.getMessage() != null
+                            ? mlResponse.getMessage() : "El modelo no pudo generar una predicción válida";
+                    resultados[item.indice()] = new PrediccionLoteItemDto(item.indice(), false, null, mensaje);
+                    continue;
+                }
+
+                TipoDiabetesInfo info = datosReferencia.tipoPorNombreEn(mlResponse.getPredictedClass());
+                RenderizadorTextosEvaluacion.Textos textos = renderizadorTextos.renderizar(mlResponse, item.clasificaciones(), info);
+                PrediccionResponseDto response = construirRespuestaPrediccion(
+                        mlResponse, item.clasificaciones(), info, textos.explicacion(), textos.recomendaciones()
+                );
+
+                resultados[item.indice()] = new PrediccionLoteItemDto(item.indice(), true, response, null);
+                requestsGuardados.add(item.request());
+                evaluaciones.add(construirEvaluacion(item.request(), response));
+                detalles.add(construirDetalle(item.request(), response));
             }
-        }
 
-        // 5. Otras posibles diagnósticos
-        if (mlResponse.getProbabilities() != null && mlResponse.getProbabilities().size() > 1) {
-            explicacion.append("\n## 🎯 Otras Posibilidades\n\n");
-            mlResponse.getProbabilities().entrySet().stream()
-                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                    .skip(1)
-                    .limit(3)
-                    .forEach(entry -> {
-                        explicacion.append("• ").append(traducirNombreDiabetes(entry.getKey()))
-                                .append(": ").append(String.format("%.1f", entry.getValue() * 100))
-                                .append("%\n");
-                    });
+            // 4. Guardar todas las evaluaciones en una sola operación
+            guardarEvaluacionesLoteEnBD(requestsGuardados, evaluaciones, detalles);
         }
 
-        return explicacion.toString();
-    }
+        int exitosos = (int) Arrays.stream(resultados).filter(r -> Boolean.TRUE.equals(r.getExito())).count();
+        log.info("✅ Predicción por lotes completada: {} exitosas, {} con error", exitosos, requests.size() - exitosos);
 
-    private String generarRecomendacionesPersonalizadas(MLPredictionResponseDto mlResponse,
-                                                        Map<String, String> clasificaciones,
-                                                        TipoDiabetesInfo info) {
-        StringBuilder recomendaciones = new StringBuilder();
+        return new PrediccionLoteResponseDto(
+                requests.size(),
+                exitosos,
+                requests.size() - exitosos,
+                Arrays.asList(resultados),
+                LocalDateTime.now()
+        );
+    }
 
-        // Encabezado
-        recomendaciones.append("## 📋 Recomendaciones Personalizadas\n\n");
+    @Override
+    public CompletableFuture<PrediccionResponseDto> realizarPrediccionAsync(EvaluacionRequestDto request) {
+        return ejecutorPredicciones.ejecutar(() -> realizarPrediccion(request));
+    }
 
-        // 1. Recomendaciones basadas en el tipo de diabetes
-        if (info != null && info.getRecomendaciones() != null && !info.getRecomendaciones().isEmpty()) {
-            recomendaciones.append("**Recomendaciones específicas para ").append(info.getNombreEs()).append(":**\n");
-            recomendaciones.append(info.getRecomendaciones()).append("\n\n");
-        }
+    @Override
+    public CompletableFuture<PrediccionLoteResponseDto> realizarPrediccionLoteAsync(List<EvaluacionRequestDto> requests) {
+        return ejecutorPredicciones.ejecutar(() -> realizarPrediccionLote(requests));
+    }
 
-        // 2. Recomendaciones basadas en clasificaciones
-        recomendaciones.append("**Basado en sus valores clínicos:**\n");
-
-        // Para glucosa
-        if (clasificaciones.get("glucosa") != null) {
-            switch (clasificaciones.get("glucosa")) {
-                case "Diabetes":
-                    recomendaciones.append("• **Niveles de glucosa elevados**: Se recomienda consulta inmediata con endocrinólogo, monitoreo diario de glucosa y ajuste dietético.\n");
-                    break;
-                case "Prediabetes":
-                    recomendaciones.append("• **Estado prediabético**: Implementar cambios en estilo de vida, realizar ejercicio regular (30 min/día) y dieta baja en carbohidratos refinados.\n");
-                    break;
-                case "Normal":
-                    recomendaciones.append("• **Glucosa normal**: Mantener hábitos saludables y control anual.\n");
-                    break;
+    private ItemLote prepararItemLote(int indice, EvaluacionRequestDto request, PrediccionLoteItemDto[] resultados) {
+        try {
+            if (request == null) {
+                throw new IllegalArgumentException("Evaluación vacía");
             }
+            validarDatosPrediccion(request);
+            validarDatosCompletos(request);
+            return new ItemLote(indice, request, clasificarVariables(request), prepararFeaturesParaML(request));
+        } catch (Exception e) {
+            resultados[indice] = new PrediccionLoteItemDto(indice, false, null, "Error en datos de entrada: " + e.getMessage());
+            return null;
         }
+    }
 
-        // Para insulina
-        if (clasificaciones.get("insulina") != null) {
-            switch (clasificaciones.get("insulina")) {
-                case "Diabetes":
-                    recomendaciones.append("• **Resistencia a la insulina**: Reducir consumo de azúcares simples, aumentar actividad física y considerar evaluación de síndrome metabólico.\n");
-                    break;
-                case "Prediabetes":
-                    recomendaciones.append("• **Insulina elevada**: Aumentar consumo de fibra, realizar ejercicio de resistencia y control de peso.\n");
-                    break;
-            }
+    private void guardarEvaluacionesLoteEnBD(List<EvaluacionRequestDto> requests, List<EvaluacionDiabetes> evaluaciones,
+                                             List<EvaluacionDiabetesDetalle> detalles) {
+        if (evaluaciones.isEmpty()) {
+            return;
         }
 
-        // Para presión arterial
-        if (clasificaciones.get("presion") != null) {
-            switch (clasificaciones.get("presion")) {
-                case "Alta":
-                    recomendaciones.append("• **Presión arterial elevada**: Reducir consumo de sal, monitoreo periódico de presión y consulta con cardiólogo.\n");
-                    break;
-                case "Baja":
-                    recomendaciones.append("• **Presión arterial baja**: Aumentar hidratación, consumir pequeñas porciones frecuentes y evitar cambios bruscos de posición.\n");
-                    break;
+        try {
+            // Modo write-behind: solo se guardan aquí las evaluaciones que no entraron en la cola
+            if (escrituraDiferida.isHabilitada()) {
+                List<EvaluacionRequestDto> requestsPendientes = new ArrayList<>();
+                List<EvaluacionDiabetes> evaluacionesPendientes = new ArrayList<>();
+                List<EvaluacionDiabetesDetalle> detallesPendientes = new ArrayList<>();
+                for (int i = 0; i < evaluaciones.size(); i++) {
+                    if (!escrituraDiferida.encolar(evaluaciones.get(i), detalles.get(i), obtenerIdPaciente(requests.get(i)))) {
+                        requestsPendientes.add(requests.get(i));
+                        evaluacionesPendientes.add(evaluaciones.get(i));
+                        detallesPendientes.add(detalles.get(i));
+                    }
+                }
+                if (evaluacionesPendientes.isEmpty()) {
+                    log.info("💾 {} evaluaciones del lote encoladas para escritura diferida", evaluaciones.size());
+                    return;
+                }
+                requests = requestsPendientes;
+                evaluaciones = evaluacionesPendientes;
+                detalles = detallesPendientes;
             }
-        }
 
-        // Para colesterol
-        if (clasificaciones.get("colesterol") != null) {
-            switch (clasificaciones.get("colesterol")) {
-                case "Alto":
-                case "Anormal":
-                    recomendaciones.append("• **Colesterol elevado**: Reducir grasas saturadas, aumentar consumo de ácidos grasos omega-3 y ejercicio aeróbico regular.\n");
-                    break;
+            // Resolver todos los pacientes del lote en una sola consulta
+            Set<Long> idsPacientes = new HashSet<>();
+            for (EvaluacionRequestDto request : requests) {
+                if (request.getPacientedto() != null && request.getPacientedto().getIdPaciente() != null) {
+                    idsPacientes.add(request.getPacientedto().getIdPaciente());
+                }
             }
-        }
 
-        // 3. Recomendaciones generales
-        recomendaciones.append("\n**Recomendaciones generales:**\n");
-        recomendaciones.append("1. **Consulta médica**: Programar cita con especialista para confirmación diagnóstica y plan de tratamiento.\n");
-        recomendaciones.append("2. **Exámenes complementarios**: Realizar hemoglobina glicosilada (HbA1c), perfil lipídico completo y función renal.\n");
-        recomendaciones.append("3. **Educación diabetológica**: Participar en programas de educación sobre manejo de diabetes.\n");
-        recomendaciones.append("4. **Seguimiento**: Control periódico cada 3-6 meses según indicación médica.\n");
-        recomendaciones.append("5. **Emergencias**: Conocer signos de hipoglucemia/hiperglucemia y tener plan de acción.\n");
-
-        // 4. Factores de importancia del modelo
-        if (mlResponse.getFeatureImportance() != null && !mlResponse.getFeatureImportance().isEmpty()) {
-            recomendaciones.append("\n**Factores críticos identificados por el modelo:**\n");
-            mlResponse.getFeatureImportance().entrySet().stream()
-                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                    .limit(3)
-                    .forEach(entry -> {
-                        String featureName = traducirNombreFeature(entry.getKey());
-                        recomendaciones.append("• **").append(featureName).append("** fue determinante en el diagnóstico. Mantenga este valor en observación.\n");
-                    });
-        }
+            if (!idsPacientes.isEmpty()) {
+                Map<Long, Paciente> pacientes = new HashMap<>();
+                pacienterepository.findAllById(idsPacientes).forEach(p -> pacientes.put(p.getIdPaciente(), p));
 
-        // 5. Recomendaciones específicas según edad
-        if (clasificaciones.get("edad") != null) {
-            recomendaciones.append("\n**Consideraciones según grupo etario:**\n");
-            switch (clasificaciones.get("edad")) {
-                case "Infante":
-                    recomendaciones.append("• **Niños**: Monitoreo estrecho por pediatra endocrinólogo, atención especial a crecimiento y desarrollo.\n");
-                    break;
-                case "Adolescente":
-                    recomendaciones.append("• **Adolescentes**: Educación sobre autocuidado, apoyo psicológico y adaptación escolar.\n");
-                    break;
-                case "Adulto Mayor":
-                    recomendaciones.append("• **Adulto mayor**: Evaluación de medicamentos concurrentes, prevención de complicaciones y soporte familiar.\n");
-                    break;
+                for (int i = 0; i < evaluaciones.size(); i++) {
+                    PacienteDto pacientedto = requests.get(i).getPacientedto();
+                    if (pacientedto != null && pacientedto.getIdPaciente() != null) {
+                        evaluaciones.get(i).setPaciente(pacientes.get(pacientedto.getIdPaciente()));
+                    }
+                }
             }
-        }
 
-        return recomendaciones.toString();
-    }
+            guardarConDetalle(evaluaciones, detalles);
+            for (EvaluacionDiabetes evaluacion : evaluaciones) {
+                estadisticasEvaluaciones.registrarAlta(evaluacion.getTipoDiabetesPredicho());
+                tendencias.registrar(evaluacion.getFechaEvaluacion(), evaluacion.getTipoDiabetesPredicho());
+            }
+            log.info("✅ {} evaluaciones del lote guardadas en BD", evaluaciones.size());
 
-    private String traducirNombreFeature(String featureName) {
-        Map<String, String> traducciones = new HashMap<>();
-        traducciones.put("niveles_glucosa", "Niveles de Glucosa");
-        traducciones.put("niveles_insulina", "Niveles de Insulina");
-        traducciones.put("edad", "Edad");
-        traducciones.put("indice_masa_corporal", "Índice de Masa Corporal");
-        traducciones.put("autoanticuerpos", "Autoanticuerpos");
-        traducciones.put("antecedentes_familiares", "Antecedentes Familiares");
-        traducciones.put("presion_arterial", "Presión Arterial");
-        traducciones.put("niveles_colesterol", "Niveles de Colesterol");
-        traducciones.put("circunferencia_cintura", "Circunferencia de Cintura");
-        traducciones.put("aumento_peso_embarazo", "Aumento de Peso en Embarazo");
-        traducciones.put("salud_pancreatica", "Salud Pancreática");
-        traducciones.put("funcion_pulmonar", "Función Pulmonar");
-        traducciones.put("evaluaciones_neurologicas", "Evaluaciones Neurológicas");
-        traducciones.put("niveles_enzimas_digestivas", "Niveles de Enzimas Digestivas");
-        traducciones.put("peso_nacimiento", "Peso al Nacer");
+        } catch (Exception e) {
+            log.error("❌ Error al guardar evaluaciones del lote en BD: {}", e.getMessage());
+        }
+    }
 
-        return traducciones.getOrDefault(featureName, featureName);
+    /**
+     * Evaluación y detalle en la misma transacción: nunca queda una evaluación sin su detalle
+     */
+    private void guardarConDetalle(List<EvaluacionDiabetes> evaluaciones, List<EvaluacionDiabetesDetalle> detalles) {
+        transaccion.executeWithoutResult(estado -> {
+            almacenTextos.guardarTextos(detalles);
+            evaluacionrepository.saveAll(evaluaciones);
+            for (int i = 0; i < evaluaciones.size(); i++) {
+                detalles.get(i).setEvaluacion(evaluaciones.get(i));
+            }
+            detallerepository.saveAll(detalles);
+        });
     }
 
-    private String traducirNombreClasificacion(String key) {
-        Map<String, String> traducciones = new HashMap<>();
-        traducciones.put("presion", "Presión Arterial");
-        traducciones.put("colesterol", "Colesterol");
-        traducciones.put("insulina", "Insulina");
-        traducciones.put("glucosa", "Glucosa");
-        traducciones.put("edad", "Grupo de Edad");
-        traducciones.put("enzimas", "Enzimas Digestivas");
-        return traducciones.getOrDefault(key, key);
+    private record ItemLote(int indice,
+                            EvaluacionRequestDto request,
+                            Map<String, String> clasificaciones,
+                            FeatureVector features) {
     }
 
-    private String traducirNombreDiabetes(String diabetesName) {
-        MLPredictionResponseDto temp = new MLPredictionResponseDto();
-        temp.setPredictedClass(diabetesName);
-        return temp.getPredictedClassEs();
+    /**
+     * Construye el vector tipado según el esquema compilado; la traducción español -> inglés
+     * de los valores categóricos la resuelve el diccionario del esquema. Envía exactamente las características
+     * de {@link com.diabetes.business_back.ml.FeatureSchema#NUMERICAS_POR_DEFECTO} y
+     * {@link com.diabetes.business_back.ml.FeatureSchema#CATEGORICAS_POR_DEFECTO}, que es lo que valida
+     * {@link EsquemaCaracteristicasService#recompilar()}.
+     */
+    private FeatureVector prepararFeaturesParaML(EvaluacionRequestDto request) {
+        FeatureVector features = esquemaCaracteristicas.nuevoVector()
+                // Variables categóricas
+                .setCategorico("marcadores_geneticos", request.getMarcadoresGeneticos())
+                .setCategorico("autoanticuerpos", request.getAutoanticuerpos())
+                .setCategorico("antecedentes_familiares", request.getAntecedentesFamiliares())
+                .setCategorico("factores_ambientales", request.getFactoresAmbientales())
+                .setCategorico("etnicidad", request.getEtnicidad())
+                .setCategorico("habitos_alimenticios", request.getHabitosAlimenticios())
+                .setCategorico("prueba_tolerancia_glucosa", request.getPruebaToleranciaGlucosa())
+                .setCategorico("pruebas_funcion_hepatica", request.getPruebasFuncionHepatica())
+                .setCategorico("diagnostico_fibrosis_quistica", request.getDiagnosticoFibrosisQuistica())
+                .setCategorico("uso_esteroides", request.getUsoEsteroides())
+                .setCategorico("pruebas_geneticas", request.getPruebasGeneticas())
+                .setCategorico("historial_embarazos", request.getHistorialEmbarazos())
+                .setCategorico("diabetes_gestacional_previa", request.getDiabetesGestacionalPrevia())
+                .setCategorico("historial_pcos", request.getHistorialPcos())
+                .setCategorico("estado_tabaquismo", request.getEstadoTabaquismo())
+                .setCategorico("sintomas_inicio_temprano", request.getSintomasInicioTemprano())
+                .setCategorico("factores_socioeconomicos", request.getFactoresSocioeconomicos())
+                .setCategorico("consumo_alcohol", request.getConsumoAlcohol())
+                .setCategorico("actividad_fisica", request.getActividadFisica())
+                .setCategorico("prueba_orina", request.getPruebaOrina())
+                // Variables numéricas
+                .setNumerico("niveles_insulina", request.getNivelesInsulina())
+                .setNumerico("edad", request.getEdad())
+                .setNumerico("indice_masa_corporal", request.getIndiceMasaCorporal())
+                .setNumerico("presion_arterial", request.getPresionArterial())
+                .setNumerico("niveles_colesterol", request.getNivelesColesterol())
+                .setNumerico("circunferencia_cintura", request.getCircunferenciaCintura())
+                .setNumerico("niveles_glucosa", request.getNivelesGlucosa())
+                .setNumerico("aumento_peso_embarazo", request.getAumentoPesoEmbarazo())
+                .setNumerico("salud_pancreatica", request.getSaludPancreatica())
+                .setNumerico("funcion_pulmonar", request.getFuncionPulmonar())
+                .setNumerico("evaluaciones_neurologicas", request.getEvaluacionesNeurologicas())
+                .setNumerico("niveles_enzimas_digestivas", request.getNivelesEnzimasDigestivas())
+                .setNumerico("peso_nacimiento", request.getPesoNacimiento());
+
+        log.debug("📊 Características preparadas para ML: {}", features.tamano());
+        return features;
     }
 
     private PrediccionResponseDto construirRespuestaPrediccion(
@@ -506,53 +563,13 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
 
     private void guardarEvaluacionEnBD(EvaluacionRequestDto request, PrediccionResponseDto response) {
         try {
-            EvaluacionDiabetes evaluacion = new EvaluacionDiabetes();
-
-            // Mapear datos básicos
-            evaluacion.setEdad(request.getEdad());
-            evaluacion.setNivelesGlucosa(request.getNivelesGlucosa());
-            evaluacion.setNivelesInsulina(request.getNivelesInsulina());
-            evaluacion.setIndiceMasaCorporal(request.getIndiceMasaCorporal());
-            evaluacion.setPresionArterial(request.getPresionArterial());
-            evaluacion.setNivelesColesterol(request.getNivelesColesterol());
-            evaluacion.setCircunferenciaCintura(request.getCircunferenciaCintura());
-
-            // Mapear variables categóricas
-            evaluacion.setMarcadoresGeneticos(request.getMarcadoresGeneticos());
-            evaluacion.setAutoanticuerpos(request.getAutoanticuerpos());
-            evaluacion.setAntecedentesFamiliares(request.getAntecedentesFamiliares());
-            evaluacion.setFactoresAmbientales(request.getFactoresAmbientales());
-            evaluacion.setEtnicidad(request.getEtnicidad());
-            evaluacion.setHabitosAlimenticios(request.getHabitosAlimenticios());
-            evaluacion.setPruebaToleranciaGlucosa(request.getPruebaToleranciaGlucosa());
-            evaluacion.setPruebasFuncionHepatica(request.getPruebasFuncionHepatica());
-            evaluacion.setDiagnosticoFibrosisQuistica(request.getDiagnosticoFibrosisQuistica());
-            evaluacion.setUsoEsteroides(request.getUsoEsteroides());
-            evaluacion.setPruebasGeneticas(request.getPruebasGeneticas());
-            evaluacion.setHistorialEmbarazos(request.getHistorialEmbarazos());
-            evaluacion.setDiabetesGestacionalPrevia(request.getDiabetesGestacionalPrevia());
-            evaluacion.setHistorialPcos(request.getHistorialPcos());
-            evaluacion.setEstadoTabaquismo(request.getEstadoTabaquismo());
-            evaluacion.setSintomasInicioTemprano(request.getSintomasInicioTemprano());
-            evaluacion.setFactoresSocioeconomicos(request.getFactoresSocioeconomicos());
-            evaluacion.setConsumoAlcohol(request.getConsumoAlcohol());
-            evaluacion.setActividadFisica(request.getActividadFisica());
-            evaluacion.setPruebaOrina(request.getPruebaOrina());
-
-            // Mapear datos de la respuesta
-            evaluacion.setTipoDiabetesPredicho(response.getTipoDiabetes());
-            evaluacion.setProbabilidad(response.getProbabilidad());
-            evaluacion.setExplicacion(response.getExplicacion());
-            evaluacion.setRecomendaciones(response.getRecomendacionesPersonalizadas());
-            evaluacion.setFechaEvaluacion(response.getFechaPrediccion());
-
-            // Mapear clasificaciones
-            if (response.getClasificaciones() != null) {
-                evaluacion.setClasificacionPresion(response.getClasificaciones().get("presion"));
-                evaluacion.setClasificacionColesterol(response.getClasificaciones().get("colesterol"));
-                evaluacion.setClasificacionInsulina(response.getClasificaciones().get("insulina"));
-                evaluacion.setClasificacionGlucosa(response.getClasificaciones().get("glucosa"));
-                evaluacion.setClasificacionEdad(response.getClasificaciones().get("edad"));
+            EvaluacionDiabetes evaluacion = construirEvaluacion(request, response);
+            EvaluacionDiabetesDetalle detalle = construirDetalle(request, response);
+
+            // Modo write-behind: la evaluación se guarda en segundo plano, fuera del camino crítico
+            if (escrituraDiferida.encolar(evaluacion, detalle, obtenerIdPaciente(request))) {
+                log.debug("💾 Evaluación encolada para escritura diferida");
+                return;
             }
 
             // Guardar si hay paciente asociado
@@ -562,7 +579,9 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
                 evaluacion.setPaciente(paciente);
             }
 
-            evaluacionrepository.save(evaluacion);
+            guardarConDetalle(List.of(evaluacion), List.of(detalle));
+            estadisticasEvaluaciones.registrarAlta(evaluacion.getTipoDiabetesPredicho());
+            tendencias.registrar(evaluacion.getFechaEvaluacion(), evaluacion.getTipoDiabetesPredicho());
             log.info("✅ Evaluación guardada en BD con ID: {}", evaluacion.getIdEvaluacion());
 
         } catch (Exception e) {
@@ -570,40 +589,74 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
         }
     }
 
-    @Override
-    public Map<String, Long> obtenerEstadisticas() {
-        Map<String, Long> estadisticas = new HashMap<>();
-
-        // TODOS los 12 tipos de diabetes que tu modelo puede predecir
-        List<String> tipos = Arrays.asList(
-                "Steroid-Induced Diabetes",
-                "Prediabetic",
-                "Type 1 Diabetes",
-                "Wolfram Syndrome",
-                "LADA",
-                "Type 2 Diabetes",
-                "Wolcott-Rallison Syndrome",
-                "Secondary Diabetes",
-                "Type 3c Diabetes (Pancreatogenic Diabetes)",
-                "Gestational Diabetes",
-                "Cystic Fibrosis-Related Diabetes (CFRD)",
-                "MODY"
-        );
+    private Long obtenerIdPaciente(EvaluacionRequestDto request) {
+        return request.getPacientedto() != null ? request.getPacientedto().getIdPaciente() : null;
+    }
 
-        for (String tipo : tipos) {
-            try {
-                Long count = evaluacionrepository.countByTipoDiabetes(tipo);
-                estadisticas.put(tipo, count != null ? count : 0L);
-            } catch (Exception e) {
-                log.warn("Error contando evaluaciones para tipo {}: {}", tipo, e.getMessage());
-                estadisticas.put(tipo, 0L);
-            }
-        }
+    private EvaluacionDiabetes construirEvaluacion(EvaluacionRequestDto request, PrediccionResponseDto response) {
+        EvaluacionDiabetes evaluacion = new EvaluacionDiabetes();
+
+        // Mapear datos básicos
+        evaluacion.setEdad(request.getEdad());
+        evaluacion.setNivelesGlucosa(request.getNivelesGlucosa());
+        evaluacion.setNivelesInsulina(request.getNivelesInsulina());
+        evaluacion.setIndiceMasaCorporal(request.getIndiceMasaCorporal());
+        evaluacion.setPresionArterial(request.getPresionArterial());
+        evaluacion.setNivelesColesterol(request.getNivelesColesterol());
+        evaluacion.setCircunferenciaCintura(request.getCircunferenciaCintura());
+
+        // Mapear datos de la respuesta
+        evaluacion.setTipoDiabetesPredicho(response.getTipoDiabetes());
+        evaluacion.setProbabilidad(response.getProbabilidad());
+        evaluacion.setFechaEvaluacion(response.getFechaPrediccion());
+
+        // Mapear clasificaciones
+        if (response.getClasificaciones() != null) {
+            evaluacion.setClasificacionPresion(response.getClasificaciones().get("presion"));
+            evaluacion.setClasificacionColesterol(response.getClasificaciones().get("colesterol"));
+            evaluacion.setClasificacionInsulina(response.getClasificaciones().get("insulina"));
+            evaluacion.setClasificacionGlucosa(response.getClasificaciones().get("glucosa"));
+            evaluacion.setClasificacionEdad(response.getClasificaciones().get("edad"));
+        }
+
+        return evaluacion;
+    }
 
-        long totalEvaluaciones = evaluacionrepository.count();
-        estadisticas.put("total", totalEvaluaciones);
+    private EvaluacionDiabetesDetalle construirDetalle(EvaluacionRequestDto request, PrediccionResponseDto response) {
+        EvaluacionDiabetesDetalle detalle = new EvaluacionDiabetesDetalle();
+
+        detalle.setExplicacion(response.getExplicacion());
+        detalle.setRecomendaciones(response.getRecomendacionesPersonalizadas());
+
+        // Mapear variables categóricas
+        detalle.setMarcadoresGeneticos(request.getMarcadoresGeneticos());
+        detalle.setAutoanticuerpos(request.getAutoanticuerpos());
+        detalle.setAntecedentesFamiliares(request.getAntecedentesFamiliares());
+        detalle.setFactoresAmbientales(request.getFactoresAmbientales());
+        detalle.setEtnicidad(request.getEtnicidad());
+        detalle.setHabitosAlimenticios(request.getHabitosAlimenticios());
+        detalle.setPruebaToleranciaGlucosa(request.getPruebaToleranciaGlucosa());
+        detalle.setPruebasFuncionHepatica(request.getPruebasFuncionHepatica());
+        detalle.setDiagnosticoFibrosisQuistica(request.getDiagnosticoFibrosisQuistica());
+        detalle.setUsoEsteroides(request.getUsoEsteroides());
+        detalle.setPruebasGeneticas(request.getPruebasGeneticas());
+        detalle.setHistorialEmbarazos(request.getHistorialEmbarazos());
+        detalle.setDiabetesGestacionalPrevia(request.getDiabetesGestacionalPrevia());
+        detalle.setHistorialPcos(request.getHistorialPcos());
+        detalle.setEstadoTabaquismo(request.getEstadoTabaquismo());
+        detalle.setSintomasInicioTemprano(request.getSintomasInicioTemprano());
+        detalle.setFactoresSocioeconomicos(request.getFactoresSocioeconomicos());
+        detalle.setConsumoAlcohol(request.getConsumoAlcohol());
+        detalle.setActividadFisica(request.getActividadFisica());
+        detalle.setPruebaOrina(request.getPruebaOrina());
+
+        return detalle;
+    }
 
-        return estadisticas;
+    @Override
+    public Map<String, Long> obtenerEstadisticas() {
+        // Contadores mantenidos en memoria; no consulta la base de datos
+        return estadisticasEvaluaciones.obtenerConteos();
     }
 
     @Override
@@ -619,20 +672,7 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
         // Calcular porcentajes si hay datos
         if (total > 0) {
             Map<String, String> porcentajes = new HashMap<>();
-            List<String> tipos = Arrays.asList(
-                    "Steroid-Induced Diabetes",
-                    "Prediabetic",
-                    "Type 1 Diabetes",
-                    "Wolfram Syndrome",
-                    "LADA",
-                    "Type 2 Diabetes",
-                    "Wolcott-Rallison Syndrome",
-                    "Secondary Diabetes",
-                    "Type 3c Diabetes (Pancreatogenic Diabetes)",
-                    "Gestational Diabetes",
-                    "Cystic Fibrosis-Related Diabetes (CFRD)",
-                    "MODY"
-            );
+            List<String> tipos = EstadisticasEvaluaciones.TIPOS;
 
             for (String tipo : tipos) {
                 long count = conteos.get(tipo);
@@ -696,66 +736,10 @@ public class EvaluacionDiabetesService implements IEvaluacionDiabetesService {
         }
     }
 
+    /**
+     * Clasificación según las bandas de la tabla rangos_clinicos (ver MotorReglasClinicas)
+     */
     private Map<String, String> clasificarVariables(EvaluacionRequestDto request) {
-        Map<String, String> clasificaciones = new HashMap<>();
-
-        // Clasificar presión arterial
-        if (request.getPresionArterial() != null) {
-            if (request.getPresionArterial() < 90) {
-                clasificaciones.put("presion", "Baja");
-            } else if (request.getPresionArterial() <= 130) {
-                clasificaciones.put("presion", "Normal");
-            } else {
-                clasificaciones.put("presion", "Alta");
-            }
-        }
-
-        // Clasificar colesterol
-        if (request.getNivelesColesterol() != null) {
-            if (request.getNivelesColesterol() < 200) {
-                clasificaciones.put("colesterol", "Normal");
-            } else if (request.getNivelesColesterol() <= 239) {
-                clasificaciones.put("colesterol", "Alto");
-            } else {
-                clasificaciones.put("colesterol", "Anormal");
-            }
-        }
-
-        // Clasificar insulina
-        if (request.getNivelesInsulina() != null) {
-            if (request.getNivelesInsulina() <= 25) {
-                clasificaciones.put("insulina", "Normal");
-            } else if (request.getNivelesInsulina() <= 40) {
-                clasificaciones.put("insulina", "Prediabetes");
-            } else {
-                clasificaciones.put("insulina", "Diabetes");
-            }
-        }
-
-        // Clasificar glucosa
-        if (request.getNivelesGlucosa() != null) {
-            if (request.getNivelesGlucosa() < 100) {
-                clasificaciones.put("glucosa", "Normal");
-            } else if (request.getNivelesGlucosa() <= 125) {
-                clasificaciones.put("glucosa", "Prediabetes");
-            } else {
-                clasificaciones.put("glucosa", "Diabetes");
-            }
-        }
-
-        // Clasificar edad
-        if (request.getEdad() != null) {
-            if (request.getEdad() <= 12) {
-                clasificaciones.put("edad", "Infante");
-            } else if (request.getEdad() <= 25) {
-                clasificaciones.put("edad", "Adolescente");
-            } else if (request.getEdad() <= 60) {
-                clasificaciones.put("edad", "Adulto");
-            } else {
-                clasificaciones.put("edad", "Adulto Mayor");
-            }
-        }
-
-        return clasificaciones;
+        return motorReglas.clasificar(request);
     }
 }
\ No newline at end of file
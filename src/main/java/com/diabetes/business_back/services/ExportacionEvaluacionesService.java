@@ -0,0 +1,267 @@
+package com.diabetes.business_back.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta la tabla de evaluaciones completa (o filtrada) en CSV o NDJSON escribiendo fila por fila en la
+ * respuesta. La lectura usa un cursor del servidor (fetch size dentro de una transacción de solo lectura,
+ * que PostgreSQL necesita para no traer todo el resultado de una vez), así que la memoria no depende
+ * del tamaño de la tabla.
+ */
+@Slf4j
+@Service
+public class ExportacionEvaluacionesService {
+    public static final String FORMATO_CSV = "csv";
+    public static final String FORMATO_NDJSON = "ndjson";
+
+    // Columnas explícitas: las frías salen del detalle aunque la tabla caliente aún conserve las antiguas.
+    // Explicación y recomendaciones llegan como claves del almacén de textos y se resuelven al escribir.
+    private static final String SQL_BASE = """
+            SELECT e.id_evaluacion, e.id_paciente, e.fecha_evaluacion, e.tipo_diabetes_predicho, e.probabilidad,
+                   d.explicacion_hash AS explicacion, d.recomendaciones_hash AS recomendaciones,
+                   d.marcadores_geneticos, d.autoanticuerpos, d.antecedentes_familiares, d.factores_ambientales,
+                   d.etnicidad, d.habitos_alimenticios, d.prueba_tolerancia_glucosa, d.pruebas_funcion_hepatica,
+                   d.diagnostico_fibrosis_quistica, d.uso_esteroides, d.pruebas_geneticas, d.historial_embarazos,
+                   d.diabetes_gestacional_previa, d.historial_pcos, d.estado_tabaquismo, d.sintomas_inicio_temprano,
+                   d.factores_socioeconomicos, d.consumo_alcohol, d.actividad_fisica, d.prueba_orina,
+                   e.niveles_insulina, e.edad, e.indice_masa_corporal, e.presion_arterial, e.niveles_colesterol,
+                   e.circunferencia_cintura, e.niveles_glucosa, e.aumento_peso_embarazo, e.salud_pancreatica,
+                   e.funcion_pulmonar, e.evaluaciones_neurologicas, e.niveles_enzimas_digestivas, e.peso_nacimiento,
+                   e.clasificacion_presion, e.clasificacion_colesterol, e.clasificacion_insulina,
+                   e.clasificacion_glucosa, e.clasificacion_enzimas, e.clasificacion_edad,
+                   p.codigo_paciente
+            FROM evaluaciones_diabetes e
+            LEFT JOIN evaluaciones_diabetes_detalle d ON d.id_evaluacion = e.id_evaluacion
+            LEFT JOIN pacientes p ON p.id_paciente = e.id_paciente
+            WHERE 1 = 1
+            """;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AlmacenTextosGenerados almacenTextos;
+
+    @Value("${exportacion.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${exportacion.filas-por-flush:1000}")
+    private int filasPorFlush;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate lectura;
+
+    public record Filtro(LocalDateTime desde, LocalDateTime hasta, String tipo) {
+    }
+
+    @PostConstruct
+    void iniciar() {
+        // Plantilla propia para no cambiar el fetch size del JdbcTemplate compartido
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+    }
+
+    public static void validarFormato(String formato) {
+        if (!FORMATO_CSV.equals(formato) && !FORMATO_NDJSON.equals(formato)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Formato de exportación no soportado: " + formato + ". Use csv o ndjson");
+        }
+    }
+
+    /**
+     * Escribe las evaluaciones que cumplen el filtro, ordenadas por ID. Devuelve la cantidad de filas escritas.
+     */
+    public long exportar(OutputStream salida, String formato, Filtro filtro, boolean gzip) throws IOException {
+        validarFormato(formato);
+        long inicio = System.currentTimeMillis();
+
+        StringBuilder sql = new StringBuilder(SQL_BASE);
+        List<Object> parametros = new ArrayList<>();
+        if (filtro.desde() != null) {
+            sql.append(" AND e.fecha_evaluacion >= ?");
+            parametros.add(Timestamp.valueOf(filtro.desde()));
+        }
+        if (filtro.hasta() != null) {
+            sql.append(" AND e.fecha_evaluacion < ?");
+            parametros.add(Timestamp.valueOf(filtro.hasta()));
+        }
+        if (filtro.tipo() != null && !filtro.tipo().isBlank()) {
+            sql.append(" AND e.tipo_diabetes_predicho = ?");
+            parametros.add(filtro.tipo());
+        }
+        sql.append(" ORDER BY e.id_evaluacion");
+
+        GZIPOutputStream comprimida = gzip ? new GZIPOutputStream(salida, 64 * 1024, true) : null;
+        OutputStream destino = comprimida != null ? comprimida : salida;
+
+        ResultSetExtractor<Long> escritor = FORMATO_CSV.equals(formato)
+                ? rs -> escribirCsv(rs, destino)
+                : rs -> escribirNdjson(rs, destino);
+
+        Long filas;
+        try {
+            filas = lectura.execute(estado -> jdbcTemplate.query(sql.toString(), escritor, parametros.toArray()));
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga; la transacción y el cursor ya se cerraron
+            log.warn("⚠️ Exportación interrumpida: {}", e.getCause().getMessage());
+            throw e.getCause();
+        }
+
+        if (comprimida != null) {
+            comprimida.finish();
+        }
+        destino.flush();
+        log.info("📤 Exportación {} completada: {} evaluaciones en {} ms", formato, filas, System.currentTimeMillis() - inicio);
+        return filas != null ? filas : 0;
+    }
+
+    private long escribirCsv(ResultSet rs, OutputStream destino) throws SQLException {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), 64 * 1024);
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnas = meta.getColumnCount();
+            boolean[] textos = columnasDeTexto(meta);
+
+            for (int i = 1; i <= columnas; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                writer.write(campoCsv(meta.getColumnLabel(i)));
+            }
+            writer.write("\r\n");
+
+            long filas = 0;
+            while (rs.next()) {
+                for (int i = 1; i <= columnas; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    Object valor = valor(rs, i, textos[i]);
+                    if (valor != null) {
+                        writer.write(campoCsv(valor.toString()));
+                    }
+                }
+                writer.write("\r\n");
+                if (++filas % filasPorFlush == 0) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+            return filas;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long escribirNdjson(ResultSet rs, OutputStream destino) throws SQLException {
+        try {
+            JsonGenerator generador = objectMapper.getFactory().createGenerator(destino);
+            generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnas = meta.getColumnCount();
+            boolean[] textos = columnasDeTexto(meta);
+            String[] nombres = new String[columnas + 1];
+            for (int i = 1; i <= columnas; i++) {
+                nombres[i] = meta.getColumnLabel(i);
+            }
+
+            long filas = 0;
+            while (rs.next()) {
+                generador.writeStartObject();
+                for (int i = 1; i <= columnas; i++) {
+                    Object valor = valor(rs, i, textos[i]);
+                    generador.writeFieldName(nombres[i]);
+                    if (valor == null) {
+                        generador.writeNull();
+                    } else if (valor instanceof Long || valor instanceof Integer || valor instanceof Short) {
+                        generador.writeNumber(((Number) valor).longValue());
+                    } else if (valor instanceof BigDecimal decimal) {
+                        generador.writeNumber(decimal);
+                    } else if (valor instanceof Number numero) {
+                        generador.writeNumber(numero.doubleValue());
+                    } else if (valor instanceof Boolean booleano) {
+                        generador.writeBoolean(booleano);
+                    } else {
+                        generador.writeString(valor.toString());
+                    }
+                }
+                generador.writeEndObject();
+                generador.writeRaw('\n');
+                if (++filas % filasPorFlush == 0) {
+                    generador.flush();
+                }
+            }
+            generador.flush();
+            return filas;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Explicación y recomendaciones llegan como claves; los textos repetidos salen de la caché del almacén
+    private static boolean[] columnasDeTexto(ResultSetMetaData meta) throws SQLException {
+        boolean[] textos = new boolean[meta.getColumnCount() + 1];
+        for (int i = 1; i < textos.length; i++) {
+            String nombre = meta.getColumnLabel(i);
+            textos[i] = "explicacion".equals(nombre) || "recomendaciones".equals(nombre);
+        }
+        return textos;
+    }
+
+    // Las fechas se exportan en ISO-8601 sin zona, igual que en la API
+    private Object valor(ResultSet rs, int columna, boolean texto) throws SQLException {
+        if (texto) {
+            return almacenTextos.obtener(rs.getString(columna));
+        }
+        Object valor = rs.getObject(columna);
+        if (valor instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (valor instanceof Date fecha) {
+            return fecha.toLocalDate();
+        }
+        return valor;
+    }
+
+    private static String campoCsv(String valor) {
+        boolean requiereComillas = false;
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                requiereComillas = true;
+                break;
+            }
+        }
+        return requiereComillas ? '"' + valor.replace("\"", "\"\"") + '"' : valor;
+    }
+}
@@ -2,9 +2,9 @@ package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.GuiaCampoDto;
 import com.diabetes.business_back.entities.GuiaCampo;
+import com.diabetes.business_back.mappers.GuiaCampoMapper;
 import com.diabetes.business_back.interfaces.IGuiaCampoService;
 import com.diabetes.business_back.repositories.GuiaCampoRepository;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,19 +16,23 @@ public class GuiaCampoService implements IGuiaCampoService {
     private GuiaCampoRepository guiacamporepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private GuiaCampoMapper guiaMapper;
+
+    @Autowired
+    private DatosReferenciaCache datosReferencia;
 
     @Override
     public GuiaCampoDto grabarGuiaCampo(GuiaCampoDto guiadto) {
-        GuiaCampo guia = modelMapper.map(guiadto, GuiaCampo.class);
+        GuiaCampo guia = guiaMapper.aEntidad(guiadto);
         GuiaCampo guardar = guiacamporepository.save(guia);
-        return modelMapper.map(guardar, GuiaCampoDto.class);
+        datosReferencia.recargarGuias();
+        return guiaMapper.aDto(guardar);
     }
 
     @Override
     public List<GuiaCampoDto> getGuiasCampos() {
-        return guiacamporepository.findAll().stream()
-                .map(guia -> modelMapper.map(guia, GuiaCampoDto.class))
+        return datosReferencia.getGuias().stream()
+                .map(guiaMapper::aDto)
                 .toList();
     }
 
@@ -36,6 +40,7 @@ public class GuiaCampoService implements IGuiaCampoService {
     public void eliminar(Long id) {
         if (guiacamporepository.existsById(id)) {
             guiacamporepository.deleteById(id);
+            datosReferencia.recargarGuias();
         } else {
             throw new RuntimeException("No se encontró la guía de campo con ID: " + id);
         }
@@ -59,22 +64,25 @@ public class GuiaCampoService implements IGuiaCampoService {
         guiaExistente.setUnidadMedida(guiadto.getUnidadMedida());
 
         GuiaCampo actualizado = guiacamporepository.save(guiaExistente);
-        return modelMapper.map(actualizado, GuiaCampoDto.class);
+        datosReferencia.recargarGuias();
+        return guiaMapper.aDto(actualizado);
     }
 
     @Override
     public GuiaCampoDto obtenerPorId(Long id) {
-        GuiaCampo guia = guiacamporepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Guía de campo no encontrada con ID: " + id));
-        return modelMapper.map(guia, GuiaCampoDto.class);
+        GuiaCampo guia = datosReferencia.guiaPorId(id);
+        if (guia == null) {
+            throw new RuntimeException("Guía de campo no encontrada con ID: " + id);
+        }
+        return guiaMapper.aDto(guia);
     }
 
     @Override
     public GuiaCampoDto obtenerPorNombreCampo(String nombreCampo) {
-        GuiaCampo guia = guiacamporepository.findByNombreCampo(nombreCampo);
+        GuiaCampo guia = datosReferencia.guiaPorNombreCampo(nombreCampo);
         if (guia == null) {
             throw new RuntimeException("Guía de campo no encontrada para: " + nombreCampo);
         }
-        return modelMapper.map(guia, GuiaCampoDto.class);
+        return guiaMapper.aDto(guia);
     }
 }
\ No newline at end of file
@@ -0,0 +1,514 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.EvaluacionRequestDto;
+import com.diabetes.business_back.dtos.PacienteDto;
+import com.diabetes.business_back.dtos.PrediccionLoteItemDto;
+import com.diabetes.business_back.dtos.PrediccionLoteResponseDto;
+import com.diabetes.business_back.entities.GuiaCampo;
+import com.diabetes.business_back.interfaces.IEvaluacionDiabetesService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Importación masiva de evaluaciones desde CSV o NDJSON. El archivo se lee fila por fila desde el stream
+ * de la solicitud; las filas se agrupan en bloques que se puntúan con {@link IEvaluacionDiabetesService#realizarPrediccionLote}
+ * (que también los persiste) con un número acotado de bloques en vuelo, y cada resultado se escribe como
+ * una línea NDJSON en el mismo orden del archivo. La memoria usada depende del tamaño de bloque, no del archivo.
+ */
+@Slf4j
+@Service
+public class ImportacionEvaluacionesService {
+    public static final String FORMATO_CSV = "csv";
+    public static final String FORMATO_NDJSON = "ndjson";
+
+    private static final String COLUMNA_PACIENTE = "id_paciente";
+
+    // nombreCampo (GuiaCampo) -> asignación del valor crudo en el DTO
+    private static final Map<String, BiConsumer<EvaluacionRequestDto, String>> CAMPOS = Map.ofEntries(
+            Map.entry("marcadores_geneticos", EvaluacionRequestDto::setMarcadoresGeneticos),
+            Map.entry("autoanticuerpos", EvaluacionRequestDto::setAutoanticuerpos),
+            Map.entry("antecedentes_familiares", EvaluacionRequestDto::setAntecedentesFamiliares),
+            Map.entry("factores_ambientales", EvaluacionRequestDto::setFactoresAmbientales),
+            Map.entry("etnicidad", EvaluacionRequestDto::setEtnicidad),
+            Map.entry("habitos_alimenticios", EvaluacionRequestDto::setHabitosAlimenticios),
+            Map.entry("prueba_tolerancia_glucosa", EvaluacionRequestDto::setPruebaToleranciaGlucosa),
+            Map.entry("pruebas_funcion_hepatica", EvaluacionRequestDto::setPruebasFuncionHepatica),
+            Map.entry("diagnostico_fibrosis_quistica", EvaluacionRequestDto::setDiagnosticoFibrosisQuistica),
+            Map.entry("uso_esteroides", EvaluacionRequestDto::setUsoEsteroides),
+            Map.entry("pruebas_geneticas", EvaluacionRequestDto::setPruebasGeneticas),
+            Map.entry("historial_embarazos", EvaluacionRequestDto::setHistorialEmbarazos),
+            Map.entry("diabetes_gestacional_previa", EvaluacionRequestDto::setDiabetesGestacionalPrevia),
+            Map.entry("historial_pcos", EvaluacionRequestDto::setHistorialPcos),
+            Map.entry("estado_tabaquismo", EvaluacionRequestDto::setEstadoTabaquismo),
+            Map.entry("sintomas_inicio_temprano", EvaluacionRequestDto::setSintomasInicioTemprano),
+            Map.entry("factores_socioeconomicos", EvaluacionRequestDto::setFactoresSocioeconomicos),
+            Map.entry("consumo_alcohol", EvaluacionRequestDto::setConsumoAlcohol),
+            Map.entry("actividad_fisica", EvaluacionRequestDto::setActividadFisica),
+            Map.entry("prueba_orina", EvaluacionRequestDto::setPruebaOrina),
+            Map.entry("niveles_insulina", decimal(EvaluacionRequestDto::setNivelesInsulina)),
+            Map.entry("edad", (dto, valor) -> dto.setEdad((int) Math.round(numero(valor)))),
+            Map.entry("indice_masa_corporal", decimal(EvaluacionRequestDto::setIndiceMasaCorporal)),
+            Map.entry("presion_arterial", decimal(EvaluacionRequestDto::setPresionArterial)),
+            Map.entry("niveles_colesterol", decimal(EvaluacionRequestDto::setNivelesColesterol)),
+            Map.entry("circunferencia_cintura", decimal(EvaluacionRequestDto::setCircunferenciaCintura)),
+            Map.entry("niveles_glucosa", decimal(EvaluacionRequestDto::setNivelesGlucosa)),
+            Map.entry("aumento_peso_embarazo", decimal(EvaluacionRequestDto::setAumentoPesoEmbarazo)),
+            Map.entry("salud_pancreatica", decimal(EvaluacionRequestDto::setSaludPancreatica)),
+            Map.entry("funcion_pulmonar", decimal(EvaluacionRequestDto::setFuncionPulmonar)),
+            Map.entry("evaluaciones_neurologicas", decimal(EvaluacionRequestDto::setEvaluacionesNeurologicas)),
+            Map.entry("niveles_enzimas_digestivas", decimal(EvaluacionRequestDto::setNivelesEnzimasDigestivas)),
+            Map.entry("peso_nacimiento", decimal(EvaluacionRequestDto::setPesoNacimiento)),
+            Map.entry(COLUMNA_PACIENTE, (dto, valor) -> {
+                PacienteDto paciente = new PacienteDto();
+                paciente.setIdPaciente(Long.parseLong(valor));
+                dto.setPacientedto(paciente);
+            })
+    );
+
+    @Autowired
+    private IEvaluacionDiabetesService evaluacionservice;
+
+    @Autowired
+    private DatosReferenciaCache datosReferencia;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ml.importacion.tamano-bloque:200}")
+    private int tamanoBloque;
+
+    @Value("${ml.importacion.bloques-en-vuelo:4}")
+    private int bloquesEnVuelo;
+
+    @Value("${ml.importacion.concurrentes:2}")
+    private int importacionesConcurrentes;
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * Destino de las líneas NDJSON (cada llamada recibe una línea sin el salto final)
+     */
+    @FunctionalInterface
+    public interface SalidaLineas {
+        void escribir(String linea) throws IOException;
+    }
+
+    /**
+     * Ejecuta la importación en segundo plano. Rechaza con 503 si ya hay demasiadas importaciones en curso.
+     */
+    public CompletableFuture<Map<String, Object>> importarAsync(InputStream entrada, String formato, SalidaLineas salida) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return importar(entrada, formato, salida);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor());
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Hay demasiadas importaciones en curso. Intente nuevamente más tarde");
+        }
+    }
+
+    public Map<String, Object> importar(InputStream entrada, String formato, SalidaLineas salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        LectorFilas lector = FORMATO_NDJSON.equals(formato)
+                ? new LectorNdjson(reader, objectMapper, this::resolverColumna)
+                : new LectorCsv(reader, this::resolverColumna);
+
+        log.info("📥 Iniciando importación {} (bloques de {}, {} en vuelo)", formato, tamanoBloque, bloquesEnVuelo);
+
+        Map<String, Object> encabezado = new LinkedHashMap<>();
+        encabezado.put("formato", formato);
+        encabezado.put("columnas", lector.columnas());
+        encabezado.put("ignoradas", lector.ignoradas());
+        salida.escribir(objectMapper.writeValueAsString(Map.of("inicio", encabezado)));
+
+        Deque<Bloque> enVuelo = new ArrayDeque<>();
+        long[] contadores = new long[3]; // filas, exitosas, con error
+        List<Fila> filas = new ArrayList<>(tamanoBloque);
+
+        Fila fila;
+        while ((fila = lector.siguiente()) != null) {
+            filas.add(fila);
+            if (filas.size() == tamanoBloque) {
+                enVuelo.addLast(enviar(filas));
+                filas = new ArrayList<>(tamanoBloque);
+                // Con el máximo de bloques en vuelo se espera al más antiguo antes de seguir leyendo
+                if (enVuelo.size() >= bloquesEnVuelo) {
+                    escribirBloque(enVuelo.removeFirst(), salida, contadores);
+                }
+            }
+        }
+        if (!filas.isEmpty()) {
+            enVuelo.addLast(enviar(filas));
+        }
+        while (!enVuelo.isEmpty()) {
+            escribirBloque(enVuelo.removeFirst(), salida, contadores);
+        }
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("filas", contadores[0]);
+        resumen.put("exitosas", contadores[1]);
+        resumen.put("conError", contadores[2]);
+        resumen.put("duracionMs", System.currentTimeMillis() - inicio);
+        resumen.put("columnas", lector.columnas());
+        resumen.put("ignoradas", lector.ignoradas());
+        salida.escribir(objectMapper.writeValueAsString(Map.of("resumen", resumen)));
+
+        log.info("✅ Importación completada: {} filas, {} exitosas, {} con error",
+                contadores[0], contadores[1], contadores[2]);
+        return resumen;
+    }
+
+    private Bloque enviar(List<Fila> filas) {
+        List<EvaluacionRequestDto> requests = new ArrayList<>(filas.size());
+        for (Fila fila : filas) {
+            if (fila.request() != null) {
+                requests.add(fila.request());
+            }
+        }
+
+        CompletableFuture<PrediccionLoteResponseDto> futura = requests.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : evaluacionservice.realizarPrediccionLoteAsync(requests)
+                // Con el pool ML saturado el bloque se procesa en el hilo de la importación
+                .exceptionallyCompose(e -> causa(e) instanceof ResponseStatusException
+                        ? CompletableFuture.completedFuture(evaluacionservice.realizarPrediccionLote(requests))
+                        : CompletableFuture.failedFuture(e));
+        return new Bloque(filas, futura);
+    }
+
+    private void escribirBloque(Bloque bloque, SalidaLineas salida, long[] contadores) throws IOException {
+        List<PrediccionLoteItemDto> resultados = null;
+        String errorBloque = null;
+        try {
+            PrediccionLoteResponseDto respuesta = bloque.futura().join();
+            resultados = respuesta != null ? respuesta.getResultados() : List.of();
+        } catch (CompletionException e) {
+            errorBloque = "Error al procesar el bloque: " + causa(e).getMessage();
+        }
+
+        int siguiente = 0;
+        for (Fila fila : bloque.filas()) {
+            PrediccionLoteItemDto item;
+            if (fila.request() == null) {
+                item = new PrediccionLoteItemDto(null, false, null, fila.error());
+            } else if (errorBloque != null) {
+                item = new PrediccionLoteItemDto(null, false, null, errorBloque);
+                siguiente++;
+            } else {
+                item = resultados.get(siguiente++);
+            }
+            // El índice de la respuesta pasa a ser el número de fila del archivo
+            item.setIndice((int) fila.numero());
+
+            contadores[0]++;
+            contadores[Boolean.TRUE.equals(item.getExito()) ? 1 : 2]++;
+            salida.escribir(objectMapper.writeValueAsString(item));
+        }
+    }
+
+    /**
+     * Resuelve un encabezado del archivo a un nombreCampo de las guías: coincidencia directa con el
+     * nombreCampo (normalizado) o con el título en español de la guía. Devuelve null si no corresponde a ningún campo.
+     */
+    String resolverColumna(String encabezado) {
+        if (encabezado == null) {
+            return null;
+        }
+        String normalizado = encabezado.trim().toLowerCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+        if (CAMPOS.containsKey(normalizado)) {
+            return normalizado;
+        }
+        for (GuiaCampo guia : datosReferencia.getGuias()) {
+            if (guia.getTituloEs() != null && guia.getTituloEs().equalsIgnoreCase(encabezado.trim())
+                    && CAMPOS.containsKey(guia.getNombreCampo())) {
+                return guia.getNombreCampo();
+            }
+        }
+        return null;
+    }
+
+    private static Fila construirFila(long numero, Map<String, String> valores) {
+        EvaluacionRequestDto request = new EvaluacionRequestDto();
+        for (Map.Entry<String, String> valor : valores.entrySet()) {
+            String crudo = valor.getValue() != null ? valor.getValue().trim() : null;
+            if (crudo == null || crudo.isEmpty()) {
+                continue;
+            }
+            try {
+                CAMPOS.get(valor.getKey()).accept(request, crudo);
+            } catch (NumberFormatException e) {
+                return new Fila(numero, null, "Valor inválido para '" + valor.getKey() + "': " + crudo);
+            }
+        }
+        return new Fila(numero, request, null);
+    }
+
+    private static BiConsumer<EvaluacionRequestDto, String> decimal(BiConsumer<EvaluacionRequestDto, Double> setter) {
+        return (dto, valor) -> setter.accept(dto, numero(valor));
+    }
+
+    // Acepta coma decimal, habitual en exportaciones de planillas en español
+    private static double numero(String valor) {
+        return Double.parseDouble(valor.replace(',', '.'));
+    }
+
+    private static Throwable causa(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private ThreadPoolExecutor executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = new ThreadPoolExecutor(importacionesConcurrentes, importacionesConcurrentes,
+                            60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                                Thread hilo = new Thread(r, "importacion-evaluaciones");
+                                hilo.setDaemon(true);
+                                return hilo;
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Fila(long numero, EvaluacionRequestDto request, String error) {
+    }
+
+    private record Bloque(List<Fila> filas, CompletableFuture<PrediccionLoteResponseDto> futura) {
+    }
+
+    private interface LectorFilas {
+        Map<String, String> columnas();
+
+        List<String> ignoradas();
+
+        /**
+         * Siguiente fila del archivo, o null al terminar
+         */
+        Fila siguiente() throws IOException;
+    }
+
+    /**
+     * CSV con encabezado (RFC 4180: comillas dobles, "" como escape y saltos de línea dentro de comillas).
+     * El separador (coma o punto y coma) se detecta en el encabezado.
+     */
+    private static final class LectorCsv implements LectorFilas {
+        private final BufferedReader reader;
+        private final char separador;
+        private final String[] camposPorColumna;
+        private final Map<String, String> columnas = new LinkedHashMap<>();
+        private final List<String> ignoradas = new ArrayList<>();
+        private final StringBuilder celda = new StringBuilder();
+        private long numero = 1;
+
+        LectorCsv(BufferedReader reader, Function<String, String> resolver) throws IOException {
+            this.reader = reader;
+            String linea = reader.readLine();
+            if (linea == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo está vacío");
+            }
+            if (!linea.isEmpty() && linea.charAt(0) == '\uFEFF') {
+                linea = linea.substring(1);
+            }
+            separador = contar(linea, ';') > contar(linea, ',') ? ';' : ',';
+
+            List<String> encabezados = leerRegistro(new BufferedReader(new StringReader(linea)));
+            camposPorColumna = new String[encabezados.size()];
+            for (int i = 0; i < encabezados.size(); i++) {
+                camposPorColumna[i] = resolver.apply(encabezados.get(i));
+                if (camposPorColumna[i] != null) {
+                    columnas.put(encabezados.get(i), camposPorColumna[i]);
+                } else {
+                    ignoradas.add(encabezados.get(i));
+                }
+            }
+        }
+
+        @Override
+        public Map<String, String> columnas() {
+            return columnas;
+        }
+
+        @Override
+        public List<String> ignoradas() {
+            return ignoradas;
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            List<String> registro;
+            do {
+                registro = leerRegistro(reader);
+                if (registro == null) {
+                    return null;
+                }
+                numero++;
+            } while (registro.size() == 1 && registro.get(0).isEmpty()); // líneas en blanco
+
+            if (registro.size() != camposPorColumna.length) {
+                return new Fila(numero, null, "La fila tiene " + registro.size() + " columnas y el encabezado "
+                        + camposPorColumna.length);
+            }
+            Map<String, String> valores = new HashMap<>();
+            for (int i = 0; i < registro.size(); i++) {
+                if (camposPorColumna[i] != null) {
+                    valores.put(camposPorColumna[i], registro.get(i));
+                }
+            }
+            return construirFila(numero, valores);
+        }
+
+        private List<String> leerRegistro(BufferedReader origen) throws IOException {
+            List<String> registro = new ArrayList<>();
+            celda.setLength(0);
+            boolean entreComillas = false;
+            int c = origen.read();
+            if (c == -1) {
+                return null;
+            }
+
+            while (c != -1) {
+                char caracter = (char) c;
+                if (entreComillas) {
+                    if (caracter == '"') {
+                        origen.mark(1);
+                        int siguiente = origen.read();
+                        if (siguiente == '"') {
+                            celda.append('"');
+                        } else {
+                            entreComillas = false;
+                            if (siguiente != -1) {
+                                origen.reset();
+                            }
+                        }
+                    } else {
+                        celda.append(caracter);
+                    }
+                } else if (caracter == '"') {
+                    entreComillas = true;
+                } else if (caracter == separador) {
+                    registro.add(celda.toString());
+                    celda.setLength(0);
+                } else if (caracter == '\n') {
+                    break;
+                } else if (caracter != '\r') {
+                    celda.append(caracter);
+                }
+                c = origen.read();
+            }
+            registro.add(celda.toString());
+            return registro;
+        }
+
+        private static int contar(String texto, char caracter) {
+            int total = 0;
+            for (int i = 0; i < texto.length(); i++) {
+                if (texto.charAt(i) == caracter) {
+                    total++;
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Un objeto JSON por línea; las claves se resuelven igual que los encabezados CSV
+     */
+    private static final class LectorNdjson implements LectorFilas {
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+        private final Function<String, String> resolver;
+        private final Map<String, String> columnas = new LinkedHashMap<>();
+        private final List<String> ignoradas = new ArrayList<>();
+        private long numero;
+
+        LectorNdjson(BufferedReader reader, ObjectMapper objectMapper, Function<String, String> resolver) {
+            this.reader = reader;
+            this.objectMapper = objectMapper;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Map<String, String> columnas() {
+            return columnas;
+        }
+
+        @Override
+        public List<String> ignoradas() {
+            return ignoradas;
+        }
+
+        @Override
+        public Fila siguiente() throws IOException {
+            String linea;
+            do {
+                linea = reader.readLine();
+                if (linea == null) {
+                    return null;
+                }
+                numero++;
+            } while (linea.isBlank());
+
+            JsonNode objeto;
+            try {
+                objeto = objectMapper.readTree(linea);
+            } catch (IOException e) {
+                return new Fila(numero, null, "JSON inválido: " + e.getOriginalMessage());
+            }
+            if (objeto == null || !objeto.isObject()) {
+                return new Fila(numero, null, "Se esperaba un objeto JSON por línea");
+            }
+
+            Map<String, String> valores = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> campos = objeto.fields();
+            while (campos.hasNext()) {
+                Map.Entry<String, JsonNode> campo = campos.next();
+                // Las claves se resuelven una vez y se recuerdan para las líneas siguientes
+                String nombreCampo = columnas.get(campo.getKey());
+                if (nombreCampo == null && !ignoradas.contains(campo.getKey())) {
+                    nombreCampo = resolver.apply(campo.getKey());
+                    if (nombreCampo != null) {
+                        columnas.put(campo.getKey(), nombreCampo);
+                    } else if (ignoradas.size() < 100) {
+                        ignoradas.add(campo.getKey());
+                    }
+                }
+                if (nombreCampo != null && !campo.getValue().isNull()) {
+                    valores.put(nombreCampo, campo.getValue().asText());
+                }
+            }
+            return construirFila(numero, valores);
+        }
+    }
+}
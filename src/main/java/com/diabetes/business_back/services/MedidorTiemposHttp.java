@@ -0,0 +1,276 @@
+package com.diabetes.business_back.services;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Registra, por endpoint de la API ML, cuánto de cada llamada se fue en esperar una conexión del pool,
+ * en abrir una conexión nueva, en recibir las cabeceras y en leer la respuesta completa. La lectura termina
+ * cuando el extractor consume o cierra el cuerpo, no cuando llegan las cabeceras: en los lotes la transferencia
+ * y decodificación del cuerpo es la parte que crece con el tamaño. RestTemplate ejecuta la llamada completa en el
+ * hilo que la inicia, por eso las mediciones del pool se asocian a la llamada con un ThreadLocal.
+ */
+@Component
+public class MedidorTiemposHttp implements ClientHttpRequestInterceptor {
+    private static final ThreadLocal<Medicion> ACTUAL = new ThreadLocal<>();
+
+    @Autowired
+    private ObjectProvider<PoolingHttpClientConnectionManager> connectionManager;
+
+    private final Map<String, Acumulado> porEndpoint = new ConcurrentHashMap<>();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Medicion medicion = new Medicion();
+        ACTUAL.set(medicion);
+        Acumulado acumulado = porEndpoint.computeIfAbsent(request.getURI().getPath(), k -> new Acumulado());
+        long inicio = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            long total = System.nanoTime() - inicio;
+            acumulado.registrar(medicion, total, total, false);
+            throw e;
+        } finally {
+            ACTUAL.remove();
+        }
+        medicion.cabeceras = System.nanoTime() - inicio;
+        return new RespuestaMedida(response, exito -> acumulado.registrar(medicion, medicion.cabeceras,
+                System.nanoTime() - inicio, exito));
+    }
+
+    /**
+     * Tiempo que la llamada en curso esperó a que el pool le entregara una conexión
+     */
+    public void registrarEspera(long nanos) {
+        Medicion medicion = ACTUAL.get();
+        if (medicion != null) {
+            medicion.espera += nanos;
+        }
+    }
+
+    /**
+     * Tiempo que la llamada en curso tardó en abrir una conexión nueva (no ocurre al reutilizar una)
+     */
+    public void registrarConexion(long nanos) {
+        Medicion medicion = ACTUAL.get();
+        if (medicion != null) {
+            medicion.conexion += nanos;
+            medicion.conexionNueva = true;
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+
+        PoolingHttpClientConnectionManager manager = connectionManager.getIfAvailable();
+        if (manager != null) {
+            PoolStats pool = manager.getTotalStats();
+            Map<String, Object> estadoPool = new LinkedHashMap<>();
+            estadoPool.put("enUso", pool.getLeased());
+            estadoPool.put("disponibles", pool.getAvailable());
+            estadoPool.put("esperando", pool.getPending());
+            estadoPool.put("maximo", pool.getMax());
+            estadoPool.put("maximoPorRuta", manager.getDefaultMaxPerRoute());
+            estadisticas.put("pool", estadoPool);
+        }
+
+        Map<String, Object> endpoints = new TreeMap<>();
+        porEndpoint.forEach((endpoint, acumulado) -> endpoints.put(endpoint, acumulado.resumen()));
+        estadisticas.put("endpoints", endpoints);
+        return estadisticas;
+    }
+
+    public void reiniciar() {
+        porEndpoint.clear();
+    }
+
+    private static final class Medicion {
+        long espera;
+        long conexion;
+        boolean conexionNueva;
+        long cabeceras;
+    }
+
+    /**
+     * Respuesta que avisa una sola vez cuando el cuerpo se terminó de leer o se cerró, lo que ocurra primero
+     */
+    private static final class RespuestaMedida implements ClientHttpResponse {
+        private final ClientHttpResponse delegada;
+        private final Consumer<Boolean> alTerminar;
+        private final AtomicBoolean terminada = new AtomicBoolean();
+        private InputStream cuerpo;
+
+        RespuestaMedida(ClientHttpResponse delegada, Consumer<Boolean> alTerminar) {
+            this.delegada = delegada;
+            this.alTerminar = alTerminar;
+        }
+
+        private void terminar(boolean exito) {
+            if (terminada.compareAndSet(false, true)) {
+                alTerminar.accept(exito);
+            }
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (cuerpo == null) {
+                cuerpo = new CuerpoMedido(delegada.getBody());
+            }
+            return cuerpo;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegada.getStatusCode();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int getRawStatusCode() throws IOException {
+            return delegada.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegada.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegada.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegada.close();
+            } finally {
+                terminar(true);
+            }
+        }
+
+        private final class CuerpoMedido extends FilterInputStream {
+            CuerpoMedido(InputStream original) {
+                super(original);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    return medir(super.read());
+                } catch (IOException e) {
+                    terminar(false);
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                try {
+                    return medir(super.read(b, off, len));
+                } catch (IOException e) {
+                    terminar(false);
+                    throw e;
+                }
+            }
+
+            private int medir(int leido) {
+                if (leido < 0) {
+                    terminar(true);
+                }
+                return leido;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    terminar(true);
+                }
+            }
+        }
+    }
+
+    private static final class Acumulado {
+        private long llamadas;
+        private long errores;
+        private long conexionesNuevas;
+        private long sumaEspera;
+        private long maxEspera;
+        private long sumaConexion;
+        private long maxConexion;
+        private long sumaCabeceras;
+        private long maxCabeceras;
+        private long sumaLectura;
+        private long maxLectura;
+
+        /**
+         * @param cabeceras nanos desde el inicio hasta recibir las cabeceras
+         * @param total nanos desde el inicio hasta terminar o cerrar el cuerpo
+         */
+        synchronized void registrar(Medicion medicion, long cabeceras, long total, boolean exito) {
+            long hastaCabeceras = Math.max(0, cabeceras - medicion.espera - medicion.conexion);
+            long lectura = Math.max(0, total - medicion.espera - medicion.conexion);
+
+            llamadas++;
+            if (!exito) {
+                errores++;
+            }
+            if (medicion.conexionNueva) {
+                conexionesNuevas++;
+            }
+            sumaEspera += medicion.espera;
+            maxEspera = Math.max(maxEspera, medicion.espera);
+            sumaConexion += medicion.conexion;
+            maxConexion = Math.max(maxConexion, medicion.conexion);
+            sumaCabeceras += hastaCabeceras;
+            maxCabeceras = Math.max(maxCabeceras, hastaCabeceras);
+            sumaLectura += lectura;
+            maxLectura = Math.max(maxLectura, lectura);
+        }
+
+        synchronized Map<String, Object> resumen() {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("llamadas", llamadas);
+            resumen.put("errores", errores);
+            resumen.put("conexionesNuevas", conexionesNuevas);
+            resumen.put("reutilizadas", llamadas - conexionesNuevas);
+            resumen.put("esperaPromedioMs", promedioMs(sumaEspera));
+            resumen.put("esperaMaximaMs", maxEspera / 1_000_000.0);
+            resumen.put("conexionPromedioMs", promedioMs(sumaConexion));
+            resumen.put("conexionMaximaMs", maxConexion / 1_000_000.0);
+            resumen.put("cabecerasPromedioMs", promedioMs(sumaCabeceras));
+            resumen.put("cabecerasMaximaMs", maxCabeceras / 1_000_000.0);
+            resumen.put("lecturaPromedioMs", promedioMs(sumaLectura));
+            resumen.put("lecturaMaximaMs", maxLectura / 1_000_000.0);
+            return resumen;
+        }
+
+        private double promedioMs(long sumaNanos) {
+            return llamadas > 0 ? sumaNanos / 1_000_000.0 / llamadas : 0.0;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.diabetes.business_back.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Mueve las columnas frías que las versiones anteriores guardaban en evaluaciones_diabetes a
+ * evaluaciones_diabetes_detalle. Al arrancar copia por rangos de ID (idempotente: ON CONFLICT DO NOTHING) y pasa
+ * los textos generados al almacén de textos, sin eliminar nada. Las columnas antiguas se eliminan recién cuando un
+ * operador lo pide, con eliminar-columnas habilitado y después de verificar los valores copiados.
+ */
+@Slf4j
+@Component
+public class MigracionDetalleEvaluaciones {
+    static final List<String> COLUMNAS_TEXTO = List.of("explicacion", "recomendaciones");
+    static final List<String> COLUMNAS_FRIAS = List.of(
+            "marcadores_geneticos", "autoanticuerpos", "antecedentes_familiares",
+            "factores_ambientales", "etnicidad", "habitos_alimenticios", "prueba_tolerancia_glucosa",
+            "pruebas_funcion_hepatica", "diagnostico_fibrosis_quistica", "uso_esteroides", "pruebas_geneticas",
+            "historial_embarazos", "diabetes_gestacional_previa", "historial_pcos", "estado_tabaquismo",
+            "sintomas_inicio_temprano", "factores_socioeconomicos", "consumo_alcohol", "actividad_fisica",
+            "prueba_orina");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MigracionTextosGenerados migracionTextos;
+
+    @Value("${evaluaciones.detalle.migracion.enabled:true}")
+    private boolean habilitada;
+
+    @Value("${evaluaciones.detalle.migracion.tamano-lote:5000}")
+    private int tamanoLote;
+
+    @Value("${evaluaciones.detalle.migracion.eliminar-columnas:false}")
+    private boolean eliminarColumnas;
+
+    private volatile String estado = "pendiente";
+    private volatile long copiadas;
+    private volatile LocalDateTime finalizadaEn;
+
+    // En un hilo aparte: en tablas grandes la copia puede tardar y no debe demorar el arranque
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitada) {
+            estado = "deshabilitada";
+            return;
+        }
+        Thread hilo = new Thread(this::migrar, "migracion-detalle-evaluaciones");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Copia las columnas frías al detalle y pasa los textos al almacén. No elimina nada: las columnas antiguas
+     * quedan como respaldo hasta que un operador ejecute {@link #eliminarColumnasAntiguas()}.
+     */
+    public synchronized void migrar() {
+        try {
+            List<String> existentes = columnas("evaluaciones_diabetes");
+            List<String> antiguas = COLUMNAS_FRIAS.stream().filter(existentes::contains).toList();
+            List<String> textosAntiguos = COLUMNAS_TEXTO.stream().filter(existentes::contains).toList();
+            List<String> textosDetalle = COLUMNAS_TEXTO.stream().filter(columnas("evaluaciones_diabetes_detalle")::contains).toList();
+            if (antiguas.isEmpty() && textosAntiguos.isEmpty() && textosDetalle.isEmpty()) {
+                estado = "completa";
+                return;
+            }
+
+            long inicio = System.currentTimeMillis();
+            long total = 0;
+            // En los arranques posteriores a la copia no hay nada que copiar: se evita recorrer la tabla entera
+            if ((!antiguas.isEmpty() || !textosAntiguos.isEmpty()) && contarSinDetalle() > 0) {
+                estado = "copiando";
+                log.info("🗄️ Migrando {} columnas frías y {} de texto de evaluaciones_diabetes al detalle",
+                        antiguas.size(), textosAntiguos.size());
+
+                // Las columnas que ya no estén en la tabla antigua se copian como NULL
+                String origen = COLUMNAS_FRIAS.stream()
+                        .map(columna -> antiguas.contains(columna) ? "e." + columna : "NULL")
+                        .collect(Collectors.joining(", "));
+                String sql = "INSERT INTO evaluaciones_diabetes_detalle (id_evaluacion, " + String.join(", ", COLUMNAS_FRIAS) + ") " +
+                        "SELECT e.id_evaluacion, " + origen + " FROM evaluaciones_diabetes e " +
+                        "WHERE e.id_evaluacion > ? AND e.id_evaluacion <= ? " +
+                        "ON CONFLICT (id_evaluacion) DO NOTHING";
+
+                // Las evaluaciones posteriores a este máximo ya se guardan con su detalle
+                Long maximo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id_evaluacion), 0) FROM evaluaciones_diabetes", Long.class);
+                for (long desde = 0; desde < maximo; desde += tamanoLote) {
+                    total += jdbcTemplate.update(sql, desde, Math.min(desde + tamanoLote, maximo));
+                    copiadas = total;
+                }
+            }
+
+            long sinDetalle = contarSinDetalle();
+            if (sinDetalle > 0) {
+                estado = "incompleta";
+                log.warn("⚠️ {} evaluaciones siguen sin detalle", sinDetalle);
+                return;
+            }
+
+            // Primero los textos que ya estaban en el detalle y después los que quedaban en la tabla caliente
+            estado = "deduplicando";
+            long sinClave = 0;
+            if (textosDetalle.size() == COLUMNAS_TEXTO.size()) {
+                sinClave += migracionTextos.deduplicar("evaluaciones_diabetes_detalle");
+            }
+            if (textosAntiguos.size() == COLUMNAS_TEXTO.size()) {
+                sinClave += migracionTextos.deduplicar("evaluaciones_diabetes");
+            }
+            if (sinClave > 0) {
+                estado = "incompleta";
+                log.warn("⚠️ {} textos siguen sin clave en el almacén", sinClave);
+                return;
+            }
+
+            estado = "copiada";
+            finalizadaEn = LocalDateTime.now();
+            log.info("✅ Detalle de evaluaciones migrado: {} filas copiadas en {} ms; las columnas antiguas se conservan " +
+                    "hasta eliminarlas desde /api/evaluaciones/detalle/migracion/eliminar-columnas", total, System.currentTimeMillis() - inicio);
+
+        } catch (Exception e) {
+            estado = "error";
+            log.error("❌ Error al migrar el detalle de evaluaciones", e);
+        }
+    }
+
+    /**
+     * Elimina las columnas antiguas ya migradas. Solo a pedido de un operador y con eliminar-columnas habilitado;
+     * antes comprueba que toda evaluación tenga detalle, que ningún valor antiguo no nulo difiera del copiado y
+     * que todo texto tenga su clave y se lea igual desde el almacén. Si algo no cuadra no elimina nada y devuelve
+     * lo encontrado.
+     */
+    public synchronized Map<String, Object> eliminarColumnasAntiguas() {
+        if (!eliminarColumnas) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "La eliminación de columnas antiguas no está habilitada (evaluaciones.detalle.migracion.eliminar-columnas)");
+        }
+        if (!"copiada".equals(estado) && !"completa".equals(estado)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "La migración del detalle no terminó (estado: " + estado + ")");
+        }
+
+        List<String> existentes = columnas("evaluaciones_diabetes");
+        List<String> antiguas = COLUMNAS_FRIAS.stream().filter(existentes::contains).toList();
+        List<String> textosAntiguos = COLUMNAS_TEXTO.stream().filter(existentes::contains).toList();
+        List<String> textosDetalle = COLUMNAS_TEXTO.stream().filter(columnas("evaluaciones_diabetes_detalle")::contains).toList();
+
+        Map<String, Object> verificacion = new LinkedHashMap<>();
+        long sinDetalle = contarSinDetalle();
+        verificacion.put("evaluacionesSinDetalle", sinDetalle);
+
+        // Un valor antiguo nulo no se pierde; uno no nulo tiene que estar igual en el detalle
+        long diferencias = 0;
+        if (!antiguas.isEmpty()) {
+            String distintos = antiguas.stream()
+                    .map(columna -> "(e." + columna + " IS NOT NULL AND e." + columna + " IS DISTINCT FROM d." + columna + ")")
+                    .collect(Collectors.joining(" OR "));
+            String desde = " FROM evaluaciones_diabetes e JOIN evaluaciones_diabetes_detalle d ON d.id_evaluacion = e.id_evaluacion WHERE " + distintos;
+            diferencias = jdbcTemplate.queryForObject("SELECT COUNT(*)" + desde, Long.class);
+            verificacion.put("valoresDistintos", diferencias);
+            verificacion.put("ejemplosDistintos", jdbcTemplate.queryForList(
+                    "SELECT e.id_evaluacion" + desde + " ORDER BY e.id_evaluacion LIMIT 20", Long.class));
+        }
+
+        long textosSinClave = migracionTextos.contarSinClave(textosDetalle.size() == COLUMNAS_TEXTO.size(),
+                textosAntiguos.size() == COLUMNAS_TEXTO.size());
+        verificacion.put("textosSinClave", textosSinClave);
+
+        // Tras eliminar las columnas los textos solo quedan comprimidos en el almacén: cada uno se relee y se compara
+        long textosDistintos = 0;
+        if (textosSinClave == 0 && textosDetalle.size() == COLUMNAS_TEXTO.size()) {
+            textosDistintos += migracionTextos.verificar("evaluaciones_diabetes_detalle");
+        }
+        if (textosSinClave == 0 && textosAntiguos.size() == COLUMNAS_TEXTO.size()) {
+            textosDistintos += migracionTextos.verificar("evaluaciones_diabetes");
+        }
+        verificacion.put("textosDistintos", textosDistintos);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("verificacion", verificacion);
+        if (sinDetalle > 0 || diferencias > 0 || textosSinClave > 0 || textosDistintos > 0) {
+            resultado.put("eliminadas", List.of());
+            log.warn("⚠️ Las columnas antiguas no se eliminan, la verificación encontró diferencias: {}", verificacion);
+            return resultado;
+        }
+
+        // Las filas existentes se achican al reescribirse (UPDATE, VACUUM FULL o pg_repack)
+        List<String> eliminadas = new ArrayList<>();
+        List<String> eliminar = new ArrayList<>(antiguas);
+        eliminar.addAll(textosAntiguos);
+        if (!eliminar.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE evaluaciones_diabetes " + eliminar.stream()
+                    .map(columna -> "DROP COLUMN IF EXISTS " + columna)
+                    .collect(Collectors.joining(", ")));
+            eliminar.forEach(columna -> eliminadas.add("evaluaciones_diabetes." + columna));
+        }
+        if (!textosDetalle.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE evaluaciones_diabetes_detalle " + textosDetalle.stream()
+                    .map(columna -> "DROP COLUMN IF EXISTS " + columna)
+                    .collect(Collectors.joining(", ")));
+            textosDetalle.forEach(columna -> eliminadas.add("evaluaciones_diabetes_detalle." + columna));
+        }
+        estado = "completa";
+        log.info("🗑️ Columnas antiguas eliminadas tras la verificación: {}", eliminadas);
+        resultado.put("eliminadas", eliminadas);
+        return resultado;
+    }
+
+    private long contarSinDetalle() {
+        Long sinDetalle = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM evaluaciones_diabetes e WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM evaluaciones_diabetes_detalle d WHERE d.id_evaluacion = e.id_evaluacion)",
+                Long.class);
+        return sinDetalle != null ? sinDetalle : 0;
+    }
+
+    private List<String> columnas(String tabla) {
+        return jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ?",
+                String.class, tabla);
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitada", habilitada);
+        estadisticas.put("estado", estado);
+        estadisticas.put("filasCopiadas", copiadas);
+        estadisticas.put("eliminarColumnas", eliminarColumnas);
+        estadisticas.put("finalizadaEn", finalizadaEn);
+        estadisticas.put("textos", migracionTextos.obtenerEstadisticas());
+        return estadisticas;
+    }
+}
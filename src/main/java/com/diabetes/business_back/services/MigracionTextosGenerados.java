@@ -0,0 +1,164 @@
+package com.diabetes.business_back.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Pasa al almacén de textos la explicación y las recomendaciones que las versiones anteriores guardaban en
+ * columnas TEXT, y deja en el detalle solo sus claves. Trabaja por páginas de ID y solo completa claves
+ * nulas, así que se puede interrumpir y repetir. La orquesta {@link MigracionDetalleEvaluaciones}.
+ */
+@Slf4j
+@Component
+public class MigracionTextosGenerados {
+    private static final String SQL_ASIGNAR_CLAVES =
+            "UPDATE evaluaciones_diabetes_detalle SET explicacion_hash = COALESCE(explicacion_hash, ?), " +
+                    "recomendaciones_hash = COALESCE(recomendaciones_hash, ?) WHERE id_evaluacion = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AlmacenTextosGenerados almacen;
+
+    @Value("${evaluaciones.textos.migracion.tamano-lote:1000}")
+    private int tamanoLote;
+
+    private final AtomicLong filasProcesadas = new AtomicLong();
+    private final AtomicLong textosLeidos = new AtomicLong();
+    private final AtomicLong textosVerificados = new AtomicLong();
+
+    /**
+     * Deduplica los textos de la tabla indicada (el detalle o la tabla caliente antigua) y devuelve cuántos
+     * detalles con texto siguen sin clave al terminar.
+     */
+    public long deduplicar(String tabla) {
+        // Solo las filas a las que aún les falta alguna clave: en los arranques siguientes no se vuelve a comprimir nada
+        String sqlPagina = "SELECT t.id_evaluacion, t.explicacion, t.recomendaciones FROM " + tabla + " t " +
+                "JOIN evaluaciones_diabetes_detalle d ON d.id_evaluacion = t.id_evaluacion WHERE t.id_evaluacion > ? " +
+                "AND ((t.explicacion IS NOT NULL AND d.explicacion_hash IS NULL) " +
+                "OR (t.recomendaciones IS NOT NULL AND d.recomendaciones_hash IS NULL)) " +
+                "ORDER BY t.id_evaluacion LIMIT ?";
+        long inicio = System.currentTimeMillis();
+        long ultimo = 0;
+        long filas = 0;
+
+        while (true) {
+            List<Long> ids = new ArrayList<>(tamanoLote);
+            List<String> textos = new ArrayList<>(tamanoLote * 2);
+            jdbcTemplate.query(sqlPagina, rs -> {
+                ids.add(rs.getLong("id_evaluacion"));
+                textos.add(rs.getString("explicacion"));
+                textos.add(rs.getString("recomendaciones"));
+            }, ultimo, tamanoLote);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            List<String> claves = almacen.guardar(textos);
+            List<Object[]> parametros = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                parametros.add(new Object[]{claves.get(2 * i), claves.get(2 * i + 1), ids.get(i)});
+            }
+            jdbcTemplate.batchUpdate(SQL_ASIGNAR_CLAVES, parametros);
+
+            ultimo = ids.get(ids.size() - 1);
+            filas += ids.size();
+            filasProcesadas.addAndGet(ids.size());
+            textosLeidos.addAndGet(textos.stream().filter(Objects::nonNull).count());
+        }
+
+        long pendientes = contarSinClave(tabla);
+        log.info("🗜️ Textos de {} deduplicados: {} filas en {} ms, {} pendientes", tabla, filas,
+                System.currentTimeMillis() - inicio, pendientes);
+        return pendientes;
+    }
+
+    /**
+     * Lee de vuelta desde la base, sin pasar por la caché, cada texto de la tabla indicada por la clave que quedó
+     * en el detalle, lo descomprime y lo compara con el original. Devuelve cuántos faltan o no coinciden.
+     */
+    public long verificar(String tabla) {
+        String sqlPagina = "SELECT t.id_evaluacion, t.explicacion, t.recomendaciones, d.explicacion_hash, d.recomendaciones_hash " +
+                "FROM " + tabla + " t JOIN evaluaciones_diabetes_detalle d ON d.id_evaluacion = t.id_evaluacion " +
+                "WHERE t.id_evaluacion > ? AND (t.explicacion IS NOT NULL OR t.recomendaciones IS NOT NULL) " +
+                "ORDER BY t.id_evaluacion LIMIT ?";
+        long ultimo = 0;
+        long distintos = 0;
+
+        while (true) {
+            List<Long> ids = new ArrayList<>(tamanoLote);
+            List<String> textos = new ArrayList<>(tamanoLote * 2);
+            List<String> claves = new ArrayList<>(tamanoLote * 2);
+            jdbcTemplate.query(sqlPagina, rs -> {
+                ids.add(rs.getLong("id_evaluacion"));
+                textos.add(rs.getString("explicacion"));
+                textos.add(rs.getString("recomendaciones"));
+                claves.add(rs.getString("explicacion_hash"));
+                claves.add(rs.getString("recomendaciones_hash"));
+            }, ultimo, tamanoLote);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            Map<String, String> guardados = almacen.leerSinCache(
+                    claves.stream().filter(Objects::nonNull).collect(Collectors.toSet()));
+            for (int i = 0; i < textos.size(); i++) {
+                String texto = textos.get(i);
+                if (texto != null && (claves.get(i) == null || !texto.equals(guardados.get(claves.get(i))))) {
+                    distintos++;
+                    if (distintos <= 20) {
+                        log.warn("⚠️ El texto de la evaluación {} no coincide con el almacén (clave {})", ids.get(i / 2), claves.get(i));
+                    }
+                }
+            }
+            textosVerificados.addAndGet(textos.stream().filter(Objects::nonNull).count());
+            ultimo = ids.get(ids.size() - 1);
+        }
+        log.info("🔎 Textos de {} verificados contra el almacén: {} distintos o faltantes", tabla, distintos);
+        return distintos;
+    }
+
+    /**
+     * Detalles con texto y sin clave, en el detalle y/o en la tabla caliente antigua según qué columnas existan
+     */
+    public long contarSinClave(boolean enDetalle, boolean enTablaCaliente) {
+        long pendientes = 0;
+        if (enDetalle) {
+            pendientes += contarSinClave("evaluaciones_diabetes_detalle");
+        }
+        if (enTablaCaliente) {
+            pendientes += contarSinClave("evaluaciones_diabetes");
+        }
+        return pendientes;
+    }
+
+    private long contarSinClave(String tabla) {
+        Long pendientes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + tabla + " t JOIN evaluaciones_diabetes_detalle d ON d.id_evaluacion = t.id_evaluacion " +
+                        "WHERE (t.explicacion IS NOT NULL AND d.explicacion_hash IS NULL) " +
+                        "OR (t.recomendaciones IS NOT NULL AND d.recomendaciones_hash IS NULL)",
+                Long.class);
+        return pendientes != null ? pendientes : 0;
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("filasProcesadas", filasProcesadas.get());
+        estadisticas.put("textosLeidos", textosLeidos.get());
+        estadisticas.put("textosVerificados", textosVerificados.get());
+        estadisticas.put("tamanoLote", tamanoLote);
+        return estadisticas;
+    }
+}
@@ -2,102 +2,109 @@ package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.MLPredictionRequestDto;
 import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.FeatureVector;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 
 @Slf4j
 @Service
 public class ModeloMLService {
+    public static final String BACKEND_PYTHON = "python";
+    public static final String BACKEND_LOCAL = "local";
+    public static final String BACKEND_SIMULADO = "simulated";
+
     private final PythonMLClient pythonMLClient;
+    private final CachePrediccionesML cachePredicciones;
+    private final EsquemaCaracteristicasService esquemaCaracteristicas;
+    private final MotorInferenciaLocal motorLocal;
+    private final VerificadorParidadML verificadorParidad;
+    private final CircuitBreakerML circuito;
+    private final SondaSaludML sondaSalud;
+    private final AgrupadorPrediccionesML agrupador;
+
+    @Value("${ml.backend:python}")
+    private String backend;
 
     @Value("${ml.python.enabled:true}")
     private boolean mlPythonEnabled;
 
-    private boolean apiDisponible = false;
-    private LocalDateTime ultimaVerificacion;
-
-    public ModeloMLService(PythonMLClient pythonMLClient) {
+    @Value("${ml.python.lote.tamano:50}")
+    private int tamanoChunk;
+
+    private static final List<String> CARACTERISTICAS_OBLIGATORIAS = List.of(
+            "edad", "niveles_glucosa", "niveles_insulina"
+    );
+
+    public ModeloMLService(PythonMLClient pythonMLClient,
+                           CachePrediccionesML cachePredicciones,
+                           EsquemaCaracteristicasService esquemaCaracteristicas,
+                           MotorInferenciaLocal motorLocal,
+                           VerificadorParidadML verificadorParidad,
+                           CircuitBreakerML circuito,
+                           SondaSaludML sondaSalud,
+                           AgrupadorPrediccionesML agrupador) {
         this.pythonMLClient = pythonMLClient;
-        inicializarServicio();
-    }
-
-    private void inicializarServicio() {
-        log.info("🔄 Inicializando servicio de modelo ML...");
-
-        if (mlPythonEnabled) {
-            verificarYConfigurarAPI();
-        } else {
-            log.warn("⚠️ Integración con API Python deshabilitada en configuración");
-        }
-    }
-
-    private void verificarYConfigurarAPI() {
-        try {
-            apiDisponible = pythonMLClient.verificarConexion();
-            ultimaVerificacion = LocalDateTime.now();
-
-            if (apiDisponible) {
-                log.info("✅ Servicio ML configurado para usar API Python");
-
-                // Probar con datos de ejemplo
-                try {
-                    MLPredictionResponseDto prueba = pythonMLClient.pruebaPrediccion();
-                    if (prueba != null && prueba.getSuccess() != null && prueba.getSuccess()) {
-                        log.info("✅ Prueba de predicción exitosa. Modelo funcionando correctamente");
-                    } else {
-                        log.warn("⚠️ Prueba de predicción falló o respuesta inválida");
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ Prueba de predicción encontró errores: {}", e.getMessage());
-                }
-
-            } else {
-                log.warn("⚠️ API Python no disponible. Usando modelo simulado.");
-            }
-        } catch (Exception e) {
-            log.error("❌ Error configurando servicio ML: {}", e.getMessage());
-            apiDisponible = false;
-            ultimaVerificacion = LocalDateTime.now();
-        }
+        this.cachePredicciones = cachePredicciones;
+        this.esquemaCaracteristicas = esquemaCaracteristicas;
+        this.motorLocal = motorLocal;
+        this.verificadorParidad = verificadorParidad;
+        this.circuito = circuito;
+        this.sondaSalud = sondaSalud;
+        this.agrupador = agrupador;
     }
 
     /**
      * Método principal para realizar predicciones - USADO por EvaluacionDiabetesService
      */
-    public MLPredictionResponseDto predecir(Map<String, Object> features) {
+    public MLPredictionResponseDto predecir(FeatureVector features) {
         try {
-            log.info("🎯 Iniciando predicción con {} características", features.size());
+            log.info("🎯 Iniciando predicción con {} características", features.tamano());
             validarCaracteristicas(features);
 
-            // Intentar usar API Python si está disponible
-            if (mlPythonEnabled && apiDisponible) {
+            if (BACKEND_SIMULADO.equals(backend)) {
+                return prediccionSimulada(features);
+            }
+
+            // Backend local: se evalúa el modelo exportado dentro de la JVM
+            if (usaModeloLocal()) {
+                log.info("🧠 Usando modelo local para predicción");
+                MLPredictionResponseDto resultado = motorLocal.predecir(features);
+                verificadorParidad.verificar(features, resultado, BACKEND_LOCAL);
+                return resultado;
+            }
+
+            // Intentar usar API Python; con el circuito abierto se pasa directo al simulado
+            if (mlPythonEnabled && circuito.permiteTrafico()) {
                 try {
                     log.info("🤖 Usando modelo real de Python para predicción");
-                    MLPredictionResponseDto resultado = pythonMLClient.predecirConPython(features);
+                    // El agrupador registra en el circuito una vez por envío a la API, no una por solicitante
+                    MLPredictionResponseDto resultado = cachePredicciones.obtenerOCalcular(
+                            features, () -> agrupador.predecir(features));
 
-                    if (resultado != null && resultado.getSuccess() != null && resultado.getSuccess()) {
+                    if (resultado != null && Boolean.TRUE.equals(resultado.getSuccess())) {
+                        verificadorParidad.verificar(features, resultado, BACKEND_PYTHON);
                         return resultado;
                     } else {
                         log.warn("⚠️ Predicción de API Python falló, usando simulada");
                         return prediccionSimulada(features);
                     }
 
+                } catch (CircuitBreakerML.CircuitoAbiertoException e) {
+                    log.warn("🔄 Circuito abierto, usando modelo simulado");
+                    return prediccionSimulada(features);
+
                 } catch (Exception e) {
                     log.error("❌ Error con API Python: {}", e.getMessage());
-                    // Re-verificar conexión
-                    apiDisponible = pythonMLClient.verificarConexion();
-                    ultimaVerificacion = LocalDateTime.now();
-
-                    if (!apiDisponible) {
+                    // El fallo ya quedó registrado en el circuito; si lo abrió, se responde con el simulado
+                    if (!circuito.permiteTrafico()) {
                         log.warn("🔄 API Python no disponible, usando modelo simulado");
                         return prediccionSimulada(features);
-                    } else {
-                        throw e; // Re-lanzar si API está disponible pero hay otro error
                     }
+                    throw e; // Re-lanzar si el circuito sigue cerrado: error puntual de la API
                 }
             }
 
@@ -114,6 +121,14 @@ public class ModeloMLService {
         }
     }
 
+    /**
+     * Método sobrecargado para mapas de características (formato de la API); se convierte al vector del esquema
+     */
+    public MLPredictionResponseDto predecir(Map<String, Object> features) {
+        validarObligatorias(features);
+        return predecir(esquemaCaracteristicas.getEsquema().desdeMapa(features));
+    }
+
     /**
      * Método sobrecargado para usar con DTO
      */
@@ -124,17 +139,71 @@ public class ModeloMLService {
         return predecir(request.getFeatures());
     }
 
-    private void validarCaracteristicas(Map<String, Object> features) {
+    /**
+     * Predicción por lotes - USADO por EvaluacionDiabetesService.realizarPrediccionLote.
+     * Devuelve una respuesta por cada elemento, en el mismo orden; los errores se reportan por elemento.
+     */
+    public List<MLPredictionResponseDto> predecirLote(List<FeatureVector> featuresLote) {
+        List<MLPredictionResponseDto> resultados = new ArrayList<>(featuresLote.size());
+        log.info("🎯 Iniciando predicción por lotes de {} elementos (chunks de {})", featuresLote.size(), tamanoChunk);
+
+        for (int inicio = 0; inicio < featuresLote.size(); inicio += tamanoChunk) {
+            List<FeatureVector> chunk = featuresLote.subList(inicio, Math.min(inicio + tamanoChunk, featuresLote.size()));
+            resultados.addAll(predecirChunk(chunk));
+        }
+
+        return resultados;
+    }
+
+    private List<MLPredictionResponseDto> predecirChunk(List<FeatureVector> chunk) {
+        if (BACKEND_PYTHON.equals(backend) && mlPythonEnabled && circuito.permiteTrafico()) {
+            try {
+                List<MLPredictionResponseDto> respuestas = circuito.ejecutar(() -> pythonMLClient.predecirLoteConPython(chunk));
+                if (respuestas != null) {
+                    List<MLPredictionResponseDto> resultados = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        MLPredictionResponseDto respuesta = respuestas.get(i);
+                        if (respuesta != null && Boolean.TRUE.equals(respuesta.getSuccess()) && respuesta.getPredictedClass() != null) {
+                            resultados.add(respuesta);
+                        } else {
+                            // El elemento falló en la API: se resuelve individualmente
+                            resultados.add(predecirElementoLote(chunk.get(i)));
+                        }
+                    }
+                    return resultados;
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Falló el envío del lote a la API Python, se procesará de a uno: {}", e.getMessage());
+            }
+        }
+
+        return chunk.stream()
+                .map(this::predecirElementoLote)
+                .toList();
+    }
+
+    private MLPredictionResponseDto predecirElementoLote(FeatureVector features) {
+        try {
+            return predecir(features);
+        } catch (IllegalArgumentException e) {
+            return crearRespuestaError(e.getMessage());
+        }
+    }
+
+    /**
+     * El backend local se usa si está seleccionado y hay un modelo cargado; si no, se cae a Python o al simulado
+     */
+    private boolean usaModeloLocal() {
+        return BACKEND_LOCAL.equals(backend) && motorLocal.isDisponible();
+    }
+
+    private void validarObligatorias(Map<String, Object> features) {
         if (features == null || features.isEmpty()) {
             throw new IllegalArgumentException("No se proporcionaron características para la predicción");
         }
 
-        List<String> requiredFeatures = Arrays.asList(
-                "edad", "niveles_glucosa", "niveles_insulina"
-        );
-
         List<String> faltantes = new ArrayList<>();
-        for (String feature : requiredFeatures) {
+        for (String feature : CARACTERISTICAS_OBLIGATORIAS) {
             if (!features.containsKey(feature) || features.get(feature) == null) {
                 faltantes.add(feature);
             }
@@ -143,39 +212,38 @@ public class ModeloMLService {
         if (!faltantes.isEmpty()) {
             throw new IllegalArgumentException("Faltan características obligatorias: " + String.join(", ", faltantes));
         }
+    }
 
-        // Validar tipos y rangos
-        try {
-            Integer edad = convertirAEntero(features.get("edad"));
-            if (edad < 0 || edad > 120) {
-                throw new IllegalArgumentException("Edad inválida. Debe estar entre 0 y 120 años");
-            }
+    private void validarCaracteristicas(FeatureVector features) {
+        if (features == null || features.tamano() == 0) {
+            throw new IllegalArgumentException("No se proporcionaron características para la predicción");
+        }
 
-            Double glucosa = convertirADouble(features.get("niveles_glucosa"));
-            if (glucosa < 0 || glucosa > 1000) {
-                throw new IllegalArgumentException("Niveles de glucosa inválidos. Rango: 0-1000 mg/dL");
-            }
+        // Validar rangos directamente sobre los valores primitivos del vector
+        double edad = features.getNumerico("edad");
+        if (edad < 0 || edad > 120) {
+            throw new IllegalArgumentException("Edad inválida. Debe estar entre 0 y 120 años");
+        }
 
-            Double insulina = convertirADouble(features.get("niveles_insulina"));
-            if (insulina < 0 || insulina > 500) {
-                throw new IllegalArgumentException("Niveles de insulina inválidos. Rango: 0-500 μU/mL");
-            }
+        double glucosa = features.getNumerico("niveles_glucosa");
+        if (glucosa < 0 || glucosa > 1000) {
+            throw new IllegalArgumentException("Niveles de glucosa inválidos. Rango: 0-1000 mg/dL");
+        }
 
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Formato numérico inválido en características");
-        } catch (ClassCastException e) {
-            throw new IllegalArgumentException("Tipo de dato inválido en características");
+        double insulina = features.getNumerico("niveles_insulina");
+        if (insulina < 0 || insulina > 500) {
+            throw new IllegalArgumentException("Niveles de insulina inválidos. Rango: 0-500 μU/mL");
         }
     }
 
-    private MLPredictionResponseDto prediccionSimulada(Map<String, Object> features) {
+    private MLPredictionResponseDto prediccionSimulada(FeatureVector features) {
         log.info("🎭 Generando predicción simulada");
 
         try {
-            Integer edad = convertirAEntero(features.get("edad"));
-            Double glucosa = convertirADouble(features.get("niveles_glucosa"));
-            Double insulina = convertirADouble(features.get("niveles_insulina"));
-            String autoanticuerpos = (String) features.get("autoanticuerpos");
+            int edad = (int) features.getNumerico("edad");
+            double glucosa = features.getNumerico("niveles_glucosa");
+            double insulina = features.getNumerico("niveles_insulina");
+            String autoanticuerpos = features.getCategorico("autoanticuerpos");
 
             String predictedClass = determinarClaseSimulada(edad, glucosa, insulina, autoanticuerpos);
             Double probability = 0.75 + (new Random().nextDouble() * 0.20); // 75-95%
@@ -202,7 +270,7 @@ public class ModeloMLService {
         }
     }
 
-    private String determinarClaseSimulada(Integer edad, Double glucosa, Double insulina, String autoanticuerpos) {
+    private String determinarClaseSimulada(int edad, double glucosa, double insulina, String autoanticuerpos) {
         Random rand = new Random();
 
         // Lógica de simulación más realista
@@ -212,7 +280,7 @@ public class ModeloMLService {
             return "Type 2 Diabetes";
         } else if (glucosa >= 100 && glucosa <= 125) {
             return "Prediabetic";
-        } else if (edad != null && edad < 25 && glucosa > 130) {
+        } else if (edad < 25 && glucosa > 130) {
             return "MODY";
         } else {
             // Distribución basada en prevalencia real
@@ -268,37 +336,37 @@ public class ModeloMLService {
         return probabilities;
     }
 
-    private Map<String, Double> generarImportanciaSimulada(Map<String, Object> features) {
+    private Map<String, Double> generarImportanciaSimulada(FeatureVector features) {
         Map<String, Double> importance = new HashMap<>();
         Random rand = new Random();
 
         // Importancia basada en características reales
-        if (features.containsKey("niveles_glucosa")) {
+        if (features.contiene("niveles_glucosa")) {
             importance.put("niveles_glucosa", 0.8 + (rand.nextDouble() * 0.15));
         }
 
-        if (features.containsKey("niveles_insulina")) {
+        if (features.contiene("niveles_insulina")) {
             importance.put("niveles_insulina", 0.6 + (rand.nextDouble() * 0.25));
         }
 
-        if (features.containsKey("edad")) {
+        if (features.contiene("edad")) {
             importance.put("edad", 0.5 + (rand.nextDouble() * 0.3));
         }
 
-        if (features.containsKey("autoanticuerpos")) {
+        if (features.contiene("autoanticuerpos")) {
             importance.put("autoanticuerpos", 0.7 + (rand.nextDouble() * 0.2));
         }
 
-        if (features.containsKey("antecedentes_familiares")) {
+        if (features.contiene("antecedentes_familiares")) {
             importance.put("antecedentes_familiares", 0.6 + (rand.nextDouble() * 0.25));
         }
 
         // Agregar algunas características más
-        if (features.containsKey("indice_masa_corporal")) {
+        if (features.contiene("indice_masa_corporal")) {
             importance.put("indice_masa_corporal", 0.4 + (rand.nextDouble() * 0.3));
         }
 
-        if (features.containsKey("presion_arterial")) {
+        if (features.contiene("presion_arterial")) {
             importance.put("presion_arterial", 0.3 + (rand.nextDouble() * 0.2));
         }
 
@@ -316,57 +384,47 @@ public class ModeloMLService {
         return dto;
     }
 
-    private Integer convertirAEntero(Object value) {
-        if (value == null) return 0;
-        if (value instanceof Number) return ((Number) value).intValue();
-        if (value instanceof String) {
-            try {
-                return Integer.parseInt((String) value);
-            } catch (NumberFormatException e) {
-                return 0;
-            }
-        }
-        return 0;
-    }
-
-    private Double convertirADouble(Object value) {
-        if (value == null) return 0.0;
-        if (value instanceof Number) return ((Number) value).doubleValue();
-        if (value instanceof String) {
-            try {
-                return Double.parseDouble((String) value);
-            } catch (NumberFormatException e) {
-                return 0.0;
-            }
-        }
-        return 0.0;
+    /**
+     * Estado publicado por la sonda de salud y el circuito; nunca hace una llamada HTTP
+     */
+    public boolean isAPIDisponible() {
+        return mlPythonEnabled && sondaSalud.getEstado().disponible() && circuito.permiteTrafico();
     }
 
-    public boolean isAPIDisponible() {
-        // Re-verificar cada 5 minutos si no está disponible
-        if (!apiDisponible && (ultimaVerificacion == null ||
-                ultimaVerificacion.plusMinutes(5).isBefore(LocalDateTime.now()))) {
-            apiDisponible = pythonMLClient.verificarConexion();
-            ultimaVerificacion = LocalDateTime.now();
+    /**
+     * Consulta periódicamente la versión del modelo para invalidar la caché cuando se despliega uno nuevo
+     */
+    @Scheduled(fixedDelayString = "${ml.cache.verificacion-version-ms:300000}")
+    public void verificarVersionModelo() {
+        if (isAPIDisponible()) {
+            cachePredicciones.actualizarVersionModelo(pythonMLClient.obtenerInfoModelo());
         }
-        return apiDisponible;
     }
 
     public Map<String, Object> getInfoModelo() {
         Map<String, Object> info = new HashMap<>();
 
         try {
-            if (mlPythonEnabled && apiDisponible) {
+            if (BACKEND_SIMULADO.equals(backend)) {
+                info.put("origen", "Modelo Simulado");
+                info.put("modo", "Seleccionado en configuración");
+            } else if (usaModeloLocal()) {
+                info.put("origen", "Modelo Local");
+            } else if (isAPIDisponible()) {
                 info = pythonMLClient.obtenerInfoModelo();
+                cachePredicciones.actualizarVersionModelo(info);
                 info.put("origen", "API Python");
             } else {
                 info.put("origen", "Modelo Simulado");
                 info.put("modo", mlPythonEnabled ? "API no disponible" : "Deshabilitado");
             }
 
+            info.put("backend", backend);
+            info.put("modeloLocal", motorLocal.obtenerInfo());
             info.put("pythonEnabled", mlPythonEnabled);
-            info.put("apiDisponible", apiDisponible);
-            info.put("ultimaVerificacion", ultimaVerificacion);
+            info.put("apiDisponible", isAPIDisponible());
+            info.put("ultimaVerificacion", sondaSalud.getEstado().verificadoEn());
+            info.put("circuito", circuito.getEstado());
 
         } catch (Exception e) {
             log.error("Error obteniendo info del modelo: {}", e.getMessage());
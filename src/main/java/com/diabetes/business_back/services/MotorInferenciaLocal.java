@@ -0,0 +1,121 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.CargadorModeloExportado;
+import com.diabetes.business_back.ml.FeatureVector;
+import com.diabetes.business_back.ml.ModeloExportado;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Motor de inferencia dentro de la JVM para modelos exportados (ver {@link CargadorModeloExportado}).
+ * Evita el salto HTTP a la API Python y devuelve el mismo formato de {@link MLPredictionResponseDto}.
+ */
+@Slf4j
+@Component
+public class MotorInferenciaLocal {
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EsquemaCaracteristicasService esquemaCaracteristicas;
+
+    @Value("${ml.local.modelo-path:}")
+    private String rutaModelo;
+
+    private volatile ModeloExportado modelo;
+
+    @PostConstruct
+    public void inicializar() {
+        if (rutaModelo == null || rutaModelo.isBlank()) {
+            log.info("ℹ️ No se configuró un modelo local (ml.local.modelo-path)");
+            return;
+        }
+        recargar();
+    }
+
+    /**
+     * Vuelve a leer el archivo del modelo; si falla se conserva el modelo cargado anteriormente
+     */
+    public boolean recargar() {
+        try {
+            Resource recurso = resourceLoader.getResource(rutaModelo);
+            try (InputStream entrada = recurso.getInputStream()) {
+                ModeloExportado nuevo = CargadorModeloExportado.leer(objectMapper.readTree(entrada));
+                int sinVincular = nuevo.columnasSinVincular(esquemaCaracteristicas.getEsquema());
+                modelo = nuevo;
+
+                log.info("✅ Modelo local cargado: {} versión {} ({} clases, {} columnas)",
+                        nuevo.getTipo(), nuevo.getVersion(), nuevo.getCantidadClases(), nuevo.getCantidadColumnas());
+                if (sinVincular > 0) {
+                    log.warn("⚠️ {} columnas del modelo local no existen en el esquema de características y se evaluarán en cero",
+                            sinVincular);
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            log.error("❌ No se pudo cargar el modelo local desde {}: {}", rutaModelo, e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isDisponible() {
+        return modelo != null;
+    }
+
+    public MLPredictionResponseDto predecir(FeatureVector features) {
+        ModeloExportado actual = modelo;
+        if (actual == null) {
+            throw new IllegalStateException("No hay un modelo local cargado");
+        }
+
+        double[] probabilidades = actual.puntuar(features);
+
+        int mejor = 0;
+        Map<String, Double> porClase = new HashMap<>(actual.getCantidadClases() * 2);
+        for (int c = 0; c < probabilidades.length; c++) {
+            porClase.put(actual.getClase(c), probabilidades[c]);
+            if (probabilidades[c] > probabilidades[mejor]) {
+                mejor = c;
+            }
+        }
+
+        MLPredictionResponseDto response = new MLPredictionResponseDto();
+        response.setPredictedClass(actual.getClase(mejor));
+        response.setProbability(probabilidades[mejor]);
+        response.setProbabilities(porClase);
+        response.setFeatureImportance(actual.getImportancias());
+        response.setSuccess(true);
+        response.setMessage("Predicción usando modelo local " + actual.getTipo() + " (versión " + actual.getVersion() + ")");
+        return response;
+    }
+
+    public Map<String, Object> obtenerInfo() {
+        Map<String, Object> info = new HashMap<>();
+        ModeloExportado actual = modelo;
+
+        info.put("ruta", rutaModelo);
+        info.put("cargado", actual != null);
+        if (actual != null) {
+            info.put("tipo", actual.getTipo());
+            info.put("version", actual.getVersion());
+            info.put("clases", actual.getClases());
+            info.put("columnas", actual.getCantidadColumnas());
+            info.put("columnasSinVincular", actual.columnasSinVincular(esquemaCaracteristicas.getEsquema()));
+        }
+        return info;
+    }
+}
@@ -0,0 +1,240 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.EvaluacionRequestDto;
+import com.diabetes.business_back.entities.RangoClinico;
+import com.diabetes.business_back.repositories.RangoClinicoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Compila las bandas de la tabla rangos_clinicos en arreglos ordenados de cortes (double[]) y etiquetas,
+ * y clasifica con búsqueda binaria. Las reglas compiladas son inmutables y se reemplazan de forma atómica
+ * cada vez que se edita la tabla.
+ */
+@Slf4j
+@Service
+public class MotorReglasClinicas {
+
+    private static final Map<String, Function<EvaluacionRequestDto, Number>> CAMPOS = Map.ofEntries(
+            Map.entry("edad", EvaluacionRequestDto::getEdad),
+            Map.entry("niveles_insulina", EvaluacionRequestDto::getNivelesInsulina),
+            Map.entry("indice_masa_corporal", EvaluacionRequestDto::getIndiceMasaCorporal),
+            Map.entry("presion_arterial", EvaluacionRequestDto::getPresionArterial),
+            Map.entry("niveles_colesterol", EvaluacionRequestDto::getNivelesColesterol),
+            Map.entry("circunferencia_cintura", EvaluacionRequestDto::getCircunferenciaCintura),
+            Map.entry("niveles_glucosa", EvaluacionRequestDto::getNivelesGlucosa),
+            Map.entry("aumento_peso_embarazo", EvaluacionRequestDto::getAumentoPesoEmbarazo),
+            Map.entry("salud_pancreatica", EvaluacionRequestDto::getSaludPancreatica),
+            Map.entry("funcion_pulmonar", EvaluacionRequestDto::getFuncionPulmonar),
+            Map.entry("evaluaciones_neurologicas", EvaluacionRequestDto::getEvaluacionesNeurologicas),
+            Map.entry("niveles_enzimas_digestivas", EvaluacionRequestDto::getNivelesEnzimasDigestivas),
+            Map.entry("peso_nacimiento", EvaluacionRequestDto::getPesoNacimiento)
+    );
+
+    @Autowired
+    private RangoClinicoRepository rangorepository;
+
+    private final AtomicReference<ReglasCompiladas> reglas = new AtomicReference<>(ReglasCompiladas.VACIAS);
+    // Se incrementa después de publicar nuevas reglas; permite invalidar textos derivados de ellas
+    private final AtomicLong version = new AtomicLong();
+
+    public static boolean esCampoSoportado(String nombreCampo) {
+        return nombreCampo != null && CAMPOS.containsKey(nombreCampo);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compilarAlIniciar() {
+        recompilar();
+    }
+
+    /**
+     * Lee la tabla completa y publica las nuevas reglas; si la compilación falla se conservan las anteriores
+     */
+    public void recompilar() {
+        try {
+            ReglasCompiladas nuevas = compilar(rangorepository.findAllByOrderByOrdenAsc());
+            reglas.set(nuevas);
+            version.incrementAndGet();
+            log.info("📐 Reglas clínicas compiladas: {} variables", nuevas.variables.length);
+        } catch (Exception e) {
+            log.error("❌ No se pudieron compilar las reglas clínicas, se mantienen las anteriores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Clasifica todas las variables con reglas definidas. Las etiquetas son las cadenas ya compiladas,
+     * por lo que solo se asigna el mapa del resultado.
+     */
+    public Map<String, String> clasificar(EvaluacionRequestDto request) {
+        ReglasCompiladas actuales = reglas.get();
+        Map<String, String> clasificaciones = new HashMap<>(actuales.variables.length * 2);
+
+        for (int v = 0; v < actuales.variables.length; v++) {
+            Number valor = actuales.accesores[v].apply(request);
+            if (valor != null) {
+                clasificaciones.put(actuales.variables[v], actuales.etiquetas[v][actuales.banda(v, valor.doubleValue())]);
+            }
+        }
+        return clasificaciones;
+    }
+
+    /**
+     * Agrega, en el orden de la tabla, la recomendación de cada variable clasificada de la sección indicada
+     */
+    public void agregarRecomendaciones(Map<String, String> clasificaciones, String seccion, StringBuilder destino) {
+        ReglasCompiladas actuales = reglas.get();
+
+        for (int v = 0; v < actuales.variables.length; v++) {
+            if (!seccion.equals(actuales.secciones[v])) {
+                continue;
+            }
+            String etiqueta = clasificaciones.get(actuales.variables[v]);
+            if (etiqueta == null) {
+                continue;
+            }
+            String[] etiquetas = actuales.etiquetas[v];
+            for (int b = 0; b < etiquetas.length; b++) {
+                if (etiquetas[b].equals(etiqueta) && actuales.recomendaciones[v][b] != null) {
+                    destino.append("• ").append(actuales.recomendaciones[v][b]).append('\n');
+                    break;
+                }
+            }
+        }
+    }
+
+    public boolean tieneClasificaciones(Map<String, String> clasificaciones, String seccion) {
+        ReglasCompiladas actuales = reglas.get();
+        for (int v = 0; v < actuales.variables.length; v++) {
+            if (seccion.equals(actuales.secciones[v]) && clasificaciones.get(actuales.variables[v]) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public Map<String, Object> obtenerResumen() {
+        ReglasCompiladas actuales = reglas.get();
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        List<Map<String, Object>> variables = new ArrayList<>();
+
+        for (int v = 0; v < actuales.variables.length; v++) {
+            Map<String, Object> variable = new LinkedHashMap<>();
+            variable.put("variable", actuales.variables[v]);
+            variable.put("seccion", actuales.secciones[v]);
+            variable.put("cortes", actuales.cortes[v]);
+            variable.put("etiquetas", actuales.etiquetas[v]);
+            variables.add(variable);
+        }
+
+        resumen.put("version", version.get());
+        resumen.put("compiladoEn", actuales.compiladoEn);
+        resumen.put("variables", variables);
+        return resumen;
+    }
+
+    static ReglasCompiladas compilar(List<RangoClinico> rangos) {
+        Map<String, List<RangoClinico>> porVariable = new LinkedHashMap<>();
+        for (RangoClinico rango : rangos) {
+            if (rango.getVariable() == null || rango.getEtiqueta() == null) {
+                continue;
+            }
+            if (!esCampoSoportado(rango.getNombreCampo())) {
+                log.warn("⚠️ Rango clínico {} ignorado: campo no soportado '{}'", rango.getIdRango(), rango.getNombreCampo());
+                continue;
+            }
+            porVariable.computeIfAbsent(rango.getVariable(), k -> new ArrayList<>()).add(rango);
+        }
+
+        int n = porVariable.size();
+        String[] variables = new String[n];
+        String[] secciones = new String[n];
+        @SuppressWarnings("unchecked")
+        Function<EvaluacionRequestDto, Number>[] accesores = new Function[n];
+        double[][] cortes = new double[n][];
+        String[][] etiquetas = new String[n][];
+        String[][] recomendaciones = new String[n][];
+
+        int v = 0;
+        for (Map.Entry<String, List<RangoClinico>> entry : porVariable.entrySet()) {
+            List<RangoClinico> bandas = new ArrayList<>(entry.getValue());
+            // Las bandas se ordenan por su máximo; la banda sin máximo es la abierta superior
+            bandas.sort(Comparator.comparing(RangoClinico::getMaximo, Comparator.nullsLast(Comparator.naturalOrder())));
+
+            RangoClinico primera = bandas.get(0);
+            variables[v] = entry.getKey();
+            secciones[v] = primera.getSeccion() != null ? primera.getSeccion() : RangoClinico.SECCION_CLINICA;
+            accesores[v] = CAMPOS.get(primera.getNombreCampo());
+            cortes[v] = new double[bandas.size() - 1];
+            etiquetas[v] = new String[bandas.size()];
+            recomendaciones[v] = new String[bandas.size()];
+
+            for (int b = 0; b < bandas.size(); b++) {
+                RangoClinico banda = bandas.get(b);
+                etiquetas[v][b] = banda.getEtiqueta().intern();
+                recomendaciones[v][b] = banda.getRecomendacion();
+
+                if (b < bandas.size() - 1) {
+                    if (banda.getMaximo() == null) {
+                        throw new IllegalStateException("La variable " + entry.getKey() + " tiene más de una banda sin máximo");
+                    }
+                    // Corte exclusivo: un máximo inclusivo se desplaza al siguiente double representable
+                    cortes[v][b] = Boolean.TRUE.equals(banda.getMaximoInclusivo())
+                            ? Math.nextUp(banda.getMaximo()) : banda.getMaximo();
+                }
+                if (b > 0 && banda.getMinimo() != null && bandas.get(b - 1).getMaximo() != null
+                        && !banda.getMinimo().equals(bandas.get(b - 1).getMaximo())) {
+                    log.warn("⚠️ Las bandas de '{}' no son contiguas entre {} y {}",
+                            entry.getKey(), bandas.get(b - 1).getEtiqueta(), banda.getEtiqueta());
+                }
+            }
+            v++;
+        }
+
+        return new ReglasCompiladas(variables, secciones, accesores, cortes, etiquetas, recomendaciones, LocalDateTime.now());
+    }
+
+    static final class ReglasCompiladas {
+        static final ReglasCompiladas VACIAS = compilar(List.of());
+
+        final String[] variables;
+        final String[] secciones;
+        final Function<EvaluacionRequestDto, Number>[] accesores;
+        // cortes[v][b] es el límite superior (exclusivo) de la banda b de la variable v
+        final double[][] cortes;
+        final String[][] etiquetas;
+        final String[][] recomendaciones;
+        final LocalDateTime compiladoEn;
+
+        ReglasCompiladas(String[] variables, String[] secciones, Function<EvaluacionRequestDto, Number>[] accesores,
+                         double[][] cortes, String[][] etiquetas, String[][] recomendaciones, LocalDateTime compiladoEn) {
+            this.variables = variables;
+            this.secciones = secciones;
+            this.accesores = accesores;
+            this.cortes = cortes;
+            this.etiquetas = etiquetas;
+            this.recomendaciones = recomendaciones;
+            this.compiladoEn = compiladoEn;
+        }
+
+        /**
+         * Índice de la banda: cantidad de cortes menores o iguales al valor
+         */
+        int banda(int variable, double valor) {
+            int posicion = Arrays.binarySearch(cortes[variable], valor);
+            return posicion >= 0 ? posicion + 1 : -posicion - 1;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.PacienteDto;
+import com.diabetes.business_back.dtos.PacienteResumenDto;
+import com.diabetes.business_back.dtos.PaginaCursorDto;
 import com.diabetes.business_back.entities.Paciente;
+import com.diabetes.business_back.mappers.PacienteMapper;
 import com.diabetes.business_back.interfaces.IPacienteService;
+import com.diabetes.business_back.repositories.EvaluacionDiabetesRepository;
 import com.diabetes.business_back.repositories.PacienteRepository;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -16,29 +24,71 @@ public class PacienteService implements IPacienteService {
     private PacienteRepository pacienterepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private PacienteMapper pacienteMapper;
+
+    @Autowired
+    private EvaluacionDiabetesRepository evaluacionrepository;
+
+    @Autowired
+    private TendenciasEvaluaciones tendencias;
+
+    @Autowired
+    private EstadisticasEvaluaciones estadisticasEvaluaciones;
+
+    @Autowired
+    private AnaliticaBiomarcadores analiticaBiomarcadores;
+
+    @Value("${paginacion.tamano-defecto:50}")
+    private int tamanoPaginaDefecto;
+
+    @Value("${paginacion.tamano-maximo:500}")
+    private int tamanoPaginaMaximo;
 
     @Override
     public PacienteDto grabarPaciente(PacienteDto pacientedto) {
-        Paciente paciente = modelMapper.map(pacientedto, Paciente.class);
+        Paciente paciente = pacienteMapper.aEntidad(pacientedto);
         Paciente guardar = pacienterepository.save(paciente);
-        return modelMapper.map(guardar, PacienteDto.class);
+        return pacienteMapper.aDto(guardar);
     }
 
     @Override
     public List<PacienteDto> getPacientes() {
         return pacienterepository.findAll().stream()
-                .map(paciente -> modelMapper.map(paciente, PacienteDto.class))
+                .map(pacienteMapper::aDto)
                 .toList();
     }
 
     @Override
+    public PaginaCursorDto<PacienteResumenDto> listarPagina(String cursor, Integer tamano) {
+        int limite = tamano == null || tamano <= 0 ? tamanoPaginaDefecto : Math.min(tamano, tamanoPaginaMaximo);
+        long desde = cursor == null || cursor.isBlank() ? 0L : CursorPaginacion.decodificarId(cursor);
+
+        List<PacienteResumenDto> filas = pacienterepository.listarResumenesDespuesDe(desde, PageRequest.of(0, limite + 1));
+        if (filas.size() <= limite) {
+            return new PaginaCursorDto<>(filas, filas.size(), null);
+        }
+        List<PacienteResumenDto> pagina = new ArrayList<>(filas.subList(0, limite));
+        return new PaginaCursorDto<>(pagina, limite, CursorPaginacion.codificar(pagina.get(limite - 1).getIdPaciente()));
+    }
+
+    /**
+     * Elimina el paciente y, por la cascada, sus evaluaciones. Cada evaluación se descuenta de los contadores
+     * por tipo y de las tendencias, y se avisa a la analítica de biomarcadores, como si se hubiera eliminado
+     * por separado.
+     */
+    @Override
+    @Transactional
     public void eliminar(Long id) {
-        if (pacienterepository.existsById(id)) {
-            pacienterepository.deleteById(id);
-        } else {
+        if (!pacienterepository.existsById(id)) {
             throw new RuntimeException("No se encontró el paciente con ID: " + id);
         }
+        List<Object[]> evaluaciones = evaluacionrepository.listarFechaYTipoPorPaciente(id);
+        pacienterepository.deleteById(id);
+        for (Object[] fila : evaluaciones) {
+            estadisticasEvaluaciones.registrarBaja((String) fila[2]);
+            tendencias.quitar((LocalDateTime) fila[1], (String) fila[2]);
+            analiticaBiomarcadores.registrarModificacion(((Number) fila[0]).longValue());
+        }
     }
 
     @Override
@@ -59,14 +109,14 @@ public class PacienteService implements IPacienteService {
         pacienteExistente.setDireccion(pacientedto.getDireccion());
 
         Paciente actualizado = pacienterepository.save(pacienteExistente);
-        return modelMapper.map(actualizado, PacienteDto.class);
+        return pacienteMapper.aDto(actualizado);
     }
 
     @Override
     public PacienteDto obtenerPorId(Long id) {
         Paciente paciente = pacienterepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Paciente no encontrado con ID: " + id));
-        return modelMapper.map(paciente, PacienteDto.class);
+        return pacienteMapper.aDto(paciente);
     }
 
     @Override
@@ -75,7 +125,7 @@ public class PacienteService implements IPacienteService {
         if (paciente == null) {
             throw new RuntimeException("Paciente no encontrado con código: " + codigo);
         }
-        return modelMapper.map(paciente, PacienteDto.class);
+        return pacienteMapper.aDto(paciente);
     }
 
     @Override
@@ -84,6 +134,6 @@ public class PacienteService implements IPacienteService {
         if (paciente == null) {
             throw new RuntimeException("Paciente no encontrado con email: " + email);
         }
-        return modelMapper.map(paciente, PacienteDto.class);
+        return pacienteMapper.aDto(paciente);
     }
 }
\ No newline at end of file
@@ -0,0 +1,381 @@
+package com.diabetes.business_back.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Particionado mensual de evaluaciones_diabetes por fecha_evaluacion (opcional). Convierte la tabla una vez,
+ * crea por adelantado las particiones de los meses siguientes y aplica la retención: las particiones vencidas
+ * se desvinculan (quedan como tablas sueltas para archivar) o se eliminan junto con sus detalles. En ambos casos
+ * sus evaluaciones dejan de verse, así que antes se descuentan de los contadores por tipo, del resumen diario de
+ * tendencias y de las pendientes de la analítica de biomarcadores. Las consultas que filtran por fecha solo leen
+ * las particiones del período.
+ */
+@Slf4j
+@Component
+public class ParticionadoEvaluaciones {
+    private static final String TABLA = "evaluaciones_diabetes";
+    private static final String PARTICION_DEFECTO = TABLA + "_pdefecto";
+    private static final Pattern NOMBRE_PARTICION = Pattern.compile(TABLA + "_p(\\d{6})");
+    private static final DateTimeFormatter SUFIJO = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Con la tabla particionada la clave foránea del detalle no es posible (exigiría un índice único sin la
+    // fecha), así que el borrado en cascada lo hace este trigger. Si la fila solo cambió de partición por un
+    // UPDATE de la fecha sigue existiendo al final de la sentencia y el detalle se conserva.
+    private static final String SQL_FUNCION_BORRAR_DETALLE = """
+            CREATE OR REPLACE FUNCTION borrar_detalle_evaluacion() RETURNS trigger LANGUAGE plpgsql AS $$
+            BEGIN
+                IF current_setting('evaluaciones.reubicando', true) = 'on' THEN
+                    RETURN NULL;
+                END IF;
+                IF NOT EXISTS (SELECT 1 FROM evaluaciones_diabetes WHERE id_evaluacion = OLD.id_evaluacion) THEN
+                    DELETE FROM evaluaciones_diabetes_detalle WHERE id_evaluacion = OLD.id_evaluacion;
+                END IF;
+                RETURN NULL;
+            END
+            $$""";
+    private static final String SQL_TRIGGER_BORRAR_DETALLE =
+            "CREATE TRIGGER trg_borrar_detalle_evaluacion AFTER DELETE ON evaluaciones_diabetes " +
+                    "FOR EACH ROW EXECUTE FUNCTION borrar_detalle_evaluacion()";
+    // Índice de bloques: ocupa unas pocas páginas por partición y acota los recorridos por rango de fechas
+    private static final String SQL_INDICE_BRIN =
+            "CREATE INDEX IF NOT EXISTS idx_evaluaciones_fecha_brin ON evaluaciones_diabetes USING BRIN (fecha_evaluacion)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transaccion;
+
+    @Autowired
+    private EstadisticasEvaluaciones estadisticasEvaluaciones;
+
+    @Autowired
+    private TendenciasEvaluaciones tendencias;
+
+    @Autowired
+    private AnaliticaBiomarcadores analiticaBiomarcadores;
+
+    @Value("${evaluaciones.particionado.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${evaluaciones.particionado.meses-adelante:3}")
+    private int mesesAdelante;
+
+    // 0 conserva todas las particiones
+    @Value("${evaluaciones.particionado.retencion-meses:0}")
+    private int retencionMeses;
+
+    // DETACH desvincula la partición vencida; DROP la elimina con los detalles de sus evaluaciones
+    @Value("${evaluaciones.particionado.retencion-accion:DETACH}")
+    private String accionRetencion;
+
+    private volatile String estado = "pendiente";
+    private volatile LocalDateTime ultimoMantenimiento;
+    private final AtomicLong particionesCreadas = new AtomicLong();
+    private final AtomicLong particionesDesvinculadas = new AtomicLong();
+    private final AtomicLong particionesEliminadas = new AtomicLong();
+    private final AtomicLong filasReubicadas = new AtomicLong();
+    private final AtomicLong detallesEliminados = new AtomicLong();
+    private final AtomicLong evaluacionesRetiradas = new AtomicLong();
+
+    // En un hilo aparte: la conversión copia la tabla completa y no debe demorar el arranque
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) {
+            estado = "deshabilitado";
+            return;
+        }
+        if (!"DROP".equalsIgnoreCase(accionRetencion) && !"DETACH".equalsIgnoreCase(accionRetencion)) {
+            log.warn("⚠️ Acción de retención desconocida '{}', se usará DETACH", accionRetencion);
+        }
+        Thread hilo = new Thread(() -> {
+            convertir();
+            mantener();
+        }, "particionado-evaluaciones");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Convierte evaluaciones_diabetes en una tabla particionada por mes, en una sola transacción y con la
+     * tabla bloqueada mientras se copia. Si ya está particionada no hace nada.
+     */
+    public synchronized void convertir() {
+        try {
+            String tipo = tipoTabla();
+            if ("p".equals(tipo)) {
+                estado = "particionada";
+                return;
+            }
+            if (!"r".equals(tipo)) {
+                estado = "sin tabla";
+                log.warn("⚠️ No existe la tabla {} para particionar", TABLA);
+                return;
+            }
+
+            estado = "convirtiendo";
+            long inicio = System.currentTimeMillis();
+            log.info("🗄️ Particionando {} por mes", TABLA);
+            Integer filas = transaccion.execute(s -> convertirTabla());
+            estado = "particionada";
+            log.info("✅ {} particionada por mes: {} filas copiadas en {} ms", TABLA, filas, System.currentTimeMillis() - inicio);
+
+        } catch (Exception e) {
+            estado = "error";
+            log.error("❌ Error al particionar {}: {}", TABLA, e.getMessage());
+        }
+    }
+
+    private int convertirTabla() {
+        jdbcTemplate.execute("LOCK TABLE " + TABLA + " IN ACCESS EXCLUSIVE MODE");
+
+        // Índices y claves foráneas propias se recrean sobre la tabla nueva; los únicos (la clave primaria
+        // sobre id_evaluacion) no pueden existir en una tabla particionada sin incluir la fecha
+        List<String> indices = jdbcTemplate.queryForList(
+                "SELECT pg_get_indexdef(indexrelid) FROM pg_index WHERE indrelid = ?::regclass AND NOT indisunique",
+                String.class, TABLA);
+        List<String> clavesForaneas = jdbcTemplate.queryForList(
+                "SELECT 'ALTER TABLE " + TABLA + " ADD CONSTRAINT ' || quote_ident(conname) || ' ' || pg_get_constraintdef(oid) " +
+                        "FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'f'",
+                String.class, TABLA);
+        List<String> referencias = jdbcTemplate.queryForList(
+                "SELECT 'ALTER TABLE ' || conrelid::regclass || ' DROP CONSTRAINT ' || quote_ident(conname) " +
+                        "FROM pg_constraint WHERE confrelid = ?::regclass AND contype = 'f'",
+                String.class, TABLA);
+        referencias.forEach(jdbcTemplate::execute);
+
+        String anterior = TABLA + "_anterior";
+        jdbcTemplate.execute("ALTER TABLE " + TABLA + " RENAME TO " + anterior);
+        jdbcTemplate.execute("CREATE TABLE " + TABLA + " (LIKE " + anterior + " INCLUDING DEFAULTS) PARTITION BY RANGE (fecha_evaluacion)");
+
+        // Las columnas identidad no se admiten en tablas particionadas (antes de PostgreSQL 17): secuencia propia
+        // que continúa donde quedó la anterior
+        long ultimoId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id_evaluacion), 0) FROM " + anterior, Long.class);
+        String secuenciaAnterior = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence(?, 'id_evaluacion')", String.class, anterior);
+        if (secuenciaAnterior != null) {
+            ultimoId = Math.max(ultimoId, jdbcTemplate.queryForObject("SELECT last_value FROM " + secuenciaAnterior, Long.class));
+        }
+        jdbcTemplate.execute("CREATE SEQUENCE " + TABLA + "_id_seq");
+        if (ultimoId > 0) {
+            jdbcTemplate.queryForObject("SELECT setval(?::regclass, ?)", Long.class, TABLA + "_id_seq", ultimoId);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLA + " ALTER COLUMN id_evaluacion SET DEFAULT nextval('" + TABLA + "_id_seq')");
+        jdbcTemplate.execute("ALTER SEQUENCE " + TABLA + "_id_seq OWNED BY " + TABLA + ".id_evaluacion");
+
+        // Un mes por partición desde la evaluación más antigua; las fechas nulas van a la partición por defecto
+        jdbcTemplate.execute("CREATE TABLE " + PARTICION_DEFECTO + " PARTITION OF " + TABLA + " DEFAULT");
+        Timestamp primera = jdbcTemplate.queryForObject("SELECT MIN(fecha_evaluacion) FROM " + anterior, Timestamp.class);
+        YearMonth hasta = YearMonth.now().plusMonths(mesesAdelante);
+        for (YearMonth mes = primera != null ? YearMonth.from(primera.toLocalDateTime()) : YearMonth.now();
+             !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+            jdbcTemplate.execute("CREATE TABLE " + nombreParticion(mes) + " PARTITION OF " + TABLA + " FOR VALUES " + limites(mes));
+            particionesCreadas.incrementAndGet();
+        }
+
+        // Los índices se crean después de copiar: es más rápido que mantenerlos fila por fila
+        int filas = jdbcTemplate.update("INSERT INTO " + TABLA + " SELECT * FROM " + anterior);
+        jdbcTemplate.execute("DROP TABLE " + anterior);
+        indices.forEach(jdbcTemplate::execute);
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_evaluaciones_id ON " + TABLA + " (id_evaluacion)");
+        jdbcTemplate.execute(SQL_INDICE_BRIN);
+        clavesForaneas.forEach(jdbcTemplate::execute);
+        jdbcTemplate.execute(SQL_FUNCION_BORRAR_DETALLE);
+        jdbcTemplate.execute(SQL_TRIGGER_BORRAR_DETALLE);
+        return filas;
+    }
+
+    @Scheduled(cron = "${evaluaciones.particionado.mantenimiento-cron:0 30 0 * * *}")
+    public void mantenerPeriodicamente() {
+        mantener();
+    }
+
+    /**
+     * Crea las particiones del mes actual y de los meses-adelante siguientes que falten y aplica la retención
+     */
+    public synchronized void mantener() {
+        if (!habilitado || !"p".equals(tipoTabla())) {
+            return;
+        }
+        try {
+            YearMonth actual = YearMonth.now();
+            Set<YearMonth> existentes = new HashSet<>(particionesExistentes());
+            for (int i = 0; i <= mesesAdelante; i++) {
+                if (!existentes.contains(actual.plusMonths(i))) {
+                    crearParticion(actual.plusMonths(i));
+                }
+            }
+            if (retencionMeses > 0) {
+                aplicarRetencion(actual.minusMonths(retencionMeses));
+            }
+            jdbcTemplate.execute(SQL_INDICE_BRIN);
+            ultimoMantenimiento = LocalDateTime.now();
+        } catch (Exception e) {
+            log.error("❌ Error en el mantenimiento de particiones de {}: {}", TABLA, e.getMessage());
+        }
+    }
+
+    private void crearParticion(YearMonth mes) {
+        String particion = nombreParticion(mes);
+        Timestamp desde = Timestamp.valueOf(mes.atDay(1).atStartOfDay());
+        Timestamp hasta = Timestamp.valueOf(mes.plusMonths(1).atDay(1).atStartOfDay());
+
+        Integer movidas = transaccion.execute(s -> {
+            Boolean enDefecto = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + PARTICION_DEFECTO + " WHERE fecha_evaluacion >= ? AND fecha_evaluacion < ?)",
+                    Boolean.class, desde, hasta);
+            if (!Boolean.TRUE.equals(enDefecto)) {
+                jdbcTemplate.execute("CREATE TABLE " + particion + " PARTITION OF " + TABLA + " FOR VALUES " + limites(mes));
+                return 0;
+            }
+            // PostgreSQL no crea la partición si la de defecto ya tiene filas de ese mes: se mueven a una tabla
+            // suelta que luego se adjunta. El trigger de borrado no debe tocar sus detalles durante el traslado.
+            jdbcTemplate.execute("SET LOCAL evaluaciones.reubicando = 'on'");
+            jdbcTemplate.execute("CREATE TABLE " + particion + " (LIKE " + TABLA + " INCLUDING DEFAULTS)");
+            int filas = jdbcTemplate.update(
+                    "WITH movidas AS (DELETE FROM " + PARTICION_DEFECTO + " WHERE fecha_evaluacion >= ? AND fecha_evaluacion < ? RETURNING *) " +
+                            "INSERT INTO " + particion + " SELECT * FROM movidas",
+                    desde, hasta);
+            jdbcTemplate.execute("ALTER TABLE " + TABLA + " ATTACH PARTITION " + particion + " FOR VALUES " + limites(mes));
+            return filas;
+        });
+
+        particionesCreadas.incrementAndGet();
+        filasReubicadas.addAndGet(movidas != null ? movidas : 0);
+        log.info("📅 Partición {} creada{}", particion, movidas != null && movidas > 0 ? ", " + movidas + " filas reubicadas" : "");
+    }
+
+    private void aplicarRetencion(YearMonth limite) {
+        boolean eliminar = "DROP".equalsIgnoreCase(accionRetencion);
+        for (YearMonth mes : particionesExistentes()) {
+            if (!mes.isBefore(limite)) {
+                continue;
+            }
+            String particion = nombreParticion(mes);
+            if (eliminar) {
+                // DROP TABLE no dispara el trigger de borrado: los detalles se eliminan antes, en la misma transacción
+                long[] resultado = transaccion.execute(s -> {
+                    long retiradas = descontarEvaluaciones(particion);
+                    int borrados = jdbcTemplate.update("DELETE FROM evaluaciones_diabetes_detalle d USING " + particion +
+                            " e WHERE d.id_evaluacion = e.id_evaluacion");
+                    jdbcTemplate.execute("DROP TABLE " + particion);
+                    return new long[]{retiradas, borrados};
+                });
+                particionesEliminadas.incrementAndGet();
+                evaluacionesRetiradas.addAndGet(resultado[0]);
+                detallesEliminados.addAndGet(resultado[1]);
+                log.info("🗑️ Partición vencida {} eliminada con {} evaluaciones y {} detalles", particion, resultado[0], resultado[1]);
+            } else {
+                // Los detalles se conservan: la partición se puede volver a adjuntar tal cual
+                Long retiradas = transaccion.execute(s -> {
+                    long descontadas = descontarEvaluaciones(particion);
+                    jdbcTemplate.execute("ALTER TABLE " + TABLA + " DETACH PARTITION " + particion);
+                    return descontadas;
+                });
+                particionesDesvinculadas.incrementAndGet();
+                evaluacionesRetiradas.addAndGet(retiradas);
+                log.info("📦 Partición vencida {} desvinculada con {} evaluaciones", particion, retiradas);
+            }
+        }
+    }
+
+    /**
+     * Descuenta las evaluaciones de la partición, agrupadas por día y tipo, de los resúmenes que las contaban.
+     * Corre en la transacción de la retención: el resumen diario se corrige con ella y los contadores en memoria
+     * se actualizan al confirmarse.
+     */
+    private long descontarEvaluaciones(String particion) {
+        List<Map<String, Object>> grupos = jdbcTemplate.queryForList(
+                "SELECT fecha_evaluacion::date AS dia, tipo_diabetes_predicho AS tipo, COUNT(*) AS cantidad FROM " +
+                        particion + " GROUP BY 1, 2");
+        Map<String, Long> porTipo = new HashMap<>();
+        long total = 0;
+        for (Map<String, Object> grupo : grupos) {
+            String tipo = (String) grupo.get("tipo");
+            long cantidad = ((Number) grupo.get("cantidad")).longValue();
+            tendencias.quitar(((Date) grupo.get("dia")).toLocalDate(), tipo, cantidad);
+            porTipo.merge(tipo, cantidad, Long::sum);
+            total += cantidad;
+        }
+        estadisticasEvaluaciones.registrarBajas(porTipo);
+        analiticaBiomarcadores.registrarBajas(total);
+        return total;
+    }
+
+    private String tipoTabla() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')", String.class, TABLA);
+    }
+
+    // Solo las particiones mensuales que siguen adjuntas, de la más antigua a la más reciente
+    private List<YearMonth> particionesExistentes() {
+        List<YearMonth> meses = new ArrayList<>();
+        for (String nombre : nombresParticiones()) {
+            Matcher coincidencia = NOMBRE_PARTICION.matcher(nombre);
+            if (coincidencia.matches()) {
+                meses.add(YearMonth.parse(coincidencia.group(1), SUFIJO));
+            }
+        }
+        Collections.sort(meses);
+        return meses;
+    }
+
+    private List<String> nombresParticiones() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass",
+                String.class, TABLA);
+    }
+
+    private static String nombreParticion(YearMonth mes) {
+        return TABLA + "_p" + mes.format(SUFIJO);
+    }
+
+    private static String limites(YearMonth mes) {
+        return "FROM ('" + mes.atDay(1) + "') TO ('" + mes.plusMonths(1).atDay(1) + "')";
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("estado", estado);
+        estadisticas.put("mesesAdelante", mesesAdelante);
+        estadisticas.put("retencionMeses", retencionMeses);
+        estadisticas.put("accionRetencion", accionRetencion);
+        estadisticas.put("particionesCreadas", particionesCreadas.get());
+        estadisticas.put("particionesDesvinculadas", particionesDesvinculadas.get());
+        estadisticas.put("particionesEliminadas", particionesEliminadas.get());
+        estadisticas.put("filasReubicadas", filasReubicadas.get());
+        estadisticas.put("detallesEliminados", detallesEliminados.get());
+        estadisticas.put("evaluacionesRetiradas", evaluacionesRetiradas.get());
+        estadisticas.put("ultimoMantenimiento", ultimoMantenimiento);
+        if ("particionada".equals(estado)) {
+            // Filas estimadas por el último ANALYZE; contar exacto recorrería todas las particiones
+            Map<String, Long> particiones = new TreeMap<>();
+            jdbcTemplate.query(
+                    "SELECT c.relname, GREATEST(c.reltuples, 0)::bigint AS filas FROM pg_inherits i " +
+                            "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass",
+                    rs -> {
+                        particiones.put(rs.getString("relname"), rs.getLong("filas"));
+                    }, TABLA);
+            estadisticas.put("particiones", particiones);
+        }
+        return estadisticas;
+    }
+}
@@ -1,22 +1,38 @@
 package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.DecodificadorRespuestaML;
+import com.diabetes.business_back.ml.FeatureVector;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Service
 public class PythonMLClient {
+    public static final String FORMATO_CBOR = "cbor";
+    public static final String FORMATO_JSON = "json";
 
     @Value("${ml.python.api.url:http://localhost:5000}")
     private String pythonApiUrl;
@@ -24,25 +40,76 @@ public class PythonMLClient {
     @Value("${ml.python.api.timeout:10000}")
     private int timeout;
 
+    @Value("${ml.python.enabled:true}")
+    private boolean pythonEnabled;
+
+    @Value("${ml.http.precalentar:4}")
+    private int conexionesPrecalentadas;
+
+    // json hasta que la API Python acepte CBOR; con cbor se vuelve a JSON si la API no lo entiende
+    @Value("${ml.python.formato:json}")
+    private String formatoPreferido;
+
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final BalanceadorReplicasML balanceador;
+    private final ObjectMapper cborMapper = new CBORMapper();
+
+    private volatile boolean loteSoportado = true;
+    private volatile boolean cborSoportado = true;
 
     // Constructor con inyección de RestTemplate
-    public PythonMLClient(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public PythonMLClient(RestTemplate restTemplate, ObjectMapper objectMapper, BalanceadorReplicasML balanceador) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
-        configurarRestTemplate();
+        this.balanceador = balanceador;
     }
 
-    private void configurarRestTemplate() {
-        // Configurar timeout si es necesario
-        // org.springframework.boot.web.client.RestTemplateBuilder podría usarse
+    /**
+     * Abre de antemano varias conexiones keep-alive hacia cada réplica para que las primeras predicciones
+     * no paguen el handshake TCP. Las llamadas son concurrentes para que cada una tome una conexión distinta.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precalentarConexiones() {
+        if (!pythonEnabled || conexionesPrecalentadas <= 0) {
+            return;
+        }
+
+        List<String> urls = balanceador.getUrls();
+        int total = conexionesPrecalentadas * urls.size();
+        List<CompletableFuture<Boolean>> llamadas = new ArrayList<>(total);
+        ExecutorService executor = Executors.newFixedThreadPool(total);
+        try {
+            for (String base : urls) {
+                String url = base + "/health";
+                for (int i = 0; i < conexionesPrecalentadas; i++) {
+                    llamadas.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return restTemplate.getForEntity(url, String.class).getStatusCode().is2xxSuccessful();
+                        } catch (Exception e) {
+                            return false;
+                        }
+                    }, executor));
+                }
+            }
+            long abiertas = llamadas.stream().filter(CompletableFuture::join).count();
+            log.info("🔥 Conexiones precalentadas hacia API Python: {}/{}", abiertas, total);
+        } finally {
+            executor.shutdown();
+        }
     }
 
+    /**
+     * true si al menos una réplica responde y tiene el modelo cargado
+     */
     public boolean verificarConexion() {
+        return balanceador.getUrls().stream().anyMatch(this::verificarConexion);
+    }
+
+    public boolean verificarConexion(String baseUrl) {
         try {
-            String url = pythonApiUrl + "/health";
-            log.info("🔍 Verificando conexión con API Python: {}", url);
+            String url = baseUrl + "/health";
+            log.debug("🔍 Verificando conexión con API Python: {}", url);
 
             ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
 
@@ -54,7 +121,7 @@ public class PythonMLClient {
                 try {
                     Map<?, ?> jsonResponse = objectMapper.readValue(body, Map.class);
                     boolean modelLoaded = Boolean.TRUE.equals(jsonResponse.get("model_loaded"));
-                    log.info("✅ API Python disponible. Modelo cargado: {}", modelLoaded);
+                    log.debug("✅ API Python disponible. Modelo cargado: {}", modelLoaded);
                     return modelLoaded;
                 } catch (JsonProcessingException e) {
                     log.warn("Respuesta no JSON válida, pero API responde");
@@ -75,56 +142,153 @@ public class PythonMLClient {
         }
     }
 
-    public MLPredictionResponseDto predecirConPython(Map<String, Object> features) {
+    public MLPredictionResponseDto predecirConPython(FeatureVector features) {
         try {
-            String url = pythonApiUrl + "/predict";
-            log.info("📡 Enviando predicción a API Python: {}", url);
             log.debug("Features enviados: {}", features);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Accept", MediaType.APPLICATION_JSON_VALUE);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(features, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                log.debug("Respuesta completa de API Python: {}", responseBody);
-
-                // Convertir la respuesta a DTO
-                MLPredictionResponseDto result = convertirRespuestaADto(responseBody);
-
-                if (result != null && result.getPredictedClass() != null) {
-                    log.info("✅ Predicción recibida: {} ({:.1f}%)",
-                            result.getPredictedClass(),
-                            result.getProbability() != null ? result.getProbability() * 100 : 0);
-                    return result;
-                } else {
-                    throw new RuntimeException("Respuesta de API incompleta o inválida");
-                }
+            // Predecir es idempotente: se puede cubrir con una segunda réplica si la primera tarda
+            MLPredictionResponseDto result = balanceador.ejecutarConCobertura(base -> {
+                log.info("📡 Enviando predicción a API Python: {}/predict", base);
+                return intercambiar(base, "/predict", features, DecodificadorRespuestaML::leer);
+            });
+
+            if (result != null && result.getPredictedClass() != null) {
+                log.info("✅ Predicción recibida: {} ({:.1f}%)",
+                        result.getPredictedClass(),
+                        result.getProbability() != null ? result.getProbability() * 100 : 0);
+                return result;
             } else {
-                throw new RuntimeException("API Python respondió con código: " + response.getStatusCode());
+                throw new RuntimeException("Respuesta de API incompleta o inválida");
             }
         } catch (HttpClientErrorException e) {
             String errorBody = e.getResponseBodyAsString();
             log.error("❌ Error HTTP de API Python ({}): {}", e.getStatusCode(), errorBody);
-            throw new RuntimeException("Error en API Python: " + e.getStatusCode() + " - " + errorBody);
+            throw new RuntimeException("Error en API Python: " + e.getStatusCode() + " - " + errorBody, e);
         } catch (ResourceAccessException e) {
             log.error("❌ No se puede acceder a API Python (timeout o conexión): {}", e.getMessage());
-            throw new RuntimeException("No se puede conectar al servicio de ML. Verifique que la API esté corriendo en " + pythonApiUrl);
+            throw new RuntimeException("No se puede conectar al servicio de ML. Verifique que la API esté corriendo en " + replica(e), e);
         } catch (Exception e) {
             log.error("❌ Error llamando a API Python: {}", e.getMessage(), e);
-            throw new RuntimeException("Error al comunicarse con el servicio de ML: " + e.getMessage());
+            throw new RuntimeException("Error al comunicarse con el servicio de ML: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Envía un lote de características al endpoint batch de la API Python.
+     * Devuelve null si la API no expone el endpoint batch (el llamador debe predecir de a uno).
+     * Va a una sola réplica, sin cobertura: el umbral de cobertura se mide sobre predicciones individuales.
+     */
+    public List<MLPredictionResponseDto> predecirLoteConPython(List<FeatureVector> lote) {
+        if (!loteSoportado) {
+            return null;
+        }
+
+        try {
+            Map<String, Object> body = Map.of("instances", lote);
+
+            List<MLPredictionResponseDto> resultados = balanceador.ejecutar(base -> {
+                log.info("📡 Enviando lote de {} predicciones a API Python: {}/predict/batch", lote.size(), base);
+                return intercambiar(base, "/predict/batch", body, DecodificadorRespuestaML::leerLote);
+            });
+
+            if (resultados == null || resultados.size() != lote.size()) {
+                throw new RuntimeException("Respuesta batch de API incompleta o inválida");
+            }
+
+            log.info("✅ Lote de {} predicciones recibido", resultados.size());
+            return resultados;
+
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.METHOD_NOT_ALLOWED) {
+                log.warn("⚠️ API Python no expone /predict/batch. Se predecirá de a uno");
+                loteSoportado = false;
+                return null;
+            }
+            log.error("❌ Error HTTP de API Python en lote ({}): {}", e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException("Error en API Python: " + e.getStatusCode(), e);
+        } catch (ResourceAccessException e) {
+            log.error("❌ No se puede acceder a API Python para lote: {}", e.getMessage());
+            throw new RuntimeException("No se puede conectar al servicio de ML. Verifique que la API esté corriendo en " + replica(e), e);
+        }
+    }
+
+    /**
+     * POST con formato negociado: con CBOR preferido se envía CBOR y se acepta CBOR o JSON; la respuesta se
+     * decodifica en streaming según su Content-Type. Si la API rechaza CBOR (415/406) se pasa a JSON. Una API sin
+     * CBOR suele responder 400 o 500 al no poder leer el cuerpo: se reintenta en JSON y, si así funciona, CBOR
+     * queda descartado.
+     */
+    private <T> T intercambiar(String base, String ruta, Object cuerpo, Decodificador<T> decodificador) {
+        boolean usarCbor = FORMATO_CBOR.equals(formatoPreferido) && cborSoportado;
+        try {
+            return enviar(base, ruta, cuerpo, decodificador, usarCbor);
+        } catch (HttpStatusCodeException e) {
+            if (!usarCbor) {
+                throw e;
+            }
+            if (e.getStatusCode() == HttpStatus.UNSUPPORTED_MEDIA_TYPE || e.getStatusCode() == HttpStatus.NOT_ACCEPTABLE) {
+                log.warn("⚠️ API Python no acepta CBOR ({}). Se usará JSON", e.getStatusCode());
+                cborSoportado = false;
+                return enviar(base, ruta, cuerpo, decodificador, false);
+            }
+            if (e.getStatusCode() == HttpStatus.BAD_REQUEST || e.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR) {
+                // Si en JSON también falla, el error es del pedido o de la API y CBOR se sigue usando
+                T resultado = enviar(base, ruta, cuerpo, decodificador, false);
+                log.warn("⚠️ API Python respondió {} en CBOR y aceptó JSON. Se usará JSON", e.getStatusCode());
+                cborSoportado = false;
+                return resultado;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T enviar(String base, String ruta, Object cuerpo, Decodificador<T> decodificador, boolean usarCbor) {
+        try {
+            return restTemplate.execute(base + ruta, HttpMethod.POST, request -> {
+                request.getHeaders().setContentType(usarCbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON);
+                request.getHeaders().setAccept(usarCbor
+                        ? List.of(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON)
+                        : List.of(MediaType.APPLICATION_JSON));
+                (usarCbor ? cborMapper : objectMapper).writeValue(request.getBody(), cuerpo);
+            }, response -> {
+                MediaType tipo = response.getHeaders().getContentType();
+                JsonFactory factory = tipo != null && MediaType.APPLICATION_CBOR.isCompatibleWith(tipo)
+                        ? cborMapper.getFactory() : objectMapper.getFactory();
+                try (JsonParser parser = factory.createParser(response.getBody())) {
+                    return decodificador.leer(parser);
+                }
+            });
+        } catch (ResourceAccessException e) {
+            throw new ReplicaInaccesibleException(base, e);
+        }
+    }
+
+    // La URL configurada puede ser una lista de réplicas: el mensaje nombra la que eligió el balanceador
+    private String replica(ResourceAccessException e) {
+        return e instanceof ReplicaInaccesibleException inaccesible ? inaccesible.getReplica() : pythonApiUrl;
+    }
+
+    /**
+     * Error de conexión o timeout con la réplica concreta a la que se envió la solicitud
+     */
+    static class ReplicaInaccesibleException extends ResourceAccessException {
+        private final String replica;
+
+        ReplicaInaccesibleException(String replica, ResourceAccessException causa) {
+            super(causa.getMessage(), causa.getCause() instanceof IOException io ? io : null);
+            this.replica = replica;
+        }
+
+        String getReplica() {
+            return replica;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Decodificador<T> {
+        T leer(JsonParser parser) throws IOException;
+    }
+
     private MLPredictionResponseDto convertirRespuestaADto(Map<String, Object> responseMap) {
         try {
             MLPredictionResponseDto dto = new MLPredictionResponseDto();
@@ -187,20 +351,14 @@ public class PythonMLClient {
             log.info("🧪 Realizando prueba de predicción...");
 
             // Usar el endpoint /test de tu API Flask
-            String url = pythonApiUrl + "/test";
-
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
 
             // Enviar POST vacío (la API Flask maneja datos de ejemplo internamente)
             HttpEntity<String> entity = new HttpEntity<>("{}", headers);
 
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
+            ResponseEntity<Map> response = balanceador.ejecutar(base ->
+                    restTemplate.exchange(base + "/test", HttpMethod.POST, entity, Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 return convertirRespuestaADto(response.getBody());
@@ -217,10 +375,10 @@ public class PythonMLClient {
 
     public Map<String, Object> obtenerInfoModelo() {
         try {
-            String url = pythonApiUrl + "/features";
-            log.info("📊 Obteniendo información del modelo de: {}", url);
-
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
+            ResponseEntity<Map> response = balanceador.ejecutar(base -> {
+                log.info("📊 Obteniendo información del modelo de: {}/features", base);
+                return restTemplate.getForEntity(base + "/features", Map.class);
+            });
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 Map<String, Object> info = response.getBody();
@@ -238,8 +396,8 @@ public class PythonMLClient {
 
     public Map<String, Object> obtenerConfiguracion() {
         try {
-            String url = pythonApiUrl + "/config";
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
+            ResponseEntity<Map> response = balanceador.ejecutar(base ->
+                    restTemplate.getForEntity(base + "/config", Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 return response.getBody();
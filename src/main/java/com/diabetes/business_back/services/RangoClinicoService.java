@@ -0,0 +1,105 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.RangoClinicoDto;
+import com.diabetes.business_back.entities.RangoClinico;
+import com.diabetes.business_back.mappers.RangoClinicoMapper;
+import com.diabetes.business_back.interfaces.IRangoClinicoService;
+import com.diabetes.business_back.repositories.RangoClinicoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class RangoClinicoService implements IRangoClinicoService {
+    @Autowired
+    private RangoClinicoRepository rangorepository;
+
+    @Autowired
+    private RangoClinicoMapper rangoMapper;
+
+    @Autowired
+    private MotorReglasClinicas motorReglas;
+
+    @Override
+    public RangoClinicoDto grabarRango(RangoClinicoDto rangodto) {
+        validar(rangodto);
+        RangoClinico rango = rangoMapper.aEntidad(rangodto);
+        RangoClinico guardar = rangorepository.save(rango);
+        motorReglas.recompilar();
+        return rangoMapper.aDto(guardar);
+    }
+
+    @Override
+    public List<RangoClinicoDto> getRangos() {
+        return rangorepository.findAllByOrderByOrdenAsc().stream()
+                .map(rangoMapper::aDto)
+                .toList();
+    }
+
+    @Override
+    public void eliminar(Long id) {
+        if (rangorepository.existsById(id)) {
+            rangorepository.deleteById(id);
+            motorReglas.recompilar();
+        } else {
+            throw new RuntimeException("No se encontró el rango clínico con ID: " + id);
+        }
+    }
+
+    @Override
+    public RangoClinicoDto actualizar(RangoClinicoDto rangodto) {
+        Long id = rangodto.getIdRango();
+        if (id == null) {
+            throw new RuntimeException("El ID del rango clínico no puede ser nulo");
+        }
+        validar(rangodto);
+
+        RangoClinico rangoExistente = rangorepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("No se encontró el rango clínico con ID: " + id));
+
+        rangoExistente.setVariable(rangodto.getVariable());
+        rangoExistente.setNombreCampo(rangodto.getNombreCampo());
+        rangoExistente.setMinimo(rangodto.getMinimo());
+        rangoExistente.setMaximo(rangodto.getMaximo());
+        rangoExistente.setMaximoInclusivo(rangodto.getMaximoInclusivo());
+        rangoExistente.setEtiqueta(rangodto.getEtiqueta());
+        rangoExistente.setOrden(rangodto.getOrden());
+        rangoExistente.setSeccion(rangodto.getSeccion());
+        rangoExistente.setRecomendacion(rangodto.getRecomendacion());
+
+        RangoClinico actualizado = rangorepository.save(rangoExistente);
+        motorReglas.recompilar();
+        return rangoMapper.aDto(actualizado);
+    }
+
+    @Override
+    public RangoClinicoDto obtenerPorId(Long id) {
+        RangoClinico rango = rangorepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Rango clínico no encontrado con ID: " + id));
+        return rangoMapper.aDto(rango);
+    }
+
+    @Override
+    public List<RangoClinicoDto> obtenerPorVariable(String variable) {
+        return rangorepository.findByVariableOrderByOrdenAsc(variable).stream()
+                .map(rangoMapper::aDto)
+                .toList();
+    }
+
+    private void validar(RangoClinicoDto rangodto) {
+        if (rangodto.getVariable() == null || rangodto.getVariable().isBlank()) {
+            throw new RuntimeException("La variable del rango clínico es obligatoria");
+        }
+        if (rangodto.getEtiqueta() == null || rangodto.getEtiqueta().isBlank()) {
+            throw new RuntimeException("La etiqueta del rango clínico es obligatoria");
+        }
+        if (!MotorReglasClinicas.esCampoSoportado(rangodto.getNombreCampo())) {
+            throw new RuntimeException("Campo no soportado para rangos clínicos: " + rangodto.getNombreCampo());
+        }
+        if (rangodto.getMinimo() != null && rangodto.getMaximo() != null
+                && rangodto.getMinimo() > rangodto.getMaximo()) {
+            throw new RuntimeException("El mínimo del rango no puede ser mayor que el máximo");
+        }
+    }
+}
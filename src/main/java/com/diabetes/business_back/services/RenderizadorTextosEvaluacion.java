@@ -0,0 +1,333 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.entities.RangoClinico;
+import com.diabetes.business_back.entities.TipoDiabetesInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Genera la explicación y las recomendaciones de una predicción. El texto solo depende de la clase predicha,
+ * de las clasificaciones clínicas y del orden de las características y probabilidades principales, así que
+ * se compila una plantilla por combinación (LRU acotada) y en cada solicitud solo se completan los porcentajes.
+ */
+@Slf4j
+@Component
+public class RenderizadorTextosEvaluacion {
+    private static final int TOP_FACTORES = 5;
+    private static final int TOP_FACTORES_RECOMENDACION = 3;
+    private static final int OTRAS_POSIBILIDADES = 3;
+
+    private static final Map<String, String> NOMBRES_FEATURES = Map.ofEntries(
+            Map.entry("niveles_glucosa", "Niveles de Glucosa"),
+            Map.entry("niveles_insulina", "Niveles de Insulina"),
+            Map.entry("edad", "Edad"),
+            Map.entry("indice_masa_corporal", "Índice de Masa Corporal"),
+            Map.entry("autoanticuerpos", "Autoanticuerpos"),
+            Map.entry("antecedentes_familiares", "Antecedentes Familiares"),
+            Map.entry("presion_arterial", "Presión Arterial"),
+            Map.entry("niveles_colesterol", "Niveles de Colesterol"),
+            Map.entry("circunferencia_cintura", "Circunferencia de Cintura"),
+            Map.entry("aumento_peso_embarazo", "Aumento de Peso en Embarazo"),
+            Map.entry("salud_pancreatica", "Salud Pancreática"),
+            Map.entry("funcion_pulmonar", "Función Pulmonar"),
+            Map.entry("evaluaciones_neurologicas", "Evaluaciones Neurológicas"),
+            Map.entry("niveles_enzimas_digestivas", "Niveles de Enzimas Digestivas"),
+            Map.entry("peso_nacimiento", "Peso al Nacer")
+    );
+
+    private static final Map<String, String> NOMBRES_CLASIFICACIONES = Map.of(
+            "presion", "Presión Arterial",
+            "colesterol", "Colesterol",
+            "insulina", "Insulina",
+            "glucosa", "Glucosa",
+            "edad", "Grupo de Edad",
+            "enzimas", "Enzimas Digestivas"
+    );
+
+    @Autowired
+    private MotorReglasClinicas motorReglas;
+
+    @Value("${textos.cache.max-entradas:5000}")
+    private int maxEntradas;
+
+    private final LinkedHashMap<Clave, Plantillas> plantillas = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+
+    public record Textos(String explicacion, String recomendaciones) {
+    }
+
+    public Textos renderizar(MLPredictionResponseDto mlResponse, Map<String, String> clasificaciones, TipoDiabetesInfo info) {
+        // El ranking se calcula una sola vez y se reutiliza para ambas secciones
+        List<Map.Entry<String, Double>> factores = mayores(mlResponse.getFeatureImportance(), TOP_FACTORES, 0);
+        List<Map.Entry<String, Double>> otras = mlResponse.getProbabilities() != null && mlResponse.getProbabilities().size() > 1
+                ? mayores(mlResponse.getProbabilities(), OTRAS_POSIBILIDADES, 1) : null;
+
+        Clave clave = new Clave(
+                mlResponse.getPredictedClassEs(),
+                Map.copyOf(clasificaciones),
+                nombres(factores),
+                otras != null ? nombres(otras) : null,
+                info != null ? info.getIdTipoDiabetes() : null,
+                info != null ? Objects.hash(info.getNombreEs(), info.getDescripcion(), info.getRecomendaciones()) : 0,
+                motorReglas.getVersion()
+        );
+
+        Plantillas compiladas = buscar(clave);
+        if (compiladas == null) {
+            fallos.incrementAndGet();
+            compiladas = new Plantillas(compilarExplicacion(mlResponse, clasificaciones, info, factores, otras),
+                    compilarRecomendaciones(clasificaciones, info, factores));
+            guardar(clave, compiladas);
+        } else {
+            aciertos.incrementAndGet();
+        }
+
+        // Porcentajes en el mismo orden en que aparecen los huecos de la plantilla
+        double[] valores = new double[1 + factores.size() + (otras != null ? otras.size() : 0)];
+        int i = 0;
+        valores[i++] = mlResponse.getProbability() * 100;
+        for (Map.Entry<String, Double> factor : factores) {
+            valores[i++] = factor.getValue() * 100;
+        }
+        if (otras != null) {
+            for (Map.Entry<String, Double> otra : otras) {
+                valores[i++] = otra.getValue() * 100;
+            }
+        }
+
+        return new Textos(compiladas.explicacion().completar(valores), compiladas.recomendaciones());
+    }
+
+    public static String traducirNombreFeature(String featureName) {
+        return NOMBRES_FEATURES.getOrDefault(featureName, featureName);
+    }
+
+    public static String traducirNombreClasificacion(String key) {
+        return NOMBRES_CLASIFICACIONES.getOrDefault(key, key);
+    }
+
+    public void invalidar() {
+        synchronized (plantillas) {
+            plantillas.clear();
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+
+        synchronized (plantillas) {
+            estadisticas.put("entradas", plantillas.size());
+        }
+        estadisticas.put("maxEntradas", maxEntradas);
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("expulsiones", expulsiones.get());
+        estadisticas.put("tasaAciertos", totalAciertos + totalFallos > 0
+                ? (double) totalAciertos / (totalAciertos + totalFallos) : 0.0);
+        return estadisticas;
+    }
+
+    private Plantilla compilarExplicacion(MLPredictionResponseDto mlResponse, Map<String, String> clasificaciones,
+                                          TipoDiabetesInfo info, List<Map.Entry<String, Double>> factores,
+                                          List<Map.Entry<String, Double>> otras) {
+        Plantilla.Constructor explicacion = new Plantilla.Constructor();
+
+        // 1. Resultado principal
+        explicacion.texto("## 📊 Resultado de la Predicción\n\n");
+        explicacion.texto("**Tipo de diabetes predicho:** ").texto(mlResponse.getPredictedClassEs()).texto("\n");
+        explicacion.texto("**Confianza del modelo:** ").hueco("%.1f").texto("%\n\n");
+
+        // 2. Factores clave que influyeron
+        explicacion.texto("## 🔍 Factores Clave Identificados\n\n");
+        for (Map.Entry<String, Double> factor : factores) {
+            explicacion.texto("• **").texto(traducirNombreFeature(factor.getKey())).texto("**: ")
+                    .hueco("%.0f").texto("%\n");
+        }
+
+        // 3. Interpretación de valores clínicos
+        explicacion.texto("\n## 🩺 Interpretación de Valores\n\n");
+        clasificaciones.forEach((key, value) ->
+                explicacion.texto("• **").texto(traducirNombreClasificacion(key)).texto("**: ").texto(value).texto("\n"));
+
+        // 4. Información adicional del tipo de diabetes
+        if (info != null) {
+            explicacion.texto("\n## ℹ️ Acerca de ").texto(info.getNombreEs()).texto("\n\n");
+            if (info.getDescripcion() != null && info.getDescripcion().length() > 200) {
+                explicacion.texto(info.getDescripcion().substring(0, 200)).texto("...\n");
+            } else if (info.getDescripcion() != null) {
+                explicacion.texto(info.getDescripcion()).texto("\n");
+            }
+        }
+
+        // 5. Otras posibles diagnósticos
+        if (otras != null) {
+            explicacion.texto("\n## 🎯 Otras Posibilidades\n\n");
+            for (Map.Entry<String, Double> otra : otras) {
+                explicacion.texto("• ").texto(otra.getKey()).texto(": ").hueco("%.1f").texto("%\n");
+            }
+        }
+
+        return explicacion.construir();
+    }
+
+    private String compilarRecomendaciones(Map<String, String> clasificaciones, TipoDiabetesInfo info,
+                                           List<Map.Entry<String, Double>> factores) {
+        StringBuilder recomendaciones = new StringBuilder();
+
+        // Encabezado
+        recomendaciones.append("## 📋 Recomendaciones Personalizadas\n\n");
+
+        // 1. Recomendaciones basadas en el tipo de diabetes
+        if (info != null && info.getRecomendaciones() != null && !info.getRecomendaciones().isEmpty()) {
+            recomendaciones.append("**Recomendaciones específicas para ").append(info.getNombreEs()).append(":**\n");
+            recomendaciones.append(info.getRecomendaciones()).append("\n\n");
+        }
+
+        // 2. Recomendaciones basadas en clasificaciones
+        recomendaciones.append("**Basado en sus valores clínicos:**\n");
+        motorReglas.agregarRecomendaciones(clasificaciones, RangoClinico.SECCION_CLINICA, recomendaciones);
+
+        // 3. Recomendaciones generales
+        recomendaciones.append("\n**Recomendaciones generales:**\n");
+        recomendaciones.append("1. **Consulta médica**: Programar cita con especialista para confirmación diagnóstica y plan de tratamiento.\n");
+        recomendaciones.append("2. **Exámenes complementarios**: Realizar hemoglobina glicosilada (HbA1c), perfil lipídico completo y función renal.\n");
+        recomendaciones.append("3. **Educación diabetológica**: Participar en programas de educación sobre manejo de diabetes.\n");
+        recomendaciones.append("4. **Seguimiento**: Control periódico cada 3-6 meses según indicación médica.\n");
+        recomendaciones.append("5. **Emergencias**: Conocer signos de hipoglucemia/hiperglucemia y tener plan de acción.\n");
+
+        // 4. Factores de importancia del modelo
+        if (!factores.isEmpty()) {
+            recomendaciones.append("\n**Factores críticos identificados por el modelo:**\n");
+            for (int i = 0; i < Math.min(TOP_FACTORES_RECOMENDACION, factores.size()); i++) {
+                recomendaciones.append("• **").append(traducirNombreFeature(factores.get(i).getKey()))
+                        .append("** fue determinante en el diagnóstico. Mantenga este valor en observación.\n");
+            }
+        }
+
+        // 5. Recomendaciones específicas según edad
+        if (motorReglas.tieneClasificaciones(clasificaciones, RangoClinico.SECCION_ETARIA)) {
+            recomendaciones.append("\n**Consideraciones según grupo etario:**\n");
+            motorReglas.agregarRecomendaciones(clasificaciones, RangoClinico.SECCION_ETARIA, recomendaciones);
+        }
+
+        return recomendaciones.toString();
+    }
+
+    /**
+     * Las {@code cantidad} entradas de mayor valor (saltando las primeras {@code saltar}), en orden descendente.
+     * Ante empates conserva el orden de iteración, igual que un ordenamiento estable.
+     */
+    private static List<Map.Entry<String, Double>> mayores(Map<String, Double> valores, int cantidad, int saltar) {
+        if (valores == null || valores.isEmpty()) {
+            return List.of();
+        }
+
+        int limite = cantidad + saltar;
+        List<Map.Entry<String, Double>> seleccion = new ArrayList<>(limite + 1);
+        for (Map.Entry<String, Double> entry : valores.entrySet()) {
+            int posicion = seleccion.size();
+            while (posicion > 0 && seleccion.get(posicion - 1).getValue() < entry.getValue()) {
+                posicion--;
+            }
+            if (posicion < limite) {
+                seleccion.add(posicion, entry);
+                if (seleccion.size() > limite) {
+                    seleccion.remove(limite);
+                }
+            }
+        }
+        return seleccion.subList(Math.min(saltar, seleccion.size()), seleccion.size());
+    }
+
+    private static List<String> nombres(List<Map.Entry<String, Double>> entradas) {
+        String[] nombres = new String[entradas.size()];
+        for (int i = 0; i < nombres.length; i++) {
+            nombres[i] = entradas.get(i).getKey();
+        }
+        return List.of(nombres);
+    }
+
+    private Plantillas buscar(Clave clave) {
+        synchronized (plantillas) {
+            return plantillas.get(clave);
+        }
+    }
+
+    private void guardar(Clave clave, Plantillas compiladas) {
+        synchronized (plantillas) {
+            plantillas.put(clave, compiladas);
+            Iterator<Plantillas> it = plantillas.values().iterator();
+            while (plantillas.size() > maxEntradas && it.hasNext()) {
+                it.next();
+                it.remove();
+                expulsiones.incrementAndGet();
+            }
+        }
+    }
+
+    private record Clave(String clase,
+                         Map<String, String> clasificaciones,
+                         List<String> factores,
+                         List<String> otrasPosibilidades,
+                         Long idTipoDiabetes,
+                         int hashInfo,
+                         long versionReglas) {
+    }
+
+    private record Plantillas(Plantilla explicacion, String recomendaciones) {
+    }
+
+    /**
+     * Texto precompilado con huecos numéricos: fragmentos[i] va antes del hueco i y el último fragmento al final
+     */
+    private record Plantilla(String[] fragmentos, String[] formatos, int longitud) {
+
+        String completar(double[] valores) {
+            StringBuilder texto = new StringBuilder(longitud + formatos.length * 6);
+            for (int i = 0; i < formatos.length; i++) {
+                texto.append(fragmentos[i]).append(String.format(formatos[i], valores[i]));
+            }
+            return texto.append(fragmentos[formatos.length]).toString();
+        }
+
+        static final class Constructor {
+            private final List<String> fragmentos = new ArrayList<>();
+            private final List<String> formatos = new ArrayList<>();
+            private final StringBuilder actual = new StringBuilder();
+            private int longitud;
+
+            Constructor texto(String texto) {
+                actual.append(texto);
+                return this;
+            }
+
+            Constructor hueco(String formato) {
+                cerrarFragmento();
+                formatos.add(formato);
+                return this;
+            }
+
+            Plantilla construir() {
+                cerrarFragmento();
+                return new Plantilla(fragmentos.toArray(new String[0]), formatos.toArray(new String[0]), longitud);
+            }
+
+            private void cerrarFragmento() {
+                fragmentos.add(actual.toString());
+                longitud += actual.length();
+                actual.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sonda periódica de /health de cada réplica de la API Python. Expulsa o readmite réplicas en el balanceador,
+ * publica el resultado global como un valor inmutable y mueve el circuit breaker: lo abre si todas las
+ * réplicas fallan en varias sondas seguidas aunque no haya tráfico, y adelanta la prueba cuando alguna vuelve.
+ * Así ninguna solicitud de predicción tiene que verificar la conexión por su cuenta.
+ */
+@Slf4j
+@Component
+public class SondaSaludML {
+    @Autowired
+    private PythonMLClient pythonMLClient;
+
+    @Autowired
+    private CircuitBreakerML circuito;
+
+    @Autowired
+    private BalanceadorReplicasML balanceador;
+
+    @Value("${ml.python.enabled:true}")
+    private boolean mlPythonEnabled;
+
+    // Una sola sonda perdida (GC, red) no alcanza para abrir el circuito
+    @Value("${ml.salud.fallos-para-abrir:3}")
+    private int fallosParaAbrir;
+
+    private final AtomicReference<EstadoSalud> estado = new AtomicReference<>(EstadoSalud.DESCONOCIDO);
+
+    public record EstadoSalud(boolean disponible, int replicasSanas, LocalDateTime verificadoEn,
+                              long latenciaMs, int fallosConsecutivos) {
+        static final EstadoSalud DESCONOCIDO = new EstadoSalud(false, 0, null, 0, 0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        log.info("🔄 Inicializando servicio de modelo ML...");
+        if (!mlPythonEnabled) {
+            log.warn("⚠️ Integración con API Python deshabilitada en configuración");
+            return;
+        }
+
+        if (sondear().disponible()) {
+            log.info("✅ Servicio ML configurado para usar API Python");
+            try {
+                MLPredictionResponseDto prueba = pythonMLClient.pruebaPrediccion();
+                if (prueba != null && Boolean.TRUE.equals(prueba.getSuccess())) {
+                    log.info("✅ Prueba de predicción exitosa. Modelo funcionando correctamente");
+                } else {
+                    log.warn("⚠️ Prueba de predicción falló o respuesta inválida");
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Prueba de predicción encontró errores: {}", e.getMessage());
+            }
+        } else {
+            log.warn("⚠️ API Python no disponible. Usando modelo simulado.");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ml.salud.intervalo-ms:15000}", initialDelayString = "${ml.salud.intervalo-ms:15000}")
+    public void sondearPeriodicamente() {
+        if (mlPythonEnabled) {
+            sondear();
+        }
+    }
+
+    public EstadoSalud sondear() {
+        long inicio = System.currentTimeMillis();
+        int sanas = 0;
+        for (String url : balanceador.getUrls()) {
+            boolean sana = pythonMLClient.verificarConexion(url);
+            balanceador.registrarSalud(url, sana);
+            if (sana) {
+                sanas++;
+            }
+        }
+        long latencia = System.currentTimeMillis() - inicio;
+        boolean disponible = sanas > 0;
+
+        EstadoSalud anterior = estado.get();
+        EstadoSalud nuevo = new EstadoSalud(disponible, sanas, LocalDateTime.now(), latencia,
+                disponible ? 0 : anterior.fallosConsecutivos() + 1);
+        estado.set(nuevo);
+
+        if (disponible) {
+            circuito.adelantarPrueba();
+        } else if (nuevo.fallosConsecutivos() >= fallosParaAbrir) {
+            circuito.abrir(String.format("ninguna réplica respondió a %d sondas de salud seguidas",
+                    nuevo.fallosConsecutivos()));
+        }
+
+        if (anterior.disponible() != disponible && anterior.verificadoEn() != null) {
+            if (disponible) {
+                log.info("💚 API Python disponible nuevamente ({} ms)", latencia);
+            } else {
+                log.warn("💔 API Python dejó de responder a la sonda de salud");
+            }
+        }
+        return nuevo;
+    }
+
+    public EstadoSalud getEstado() {
+        return estado.get();
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        EstadoSalud actual = estado.get();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("disponible", actual.disponible());
+        estadisticas.put("replicasSanas", actual.replicasSanas());
+        estadisticas.put("verificadoEn", actual.verificadoEn());
+        estadisticas.put("latenciaMs", actual.latenciaMs());
+        estadisticas.put("fallosConsecutivos", actual.fallosConsecutivos());
+        estadisticas.put("fallosParaAbrir", fallosParaAbrir);
+        return estadisticas;
+    }
+}
@@ -0,0 +1,393 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.entities.ResumenDiarioEvaluaciones;
+import com.diabetes.business_back.repositories.EvaluacionDiabetesRepository;
+import com.diabetes.business_back.repositories.ResumenDiarioEvaluacionesRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tendencias de evaluaciones por tipo de diabetes. Las últimas horas viven en un anillo de cubetas horarias
+ * que se actualiza al guardar cada evaluación; los días cerrados se compactan una vez al día en
+ * resumen_diario_evaluaciones. Las consultas de tendencias leen solo de esas dos fuentes, nunca de
+ * evaluaciones_diabetes. Un alta, baja o cambio con fecha en un día ya compactado suma su diferencia a la fila
+ * de ese día en el resumen, dentro de la transacción del llamador; el anillo se actualiza al confirmarse.
+ */
+@Slf4j
+@Component
+public class TendenciasEvaluaciones {
+    public static final String HORA = "hora";
+    public static final String DIA = "dia";
+    public static final String SEMANA = "semana";
+
+    // Las evaluaciones sin tipo se guardan con tipo vacío; un día sin evaluaciones se marca con cantidad 0
+    private static final String SIN_TIPO = "";
+
+    private static final String SQL_SUMAR_RESUMEN =
+            "INSERT INTO resumen_diario_evaluaciones (fecha, tipo_diabetes_predicho, cantidad) VALUES (?, ?, GREATEST(?, 0)) " +
+                    "ON CONFLICT (fecha, tipo_diabetes_predicho) DO UPDATE " +
+                    "SET cantidad = GREATEST(resumen_diario_evaluaciones.cantidad + ?, 0)";
+
+    @Autowired
+    private EvaluacionDiabetesRepository evaluacionrepository;
+
+    @Autowired
+    private ResumenDiarioEvaluacionesRepository resumenRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${evaluaciones.tendencias.horas-memoria:72}")
+    private int horasMemoria;
+
+    @Value("${evaluaciones.tendencias.dias-recompactar:2}")
+    private int diasRecompactar;
+
+    @Value("${evaluaciones.tendencias.max-puntos:2000}")
+    private int maxPuntos;
+
+    private AtomicReferenceArray<Cubeta> anillo;
+    private volatile LocalDate compactadoHasta;
+    private volatile LocalDateTime ultimaCompactacion;
+    private final LongAdder correccionesResumen = new LongAdder();
+
+    private static final class Cubeta {
+        final long hora;
+        final Map<String, LongAdder> conteos = new ConcurrentHashMap<>();
+
+        Cubeta(long hora) {
+            this.hora = hora;
+        }
+    }
+
+    /**
+     * Reconstruye el anillo con las evaluaciones de las últimas horas. Corre antes de que el servidor web
+     * acepte solicitudes, así que ninguna evaluación se cuenta dos veces.
+     */
+    @PostConstruct
+    public void inicializar() {
+        anillo = new AtomicReferenceArray<>(horasMemoria);
+        try {
+            LocalDateTime desde = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(horasMemoria - 1);
+            int cargadas = 0;
+            for (Object[] fila : evaluacionrepository.listarFechaYTipoDesde(desde)) {
+                registrar((LocalDateTime) fila[0], (String) fila[1]);
+                cargadas++;
+            }
+            // Se asigna después de cargar el anillo: esas evaluaciones ya están contadas en el resumen
+            compactadoHasta = resumenRepository.obtenerUltimaFechaCompactada();
+            log.info("📈 Tendencias: {} evaluaciones de las últimas {} horas en memoria, resumen diario hasta {}",
+                    cargadas, horasMemoria, compactadoHasta);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo reconstruir el anillo de tendencias: {}", e.getMessage());
+        }
+    }
+
+    // Al arrancar se compactan los días que hayan quedado pendientes mientras la aplicación estaba detenida
+    @EventListener(ApplicationReadyEvent.class)
+    public void compactarPendientes() {
+        compactarDiasCerrados();
+    }
+
+    public void registrar(LocalDateTime fecha, String tipo) {
+        sumar(fecha, tipo, 1);
+    }
+
+    public void quitar(LocalDateTime fecha, String tipo) {
+        sumar(fecha, tipo, -1);
+    }
+
+    /**
+     * Descuenta del resumen diario evaluaciones que dejaron de existir en bloque (retención de particiones).
+     * Solo corrige días ya compactados; los pendientes se compactan desde la base de datos, sin esas filas.
+     */
+    public void quitar(LocalDate dia, String tipo, long cantidad) {
+        if (dia != null && cantidad > 0) {
+            corregirResumen(dia, tipo != null ? tipo : SIN_TIPO, -cantidad);
+        }
+    }
+
+    private void sumar(LocalDateTime fecha, String tipo, long cantidad) {
+        if (fecha == null) {
+            return;
+        }
+        String clave = tipo != null ? tipo : SIN_TIPO;
+        // La compactación no vuelve a pasar por ese día: el resumen se corrige aquí, en la misma transacción
+        corregirResumen(fecha.toLocalDate(), clave, cantidad);
+
+        // El anillo solo cambia si la transacción confirma.
+        // Fuera de la ventana en memoria: lo recoge la compactación desde la base de datos
+        TrasConfirmacion.ejecutar(() -> {
+            Cubeta cubeta = cubeta(numeroHora(fecha), true);
+            if (cubeta != null) {
+                cubeta.conteos.computeIfAbsent(clave, t -> new LongAdder()).add(cantidad);
+            }
+        });
+    }
+
+    private void corregirResumen(LocalDate dia, String tipo, long cantidad) {
+        LocalDate compactado = compactadoHasta;
+        if (compactado != null && !dia.isAfter(compactado)) {
+            jdbcTemplate.update(SQL_SUMAR_RESUMEN, dia, tipo, cantidad, cantidad);
+            correccionesResumen.increment();
+        }
+    }
+
+    private Cubeta cubeta(long hora, boolean crear) {
+        long actual = numeroHora(LocalDateTime.now());
+        if (hora > actual || hora <= actual - horasMemoria) {
+            return null;
+        }
+
+        int indice = (int) Math.floorMod(hora, (long) anillo.length());
+        while (true) {
+            Cubeta existente = anillo.get(indice);
+            if (existente != null && existente.hora == hora) {
+                return existente;
+            }
+            if (!crear || (existente != null && existente.hora > hora)) {
+                return null;
+            }
+            Cubeta nueva = new Cubeta(hora);
+            if (anillo.compareAndSet(indice, existente, nueva)) {
+                return nueva;
+            }
+        }
+    }
+
+    private static long numeroHora(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) / 3600;
+    }
+
+    private static LocalDateTime inicioHora(long hora) {
+        return LocalDateTime.ofEpochSecond(hora * 3600, 0, ZoneOffset.UTC);
+    }
+
+    @Scheduled(cron = "${evaluaciones.tendencias.compactacion-cron:0 15 0 * * *}")
+    public void compactarPeriodicamente() {
+        compactarDiasCerrados();
+    }
+
+    /**
+     * Compacta los días cerrados que falten y vuelve a compactar los últimos días-recompactar por si
+     * llegaron evaluaciones con fecha atrasada. Devuelve la cantidad de días compactados.
+     */
+    public synchronized int compactarDiasCerrados() {
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        try {
+            LocalDate ultima = resumenRepository.obtenerUltimaFechaCompactada();
+            LocalDate inicio;
+            if (ultima == null) {
+                LocalDateTime primera = evaluacionrepository.obtenerPrimeraFechaEvaluacion();
+                if (primera == null) {
+                    return 0;
+                }
+                inicio = primera.toLocalDate();
+            } else {
+                inicio = ultima.plusDays(1);
+                LocalDate recompactar = ayer.minusDays(Math.max(0, diasRecompactar - 1));
+                if (recompactar.isBefore(inicio)) {
+                    inicio = recompactar;
+                }
+            }
+
+            int dias = 0;
+            for (LocalDate dia = inicio; !dia.isAfter(ayer); dia = dia.plusDays(1)) {
+                compactarDia(dia);
+                dias++;
+            }
+            if (dias > 0) {
+                compactadoHasta = ayer;
+                log.info("🗜️ Resumen diario de evaluaciones compactado: {} días hasta {}", dias, ayer);
+            }
+            ultimaCompactacion = LocalDateTime.now();
+            return dias;
+        } catch (Exception e) {
+            log.error("❌ Error al compactar el resumen diario de evaluaciones: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private void compactarDia(LocalDate dia) {
+        List<Object[]> filas = evaluacionrepository.contarPorTipoEntre(dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+
+        List<ResumenDiarioEvaluaciones> resumenes = new ArrayList<>();
+        for (Object[] fila : filas) {
+            String tipo = fila[0] != null ? (String) fila[0] : SIN_TIPO;
+            resumenes.add(new ResumenDiarioEvaluaciones(null, dia, tipo, ((Number) fila[1]).longValue()));
+        }
+        if (resumenes.isEmpty()) {
+            // Marca de día compactado sin evaluaciones, para no volver a recorrerlo
+            resumenes.add(new ResumenDiarioEvaluaciones(null, dia, SIN_TIPO, 0L));
+        }
+
+        transactionTemplate.executeWithoutResult(estado -> {
+            resumenRepository.eliminarPorFecha(dia);
+            resumenRepository.saveAll(resumenes);
+        });
+    }
+
+    /**
+     * Serie de conteos por tipo entre desde (incluido) y hasta (excluido) con granularidad hora, dia o semana.
+     * Por hora solo se cubre la ventana en memoria; por día y semana se combinan el resumen diario
+     * y, para los días aún no compactados, el anillo.
+     */
+    public Map<String, Object> obtenerTendencias(LocalDateTime desde, LocalDateTime hasta, String granularidad, String tipo) {
+        if (desde == null || hasta == null || !desde.isBefore(hasta)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El rango de fechas es inválido: desde debe ser anterior a hasta");
+        }
+
+        List<Map<String, Object>> puntos = switch (granularidad) {
+            case HORA -> seriePorHora(desde, hasta, tipo);
+            case DIA, SEMANA -> seriePorDia(desde.toLocalDate(), hasta, tipo, SEMANA.equals(granularidad));
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Granularidad no soportada: " + granularidad + ". Use hora, dia o semana");
+        };
+
+        Map<String, Long> totales = new TreeMap<>();
+        for (Map<String, Object> punto : puntos) {
+            @SuppressWarnings("unchecked")
+            Map<String, Long> conteos = (Map<String, Long>) punto.get("conteos");
+            conteos.forEach((t, n) -> totales.merge(t, n, Long::sum));
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("granularidad", granularidad);
+        resultado.put("desde", desde);
+        resultado.put("hasta", hasta);
+        if (tipo != null) {
+            resultado.put("tipo", tipo);
+        }
+        resultado.put("puntos", puntos);
+        resultado.put("totales", totales);
+        resultado.put("total", totales.values().stream().mapToLong(Long::longValue).sum());
+        resultado.put("compactadoHasta", compactadoHasta);
+        return resultado;
+    }
+
+    private List<Map<String, Object>> seriePorHora(LocalDateTime desde, LocalDateTime hasta, String tipo) {
+        long primera = numeroHora(desde.truncatedTo(ChronoUnit.HOURS));
+        long ultima = numeroHora(hasta.minusNanos(1));
+        long actual = numeroHora(LocalDateTime.now());
+        if (primera <= actual - horasMemoria) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Las tendencias por hora solo cubren las últimas " + horasMemoria + " horas; use dia o semana");
+        }
+
+        List<Map<String, Object>> puntos = new ArrayList<>();
+        for (long hora = primera; hora <= Math.min(ultima, actual); hora++) {
+            puntos.add(punto(inicioHora(hora), conteosHora(hora, tipo)));
+        }
+        return puntos;
+    }
+
+    private Map<String, Long> conteosHora(long hora, String tipo) {
+        Map<String, Long> conteos = new TreeMap<>();
+        Cubeta cubeta = cubeta(hora, false);
+        if (cubeta != null) {
+            cubeta.conteos.forEach((t, contador) -> {
+                long n = contador.sum();
+                if (n > 0 && !SIN_TIPO.equals(t) && (tipo == null || tipo.equals(t))) {
+                    conteos.put(t, n);
+                }
+            });
+        }
+        return conteos;
+    }
+
+    private List<Map<String, Object>> seriePorDia(LocalDate desde, LocalDateTime hastaExclusivo, String tipo, boolean semanal) {
+        LocalDate hasta = hastaExclusivo.minusNanos(1).toLocalDate();
+        if (ChronoUnit.DAYS.between(desde, hasta) + 1 > maxPuntos) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El rango pedido supera el máximo de " + maxPuntos + " días");
+        }
+
+        Map<LocalDate, Map<String, Long>> porDia = new TreeMap<>();
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            porDia.put(dia, new TreeMap<>());
+        }
+
+        // Días cerrados: resumen persistido
+        LocalDate compactado = compactadoHasta;
+        if (compactado != null && !compactado.isBefore(desde)) {
+            LocalDate finResumen = compactado.isBefore(hasta) ? compactado : hasta;
+            for (ResumenDiarioEvaluaciones resumen : resumenRepository.findByFechaBetweenOrderByFechaAsc(desde, finResumen)) {
+                String t = resumen.getTipoDiabetesPredicho();
+                if (resumen.getCantidad() > 0 && !SIN_TIPO.equals(t) && (tipo == null || tipo.equals(t))) {
+                    porDia.get(resumen.getFecha()).merge(t, resumen.getCantidad(), Long::sum);
+                }
+            }
+        }
+
+        // Días aún no compactados (hoy y, si la compactación no corrió, ayer): suma de las horas en memoria
+        LocalDate primerDiaAnillo = compactado != null && !compactado.isBefore(desde) ? compactado.plusDays(1) : desde;
+        for (LocalDate dia = primerDiaAnillo; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            long primeraHora = numeroHora(dia.atStartOfDay());
+            Map<String, Long> conteosDia = porDia.get(dia);
+            for (long hora = primeraHora; hora < primeraHora + 24; hora++) {
+                conteosHora(hora, tipo).forEach((t, n) -> conteosDia.merge(t, n, Long::sum));
+            }
+        }
+
+        List<Map<String, Object>> puntos = new ArrayList<>();
+        if (!semanal) {
+            porDia.forEach((dia, conteos) -> puntos.add(punto(dia.atStartOfDay(), conteos)));
+            return puntos;
+        }
+
+        Map<LocalDate, Map<String, Long>> porSemana = new TreeMap<>();
+        porDia.forEach((dia, conteos) -> {
+            Map<String, Long> semana = porSemana.computeIfAbsent(dia.with(DayOfWeek.MONDAY), s -> new TreeMap<>());
+            conteos.forEach((t, n) -> semana.merge(t, n, Long::sum));
+        });
+        porSemana.forEach((lunes, conteos) -> puntos.add(punto(lunes.atStartOfDay(), conteos)));
+        return puntos;
+    }
+
+    private static Map<String, Object> punto(LocalDateTime inicio, Map<String, Long> conteos) {
+        Map<String, Object> punto = new LinkedHashMap<>();
+        punto.put("inicio", inicio);
+        punto.put("total", conteos.values().stream().mapToLong(Long::longValue).sum());
+        punto.put("conteos", conteos);
+        return punto;
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        long actual = numeroHora(LocalDateTime.now());
+        long enMemoria = 0;
+        for (long hora = actual - horasMemoria + 1; hora <= actual; hora++) {
+            enMemoria += conteosHora(hora, null).values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("horasEnMemoria", horasMemoria);
+        estadisticas.put("evaluacionesEnMemoria", enMemoria);
+        estadisticas.put("compactadoHasta", compactadoHasta);
+        estadisticas.put("ultimaCompactacion", ultimaCompactacion);
+        estadisticas.put("correccionesResumen", correccionesResumen.sum());
+        return estadisticas;
+    }
+}
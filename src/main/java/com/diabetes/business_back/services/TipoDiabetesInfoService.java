@@ -2,9 +2,9 @@ package com.diabetes.business_back.services;
 
 import com.diabetes.business_back.dtos.TipoDiabetesInfoDto;
 import com.diabetes.business_back.entities.TipoDiabetesInfo;
+import com.diabetes.business_back.mappers.TipoDiabetesInfoMapper;
 import com.diabetes.business_back.interfaces.ITipoDiabetesInfoService;
 import com.diabetes.business_back.repositories.TipoDiabetesInfoRepository;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,19 +16,23 @@ public class TipoDiabetesInfoService implements ITipoDiabetesInfoService {
     private TipoDiabetesInfoRepository tipodiabetesrepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private TipoDiabetesInfoMapper tipoMapper;
+
+    @Autowired
+    private DatosReferenciaCache datosReferencia;
 
     @Override
     public TipoDiabetesInfoDto grabarTipoDiabetes(TipoDiabetesInfoDto tipodto) {
-        TipoDiabetesInfo tipo = modelMapper.map(tipodto, TipoDiabetesInfo.class);
+        TipoDiabetesInfo tipo = tipoMapper.aEntidad(tipodto);
         TipoDiabetesInfo guardar = tipodiabetesrepository.save(tipo);
-        return modelMapper.map(guardar, TipoDiabetesInfoDto.class);
+        datosReferencia.recargarTipos();
+        return tipoMapper.aDto(guardar);
     }
 
     @Override
     public List<TipoDiabetesInfoDto> getTiposDiabetes() {
-        return tipodiabetesrepository.findAll().stream()
-                .map(tipo -> modelMapper.map(tipo, TipoDiabetesInfoDto.class))
+        return datosReferencia.getTipos().stream()
+                .map(tipoMapper::aDto)
                 .toList();
     }
 
@@ -36,6 +40,7 @@ public class TipoDiabetesInfoService implements ITipoDiabetesInfoService {
     public void eliminar(Long id) {
         if (tipodiabetesrepository.existsById(id)) {
             tipodiabetesrepository.deleteById(id);
+            datosReferencia.recargarTipos();
         } else {
             throw new RuntimeException("No se encontró el tipo de diabetes con ID: " + id);
         }
@@ -61,29 +66,33 @@ public class TipoDiabetesInfoService implements ITipoDiabetesInfoService {
         tipoExistente.setEsComun(tipodto.getEsComun());
 
         TipoDiabetesInfo actualizado = tipodiabetesrepository.save(tipoExistente);
-        return modelMapper.map(actualizado, TipoDiabetesInfoDto.class);
+        datosReferencia.recargarTipos();
+        return tipoMapper.aDto(actualizado);
     }
 
     @Override
     public TipoDiabetesInfoDto obtenerPorId(Long id) {
-        TipoDiabetesInfo tipo = tipodiabetesrepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Tipo de diabetes no encontrado con ID: " + id));
-        return modelMapper.map(tipo, TipoDiabetesInfoDto.class);
+        TipoDiabetesInfo tipo = datosReferencia.tipoPorId(id);
+        if (tipo == null) {
+            throw new RuntimeException("Tipo de diabetes no encontrado con ID: " + id);
+        }
+        return tipoMapper.aDto(tipo);
     }
 
     @Override
     public TipoDiabetesInfoDto obtenerPorNombreEn(String nombreEn) {
-        TipoDiabetesInfo tipo = tipodiabetesrepository.findByNombreEn(nombreEn);
+        TipoDiabetesInfo tipo = datosReferencia.tipoPorNombreEn(nombreEn);
         if (tipo == null) {
             throw new RuntimeException("Tipo de diabetes no encontrado con nombre: " + nombreEn);
         }
-        return modelMapper.map(tipo, TipoDiabetesInfoDto.class);
+        return tipoMapper.aDto(tipo);
     }
 
     @Override
     public List<TipoDiabetesInfoDto> obtenerTiposComunes() {
-        return tipodiabetesrepository.findByEsComun(true).stream()
-                .map(tipo -> modelMapper.map(tipo, TipoDiabetesInfoDto.class))
+        return datosReferencia.getTipos().stream()
+                .filter(tipo -> Boolean.TRUE.equals(tipo.getEsComun()))
+                .map(tipoMapper::aDto)
                 .toList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.diabetes.business_back.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Difiere una actualización de estado en memoria hasta que confirme la transacción en curso, para que un
+ * rollback no la deje aplicada. Sin transacción activa se ejecuta en el momento.
+ */
+public final class TrasConfirmacion {
+
+    private TrasConfirmacion() {
+    }
+
+    public static void ejecutar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
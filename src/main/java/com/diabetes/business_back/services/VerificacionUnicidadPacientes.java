@@ -0,0 +1,88 @@
+package com.diabetes.business_back.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comprueba las restricciones únicas de pacientes (código y email). Con ddl-auto=update Hibernate no puede
+ * crearlas si la tabla ya tiene repetidos y solo deja una advertencia en el log; aquí se detecta ese caso al
+ * arrancar y se informa qué valores están repetidos. Los repetidos no se corrigen solos: pueden tener
+ * evaluaciones asociadas y hay que decidir a mano qué paciente se conserva. Una vez corregidos, la restricción
+ * se crea en el siguiente arranque.
+ */
+@Slf4j
+@Component
+public class VerificacionUnicidadPacientes {
+    private static final Map<String, String> RESTRICCIONES = Map.of(
+            "uk_pacientes_codigo", "codigo_paciente",
+            "uk_pacientes_email", "email");
+
+    private static final int MAX_EJEMPLOS = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Object> estado = new LinkedHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void verificar() {
+        estado.clear();
+        estado.put("verificadoEn", LocalDateTime.now());
+        RESTRICCIONES.forEach((restriccion, columna) -> {
+            try {
+                estado.put(restriccion, verificar(restriccion, columna));
+            } catch (Exception e) {
+                log.error("❌ No se pudo verificar la restricción {} de pacientes: {}", restriccion, e.getMessage());
+                estado.put(restriccion, Map.of("estado", "error", "error", String.valueOf(e.getMessage())));
+            }
+        });
+    }
+
+    private Map<String, Object> verificar(String restriccion, String columna) {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        Long existe = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conrelid = 'pacientes'::regclass AND conname = ?",
+                Long.class, restriccion);
+        if (existe != null && existe > 0) {
+            resultado.put("estado", "activa");
+            return resultado;
+        }
+
+        List<Map<String, Object>> repetidos = jdbcTemplate.queryForList(
+                "SELECT " + columna + " AS valor, COUNT(*) AS pacientes, " +
+                        "STRING_AGG(id_paciente::text, ',' ORDER BY id_paciente) AS ids " +
+                        "FROM pacientes WHERE " + columna + " IS NOT NULL GROUP BY " + columna +
+                        " HAVING COUNT(*) > 1 ORDER BY COUNT(*) DESC LIMIT " + MAX_EJEMPLOS);
+        if (repetidos.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE pacientes ADD CONSTRAINT " + restriccion + " UNIQUE (" + columna + ")");
+            log.info("🔒 Restricción {} creada sobre pacientes.{}", restriccion, columna);
+            resultado.put("estado", "creada");
+            return resultado;
+        }
+
+        Long valoresRepetidos = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT 1 FROM pacientes WHERE " + columna + " IS NOT NULL GROUP BY " + columna +
+                        " HAVING COUNT(*) > 1) r", Long.class);
+        log.error("❌ La restricción {} no existe: pacientes.{} tiene {} valores repetidos (ejemplos: {}). " +
+                        "Las búsquedas por {} fallan con esos valores. Unifique o corrija los pacientes repetidos " +
+                        "(reasignando sus evaluaciones al que se conserva) y reinicie; la restricción se creará al arrancar",
+                restriccion, columna, valoresRepetidos, repetidos, columna);
+        resultado.put("estado", "repetidos");
+        resultado.put("valoresRepetidos", valoresRepetidos);
+        resultado.put("ejemplos", repetidos);
+        return resultado;
+    }
+
+    public synchronized Map<String, Object> obtenerEstado() {
+        return new LinkedHashMap<>(estado);
+    }
+}
@@ -0,0 +1,179 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.FeatureVector;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modo de paridad: por cada predicción muestreada ejecuta en segundo plano el otro backend
+ * (local o Python) y registra si coinciden la clase predicha y las probabilidades.
+ * No afecta la latencia de la solicitud original. Las llamadas a Python pasan por el {@link CircuitBreakerML}
+ * y se omiten mientras el circuito está abierto, para no cargar una API que ya se considera caída.
+ */
+@Slf4j
+@Component
+public class VerificadorParidadML {
+    private static final int MAX_DISCREPANCIAS = 20;
+
+    @Autowired
+    private MotorInferenciaLocal motorLocal;
+
+    @Autowired
+    private PythonMLClient pythonMLClient;
+
+    @Autowired
+    private CircuitBreakerML circuito;
+
+    @Value("${ml.paridad.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${ml.paridad.muestreo:1.0}")
+    private double muestreo;
+
+    @Value("${ml.paridad.tolerancia:0.05}")
+    private double tolerancia;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000), r -> {
+                Thread hilo = new Thread(r, "paridad-ml");
+                hilo.setDaemon(true);
+                return hilo;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    private final AtomicLong comparadas = new AtomicLong();
+    private final AtomicLong coincidencias = new AtomicLong();
+    private final AtomicLong discrepanciasClase = new AtomicLong();
+    private final AtomicLong fueraDeTolerancia = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong omitidasPorCircuito = new AtomicLong();
+    private final Deque<Map<String, Object>> ultimasDiscrepancias = new ArrayDeque<>();
+    private double maxDiferencia;
+    private double sumaDiferencias;
+
+    /**
+     * Agenda la comparación de una predicción ya resuelta por {@code backendPrincipal} contra el otro backend
+     */
+    public void verificar(FeatureVector features, MLPredictionResponseDto principal, String backendPrincipal) {
+        if (!habilitado || principal == null || !Boolean.TRUE.equals(principal.getSuccess())) {
+            return;
+        }
+        if (muestreo < 1.0 && ThreadLocalRandom.current().nextDouble() >= muestreo) {
+            return;
+        }
+        if (ModeloMLService.BACKEND_PYTHON.equals(backendPrincipal) && !motorLocal.isDisponible()) {
+            return;
+        }
+        if (ModeloMLService.BACKEND_LOCAL.equals(backendPrincipal) && !circuito.permiteTrafico()) {
+            omitidasPorCircuito.incrementAndGet();
+            return;
+        }
+
+        if (executor.getQueue().remainingCapacity() == 0) {
+            descartadas.incrementAndGet();
+            return;
+        }
+        executor.execute(() -> comparar(features, principal, backendPrincipal));
+    }
+
+    private void comparar(FeatureVector features, MLPredictionResponseDto principal, String backendPrincipal) {
+        try {
+            MLPredictionResponseDto alterna = ModeloMLService.BACKEND_LOCAL.equals(backendPrincipal)
+                    ? circuito.ejecutar(() -> pythonMLClient.predecirConPython(features))
+                    : motorLocal.predecir(features);
+
+            double diferencia = diferenciaMaxima(principal.getProbabilities(), alterna.getProbabilities());
+            boolean mismaClase = Objects.equals(principal.getPredictedClass(), alterna.getPredictedClass());
+
+            comparadas.incrementAndGet();
+            if (!mismaClase) {
+                discrepanciasClase.incrementAndGet();
+            }
+            if (diferencia > tolerancia) {
+                fueraDeTolerancia.incrementAndGet();
+            }
+            if (mismaClase && diferencia <= tolerancia) {
+                coincidencias.incrementAndGet();
+            }
+
+            synchronized (this) {
+                maxDiferencia = Math.max(maxDiferencia, diferencia);
+                sumaDiferencias += diferencia;
+                if (!mismaClase) {
+                    Map<String, Object> discrepancia = new LinkedHashMap<>();
+                    discrepancia.put("fecha", LocalDateTime.now());
+                    discrepancia.put("backendPrincipal", backendPrincipal);
+                    discrepancia.put("clasePrincipal", principal.getPredictedClass());
+                    discrepancia.put("claseAlterna", alterna.getPredictedClass());
+                    discrepancia.put("diferenciaMaxima", diferencia);
+                    discrepancia.put("caracteristicas", features.aMapa());
+                    ultimasDiscrepancias.addFirst(discrepancia);
+                    if (ultimasDiscrepancias.size() > MAX_DISCREPANCIAS) {
+                        ultimasDiscrepancias.removeLast();
+                    }
+                }
+            }
+
+            if (!mismaClase) {
+                log.warn("⚖️ Paridad: {} predijo '{}' y el backend alterno '{}'",
+                        backendPrincipal, principal.getPredictedClass(), alterna.getPredictedClass());
+            }
+
+        } catch (CircuitBreakerML.CircuitoAbiertoException e) {
+            // El circuito se abrió mientras la comparación esperaba en cola
+            omitidasPorCircuito.incrementAndGet();
+        } catch (Exception e) {
+            errores.incrementAndGet();
+            log.debug("Paridad: no se pudo evaluar el backend alterno: {}", e.getMessage());
+        }
+    }
+
+    private double diferenciaMaxima(Map<String, Double> a, Map<String, Double> b) {
+        if (a == null || b == null) {
+            return 1.0;
+        }
+        double maxima = 0.0;
+        Set<String> clases = new HashSet<>(a.keySet());
+        clases.addAll(b.keySet());
+        for (String clase : clases) {
+            maxima = Math.max(maxima, Math.abs(a.getOrDefault(clase, 0.0) - b.getOrDefault(clase, 0.0)));
+        }
+        return maxima;
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long total = comparadas.get();
+
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("muestreo", muestreo);
+        estadisticas.put("tolerancia", tolerancia);
+        estadisticas.put("comparadas", total);
+        estadisticas.put("coincidencias", coincidencias.get());
+        estadisticas.put("discrepanciasClase", discrepanciasClase.get());
+        estadisticas.put("fueraDeTolerancia", fueraDeTolerancia.get());
+        estadisticas.put("errores", errores.get());
+        estadisticas.put("descartadas", descartadas.get());
+        estadisticas.put("omitidasPorCircuito", omitidasPorCircuito.get());
+        estadisticas.put("pendientes", executor.getQueue().size());
+        estadisticas.put("tasaCoincidencia", total > 0 ? (double) coincidencias.get() / total : 0.0);
+        estadisticas.put("diferenciaMaxima", maxDiferencia);
+        estadisticas.put("diferenciaPromedio", total > 0 ? sumaDiferencias / total : 0.0);
+        estadisticas.put("ultimasDiscrepancias", new ArrayList<>(ultimasDiscrepancias));
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,198 @@
+package com.diabetes.business_back.mappers;
+
+import com.diabetes.business_back.dtos.*;
+import com.diabetes.business_back.entities.*;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara cada mapper escrito a mano con la salida de ModelMapper sobre los mismos objetos, en ambos
+ * sentidos, con todos los campos llenos y con campos nulos intercalados. Para las evaluaciones se mapean
+ * la fila caliente y el detalle sobre el mismo DTO.
+ */
+class MapeadoresEquivalenciaTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    @Test
+    void evaluacionEntidadADto() throws Exception {
+        EvaluacionDiabetesMapper mapper = new EvaluacionDiabetesMapper();
+        for (boolean conNulos : new boolean[]{false, true}) {
+            EvaluacionDiabetes evaluacion = llenar(new EvaluacionDiabetes(), conNulos);
+            evaluacion.setPaciente(llenar(new Paciente(), false));
+            EvaluacionDiabetesDetalle detalle = detalleDe(evaluacion, conNulos);
+
+            assertThat(mapper.aDto(evaluacion, detalle)).usingRecursiveComparison()
+                    .isEqualTo(conModelMapper(evaluacion, detalle));
+        }
+    }
+
+    @Test
+    void evaluacionDtoAEntidadYDetalle() throws Exception {
+        EvaluacionDiabetesMapper mapper = new EvaluacionDiabetesMapper();
+        for (boolean conNulos : new boolean[]{false, true}) {
+            EvaluacionDiabetesDto dto = llenar(new EvaluacionDiabetesDto(), conNulos);
+            dto.setPacientedto(llenar(new PacienteDto(), false));
+
+            assertThat(mapper.aEntidad(dto)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(dto, EvaluacionDiabetes.class));
+            // La clave del detalle la asigna @MapsId al asociarlo con la evaluación
+            assertThat(mapper.aDetalle(dto)).usingRecursiveComparison()
+                    .ignoringFields("idEvaluacion", "evaluacion")
+                    .isEqualTo(modelMapper.map(dto, EvaluacionDiabetesDetalle.class));
+        }
+    }
+
+    @Test
+    void evaluacionCopiaSobreExistente() throws Exception {
+        EvaluacionDiabetesMapper mapper = new EvaluacionDiabetesMapper();
+        EvaluacionDiabetesDto dto = llenar(new EvaluacionDiabetesDto(), true);
+
+        EvaluacionDiabetes esperada = llenar(new EvaluacionDiabetes(), false);
+        esperada.setPaciente(llenar(new Paciente(), false));
+        EvaluacionDiabetesDetalle detalleEsperado = detalleDe(esperada, false);
+        modelMapper.map(dto, esperada);
+        modelMapper.map(dto, detalleEsperado);
+
+        EvaluacionDiabetes obtenida = llenar(new EvaluacionDiabetes(), false);
+        obtenida.setPaciente(llenar(new Paciente(), false));
+        EvaluacionDiabetesDetalle detalleObtenido = detalleDe(obtenida, false);
+        mapper.copiar(dto, obtenida);
+        mapper.copiar(dto, detalleObtenido);
+
+        assertThat(obtenida).usingRecursiveComparison().isEqualTo(esperada);
+        assertThat(detalleObtenido).usingRecursiveComparison()
+                .ignoringFields("idEvaluacion", "evaluacion")
+                .isEqualTo(detalleEsperado);
+    }
+
+    @Test
+    void pacienteEnAmbosSentidos() throws Exception {
+        PacienteMapper mapper = new PacienteMapper();
+        for (boolean conNulos : new boolean[]{false, true}) {
+            Paciente paciente = llenar(new Paciente(), conNulos);
+            PacienteDto dto = llenar(new PacienteDto(), conNulos);
+
+            assertThat(mapper.aDto(paciente)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(paciente, PacienteDto.class));
+            assertThat(mapper.aEntidad(dto)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(dto, Paciente.class));
+        }
+    }
+
+    @Test
+    void catalogosEnAmbosSentidos() throws Exception {
+        GuiaCampoMapper guiaMapper = new GuiaCampoMapper();
+        RangoClinicoMapper rangoMapper = new RangoClinicoMapper();
+        TipoDiabetesInfoMapper tipoMapper = new TipoDiabetesInfoMapper();
+
+        for (boolean conNulos : new boolean[]{false, true}) {
+            GuiaCampo guia = llenar(new GuiaCampo(), conNulos);
+            GuiaCampoDto guiaDto = llenar(new GuiaCampoDto(), conNulos);
+            assertThat(guiaMapper.aDto(guia)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(guia, GuiaCampoDto.class));
+            assertThat(guiaMapper.aEntidad(guiaDto)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(guiaDto, GuiaCampo.class));
+
+            RangoClinico rango = llenar(new RangoClinico(), conNulos);
+            RangoClinicoDto rangoDto = llenar(new RangoClinicoDto(), conNulos);
+            assertThat(rangoMapper.aDto(rango)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(rango, RangoClinicoDto.class));
+            assertThat(rangoMapper.aEntidad(rangoDto)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(rangoDto, RangoClinico.class));
+
+            TipoDiabetesInfo tipo = llenar(new TipoDiabetesInfo(), conNulos);
+            TipoDiabetesInfoDto tipoDto = llenar(new TipoDiabetesInfoDto(), conNulos);
+            assertThat(tipoMapper.aDto(tipo)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(tipo, TipoDiabetesInfoDto.class));
+            assertThat(tipoMapper.aEntidad(tipoDto)).usingRecursiveComparison()
+                    .isEqualTo(modelMapper.map(tipoDto, TipoDiabetesInfo.class));
+        }
+    }
+
+    @Test
+    void listadoCompletoCoincideConModelMapper() throws Exception {
+        EvaluacionDiabetesMapper mapper = new EvaluacionDiabetesMapper();
+        List<EvaluacionDiabetesDto> conModelMapper = new ArrayList<>();
+        List<EvaluacionDiabetesDto> aMano = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            EvaluacionDiabetes evaluacion = llenar(new EvaluacionDiabetes(), i % 3 == 0);
+            EvaluacionDiabetesDetalle detalle = detalleDe(evaluacion, i % 3 == 0);
+            conModelMapper.add(conModelMapper(evaluacion, detalle));
+            aMano.add(mapper.aDto(evaluacion, detalle));
+        }
+
+        assertThat(aMano).usingRecursiveFieldByFieldElementComparator().isEqualTo(conModelMapper);
+    }
+
+    // Lo que producía ModelMapper cuando todas las columnas estaban en EvaluacionDiabetes
+    private EvaluacionDiabetesDto conModelMapper(EvaluacionDiabetes evaluacion, EvaluacionDiabetesDetalle detalle) {
+        EvaluacionDiabetesDto dto = modelMapper.map(evaluacion, EvaluacionDiabetesDto.class);
+        modelMapper.map(detalle, dto);
+        return dto;
+    }
+
+    // Sin la relación con la evaluación, para que ModelMapper no intente recorrerla
+    private static EvaluacionDiabetesDetalle detalleDe(EvaluacionDiabetes evaluacion, boolean conNulos) throws IllegalAccessException {
+        EvaluacionDiabetesDetalle detalle = llenar(new EvaluacionDiabetesDetalle(), conNulos);
+        detalle.setIdEvaluacion(evaluacion.getIdEvaluacion());
+        detalle.setEvaluacion(null);
+        return detalle;
+    }
+
+    private static int secuencia = 1;
+
+    /**
+     * Asigna un valor distinto a cada campo simple; con conNulos deja uno de cada tres en null.
+     * Las relaciones (paciente, evaluaciones, evaluacion) no se tocan.
+     */
+    private static <T> T llenar(T objeto, boolean conNulos) throws IllegalAccessException {
+        int posicion = 0;
+        for (Field campo : objeto.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(campo.getModifiers())) {
+                continue;
+            }
+            Object valor = valorPara(campo.getType(), secuencia++);
+            if (valor == null || (conNulos && posicion++ % 3 == 0)) {
+                continue;
+            }
+            campo.setAccessible(true);
+            campo.set(objeto, valor);
+        }
+        return objeto;
+    }
+
+    private static Object valorPara(Class<?> tipo, int n) {
+        if (tipo == String.class) {
+            return "valor-" + n;
+        }
+        if (tipo == Long.class) {
+            return (long) n;
+        }
+        if (tipo == Integer.class) {
+            return n;
+        }
+        if (tipo == Double.class) {
+            return n + 0.5;
+        }
+        if (tipo == Boolean.class) {
+            return n % 2 == 0;
+        }
+        if (tipo == LocalDate.class) {
+            return LocalDate.of(2000, 1, 1).plusDays(n);
+        }
+        if (tipo == LocalDateTime.class) {
+            return LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(n);
+        }
+        return null;
+    }
+}
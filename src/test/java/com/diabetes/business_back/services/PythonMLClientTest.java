@@ -0,0 +1,115 @@
+package com.diabetes.business_back.services;
+
+import com.diabetes.business_back.dtos.MLPredictionResponseDto;
+import com.diabetes.business_back.ml.FeatureSchema;
+import com.diabetes.business_back.ml.FeatureVector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PythonMLClientTest {
+
+    @Test
+    void usaCborCuandoLaApiLoAcepta() throws Exception {
+        try (ServidorMLSimulado servidor = new ServidorMLSimulado(true)) {
+            PythonMLClient cliente = crearCliente(servidor.getUrl());
+
+            MLPredictionResponseDto respuesta = cliente.predecirConPython(vector(250.0));
+
+            assertThat(respuesta.getPredictedClass()).isEqualTo("Type 1 Diabetes");
+            assertThat(respuesta.getProbability()).isEqualTo(0.9);
+            assertThat(respuesta.getProbabilities()).containsEntry("Type 2 Diabetes", 0.1);
+            assertThat(respuesta.getFeatureImportance()).containsEntry("niveles_glucosa", 0.7);
+            assertThat(respuesta.getSuccess()).isTrue();
+            assertThat(servidor.tiposRecibidos).containsExactly(ServidorMLSimulado.CBOR);
+            assertThat(servidor.tiposEnviados).containsExactly(ServidorMLSimulado.CBOR);
+        }
+    }
+
+    @Test
+    void vuelveAJsonCuandoLaApiRechazaCbor() throws Exception {
+        try (ServidorMLSimulado servidor = new ServidorMLSimulado(false)) {
+            PythonMLClient cliente = crearCliente(servidor.getUrl());
+
+            MLPredictionResponseDto primera = cliente.predecirConPython(vector(250.0));
+            MLPredictionResponseDto segunda = cliente.predecirConPython(vector(110.0));
+
+            assertThat(primera.getPredictedClass()).isEqualTo("Type 1 Diabetes");
+            assertThat(segunda.getPredictedClass()).isEqualTo("Type 2 Diabetes");
+            // Solo el primer intento va en CBOR; después el cliente recuerda que la API no lo acepta
+            assertThat(servidor.tiposRecibidos).containsExactly(
+                    ServidorMLSimulado.CBOR, ServidorMLSimulado.JSON, ServidorMLSimulado.JSON);
+        }
+    }
+
+    @Test
+    void vuelveAJsonCuandoLaApiRespondeBadRequestACbor() throws Exception {
+        try (ServidorMLSimulado servidor = new ServidorMLSimulado(false, 400)) {
+            PythonMLClient cliente = crearCliente(servidor.getUrl());
+
+            MLPredictionResponseDto primera = cliente.predecirConPython(vector(250.0));
+            MLPredictionResponseDto segunda = cliente.predecirConPython(vector(110.0));
+
+            assertThat(primera.getPredictedClass()).isEqualTo("Type 1 Diabetes");
+            assertThat(segunda.getPredictedClass()).isEqualTo("Type 2 Diabetes");
+            assertThat(servidor.tiposRecibidos).containsExactly(
+                    ServidorMLSimulado.CBOR, ServidorMLSimulado.JSON, ServidorMLSimulado.JSON);
+        }
+    }
+
+    @Test
+    void elErrorDeConexionNombraLaReplicaElegida() throws Exception {
+        String caida;
+        try (ServidorMLSimulado servidor = new ServidorMLSimulado(true)) {
+            caida = servidor.getUrl();
+        }
+        PythonMLClient cliente = crearCliente(caida);
+        ReflectionTestUtils.setField(cliente, "pythonApiUrl", caida + ",http://otra-replica:5000");
+
+        assertThatThrownBy(() -> cliente.predecirConPython(vector(250.0)))
+                .hasMessageEndingWith(caida)
+                .hasMessageNotContaining("otra-replica");
+    }
+
+    @Test
+    void decodificaElLoteEnOrden() throws Exception {
+        try (ServidorMLSimulado servidor = new ServidorMLSimulado(true)) {
+            PythonMLClient cliente = crearCliente(servidor.getUrl());
+
+            List<MLPredictionResponseDto> respuestas = cliente.predecirLoteConPython(
+                    List.of(vector(110.0), vector(250.0), vector(90.0)));
+
+            assertThat(respuestas).extracting(MLPredictionResponseDto::getPredictedClass)
+                    .containsExactly("Type 2 Diabetes", "Type 1 Diabetes", "Type 2 Diabetes");
+        }
+    }
+
+    private static PythonMLClient crearCliente(String url) {
+        BalanceadorReplicasML balanceador = new BalanceadorReplicasML();
+        ReflectionTestUtils.setField(balanceador, "urlsConfiguradas", url);
+        ReflectionTestUtils.setField(balanceador, "fallosParaExpulsar", 3);
+        ReflectionTestUtils.setField(balanceador, "expulsionMs", 30000L);
+        ReflectionTestUtils.setField(balanceador, "percentilCobertura", 0.95);
+        ReflectionTestUtils.setField(balanceador, "hilosCobertura", 2);
+        balanceador.inicializar();
+
+        PythonMLClient cliente = new PythonMLClient(new RestTemplate(), new ObjectMapper(), balanceador);
+        ReflectionTestUtils.setField(cliente, "pythonApiUrl", url);
+        ReflectionTestUtils.setField(cliente, "formatoPreferido", PythonMLClient.FORMATO_CBOR);
+        return cliente;
+    }
+
+    private static FeatureVector vector(double glucosa) {
+        return FeatureSchema.porDefecto().nuevoVector()
+                .setNumerico("edad", 45)
+                .setNumerico("niveles_glucosa", glucosa)
+                .setNumerico("niveles_insulina", 20.0)
+                .setCategorico("autoanticuerpos", "Negative");
+    }
+}
@@ -0,0 +1,110 @@
+package com.diabetes.business_back.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * API ML de prueba sobre el HttpServer del JDK. Responde /health, /predict y /predict/batch en JSON y,
+ * si se crea con soporte CBOR, también en CBOR; sin soporte responde a los cuerpos CBOR con el código indicado
+ * (415 si negocia el formato, 400 si Flask simplemente no puede leer el cuerpo).
+ * La clase predicha depende solo de la glucosa, para poder verificar que las características llegaron bien.
+ */
+class ServidorMLSimulado implements AutoCloseable {
+    static final String CBOR = "application/cbor";
+    static final String JSON = "application/json";
+
+    private final HttpServer servidor;
+    private final boolean aceptaCbor;
+    private final int codigoRechazo;
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new CBORMapper();
+
+    final List<String> tiposRecibidos = new CopyOnWriteArrayList<>();
+    final List<String> tiposEnviados = new CopyOnWriteArrayList<>();
+
+    ServidorMLSimulado(boolean aceptaCbor) throws IOException {
+        this(aceptaCbor, 415);
+    }
+
+    ServidorMLSimulado(boolean aceptaCbor, int codigoRechazo) throws IOException {
+        this.aceptaCbor = aceptaCbor;
+        this.codigoRechazo = codigoRechazo;
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/health", ex -> responder(ex, 200, JSON,
+                json.writeValueAsBytes(Map.of("status", "ok", "model_loaded", true))));
+        servidor.createContext("/predict", ex -> atender(ex, false));
+        servidor.createContext("/predict/batch", ex -> atender(ex, true));
+        servidor.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void atender(HttpExchange ex, boolean lote) throws IOException {
+        String tipo = ex.getRequestHeaders().getFirst("Content-Type");
+        tiposRecibidos.add(tipo);
+
+        ObjectMapper entrada = tipo != null && tipo.startsWith(CBOR) ? (aceptaCbor ? cbor : null) : json;
+        if (entrada == null) {
+            ex.getRequestBody().readAllBytes();
+            responder(ex, codigoRechazo, JSON, "{\"error\":\"No se pudo leer el cuerpo\"}".getBytes());
+            return;
+        }
+
+        Map<String, Object> cuerpo = entrada.readValue(ex.getRequestBody(), Map.class);
+        Object respuesta;
+        if (lote) {
+            List<Map<String, Object>> predicciones = new ArrayList<>();
+            for (Object instancia : (List<Object>) cuerpo.get("instances")) {
+                predicciones.add(predecir((Map<String, Object>) instancia));
+            }
+            respuesta = Map.of("predictions", predicciones);
+        } else {
+            respuesta = predecir(cuerpo);
+        }
+
+        String accept = ex.getRequestHeaders().getFirst("Accept");
+        boolean responderCbor = aceptaCbor && accept != null && accept.contains(CBOR);
+        responder(ex, 200, responderCbor ? CBOR : JSON,
+                (responderCbor ? cbor : json).writeValueAsBytes(respuesta));
+    }
+
+    private Map<String, Object> predecir(Map<String, Object> features) {
+        double glucosa = ((Number) features.getOrDefault("niveles_glucosa", 0)).doubleValue();
+        String clase = glucosa > 200 ? "Type 1 Diabetes" : "Type 2 Diabetes";
+        String otra = glucosa > 200 ? "Type 2 Diabetes" : "Type 1 Diabetes";
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("predictedClass", clase);
+        respuesta.put("probability", 0.9);
+        respuesta.put("probabilities", Map.of(clase, 0.9, otra, 0.1));
+        respuesta.put("featureImportance", Map.of("niveles_glucosa", 0.7, "edad", 0.2));
+        respuesta.put("success", true);
+        respuesta.put("message", "stub");
+        return respuesta;
+    }
+
+    private void responder(HttpExchange ex, int codigo, String tipo, byte[] cuerpo) throws IOException {
+        tiposEnviados.add(tipo);
+        ex.getResponseHeaders().set("Content-Type", tipo);
+        ex.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = ex.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+}